@@ -1,3 +1,6 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * ABSTRACT CLASS EXAMPLE:
  * This abstract class implements multiple interfaces and provides common functionality
@@ -6,9 +9,26 @@
  * 2. Inheritance: Serves as a base class for all vehicle types
  * 3. Abstraction: Provides common behavior while leaving some methods to be implemented by subclasses
  * 4. Encapsulation: Uses protected fields and public methods
+ *
+ * A vehicle is not thread-safe by itself. Every thread that changes a shared vehicle holds its
+ * monitor for the whole command: FleetRegistry.execute, EcoModePolicy, MaintenanceExecutor and
+ * VehicleMailbox commands all run inside synchronized (vehicle). Observers are notified on that
+ * thread, one change at a time, and readers that need a consistent view lock the vehicle too.
+ * While holding a vehicle's monitor, code may take other locks (e.g. TieredVehicleStore's),
+ * never the other way round.
  */
 public abstract class AbstractVehicle implements IVehicle, IDriveable, IMaintainable {
+    // Source of unique vehicle ids, shared by all vehicle types
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    // Energy below this is floating-point residue, not enough to drive another kilometre
+    protected static final double ENERGY_EPSILON = 1e-9;
+
+    // Console messages can be switched off for headless runs; when off, no message is even built
+    protected static volatile boolean outputEnabled = true;
+
     // Protected fields that will be inherited by all subclasses
+    protected long id;
     protected String brand;
     protected String model;
     protected int year;
@@ -20,11 +40,24 @@ public abstract class AbstractVehicle implements IVehicle, IDriveable, IMaintain
     protected int mileage;
     protected int mileageSinceService;
 
+    // Position on a flat map in km, heading in degrees clockwise from north (+y)
+    protected double x;
+    protected double y;
+    protected double heading;
+    private double headingX;        // Unit vector of the heading, cached so moving needs no trig
+    private double headingY = 1.0;
+
+    // OBSERVER PATTERN: observers are kept in an array that is replaced on change,
+    // so notifying them never allocates or locks
+    private static final IVehicleObserver[] NO_OBSERVERS = new IVehicleObserver[0];
+    private volatile IVehicleObserver[] observers = NO_OBSERVERS;
+
     /**
      * Constructor that initializes common vehicle properties
      * This constructor will be called by all subclasses using super()
      */
     public AbstractVehicle(String brand, String model, int year, double fuelCapacity) {
+        this.id = NEXT_ID.getAndIncrement();
         this.brand = brand;
         this.model = model;
         this.year = year;
@@ -43,12 +76,17 @@ public abstract class AbstractVehicle implements IVehicle, IDriveable, IMaintain
      */
     @Override
     public void start() {
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.START);
         if (!isRunning && fuelLevel > 0) {
             isRunning = true;
-            System.out.println(getVehicleType() + " " + brand + " " + model + " has started.");
-        } else if (fuelLevel <= 0) {
+            if (outputEnabled) {
+                System.out.println(getVehicleType() + " " + brand + " " + model + " has started.");
+            }
+            notifyObservers(IVehicleObserver.RUNNING);
+        } else if (fuelLevel <= 0 && outputEnabled) {
             System.out.println("Cannot start - no fuel!");
         }
+        FleetRecording.endOperation(event, this);
     }
 
     @Override
@@ -57,27 +95,117 @@ public abstract class AbstractVehicle implements IVehicle, IDriveable, IMaintain
             isRunning = false;
             speed = 0;
             currentGear = 0;
-            System.out.println(getVehicleType() + " " + brand + " " + model + " has stopped.");
+            if (outputEnabled) {
+                System.out.println(getVehicleType() + " " + brand + " " + model + " has stopped.");
+            }
+            notifyObservers(IVehicleObserver.RUNNING | IVehicleObserver.SPEED | IVehicleObserver.GEAR);
         }
     }
 
     @Override
     public void accelerate() {
-        if (isRunning && fuelLevel > 0) {
-            speed += 10;
-            fuelLevel -= 0.5; // Consume fuel
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.ACCELERATE);
+        if (isRunning && fuelLevel > ENERGY_EPSILON) {
+            speed += getAccelerationStep();
+            fuelLevel -= getEnergyPerKm(); // Consume fuel
             mileage += 1;
             mileageSinceService += 1;
-            System.out.println(getVehicleType() + " " + brand + " " + model + " is accelerating. Current speed: " + speed + " km/h");
+            moveForward(1);
+            if (outputEnabled) {
+                System.out.println(getVehicleType() + " " + brand + " " + model + " is accelerating. Current speed: " + speed + " km/h");
+            }
+            notifyObservers(IVehicleObserver.SPEED | IVehicleObserver.FUEL
+                    | IVehicleObserver.MILEAGE | IVehicleObserver.SERVICE | IVehicleObserver.POSITION);
         }
+        FleetRecording.endOperation(event, this);
     }
 
     @Override
     public void brake() {
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.BRAKE);
         if (speed > 0) {
-            speed = Math.max(0, speed - 10);
-            System.out.println(getVehicleType() + " " + brand + " " + model + " is braking. Current speed: " + speed + " km/h");
+            speed = Math.max(0, speed - getBrakeStep());
+            if (outputEnabled) {
+                System.out.println(getVehicleType() + " " + brand + " " + model + " is braking. Current speed: " + speed + " km/h");
+            }
+            notifyObservers(IVehicleObserver.SPEED);
+        }
+        FleetRecording.endOperation(event, this);
+    }
+
+    /**
+     * CLOSED-FORM FAST FORWARD:
+     * Same result as calling accelerate() accelerateSteps times and then brake() brakeSteps
+     * times, but computed in constant time and with a single observer notification.
+     * Acceleration stops exactly on the step where the fuel runs out, just like the
+     * step-by-step version (up to floating-point rounding of the fuel level).
+     */
+    public void fastForward(int accelerateSteps, int brakeSteps) {
+        if (accelerateSteps < 0 || brakeSteps < 0) {
+            throw new IllegalArgumentException("Step counts cannot be negative");
+        }
+        int changed = 0;
+
+        // Load, gear and eco mode don't change while driving, so the per-step values are constant
+        int steps = isRunning ? affordableSteps(fuelLevel, getEnergyPerKm(), accelerateSteps) : 0;
+        if (steps > 0) {
+            speed += steps * getAccelerationStep();
+            fuelLevel -= steps * getEnergyPerKm();
+            mileage += steps;
+            mileageSinceService += steps;
+            moveForward(steps);
+            changed |= IVehicleObserver.SPEED | IVehicleObserver.FUEL
+                    | IVehicleObserver.MILEAGE | IVehicleObserver.SERVICE | IVehicleObserver.POSITION;
         }
+
+        if (brakeSteps > 0 && speed > 0) {
+            speed = (int) Math.max(0, speed - (long) brakeSteps * getBrakeStep());
+            changed |= IVehicleObserver.SPEED;
+        }
+
+        if (changed != 0) {
+            if (outputEnabled) {
+                System.out.println(getVehicleType() + " " + brand + " " + model + " fast-forwarded " + steps +
+                                   " km. Current speed: " + speed + " km/h");
+            }
+            notifyObservers(changed);
+        }
+    }
+
+    /**
+     * Number of accelerate() steps that actually run: a step runs while the energy
+     * level is still above ENERGY_EPSILON, even if it then drops below zero.
+     */
+    protected static int affordableSteps(double level, double perStep, int requested) {
+        if (level <= ENERGY_EPSILON || requested == 0) {
+            return 0;
+        }
+        if (perStep <= 0) {
+            return requested;
+        }
+        long steps = (long) Math.ceil((level - ENERGY_EPSILON) / perStep);
+        // Correct rounding at the boundary so the count matches repeated subtraction
+        while (steps > 1 && level - (steps - 1) * perStep <= ENERGY_EPSILON) {
+            steps--;
+        }
+        while (level - steps * perStep > ENERGY_EPSILON) {
+            steps++;
+        }
+        return (int) Math.min(steps, requested);
+    }
+
+    /**
+     * Speed gained by one accelerate() call
+     */
+    protected int getAccelerationStep() {
+        return 10;
+    }
+
+    /**
+     * Speed lost by one brake() call
+     */
+    protected int getBrakeStep() {
+        return 10;
     }
 
     /**
@@ -87,7 +215,10 @@ public abstract class AbstractVehicle implements IVehicle, IDriveable, IMaintain
     public void changeGear(int gear) {
         if (isRunning && gear >= 0 && gear <= 6) {
             this.currentGear = gear;
-            System.out.println("Changed to gear " + gear);
+            if (outputEnabled) {
+                System.out.println("Changed to gear " + gear);
+            }
+            notifyObservers(IVehicleObserver.GEAR);
         }
     }
 
@@ -98,8 +229,13 @@ public abstract class AbstractVehicle implements IVehicle, IDriveable, IMaintain
 
     @Override
     public void refuel(double amount) {
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.REFUEL);
         fuelLevel = Math.min(fuelCapacity, fuelLevel + amount);
-        System.out.println("Refueled. Current fuel level: " + String.format("%.1f", fuelLevel) + "L");
+        if (outputEnabled) {
+            System.out.println("Refueled. Current fuel level: " + String.format("%.1f", fuelLevel) + "L");
+        }
+        notifyObservers(IVehicleObserver.FUEL);
+        FleetRecording.endOperation(event, this);
     }
 
     /**
@@ -107,8 +243,12 @@ public abstract class AbstractVehicle implements IVehicle, IDriveable, IMaintain
      */
     @Override
     public void performMaintenance() {
-        System.out.println("Performing maintenance on " + brand + " " + model);
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.MAINTENANCE);
+        if (outputEnabled) {
+            System.out.println("Performing maintenance on " + brand + " " + model);
+        }
         resetServiceIndicator();
+        FleetRecording.endOperation(event, this);
     }
 
     @Override
@@ -121,13 +261,175 @@ public abstract class AbstractVehicle implements IVehicle, IDriveable, IMaintain
         return mileageSinceService > 10000; // Service needed every 10,000 km
     }
 
+    /**
+     * ENERGY MODEL:
+     * Every accelerate() step covers one kilometre. These methods describe how much
+     * energy that kilometre costs so planners can reason about a vehicle without
+     * actually driving it. Subclasses override them when they burn energy differently.
+     */
+    public double getEnergyPerKm() {
+        return 0.5; // Litres per accelerate() step
+    }
+
+    public double getEnergyLevel() {
+        return fuelLevel;
+    }
+
+    public double getEnergyCapacity() {
+        return fuelCapacity;
+    }
+
+    /**
+     * Energy recovered per km/h of speed lost while braking (0 for fuel vehicles)
+     */
+    public double getEnergyRecoveredPerKmh() {
+        return 0.0;
+    }
+
+    /**
+     * POSITION MODEL:
+     * Every accelerate() step covers one kilometre (see ENERGY MODEL), so it also moves the
+     * vehicle one kilometre along its heading. Braking and stopping change speed only.
+     */
+    public void setPosition(double x, double y) {
+        this.x = x;
+        this.y = y;
+        notifyObservers(IVehicleObserver.POSITION);
+    }
+
+    public void setHeading(double degrees) {
+        updateHeading(degrees);
+        notifyObservers(IVehicleObserver.POSITION);
+    }
+
+    /**
+     * Turn by the given angle; positive is clockwise
+     */
+    public void turn(double degrees) {
+        setHeading(heading + degrees);
+    }
+
+    private void updateHeading(double degrees) {
+        double normalized = degrees % 360.0;
+        heading = normalized < 0 ? normalized + 360.0 : normalized;
+        double radians = Math.toRadians(heading);
+        headingX = Math.sin(radians);
+        headingY = Math.cos(radians);
+    }
+
+    /**
+     * Moves along the heading without notifying; callers include POSITION in their notification
+     */
+    protected void moveForward(int km) {
+        x += headingX * km;
+        y += headingY * km;
+    }
+
+    public double distanceTo(double otherX, double otherY) {
+        return Math.hypot(x - otherX, y - otherY);
+    }
+
     @Override
     public void resetServiceIndicator() {
         mileageSinceService = 0;
-        System.out.println("Service indicator reset");
+        if (outputEnabled) {
+            System.out.println("Service indicator reset");
+        }
+        notifyObservers(IVehicleObserver.SERVICE);
+    }
+
+    /**
+     * OBSERVER PATTERN: Register an observer for state changes
+     */
+    public synchronized void addObserver(IVehicleObserver observer) {
+        IVehicleObserver[] current = observers;
+        IVehicleObserver[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = observer;
+        observers = updated;
+    }
+
+    public synchronized void removeObserver(IVehicleObserver observer) {
+        IVehicleObserver[] current = observers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == observer) {
+                IVehicleObserver[] updated = new IVehicleObserver[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                observers = updated.length == 0 ? NO_OBSERVERS : updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Notify every observer that the given fields changed.
+     * Subclasses call this from their own mutators.
+     */
+    protected void notifyObservers(int changedFields) {
+        IVehicleObserver[] current = observers;
+        for (IVehicleObserver observer : current) {
+            observer.onStateChanged(this, changedFields);
+        }
+    }
+
+    /**
+     * MEMENTO PATTERN: Copy the complete vehicle state into a snapshot.
+     * Subclasses extend this with their own fields and must call super.
+     */
+    void captureState(VehicleSnapshot snapshot) {
+        snapshot.id = id;
+        snapshot.brand = brand;
+        snapshot.model = model;
+        snapshot.year = year;
+        snapshot.running = isRunning;
+        snapshot.speed = speed;
+        snapshot.currentGear = currentGear;
+        snapshot.fuelLevel = fuelLevel;
+        snapshot.fuelCapacity = fuelCapacity;
+        snapshot.mileage = mileage;
+        snapshot.mileageSinceService = mileageSinceService;
+        snapshot.x = x;
+        snapshot.y = y;
+        snapshot.heading = heading;
+    }
+
+    /**
+     * Overwrite the vehicle state from a snapshot of the same vehicle type.
+     * Observers are not notified, since this is used to load stored vehicles.
+     */
+    void restoreState(VehicleSnapshot snapshot) {
+        id = snapshot.id;
+        brand = snapshot.brand;
+        model = snapshot.model;
+        year = snapshot.year;
+        isRunning = snapshot.running;
+        speed = snapshot.speed;
+        currentGear = snapshot.currentGear;
+        fuelLevel = snapshot.fuelLevel;
+        fuelCapacity = snapshot.fuelCapacity;
+        mileage = snapshot.mileage;
+        mileageSinceService = snapshot.mileageSinceService;
+        x = snapshot.x;
+        y = snapshot.y;
+        updateHeading(snapshot.heading);
+    }
+
+    /**
+     * Turn console messages on or off for all vehicles and users
+     */
+    public static void setOutputEnabled(boolean enabled) {
+        outputEnabled = enabled;
+    }
+
+    public static boolean isOutputEnabled() {
+        return outputEnabled;
     }
 
     // Getters for common properties
+    public long getId() {
+        return id;
+    }
+
     public String getBrand() {
         return brand;
     }
@@ -140,6 +442,10 @@ public abstract class AbstractVehicle implements IVehicle, IDriveable, IMaintain
         return year;
     }
 
+    public boolean isRunning() {
+        return isRunning;
+    }
+
     public int getSpeed() {
         return speed;
     }
@@ -151,4 +457,16 @@ public abstract class AbstractVehicle implements IVehicle, IDriveable, IMaintain
     public int getMileage() {
         return mileage;
     }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getHeading() {
+        return heading;
+    }
 } 
\ No newline at end of file
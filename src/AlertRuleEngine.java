@@ -0,0 +1,904 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * ALERT RULES ENGINE:
+ * Raises alerts such as "fuelPercent < 10", "needsService" or
+ * "batteryPercent < 20 && !ecoMode" without polling any getter. It demonstrates:
+ * 1. Observer Pattern: Each watched vehicle reports which fields changed, and only the
+ *    rules that read one of those fields are evaluated
+ * 2. Compilation: Rule text is parsed once into a tree of specialized lambdas; the vehicle
+ *    types a rule can apply to are worked out at compile time, so evaluation needs no
+ *    instanceof checks
+ * 3. Indexing: Single comparisons like "speed > 120" are grouped per field into sorted
+ *    threshold arrays. One binary search tells which of thousands of such rules hold.
+ * 4. Coalescing: Alerts are edge-triggered. A rule that stays true for a vehicle raises
+ *    one alert and is counted as coalesced until it turns false again.
+ *
+ * Evaluation runs on the thread that mutated the vehicle, while it holds the vehicle's
+ * monitor (see AbstractVehicle), so one vehicle is evaluated one change at a time.
+ * The sink must be thread-safe.
+ *
+ * Usage:
+ *   AlertRuleEngine engine = new AlertRuleEngine((rule, vehicle, raised) -> ...);
+ *   engine.addRule("low-fuel", "fuelPercent < 10");
+ *   engine.addRule("ev-low", "batteryPercent < 20 && !ecoMode");
+ *   engine.watch(vehicle);
+ */
+public class AlertRuleEngine {
+    private static final VehicleFactory.VehicleType[] TYPES = VehicleFactory.VehicleType.values();
+    private static final int ALL_TYPES = (1 << TYPES.length) - 1;
+    private static final int FUEL_TYPES = ALL_TYPES & ~(1 << VehicleFactory.VehicleType.ELECTRIC_CAR.ordinal());
+    private static final int EV_TYPES = 1 << VehicleFactory.VehicleType.ELECTRIC_CAR.ordinal();
+    private static final int TRUCK_TYPES = 1 << VehicleFactory.VehicleType.TRUCK.ordinal();
+    private static final int BITS = 11; // Number of IVehicleObserver field bits
+
+    /**
+     * Vehicle fields rules can read. Each one knows which observer bits change it and which
+     * vehicle types have it. Booleans read as 0 or 1.
+     */
+    public enum Field {
+        RUNNING("running", IVehicleObserver.RUNNING, ALL_TYPES, v -> v.isRunning() ? 1 : 0),
+        SPEED("speed", IVehicleObserver.SPEED, ALL_TYPES, AbstractVehicle::getSpeed),
+        GEAR("gear", IVehicleObserver.GEAR, ALL_TYPES, AbstractVehicle::getCurrentGear),
+        MILEAGE("mileage", IVehicleObserver.MILEAGE, ALL_TYPES, AbstractVehicle::getMileage),
+        MILEAGE_SINCE_SERVICE("mileageSinceService", IVehicleObserver.MILEAGE | IVehicleObserver.SERVICE,
+                ALL_TYPES, AbstractVehicle::getMileageSinceService),
+        NEEDS_SERVICE("needsService", IVehicleObserver.MILEAGE | IVehicleObserver.SERVICE,
+                ALL_TYPES, v -> v.needsService() ? 1 : 0),
+        FUEL_LEVEL("fuelLevel", IVehicleObserver.FUEL, FUEL_TYPES, AbstractVehicle::getFuelLevel),
+        FUEL_PERCENT("fuelPercent", IVehicleObserver.FUEL, FUEL_TYPES,
+                v -> v.fuelCapacity > 0 ? v.getFuelLevel() * 100 / v.fuelCapacity : 0),
+        BATTERY_PERCENT("batteryPercent", IVehicleObserver.BATTERY, EV_TYPES,
+                v -> ((ElectricCar) v).getBatteryLevel()),
+        RANGE("range", IVehicleObserver.BATTERY | IVehicleObserver.ECO_MODE, EV_TYPES,
+                v -> ((ElectricCar) v).getEstimatedRange()),
+        ECO_MODE("ecoMode", IVehicleObserver.ECO_MODE, EV_TYPES, v -> ((ElectricCar) v).isEcoMode() ? 1 : 0),
+        CARGO("cargo", IVehicleObserver.CARGO, TRUCK_TYPES, v -> ((Truck) v).getCurrentCargo()),
+        CARGO_CAPACITY("cargoCapacity", IVehicleObserver.CARGO | IVehicleObserver.TRAILER, TRUCK_TYPES,
+                v -> ((Truck) v).getCargoCapacity()),
+        CARGO_PERCENT("cargoPercent", IVehicleObserver.CARGO | IVehicleObserver.TRAILER, TRUCK_TYPES,
+                v -> ((Truck) v).getCurrentCargo() * 100 / ((Truck) v).getCargoCapacity()),
+        TRAILER("trailer", IVehicleObserver.TRAILER, TRUCK_TYPES, v -> ((Truck) v).hasTrailer() ? 1 : 0);
+
+        private final String ruleName;
+        private final int mask;
+        private final int types;
+        private final ToDoubleFunction<AbstractVehicle> getter;
+
+        Field(String ruleName, int mask, int types, ToDoubleFunction<AbstractVehicle> getter) {
+            this.ruleName = ruleName;
+            this.mask = mask;
+            this.types = types;
+            this.getter = getter;
+        }
+
+        public String getRuleName() {
+            return ruleName;
+        }
+
+        public double read(AbstractVehicle vehicle) {
+            return getter.applyAsDouble(vehicle);
+        }
+    }
+
+    /**
+     * Receives alert transitions. Called on the mutating thread.
+     */
+    public interface AlertSink {
+        /**
+         * @param raised true when the rule became true for the vehicle, false when it cleared
+         */
+        void onAlert(Rule rule, AbstractVehicle vehicle, boolean raised);
+    }
+
+    /**
+     * A compiled rule
+     */
+    public static final class Rule {
+        private final int id;
+        private final String name;
+        private final String expression;
+        private final Predicate<AbstractVehicle> predicate;
+        private final int mask;
+        private final int types;
+        private ThresholdGroup group; // Set when the rule is a single indexed comparison
+        private double threshold;
+
+        private Rule(int id, String name, String expression, Compiled compiled) {
+            this.id = id;
+            this.name = name;
+            this.expression = expression;
+            this.predicate = compiled.predicate;
+            this.mask = compiled.mask;
+            this.types = compiled.types;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getExpression() {
+            return expression;
+        }
+
+        /**
+         * Evaluates the rule directly, e.g. for a one-off check
+         */
+        public boolean test(AbstractVehicle vehicle) {
+            return (types & (1 << VehicleFactory.typeOf(vehicle).ordinal())) != 0 && predicate.test(vehicle);
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + expression;
+        }
+    }
+
+    /**
+     * All rules of the form "field op constant" for one field and one operator, sorted by
+     * constant. The rules that hold for a value are a prefix or suffix of the array, found
+     * with one binary search. Adding a rule swaps in new Entries, so trackers read it
+     * without locks.
+     */
+    private static final class ThresholdGroup {
+        private final Field field;
+        private final String operator;
+        private volatile Entries entries = new Entries(new double[0], new Rule[0], 0);
+
+        private static final class Entries {
+            final double[] thresholds;
+            final Rule[] rules;
+            final int ruleLimit; // Rules with a lower id existed when these entries were built
+
+            Entries(double[] thresholds, Rule[] rules, int ruleLimit) {
+                this.thresholds = thresholds;
+                this.rules = rules;
+                this.ruleLimit = ruleLimit;
+            }
+
+            /**
+             * Start (inclusive) of the range of rules that hold for value
+             */
+            int from(String operator, double value) {
+                switch (operator) {
+                    case "<":
+                        return upperBound(value);
+                    case "<=":
+                        return lowerBound(value);
+                    default:
+                        return 0;
+                }
+            }
+
+            /**
+             * End (exclusive) of the range of rules that hold for value
+             */
+            int to(String operator, double value) {
+                switch (operator) {
+                    case ">":
+                        return lowerBound(value);
+                    case ">=":
+                        return upperBound(value);
+                    default:
+                        return thresholds.length;
+                }
+            }
+
+            // First index with threshold >= value
+            private int lowerBound(double value) {
+                int low = 0;
+                int high = thresholds.length;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (thresholds[mid] < value) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                return low;
+            }
+
+            // First index with threshold > value
+            private int upperBound(double value) {
+                int low = 0;
+                int high = thresholds.length;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (thresholds[mid] <= value) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                return low;
+            }
+        }
+
+        ThresholdGroup(Field field, String operator) {
+            this.field = field;
+            this.operator = operator;
+        }
+
+        void add(Rule rule) {
+            Entries current = entries;
+            int position = Arrays.binarySearch(current.thresholds, rule.threshold);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            int length = current.rules.length;
+            double[] thresholds = new double[length + 1];
+            Rule[] rules = new Rule[length + 1];
+            System.arraycopy(current.thresholds, 0, thresholds, 0, position);
+            System.arraycopy(current.rules, 0, rules, 0, position);
+            thresholds[position] = rule.threshold;
+            rules[position] = rule;
+            System.arraycopy(current.thresholds, position, thresholds, position + 1, length - position);
+            System.arraycopy(current.rules, position, rules, position + 1, length - position);
+            entries = new Entries(thresholds, rules, rule.id + 1);
+        }
+
+        boolean holds(double value, double threshold) {
+            switch (operator) {
+                case "<":
+                    return value < threshold;
+                case "<=":
+                    return value <= threshold;
+                case ">":
+                    return value > threshold;
+                default:
+                    return value >= threshold;
+            }
+        }
+    }
+
+    /**
+     * What rules must run for one vehicle type when one observer bit changes
+     */
+    private static final class Slot {
+        Rule[] rules = new Rule[0];
+        ThresholdGroup[] groups = new ThresholdGroup[0];
+    }
+
+    private final AlertSink sink;
+    private final List<Rule> rules = new ArrayList<>();
+    private final Map<String, ThresholdGroup> groups = new HashMap<>();
+    private volatile Slot[][] index = emptyIndex(); // [type ordinal][bit number]
+    private final ConcurrentHashMap<Long, Tracker> trackers = new ConcurrentHashMap<>();
+    private final LongAdder raised = new LongAdder();
+    private final LongAdder cleared = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public AlertRuleEngine(AlertSink sink) {
+        this.sink = sink;
+    }
+
+    private static Slot[][] emptyIndex() {
+        Slot[][] slots = new Slot[TYPES.length][BITS];
+        for (Slot[] byBit : slots) {
+            for (int bit = 0; bit < BITS; bit++) {
+                byBit[bit] = new Slot();
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Compiles and adds a rule. Watched vehicles pick it up on their next relevant change,
+     * or immediately with evaluateAll().
+     * @throws IllegalArgumentException if the expression doesn't parse or reads no field
+     */
+    public synchronized Rule addRule(String name, String expression) {
+        Parser parser = new Parser(expression);
+        Compiled compiled = parser.parse();
+        if (compiled.mask == 0) {
+            throw new IllegalArgumentException("Rule reads no vehicle field: " + expression);
+        }
+        if (compiled.types == 0) {
+            throw new IllegalArgumentException("No vehicle type has all fields of: " + expression);
+        }
+        Rule rule = new Rule(rules.size(), name, expression, compiled);
+        rules.add(rule);
+        if (compiled.thresholdField != null) {
+            ThresholdGroup group = groups.computeIfAbsent(
+                    compiled.thresholdField.name() + compiled.thresholdOperator,
+                    key -> new ThresholdGroup(compiled.thresholdField, compiled.thresholdOperator));
+            rule.group = group;
+            rule.threshold = compiled.threshold;
+            group.add(rule);
+        }
+        rebuildIndex();
+        return rule;
+    }
+
+    public synchronized List<Rule> getRules() {
+        return new ArrayList<>(rules);
+    }
+
+    private void rebuildIndex() {
+        List<List<Rule>> ruleLists = new ArrayList<>();
+        List<List<ThresholdGroup>> groupLists = new ArrayList<>();
+        for (int i = 0; i < TYPES.length * BITS; i++) {
+            ruleLists.add(new ArrayList<>());
+            groupLists.add(new ArrayList<>());
+        }
+        for (Rule rule : rules) {
+            if (rule.group != null) {
+                continue;
+            }
+            forEachSlot(rule.types, rule.mask, slot -> ruleLists.get(slot).add(rule));
+        }
+        for (ThresholdGroup group : groups.values()) {
+            forEachSlot(group.field.types, group.field.mask, slot -> groupLists.get(slot).add(group));
+        }
+        Slot[][] slots = emptyIndex();
+        for (int type = 0; type < TYPES.length; type++) {
+            for (int bit = 0; bit < BITS; bit++) {
+                slots[type][bit].rules = ruleLists.get(type * BITS + bit).toArray(new Rule[0]);
+                slots[type][bit].groups = groupLists.get(type * BITS + bit).toArray(new ThresholdGroup[0]);
+            }
+        }
+        index = slots;
+    }
+
+    private static void forEachSlot(int types, int mask, java.util.function.IntConsumer action) {
+        for (int type = 0; type < TYPES.length; type++) {
+            if ((types & (1 << type)) == 0) {
+                continue;
+            }
+            for (int bit = 0; bit < BITS; bit++) {
+                if ((mask & (1 << bit)) != 0) {
+                    action.accept(type * BITS + bit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts watching a vehicle and evaluates every rule for it once
+     */
+    public void watch(AbstractVehicle vehicle) {
+        Tracker tracker = new Tracker(VehicleFactory.typeOf(vehicle).ordinal());
+        if (trackers.putIfAbsent(vehicle.getId(), tracker) != null) {
+            return;
+        }
+        vehicle.addObserver(tracker);
+        tracker.onStateChanged(vehicle, (1 << BITS) - 1);
+    }
+
+    /**
+     * Stops watching a vehicle. Its active alerts are dropped without clear events.
+     */
+    public void unwatch(AbstractVehicle vehicle) {
+        Tracker tracker = trackers.remove(vehicle.getId());
+        if (tracker != null) {
+            vehicle.removeObserver(tracker);
+        }
+    }
+
+    /**
+     * Re-evaluates all rules for one watched vehicle, e.g. after adding rules.
+     * Must be called by the vehicle's writer.
+     */
+    public void evaluate(AbstractVehicle vehicle) {
+        Tracker tracker = trackers.get(vehicle.getId());
+        if (tracker != null) {
+            tracker.onStateChanged(vehicle, (1 << BITS) - 1);
+        }
+    }
+
+    /**
+     * Number of watched vehicles
+     */
+    public int getWatchedCount() {
+        return trackers.size();
+    }
+
+    public long getRaisedCount() {
+        return raised.sum();
+    }
+
+    public long getClearedCount() {
+        return cleared.sum();
+    }
+
+    /**
+     * Evaluations that found an already raised alert still true, so nothing was emitted
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Per-vehicle observer. Raised rules are kept in two compact forms, both usually empty:
+     * - Compound rules: a sorted array of rule ids
+     * - Threshold groups: the field value and group entries seen last time. The rules raised
+     *   for a group are exactly those that held for that value, so only the part of the
+     *   sorted thresholds between the old and the new value has to be touched.
+     */
+    private final class Tracker implements IVehicleObserver {
+        private final int type;
+        private int[] active = new int[0];
+        private int activeCount;
+        private ThresholdGroup[] groupKeys = new ThresholdGroup[0];
+        private ThresholdGroup.Entries[] groupEntries = new ThresholdGroup.Entries[0];
+        private double[] groupValues = new double[0];
+        private int groupCount;
+
+        Tracker(int type) {
+            this.type = type;
+        }
+
+        @Override
+        public void onStateChanged(AbstractVehicle vehicle, int changedFields) {
+            Slot[] byBit = index[type];
+            int done = 0;
+            for (int bits = changedFields & ((1 << BITS) - 1); bits != 0; bits &= bits - 1) {
+                int bit = Integer.numberOfTrailingZeros(bits);
+                Slot slot = byBit[bit];
+                // Skip anything that already ran for a bit handled earlier in this call
+                for (ThresholdGroup group : slot.groups) {
+                    if ((group.field.mask & done) == 0) {
+                        evaluateGroup(vehicle, group);
+                    }
+                }
+                for (Rule rule : slot.rules) {
+                    if ((rule.mask & done) == 0) {
+                        update(vehicle, rule, rule.predicate.test(vehicle));
+                    }
+                }
+                done |= 1 << bit;
+            }
+        }
+
+        private void evaluateGroup(AbstractVehicle vehicle, ThresholdGroup group) {
+            double value = group.field.read(vehicle);
+            ThresholdGroup.Entries entries = group.entries;
+            int from = entries.from(group.operator, value);
+            int to = entries.to(group.operator, value);
+
+            int slot = findGroup(group);
+            if (slot < 0) {
+                // Nothing raised before
+                for (int i = from; i < to; i++) {
+                    raise(vehicle, entries.rules[i]);
+                }
+            } else {
+                ThresholdGroup.Entries previous = groupEntries[slot];
+                double previousValue = groupValues[slot];
+                if (previous == entries) {
+                    if (previousValue == value) {
+                        coalesced.add(to - from);
+                        return;
+                    }
+                    int previousFrom = entries.from(group.operator, previousValue);
+                    int previousTo = entries.to(group.operator, previousValue);
+                    for (int i = previousFrom; i < previousTo; i++) {
+                        if (i < from || i >= to) {
+                            clear(vehicle, entries.rules[i]);
+                        }
+                    }
+                    for (int i = from; i < to; i++) {
+                        if (i < previousFrom || i >= previousTo) {
+                            raise(vehicle, entries.rules[i]);
+                        }
+                    }
+                    coalesced.add(Math.max(0, Math.min(to, previousTo) - Math.max(from, previousFrom)));
+                } else {
+                    // Rules were added since: compare rule by rule
+                    int previousFrom = previous.from(group.operator, previousValue);
+                    int previousTo = previous.to(group.operator, previousValue);
+                    for (int i = previousFrom; i < previousTo; i++) {
+                        Rule rule = previous.rules[i];
+                        if (!group.holds(value, rule.threshold)) {
+                            clear(vehicle, rule);
+                        }
+                    }
+                    for (int i = from; i < to; i++) {
+                        Rule rule = entries.rules[i];
+                        if (rule.id < previous.ruleLimit && group.holds(previousValue, rule.threshold)) {
+                            coalesced.increment();
+                        } else {
+                            raise(vehicle, rule);
+                        }
+                    }
+                }
+            }
+            remember(slot, group, entries, value, from < to);
+        }
+
+        private int findGroup(ThresholdGroup group) {
+            for (int i = 0; i < groupCount; i++) {
+                if (groupKeys[i] == group) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Keeps the group's state only while at least one of its rules is raised
+         */
+        private void remember(int slot, ThresholdGroup group, ThresholdGroup.Entries entries,
+                              double value, boolean anyRaised) {
+            if (!anyRaised) {
+                if (slot >= 0) {
+                    groupCount--;
+                    groupKeys[slot] = groupKeys[groupCount];
+                    groupEntries[slot] = groupEntries[groupCount];
+                    groupValues[slot] = groupValues[groupCount];
+                    groupKeys[groupCount] = null;
+                    groupEntries[groupCount] = null;
+                }
+                return;
+            }
+            if (slot < 0) {
+                if (groupCount == groupKeys.length) {
+                    int capacity = Math.max(2, groupCount * 2);
+                    groupKeys = Arrays.copyOf(groupKeys, capacity);
+                    groupEntries = Arrays.copyOf(groupEntries, capacity);
+                    groupValues = Arrays.copyOf(groupValues, capacity);
+                }
+                slot = groupCount++;
+                groupKeys[slot] = group;
+            }
+            groupEntries[slot] = entries;
+            groupValues[slot] = value;
+        }
+
+        private void raise(AbstractVehicle vehicle, Rule rule) {
+            raised.increment();
+            sink.onAlert(rule, vehicle, true);
+        }
+
+        private void clear(AbstractVehicle vehicle, Rule rule) {
+            cleared.increment();
+            sink.onAlert(rule, vehicle, false);
+        }
+
+        /**
+         * Edge detection for compound rules
+         */
+        private void update(AbstractVehicle vehicle, Rule rule, boolean holds) {
+            int position = Arrays.binarySearch(active, 0, activeCount, rule.id);
+            if (holds) {
+                if (position >= 0) {
+                    coalesced.increment();
+                    return;
+                }
+                position = -position - 1;
+                if (activeCount == active.length) {
+                    active = Arrays.copyOf(active, Math.max(4, activeCount * 2));
+                }
+                System.arraycopy(active, position, active, position + 1, activeCount - position);
+                active[position] = rule.id;
+                activeCount++;
+                raise(vehicle, rule);
+            } else if (position >= 0) {
+                System.arraycopy(active, position + 1, active, position, activeCount - position - 1);
+                activeCount--;
+                clear(vehicle, rule);
+            }
+        }
+    }
+
+    // ==========================================
+    // Rule compiler
+    // ==========================================
+
+    /**
+     * Result of compiling an expression: the evaluator plus what it depends on
+     */
+    private static final class Compiled {
+        final Predicate<AbstractVehicle> predicate;
+        final int mask;
+        final int types;
+        // Set only for a bare "field op constant" with an ordering operator
+        Field thresholdField;
+        String thresholdOperator;
+        double threshold;
+
+        Compiled(Predicate<AbstractVehicle> predicate, int mask, int types) {
+            this.predicate = predicate;
+            this.mask = mask;
+            this.types = types;
+        }
+    }
+
+    /**
+     * Recursive descent parser for:
+     *   expression := and ("||" and)*
+     *   and        := unary ("&&" unary)*
+     *   unary      := "!" unary | "(" expression ")" | field [op number]
+     *   op         := "<" | "<=" | ">" | ">=" | "==" | "!="
+     * A bare field means "field != 0", which suits the boolean fields.
+     */
+    private static final class Parser {
+        private static final Map<String, Field> FIELDS = new HashMap<>();
+
+        static {
+            for (Field field : Field.values()) {
+                FIELDS.put(field.ruleName.toLowerCase(Locale.ROOT), field);
+            }
+        }
+
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            if (text == null || text.trim().isEmpty()) {
+                throw new IllegalArgumentException("Rule expression cannot be empty");
+            }
+            this.text = text;
+        }
+
+        Compiled parse() {
+            Compiled result = expression();
+            skipSpaces();
+            if (position < text.length()) {
+                throw error("Unexpected input");
+            }
+            return result;
+        }
+
+        private Compiled expression() {
+            Compiled left = and();
+            while (consume("||")) {
+                Compiled right = and();
+                Predicate<AbstractVehicle> a = left.predicate;
+                Predicate<AbstractVehicle> b = right.predicate;
+                // A vehicle type qualifies if either side can apply to it
+                int types = left.types | right.types;
+                int leftTypes = left.types;
+                int rightTypes = right.types;
+                Predicate<AbstractVehicle> either = leftTypes == rightTypes
+                        ? v -> a.test(v) || b.test(v)
+                        : v -> (applies(leftTypes, v) && a.test(v)) || (applies(rightTypes, v) && b.test(v));
+                left = new Compiled(either, left.mask | right.mask, types);
+            }
+            return left;
+        }
+
+        private Compiled and() {
+            Compiled left = unary();
+            while (consume("&&")) {
+                Compiled right = unary();
+                Predicate<AbstractVehicle> a = left.predicate;
+                Predicate<AbstractVehicle> b = right.predicate;
+                left = new Compiled(v -> a.test(v) && b.test(v), left.mask | right.mask, left.types & right.types);
+            }
+            return left;
+        }
+
+        private Compiled unary() {
+            if (consume("!")) {
+                Compiled inner = unary();
+                Predicate<AbstractVehicle> p = inner.predicate;
+                return new Compiled(v -> !p.test(v), inner.mask, inner.types);
+            }
+            if (consume("(")) {
+                Compiled inner = expression();
+                if (!consume(")")) {
+                    throw error("Expected )");
+                }
+                return inner;
+            }
+            Field field = field();
+            String operator = operator();
+            double constant = operator == null ? 0 : number();
+            if (operator == null) {
+                operator = "!=";
+            }
+            Compiled compiled = new Compiled(comparison(field.getter, operator, constant), field.mask, field.types);
+            if (!operator.equals("==") && !operator.equals("!=")) {
+                compiled.thresholdField = field;
+                compiled.thresholdOperator = operator;
+                compiled.threshold = constant;
+            } else if (operator.equals("!=") && constant == 0) {
+                // Booleans: "needsService" is the same as "needsService > 0"
+                compiled.thresholdField = field;
+                compiled.thresholdOperator = ">";
+                compiled.threshold = 0;
+            }
+            return compiled;
+        }
+
+        /**
+         * One lambda per operator, so the comparison isn't re-dispatched on every evaluation
+         */
+        private static Predicate<AbstractVehicle> comparison(ToDoubleFunction<AbstractVehicle> getter,
+                                                             String operator, double c) {
+            switch (operator) {
+                case "<":
+                    return v -> getter.applyAsDouble(v) < c;
+                case "<=":
+                    return v -> getter.applyAsDouble(v) <= c;
+                case ">":
+                    return v -> getter.applyAsDouble(v) > c;
+                case ">=":
+                    return v -> getter.applyAsDouble(v) >= c;
+                case "==":
+                    return v -> getter.applyAsDouble(v) == c;
+                case "!=":
+                    return v -> getter.applyAsDouble(v) != c;
+                default:
+                    throw new IllegalArgumentException("Unknown operator: " + operator);
+            }
+        }
+
+        private static boolean applies(int types, AbstractVehicle vehicle) {
+            return (types & (1 << VehicleFactory.typeOf(vehicle).ordinal())) != 0;
+        }
+
+        private Field field() {
+            skipSpaces();
+            int start = position;
+            while (position < text.length() && Character.isLetter(text.charAt(position))) {
+                position++;
+            }
+            String name = text.substring(start, position);
+            Field field = FIELDS.get(name.toLowerCase(Locale.ROOT));
+            if (field == null) {
+                position = start;
+                throw error("Unknown field '" + name + "'");
+            }
+            return field;
+        }
+
+        private String operator() {
+            for (String operator : new String[]{"<=", ">=", "==", "!=", "<", ">"}) {
+                if (consume(operator)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+
+        private double number() {
+            skipSpaces();
+            int start = position;
+            while (position < text.length() && "+-.0123456789eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            try {
+                return Double.parseDouble(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("Expected a number");
+            }
+        }
+
+        private boolean consume(String token) {
+            skipSpaces();
+            if (text.startsWith(token, position)) {
+                // "!" must not swallow the start of "!="
+                if (token.equals("!") && text.startsWith("!=", position)) {
+                    return false;
+                }
+                position += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " in: " + text);
+        }
+    }
+
+    /**
+     * Benchmark: [--vehicles 1000000] [--rules 10000] [--mutations 2000000]
+     * Watches a simulated fleet with random threshold and compound rules, then applies
+     * random mutations and reports the average cost per mutation including rule evaluation.
+     */
+    public static void main(String[] args) {
+        int vehicleCount = 1_000_000;
+        int ruleCount = 10_000;
+        int mutations = 2_000_000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicleCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--rules":
+                    ruleCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--mutations":
+                    mutations = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        AbstractVehicle.setOutputEnabled(false);
+        LongAdder events = new LongAdder();
+        AlertRuleEngine engine = new AlertRuleEngine((rule, vehicle, raised) -> events.increment());
+        SplittableRandom random = new SplittableRandom(42);
+        String[] templates = {
+                "fuelPercent < %d", "speed > %d", "mileageSinceService > %d00", "batteryPercent < %d",
+                "cargoPercent > %d", "batteryPercent < %d && !ecoMode", "speed > %d && fuelPercent < 15",
+                "needsService", "gear >= %d", "range < %d"
+        };
+        for (int i = 0; i < ruleCount; i++) {
+            String template = templates[random.nextInt(templates.length)];
+            engine.addRule("rule-" + i, String.format(Locale.ROOT, template, 1 + random.nextInt(100)));
+        }
+
+        FleetSimulation simulation = new FleetSimulation();
+        simulation.setVehicleCount(vehicleCount);
+        List<AbstractVehicle> fleet = simulation.buildFleet();
+        long start = System.nanoTime();
+        for (AbstractVehicle vehicle : fleet) {
+            engine.watch(vehicle);
+        }
+        double watchSeconds = (System.nanoTime() - start) / 1e9;
+
+        // Warm up, then measure
+        for (int round = 0; round < 2; round++) {
+            long raisedBefore = engine.getRaisedCount();
+            long eventsBefore = events.sum();
+            start = System.nanoTime();
+            for (int i = 0; i < mutations; i++) {
+                AbstractVehicle vehicle = fleet.get(random.nextInt(fleet.size()));
+                switch (random.nextInt(8)) {
+                    case 0:
+                        vehicle.start();
+                        break;
+                    case 1:
+                    case 2:
+                    case 3:
+                        vehicle.accelerate();
+                        break;
+                    case 4:
+                        vehicle.brake();
+                        break;
+                    case 5:
+                        vehicle.refuel(10);
+                        break;
+                    case 6:
+                        if (vehicle instanceof Truck) {
+                            ((Truck) vehicle).loadCargo(1);
+                        } else if (vehicle instanceof ElectricCar) {
+                            ((ElectricCar) vehicle).toggleEcoMode();
+                        }
+                        break;
+                    default:
+                        vehicle.changeGear(1 + random.nextInt(5));
+                        break;
+                }
+            }
+            double nanosPerMutation = (System.nanoTime() - start) / (double) mutations;
+            if (round == 1) {
+                System.out.println(String.format(Locale.ROOT,
+                        "{\"vehicles\":%d,\"rules\":%d,\"mutations\":%d,\"watchSeconds\":%.2f,"
+                                + "\"nsPerMutation\":%.0f,\"raised\":%d,\"raisedTotal\":%d,\"cleared\":%d,"
+                                + "\"coalesced\":%d,\"eventsPerMutation\":%.1f}",
+                        fleet.size(), ruleCount, mutations, watchSeconds, nanosPerMutation,
+                        engine.getRaisedCount() - raisedBefore, engine.getRaisedCount(),
+                        engine.getClearedCount(), engine.getCoalescedCount(),
+                        (events.sum() - eventsBefore) / (double) mutations));
+            }
+        }
+    }
+}
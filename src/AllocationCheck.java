@@ -0,0 +1,232 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * ZERO-ALLOCATION CHECK:
+ * Runs every driving and query hot path in quiet mode and fails if any of them allocates.
+ * 1. Quiet mode: AbstractVehicle.setOutputEnabled(false) skips all message building and
+ *    String.format calls, so steady-state driving only touches primitive fields
+ * 2. Queries: User.getVehicles(buffer), getVehiclesByType(type, buffer) and forEachVehicle(visitor)
+ *    replace the list-returning variants on hot paths
+ * 3. Telemetry: a vehicle watched by VehicleTelemetryPublisher stays allocation-free on the
+ *    driving thread; delivery to subscribers happens on the publisher's executor
+ * 4. Measurement: per-thread allocated bytes (com.sun.management.ThreadMXBean) around a batch
+ *    of calls, after a warmup so the JIT has compiled the path. The best of a few attempts is
+ *    kept, so a one-off allocation by the JVM itself (deoptimization, class loading) can't fail
+ *    a case, while a real per-call allocation shows up in every attempt.
+ *
+ * Prints one JSON line with the bytes allocated per call for each case and exits with
+ * status 1 if any case allocated.
+ *
+ * Usage: java -cp src AllocationCheck [--warmup 20000] [--iterations 10000]
+ *        java -cp src App --check-allocations
+ */
+public class AllocationCheck {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final int ATTEMPTS = 3;
+
+    /**
+     * One hot-path call; the iteration number lets a case cycle through states
+     */
+    private interface HotPath {
+        void run(int iteration);
+    }
+
+    private static final class Case {
+        final String name;
+        final HotPath path;
+        long bytes;
+
+        Case(String name, HotPath path) {
+            this.name = name;
+            this.path = path;
+        }
+    }
+
+    private static final class CountingVisitor implements Consumer<AbstractVehicle> {
+        long visited;
+
+        @Override
+        public void accept(AbstractVehicle vehicle) {
+            visited += vehicle.getSpeed();
+        }
+    }
+
+    /**
+     * Subscribes without requesting anything, so every telemetry update conflates into one
+     * pending entry and the measured path is the driving thread's part only
+     */
+    private static final class IdleSubscriber implements Flow.Subscriber<List<VehicleTelemetry>> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+        }
+
+        @Override
+        public void onNext(List<VehicleTelemetry> item) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private static final class CountingObserver implements IVehicleObserver {
+        long notifications;
+
+        @Override
+        public void onStateChanged(AbstractVehicle vehicle, int changedFields) {
+            notifications += changedFields;
+        }
+    }
+
+    public static void main(String[] args) {
+        int warmup = 20_000;
+        int iterations = 10_000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--check-allocations":
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (iterations <= 0 || warmup < 0) {
+            throw new IllegalArgumentException("Iterations must be positive and warmup non-negative");
+        }
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("Per-thread allocation accounting is not supported by this JVM");
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        List<Case> cases = buildCases();
+        int failures = 0;
+        StringBuilder json = new StringBuilder("{\"warmup\":").append(warmup)
+                .append(",\"iterations\":").append(iterations).append(",\"cases\":[");
+        for (int c = 0; c < cases.size(); c++) {
+            Case hotPath = cases.get(c);
+            measure(hotPath, warmup, iterations);
+            if (hotPath.bytes > 0) {
+                failures++;
+            }
+            json.append(c == 0 ? "" : ",").append(String.format(Locale.ROOT,
+                    "{\"name\":\"%s\",\"bytes\":%d,\"bytesPerCall\":%.3f}",
+                    hotPath.name, hotPath.bytes, (double) hotPath.bytes / iterations));
+        }
+        json.append("],\"failures\":").append(failures).append('}');
+        System.out.println(json);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void measure(Case hotPath, int warmup, int iterations) {
+        for (int i = 0; i < warmup; i++) {
+            hotPath.path.run(i);
+        }
+        long best = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < ATTEMPTS && best > 0; attempt++) {
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < iterations; i++) {
+                hotPath.path.run(i);
+            }
+            best = Math.min(best, THREADS.getCurrentThreadAllocatedBytes() - before);
+        }
+        hotPath.bytes = best;
+    }
+
+    /**
+     * Builds every vehicle, buffer and visitor up front; only the lambdas' bodies run measured
+     */
+    private static List<Case> buildCases() {
+        AbstractVehicle.setOutputEnabled(false);
+        CountingObserver observer = new CountingObserver();
+
+        Car car = new Car("Toyota", "Camry", 2023, 4);
+        Motorcycle motorcycle = new Motorcycle("Harley-Davidson", "Street 750", 2022, true);
+        ElectricCar electric = new ElectricCar("Tesla", "Model 3", 2024, 75.0, "Type 2");
+        Truck truck = new Truck("Volvo", "FH16", 2023, 40.0, 3);
+        AbstractVehicle[] vehicles = {car, motorcycle, electric, truck};
+
+        User user = new User("Allocation Check", "check@example.com", "secret1", "LIC-00000001");
+        for (AbstractVehicle vehicle : vehicles) {
+            vehicle.addObserver(observer);
+            user.addVehicle(vehicle);
+        }
+        AbstractVehicle[] buffer = new AbstractVehicle[vehicles.length];
+        CountingVisitor visitor = new CountingVisitor();
+
+        Car streamed = new Car("Toyota", "Yaris", 2023, 4);
+        VehicleTelemetryPublisher telemetry = new VehicleTelemetryPublisher();
+        telemetry.watch(streamed);
+        telemetry.subscribe(new IdleSubscriber());
+
+        List<Case> cases = new ArrayList<>();
+        for (AbstractVehicle vehicle : vehicles) {
+            String type = vehicle.getClass().getSimpleName();
+            cases.add(new Case(type + ".drive", i -> {
+                // start, a short accelerate/brake run and a gear change, then stop and top up
+                vehicle.start();
+                vehicle.accelerate();
+                vehicle.accelerate();
+                vehicle.changeGear(1 + i % 5);
+                vehicle.brake();
+                vehicle.brake();
+                vehicle.brake();
+                vehicle.stop();
+                vehicle.refuel(1.0);
+            }));
+            cases.add(new Case(type + ".fastForward", i -> {
+                vehicle.start();
+                vehicle.fastForward(3, 3);
+                vehicle.refuel(1.0);
+            }));
+            cases.add(new Case(type + ".performMaintenance", i -> vehicle.performMaintenance()));
+            cases.add(new Case(type + ".energy", i -> {
+                if (vehicle.getEnergyLevel() > vehicle.getEnergyCapacity()
+                        || vehicle.getEnergyPerKm() < 0 || vehicle.needsService()) {
+                    observer.notifications++;
+                }
+            }));
+        }
+        cases.add(new Case("ElectricCar.charge", i -> electric.charge(0.01)));
+        cases.add(new Case("ElectricCar.toggleEcoMode", i -> electric.toggleEcoMode()));
+        cases.add(new Case("Truck.cargo", i -> {
+            truck.loadCargo(2.5);
+            truck.unloadCargo(2.5);
+        }));
+        cases.add(new Case("Truck.trailer", i -> {
+            truck.attachTrailer();
+            truck.detachTrailer();
+        }));
+        DrivingScript script = DrivingScript.compile("start; accelerate*3; gear 2; brake*3; stop; refuel 1");
+        cases.add(new Case("DrivingScript.execute", i -> script.execute(vehicles[i & 3])));
+        cases.add(new Case("VehicleTelemetryPublisher.drive", i -> {
+            streamed.start();
+            streamed.accelerate();
+            streamed.brake();
+            streamed.stop();
+            streamed.refuel(1.0);
+        }));
+        cases.add(new Case("User.getVehicles(buffer)", i -> user.getVehicles(buffer)));
+        cases.add(new Case("User.getVehiclesByType(buffer)",
+                i -> user.getVehiclesByType(vehicles[i & 3].getVehicleType(), buffer)));
+        cases.add(new Case("User.forEachVehicle", i -> user.forEachVehicle(visitor)));
+        cases.add(new Case("User.getFastestVehicle", i -> user.getFastestVehicle()));
+        return cases;
+    }
+}
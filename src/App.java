@@ -14,6 +14,36 @@
  */
 public class App {
     public static void main(String[] args) throws Exception {
+        // Headless benchmark mode: java -cp src App --simulate --vehicles N --ticks T --threads K --mix car=40,...
+        if (args.length > 0 && args[0].equals("--simulate")) {
+            System.out.println(FleetSimulation.fromArgs(args).run().toJson());
+            return;
+        }
+
+        // Embedded HTTP API: java -cp src App --serve [--port 8080] [--threads K] [--vehicles N]
+        if (args.length > 0 && args[0].equals("--serve")) {
+            FleetHttpServer.main(args);
+            return;
+        }
+
+        // Local cluster demo with node JVMs: java -cp src App --cluster [--nodes 4] [--vehicles N]
+        if (args.length > 0 && args[0].equals("--cluster")) {
+            FleetCluster.main(args);
+            return;
+        }
+
+        // Open-loop scenario load test: java -cp src App --load-test [--preset commute] [--rate 20000] [--threads K]
+        if (args.length > 0 && args[0].equals("--load-test")) {
+            FleetScenarioRunner.main(args);
+            return;
+        }
+
+        // Zero-allocation self-check of the driving and query hot paths: java -cp src App --check-allocations
+        if (args.length > 0 && args[0].equals("--check-allocations")) {
+            AllocationCheck.main(args);
+            return;
+        }
+
         System.out.println("=== COMPREHENSIVE JAVA OOP DEMONSTRATION ===\n");
         
         // ==========================================
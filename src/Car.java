@@ -49,12 +49,31 @@ public class Car extends AbstractVehicle {
     @Override
     public void changeGear(int gear) {
         if (automaticTransmission) {
-            System.out.println("This car has automatic transmission - gear changes automatically");
+            if (outputEnabled) {
+                System.out.println("This car has automatic transmission - gear changes automatically");
+            }
         } else {
             super.changeGear(gear);
         }
     }
 
+    @Override
+    void captureState(VehicleSnapshot snapshot) {
+        super.captureState(snapshot);
+        snapshot.type = VehicleFactory.VehicleType.CAR;
+        snapshot.numberOfDoors = numberOfDoors;
+        snapshot.airConditioning = hasAirConditioning;
+        snapshot.automaticTransmission = automaticTransmission;
+    }
+
+    @Override
+    void restoreState(VehicleSnapshot snapshot) {
+        super.restoreState(snapshot);
+        numberOfDoors = snapshot.numberOfDoors;
+        hasAirConditioning = snapshot.airConditioning;
+        automaticTransmission = snapshot.automaticTransmission;
+    }
+
     // Car-specific methods demonstrating ENCAPSULATION
     public int getNumberOfDoors() {
         return numberOfDoors;
@@ -72,13 +91,18 @@ public class Car extends AbstractVehicle {
      * Car-specific behavior
      */
     public void openTrunk() {
-        System.out.println("Opening trunk of " + brand + " " + model);
+        if (outputEnabled) {
+            System.out.println("Opening trunk of " + brand + " " + model);
+        }
     }
 
     public void turnOnAirConditioning() {
         if (hasAirConditioning && isRunning) {
-            System.out.println("Air conditioning turned on in " + brand + " " + model);
+            if (outputEnabled) {
+                System.out.println("Air conditioning turned on in " + brand + " " + model);
+            }
             fuelLevel -= 0.1; // AC consumes extra fuel
+            notifyObservers(IVehicleObserver.FUEL);
         }
     }
 } 
\ No newline at end of file
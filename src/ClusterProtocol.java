@@ -0,0 +1,139 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CLUSTER WIRE PROTOCOL:
+ * Compact binary framing shared by FleetCluster (coordinator) and FleetClusterNode.
+ * Every message is [int length][byte opcode or status][payload], big-endian.
+ * Strings are written as [short byteLength][UTF-8 bytes]; vehicles use VehicleCodec, with
+ * one codec per connection so repeated brands and models shrink to dictionary indexes.
+ */
+public final class ClusterProtocol {
+    // Request opcodes
+    static final byte PUT_USER = 1;
+    static final byte GET_USER = 2;
+    static final byte PUT_VEHICLE = 3;
+    static final byte COMMAND = 4;
+    static final byte QUERY_FASTEST = 5;
+    static final byte QUERY_NEEDS_SERVICE = 6;
+    static final byte QUERY_COUNTS = 7;
+    static final byte SHUTDOWN = 8;
+
+    // Response status
+    static final byte OK = 0;
+    static final byte NOT_FOUND = 1;
+    static final byte ERROR = 2;
+
+    private ClusterProtocol() {
+    }
+
+    /**
+     * One blocking NIO channel with reusable, growable send and receive buffers.
+     * Not thread-safe: callers synchronize on the connection.
+     */
+    static final class Connection implements AutoCloseable {
+        private final SocketChannel channel;
+        private final VehicleCodec codec = new VehicleCodec();
+        private ByteBuffer out = ByteBuffer.allocate(4096);
+        private ByteBuffer in = ByteBuffer.allocate(4096);
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            channel.configureBlocking(true);
+            channel.socket().setTcpNoDelay(true);
+        }
+
+        /**
+         * Starts a new outgoing message and returns the buffer to write the payload into
+         */
+        ByteBuffer begin(byte code) {
+            out.clear();
+            out.putInt(0); // Length, patched in send()
+            out.put(code);
+            return out;
+        }
+
+        /**
+         * Makes room for at least bytes more in the outgoing message
+         */
+        ByteBuffer ensure(int bytes) {
+            if (out.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+                out.flip();
+                grown.put(out);
+                out = grown;
+            }
+            return out;
+        }
+
+        void send() throws IOException {
+            out.putInt(0, out.position() - 4);
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+
+        /**
+         * Reads one message; the returned buffer is positioned at the opcode/status byte
+         */
+        ByteBuffer receive() throws IOException {
+            in.clear().limit(4);
+            readFully();
+            int length = in.getInt(0);
+            if (length > in.capacity()) {
+                in = ByteBuffer.allocate(Math.max(length, in.capacity() * 2));
+            }
+            in.clear().limit(length);
+            readFully();
+            in.flip();
+            return in;
+        }
+
+        private void readFully() throws IOException {
+            while (in.hasRemaining()) {
+                if (channel.read(in) < 0) {
+                    throw new EOFException("Connection closed");
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    static void putString(Connection connection, String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long for the wire format");
+        }
+        connection.ensure(2 + bytes.length).putShort((short) bytes.length).put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Writes the full vehicle state with the connection's VehicleCodec
+     */
+    static void putVehicle(Connection connection, VehicleSnapshot snapshot) {
+        connection.codec.encode(snapshot, connection.ensure(VehicleCodec.maxEncodedSize(snapshot)));
+    }
+
+    /**
+     * Reads a vehicle written by putVehicle(). Every vehicle in a message must be decoded,
+     * even if the caller doesn't need it, to keep the codec dictionaries in step.
+     */
+    static void getVehicle(Connection connection, ByteBuffer in, VehicleSnapshot snapshot) {
+        connection.codec.decode(in, snapshot);
+    }
+}
@@ -0,0 +1,874 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * COLUMNAR EXPORT EXAMPLE:
+ * Streams fleet state (mileage, fuel, battery, service status and cargo per vehicle and
+ * owner) into a compact column-oriented file, instead of building report strings the way
+ * User.toString() does. It demonstrates:
+ * 1. Columnar layout: Rows are buffered into row groups and stored column by column, so
+ *    similar values sit together and each column gets the encoding that suits it
+ * 2. Lightweight compression: Delta + zigzag varints for ids and mileage, run-length
+ *    encoding for types and flags, per-chunk dictionaries for strings, and fixed-point
+ *    decimals for fuel/battery/cargo (values with more than two decimals are kept raw)
+ * 3. Parallelism and pipelining: The columns of a row group are encoded in parallel on a
+ *    background thread while the caller fills the next row group
+ * 4. NIO gather writes: All column chunks of a group go out in one FileChannel.write(ByteBuffer[])
+ *
+ * File layout:
+ *   "FLTC" version | row group 0 chunks | row group 1 chunks | ... | footer | footer length | "FLTC"
+ * The footer lists, per row group, its offset and row count and, per column chunk, the
+ * encoding, byte length and min/max statistics. Reader uses the statistics to skip
+ * whole row groups that can't match a range query.
+ *
+ * Usage:
+ *   try (ColumnarFleetExporter exporter = new ColumnarFleetExporter(path)) {
+ *       exporter.addAll(registry);
+ *   }
+ *   try (ColumnarFleetExporter.Reader reader = ColumnarFleetExporter.Reader.open(path)) {
+ *       reader.scan(Column.MILEAGE_SINCE_SERVICE, 10_000, Double.MAX_VALUE, row -> ...);
+ *   }
+ */
+public class ColumnarFleetExporter implements AutoCloseable {
+    private static final int MAGIC = 0x464c5443; // "FLTC"
+    private static final byte VERSION = 1;
+
+    // Chunk encodings
+    private static final byte DELTA = 0;     // Zigzag varlong of the first value, then of each difference
+    private static final byte RUN_LENGTH = 1; // (run length varint, zigzag varlong value) pairs
+    private static final byte DICTIONARY = 2; // Distinct strings, then run-length encoded dictionary ids
+    private static final byte DECIMAL = 3;   // Per value: zigzag(delta of value x 100) << 1, or 1 + raw 8 bytes
+
+    private enum Kind { LONG, FLAG, DOUBLE, STRING }
+
+    /**
+     * Exported columns, in file order
+     */
+    public enum Column {
+        ID(Kind.LONG),
+        TYPE(Kind.FLAG),               // VehicleType ordinal
+        OWNER(Kind.STRING),            // Owner email, null if unowned
+        BRAND(Kind.STRING),
+        MODEL(Kind.STRING),
+        MILEAGE(Kind.LONG),
+        MILEAGE_SINCE_SERVICE(Kind.LONG),
+        NEEDS_SERVICE(Kind.FLAG),      // 1 or 0
+        FUEL_LEVEL(Kind.DOUBLE),       // Litres; 0 for electric cars
+        BATTERY_LEVEL(Kind.DOUBLE),    // kWh; 0 for fuel vehicles
+        CARGO(Kind.DOUBLE);            // Tonnes loaded; 0 for non-trucks
+
+        private final Kind kind;
+
+        Column(Kind kind) {
+            this.kind = kind;
+        }
+    }
+
+    private static final Column[] COLUMNS = Column.values();
+
+    /**
+     * Column buffers for one row group. Integer-like columns share long[] storage.
+     */
+    private static final class RowGroup {
+        final long[][] longs = new long[COLUMNS.length][];
+        final double[][] doubles = new double[COLUMNS.length][];
+        final String[][] strings = new String[COLUMNS.length][];
+        int rows;
+
+        RowGroup(int capacity) {
+            for (Column column : COLUMNS) {
+                switch (column.kind) {
+                    case LONG:
+                    case FLAG:
+                        longs[column.ordinal()] = new long[capacity];
+                        break;
+                    case DOUBLE:
+                        doubles[column.ordinal()] = new double[capacity];
+                        break;
+                    case STRING:
+                        strings[column.ordinal()] = new String[capacity];
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Footer entry for one column chunk
+     */
+    private static final class ChunkInfo {
+        byte encoding;
+        int length;
+        long min; // Raw long bits for DOUBLE columns
+        long max;
+    }
+
+    private final FileChannel channel;
+    private final int rowsPerGroup;
+    private final ExecutorService writer;
+    private final RowGroup[] groups = new RowGroup[2]; // Filled by the caller / encoded in the background
+    private final ByteBuffer[] chunks = new ByteBuffer[COLUMNS.length];
+    private final List<long[]> groupPositions = new ArrayList<>(); // {offset, rows}
+    private final List<ChunkInfo[]> groupChunks = new ArrayList<>();
+    private final VehicleSnapshot scratch = new VehicleSnapshot();
+    private RowGroup current;
+    private int currentIndex;
+    private Future<?> pending;
+    private long position;
+    private long rowCount;
+    private long encodeNanos;
+    private long writeNanos;
+    private boolean closed;
+
+    public ColumnarFleetExporter(Path path) throws IOException {
+        this(path, 65_536);
+    }
+
+    public ColumnarFleetExporter(Path path, int rowsPerGroup) throws IOException {
+        if (rowsPerGroup <= 0) {
+            throw new IllegalArgumentException("Row groups need at least one row");
+        }
+        this.rowsPerGroup = rowsPerGroup;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "columnar-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        groups[0] = new RowGroup(rowsPerGroup);
+        groups[1] = new RowGroup(rowsPerGroup);
+        current = groups[0];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = ByteBuffer.allocateDirect(rowsPerGroup * 4);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(5);
+        header.putInt(MAGIC).put(VERSION).flip();
+        writeFully(new ByteBuffer[] {header});
+    }
+
+    /**
+     * Exports every vehicle of the registry with its owner's email
+     */
+    public void addAll(FleetRegistry registry) throws IOException {
+        for (AbstractVehicle vehicle : registry.getVehicles()) {
+            User owner = registry.getOwner(vehicle.getId());
+            add(vehicle, owner == null ? null : owner.getEmail());
+        }
+    }
+
+    /**
+     * Exports one vehicle, read under its lock so the row is consistent
+     */
+    public void add(AbstractVehicle vehicle, String ownerEmail) throws IOException {
+        boolean needsService;
+        synchronized (vehicle) {
+            vehicle.captureState(scratch);
+            needsService = vehicle.needsService();
+        }
+        add(scratch, ownerEmail, needsService);
+    }
+
+    /**
+     * Exports one row from a snapshot. Type-specific fields that don't apply are written as 0.
+     */
+    public void add(VehicleSnapshot snapshot, String ownerEmail, boolean needsService) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Exporter is closed");
+        }
+        RowGroup group = current;
+        int row = group.rows;
+        boolean electric = snapshot.type == VehicleFactory.VehicleType.ELECTRIC_CAR;
+        group.longs[Column.ID.ordinal()][row] = snapshot.id;
+        group.longs[Column.TYPE.ordinal()][row] = snapshot.type.ordinal();
+        group.strings[Column.OWNER.ordinal()][row] = ownerEmail;
+        group.strings[Column.BRAND.ordinal()][row] = snapshot.brand;
+        group.strings[Column.MODEL.ordinal()][row] = snapshot.model;
+        group.longs[Column.MILEAGE.ordinal()][row] = snapshot.mileage;
+        group.longs[Column.MILEAGE_SINCE_SERVICE.ordinal()][row] = snapshot.mileageSinceService;
+        group.longs[Column.NEEDS_SERVICE.ordinal()][row] = needsService ? 1 : 0;
+        group.doubles[Column.FUEL_LEVEL.ordinal()][row] = electric ? 0 : snapshot.fuelLevel;
+        group.doubles[Column.BATTERY_LEVEL.ordinal()][row] = electric ? snapshot.batteryLevel : 0;
+        group.doubles[Column.CARGO.ordinal()][row] =
+                snapshot.type == VehicleFactory.VehicleType.TRUCK ? snapshot.currentCargo : 0;
+        group.rows++;
+        rowCount++;
+        if (group.rows == rowsPerGroup) {
+            flushCurrent();
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return Time the background thread spent encoding, summed over row groups
+     */
+    public long getEncodeNanos() {
+        return encodeNanos;
+    }
+
+    /**
+     * @return Time the background thread spent in FileChannel writes
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * Hands the current row group to the background thread and switches to the other one,
+     * waiting first if that one is still being written
+     */
+    private void flushCurrent() throws IOException {
+        RowGroup full = current;
+        awaitPending();
+        pending = writer.submit(() -> {
+            encodeAndWrite(full);
+            return null;
+        });
+        currentIndex ^= 1;
+        current = groups[currentIndex];
+    }
+
+    private void awaitPending() throws IOException {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing a row group", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException("Row group encoding failed", cause);
+        } finally {
+            pending = null;
+        }
+    }
+
+    /**
+     * Runs on the writer thread: encodes every column in parallel, then writes them together
+     */
+    private void encodeAndWrite(RowGroup group) throws IOException {
+        long start = System.nanoTime();
+        ChunkInfo[] infos = new ChunkInfo[COLUMNS.length];
+        IntStream.range(0, COLUMNS.length).parallel().forEach(c -> infos[c] = encode(group, c));
+        long encoded = System.nanoTime();
+
+        groupPositions.add(new long[] {position, group.rows});
+        groupChunks.add(infos);
+        for (ByteBuffer chunk : chunks) {
+            chunk.flip();
+        }
+        writeFully(chunks);
+        group.rows = 0;
+        encodeNanos += encoded - start;
+        writeNanos += System.nanoTime() - encoded;
+    }
+
+    private void writeFully(ByteBuffer[] buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        position += remaining;
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private ChunkInfo encode(RowGroup group, int c) {
+        Column column = COLUMNS[c];
+        int rows = group.rows;
+        ChunkInfo info = new ChunkInfo();
+        ByteBuffer out;
+        switch (column.kind) {
+            case LONG: {
+                long[] values = group.longs[c];
+                out = chunkBuffer(c, rows * 10L);
+                info.encoding = DELTA;
+                putDeltas(out, values, rows);
+                setLongStats(info, values, rows);
+                break;
+            }
+            case FLAG: {
+                long[] values = group.longs[c];
+                out = chunkBuffer(c, rows * 15L);
+                info.encoding = RUN_LENGTH;
+                putRuns(out, values, rows);
+                setLongStats(info, values, rows);
+                break;
+            }
+            case DOUBLE: {
+                double[] values = group.doubles[c];
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                out = chunkBuffer(c, rows * 10L);
+                info.encoding = DECIMAL;
+                long previous = 0;
+                for (int i = 0; i < rows; i++) {
+                    double value = values[i];
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    double scaled = Math.rint(value * 100);
+                    if (Math.abs(scaled) < 1e15 && scaled / 100 == value) {
+                        long delta = (long) scaled - previous;
+                        VehicleCodec.putVarlong(out, zigzag(delta) << 1);
+                        previous = (long) scaled;
+                    } else {
+                        out.put((byte) 1);
+                        out.putDouble(value);
+                    }
+                }
+                info.min = Double.doubleToLongBits(min);
+                info.max = Double.doubleToLongBits(max);
+                break;
+            }
+            case STRING: {
+                String[] values = group.strings[c];
+                HashMap<String, Integer> dictionary = new HashMap<>();
+                List<String> distinct = new ArrayList<>();
+                long[] ids = new long[rows];
+                long dictionaryBytes = 0;
+                String last = null;
+                int lastId = -1;
+                for (int i = 0; i < rows; i++) {
+                    String value = values[i] == null ? "" : values[i];
+                    if (value == last) {
+                        ids[i] = lastId; // Rows of one owner or model tend to come together
+                        values[i] = null;
+                        continue;
+                    }
+                    Integer id = dictionary.get(value);
+                    if (id == null) {
+                        id = distinct.size();
+                        dictionary.put(value, id);
+                        distinct.add(value);
+                        dictionaryBytes += 5 + value.length() * 3L;
+                    }
+                    ids[i] = id;
+                    last = value;
+                    lastId = id;
+                    values[i] = null; // Don't keep owners/brands reachable through the reused group
+                }
+                out = chunkBuffer(c, 5 + dictionaryBytes + rows * 15L);
+                info.encoding = DICTIONARY;
+                VehicleCodec.putVarint(out, distinct.size());
+                for (String value : distinct) {
+                    VehicleCodec.putString(out, value);
+                }
+                putRuns(out, ids, rows);
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown column kind: " + column.kind);
+        }
+        info.length = out.position();
+        return info;
+    }
+
+    /**
+     * Clears the column's reusable direct buffer, growing it first if needed
+     */
+    private ByteBuffer chunkBuffer(int c, long maxBytes) {
+        if (maxBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Row group too large for one column chunk");
+        }
+        if (chunks[c].capacity() < maxBytes) {
+            chunks[c] = ByteBuffer.allocateDirect((int) maxBytes);
+        }
+        chunks[c].clear();
+        return chunks[c];
+    }
+
+    private static void setLongStats(ChunkInfo info, long[] values, int rows) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < rows; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        info.min = min;
+        info.max = max;
+    }
+
+    private static void putDeltas(ByteBuffer out, long[] values, int rows) {
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            VehicleCodec.putVarlong(out, zigzag(values[i] - previous));
+            previous = values[i];
+        }
+    }
+
+    private static void putRuns(ByteBuffer out, long[] values, int rows) {
+        int i = 0;
+        while (i < rows) {
+            long value = values[i];
+            int run = 1;
+            while (i + run < rows && values[i + run] == value) {
+                run++;
+            }
+            VehicleCodec.putVarint(out, run);
+            VehicleCodec.putVarlong(out, zigzag(value));
+            i += run;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes the last partial row group and the footer
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (current.rows > 0) {
+                flushCurrent();
+            }
+            awaitPending();
+
+            int footerSize = 4 + 1 + groupPositions.size() * (12 + COLUMNS.length * (1 + 4 + 16));
+            ByteBuffer footer = ByteBuffer.allocate(footerSize + 8);
+            footer.putInt(groupPositions.size()).put((byte) COLUMNS.length);
+            for (int g = 0; g < groupPositions.size(); g++) {
+                footer.putLong(groupPositions.get(g)[0]).putInt((int) groupPositions.get(g)[1]);
+                for (ChunkInfo info : groupChunks.get(g)) {
+                    footer.put(info.encoding).putInt(info.length).putLong(info.min).putLong(info.max);
+                }
+            }
+            footer.putInt(footerSize).putInt(MAGIC).flip();
+            writeFully(new ByteBuffer[] {footer});
+        } finally {
+            writer.shutdown();
+            channel.close();
+        }
+    }
+
+    // ==========================================
+    // Reading
+    // ==========================================
+
+    /**
+     * One decoded row, valid only during the visit call
+     */
+    public static final class Row {
+        private RowGroup group;
+        private int index;
+
+        public long getLong(Column column) {
+            checkKind(column, Kind.LONG, Kind.FLAG);
+            return group.longs[column.ordinal()][index];
+        }
+
+        public double getDouble(Column column) {
+            checkKind(column, Kind.DOUBLE, Kind.DOUBLE);
+            return group.doubles[column.ordinal()][index];
+        }
+
+        /**
+         * @return The string, or null where none was exported (e.g. a vehicle without owner)
+         */
+        public String getString(Column column) {
+            checkKind(column, Kind.STRING, Kind.STRING);
+            String value = group.strings[column.ordinal()][index];
+            return value.isEmpty() ? null : value;
+        }
+
+        public VehicleFactory.VehicleType getType() {
+            return VehicleFactory.VehicleType.values()[(int) getLong(Column.TYPE)];
+        }
+
+        public boolean needsService() {
+            return getLong(Column.NEEDS_SERVICE) != 0;
+        }
+
+        private static void checkKind(Column column, Kind kind, Kind alternative) {
+            if (column.kind != kind && column.kind != alternative) {
+                throw new IllegalArgumentException(column + " is not a " + kind + " column");
+            }
+        }
+    }
+
+    public interface RowVisitor {
+        void visit(Row row);
+    }
+
+    /**
+     * Reads files written by ColumnarFleetExporter
+     */
+    public static final class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final long[] offsets;
+        private final int[] rows;
+        private final ChunkInfo[][] chunkInfos;
+        private long skippedGroups;
+
+        private Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            long size = channel.size();
+            ByteBuffer trailer = readAt(size - 8, 8);
+            int footerSize = trailer.getInt();
+            if (trailer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a columnar fleet file");
+            }
+            ByteBuffer footer = readAt(size - 8 - footerSize, footerSize);
+            int groupCount = footer.getInt();
+            if (footer.get() != COLUMNS.length) {
+                throw new IllegalArgumentException("Unsupported column layout");
+            }
+            offsets = new long[groupCount];
+            rows = new int[groupCount];
+            chunkInfos = new ChunkInfo[groupCount][COLUMNS.length];
+            for (int g = 0; g < groupCount; g++) {
+                offsets[g] = footer.getLong();
+                rows[g] = footer.getInt();
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    ChunkInfo info = new ChunkInfo();
+                    info.encoding = footer.get();
+                    info.length = footer.getInt();
+                    info.min = footer.getLong();
+                    info.max = footer.getLong();
+                    chunkInfos[g][c] = info;
+                }
+            }
+        }
+
+        public static Reader open(Path path) throws IOException {
+            return new Reader(FileChannel.open(path, StandardOpenOption.READ));
+        }
+
+        public int getRowGroupCount() {
+            return rows.length;
+        }
+
+        public long getRowCount() {
+            long total = 0;
+            for (int count : rows) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * @return Row groups skipped by statistics in scan() calls so far
+         */
+        public long getSkippedGroups() {
+            return skippedGroups;
+        }
+
+        public double getMin(int group, Column column) {
+            return statistic(chunkInfos[group][column.ordinal()].min, column);
+        }
+
+        public double getMax(int group, Column column) {
+            return statistic(chunkInfos[group][column.ordinal()].max, column);
+        }
+
+        private static double statistic(long raw, Column column) {
+            switch (column.kind) {
+                case DOUBLE:
+                    return Double.longBitsToDouble(raw);
+                case STRING:
+                    throw new IllegalArgumentException(column + " has no min/max statistics");
+                default:
+                    return raw;
+            }
+        }
+
+        /**
+         * Visits every row whose value in column lies within [min, max].
+         * Row groups whose statistics don't overlap the range are not read at all.
+         * @return Number of rows visited
+         */
+        public long scan(Column column, double min, double max, RowVisitor visitor) throws IOException {
+            int c = column.ordinal();
+            RowGroup group = null;
+            Row row = new Row();
+            long visited = 0;
+            for (int g = 0; g < rows.length; g++) {
+                if (getMax(g, column) < min || getMin(g, column) > max) {
+                    skippedGroups++;
+                    continue;
+                }
+                if (group == null || group.longs[Column.ID.ordinal()].length < rows[g]) {
+                    group = new RowGroup(rows[g]);
+                }
+                decodeGroup(g, group);
+                row.group = group;
+                for (int i = 0; i < rows[g]; i++) {
+                    double value = column.kind == Kind.DOUBLE ? group.doubles[c][i] : group.longs[c][i];
+                    if (value >= min && value <= max) {
+                        row.index = i;
+                        visitor.visit(row);
+                        visited++;
+                    }
+                }
+            }
+            return visited;
+        }
+
+        /**
+         * Visits every row
+         */
+        public long scan(RowVisitor visitor) throws IOException {
+            return scan(Column.ID, Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+        }
+
+        private void decodeGroup(int g, RowGroup group) throws IOException {
+            long length = 0;
+            for (ChunkInfo info : chunkInfos[g]) {
+                length += info.length;
+            }
+            ByteBuffer in = readAt(offsets[g], (int) length);
+            int count = rows[g];
+            group.rows = count;
+            for (int c = 0; c < COLUMNS.length; c++) {
+                ChunkInfo info = chunkInfos[g][c];
+                int end = in.position() + info.length;
+                switch (info.encoding) {
+                    case DELTA: {
+                        long[] values = group.longs[c];
+                        long previous = 0;
+                        for (int i = 0; i < count; i++) {
+                            previous += unzigzag(VehicleCodec.getVarlong(in));
+                            values[i] = previous;
+                        }
+                        break;
+                    }
+                    case RUN_LENGTH:
+                        getRuns(in, group.longs[c], count);
+                        break;
+                    case DECIMAL: {
+                        double[] values = group.doubles[c];
+                        long previous = 0;
+                        for (int i = 0; i < count; i++) {
+                            long header = VehicleCodec.getVarlong(in);
+                            if ((header & 1) != 0) {
+                                values[i] = in.getDouble();
+                            } else {
+                                previous += unzigzag(header >>> 1);
+                                values[i] = previous / 100.0;
+                            }
+                        }
+                        break;
+                    }
+                    case DICTIONARY: {
+                        String[] distinct = new String[VehicleCodec.getVarint(in)];
+                        for (int i = 0; i < distinct.length; i++) {
+                            distinct[i] = readString(in);
+                        }
+                        long[] ids = new long[count];
+                        getRuns(in, ids, count);
+                        String[] values = group.strings[c];
+                        for (int i = 0; i < count; i++) {
+                            values[i] = distinct[(int) ids[i]];
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IllegalArgumentException("Unknown encoding: " + info.encoding);
+                }
+                if (in.position() != end) {
+                    throw new IllegalArgumentException("Corrupt column chunk " + COLUMNS[c] + " in group " + g);
+                }
+            }
+        }
+
+        private static void getRuns(ByteBuffer in, long[] values, int count) {
+            int i = 0;
+            while (i < count) {
+                int run = VehicleCodec.getVarint(in);
+                long value = unzigzag(VehicleCodec.getVarlong(in));
+                if (run <= 0 || i + run > count) {
+                    throw new IllegalArgumentException("Corrupt run length");
+                }
+                for (int end = i + run; i < end; i++) {
+                    values[i] = value;
+                }
+            }
+        }
+
+        /**
+         * Inverse of VehicleCodec.putString
+         */
+        private static String readString(ByteBuffer in) {
+            int length = VehicleCodec.getVarint(in) - 1;
+            if (length < 0) {
+                return null;
+            }
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                int b = in.get() & 0xff;
+                if (b < 0x80) {
+                    chars[i] = (char) b;
+                } else if (b < 0xe0) {
+                    chars[i] = (char) (((b & 0x1f) << 6) | (in.get() & 0x3f));
+                } else {
+                    chars[i] = (char) (((b & 0x0f) << 12) | ((in.get() & 0x3f) << 6) | (in.get() & 0x3f));
+                }
+            }
+            return new String(chars);
+        }
+
+        private ByteBuffer readAt(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Benchmark: [--rows 10000000] [--vehicles 100000] [--group 65536] [--file fleet.col] [--keep]
+     * Exports a simulated fleet repeatedly (with fresh ids and mileage) and reports throughput,
+     * how the background time splits between encoding and writing, and the file size
+     * compared with a User.toString()-style text report. The file is read back and checked.
+     */
+    public static void main(String[] args) throws IOException {
+        long rowTarget = 10_000_000L;
+        int vehicleCount = 100_000;
+        int groupRows = 65_536;
+        Path path = Paths.get("fleet.col");
+        boolean keep = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rows":
+                    rowTarget = Long.parseLong(args[++i]);
+                    break;
+                case "--vehicles":
+                    vehicleCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--group":
+                    groupRows = Integer.parseInt(args[++i]);
+                    break;
+                case "--file":
+                    path = Paths.get(args[++i]);
+                    break;
+                case "--keep":
+                    keep = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        AbstractVehicle.setOutputEnabled(false);
+        FleetSimulation simulation = new FleetSimulation();
+        simulation.setVehicleCount(vehicleCount);
+        List<AbstractVehicle> fleet = simulation.buildFleet();
+        VehicleSnapshot[] snapshots = new VehicleSnapshot[fleet.size()];
+        String[] owners = new String[fleet.size()];
+        long textBytes = 0;
+        for (int i = 0; i < snapshots.length; i++) {
+            AbstractVehicle vehicle = fleet.get(i);
+            vehicle.start();
+            vehicle.fastForward(i % 37, 1000);
+            snapshots[i] = new VehicleSnapshot();
+            vehicle.captureState(snapshots[i]);
+            owners[i] = "owner" + (i / 4) + "@fleet.example"; // Four vehicles per owner
+            textBytes += vehicle.toString().length() + owners[i].length() + 40;
+        }
+
+        long start = System.nanoTime();
+        long mileageSum = 0;
+        long serviceDue = 0;
+        // Closed before reading the timings so they include flushing the last row group
+        ColumnarFleetExporter exporter = new ColumnarFleetExporter(path, groupRows);
+        try {
+            for (long row = 0; row < rowTarget; row++) {
+                int i = (int) (row % snapshots.length);
+                VehicleSnapshot snapshot = snapshots[i];
+                long savedId = snapshot.id;
+                int savedMileage = snapshot.mileage;
+                int savedSinceService = snapshot.mileageSinceService;
+                snapshot.id = row + 1;
+                snapshot.mileage += (int) (row / snapshots.length) * 13;
+                snapshot.mileageSinceService = snapshot.mileage % 12_000;
+                boolean due = snapshot.mileageSinceService > 10_000;
+                exporter.add(snapshot, owners[i], due);
+                mileageSum += snapshot.mileage;
+                serviceDue += due ? 1 : 0;
+                snapshot.id = savedId;
+                snapshot.mileage = savedMileage;
+                snapshot.mileageSinceService = savedSinceService;
+            }
+        } finally {
+            exporter.close();
+        }
+        long encodeNanos = exporter.getEncodeNanos();
+        long writeNanos = exporter.getWriteNanos();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long fileBytes = Files.size(path);
+
+        long readStart = System.nanoTime();
+        long[] readBack = new long[2];
+        long dueRows;
+        long skipped;
+        try (Reader reader = Reader.open(path)) {
+            reader.scan(row -> {
+                readBack[0]++;
+                readBack[1] += row.getLong(Column.MILEAGE);
+            });
+            dueRows = reader.scan(Column.NEEDS_SERVICE, 1, 1, row -> { });
+            skipped = reader.getSkippedGroups();
+        }
+        double readSeconds = (System.nanoTime() - readStart) / 1e9;
+        if (readBack[0] != rowTarget || readBack[1] != mileageSum || dueRows != serviceDue) {
+            throw new IllegalStateException("Read back " + readBack[0] + " rows / mileage " + readBack[1]
+                    + " / due " + dueRows + ", expected " + rowTarget + " / " + mileageSum + " / " + serviceDue);
+        }
+        if (!keep) {
+            Files.delete(path);
+        }
+
+        double textEstimate = textBytes * (rowTarget / (double) snapshots.length);
+        System.out.println(String.format(Locale.ROOT,
+                "{\"rows\":%d,\"seconds\":%.2f,\"rowsPerSecond\":%.0f,\"megabytesPerSecond\":%.1f,"
+                        + "\"bytesPerRow\":%.2f,\"textReportRatio\":%.1f,\"encodeSeconds\":%.2f,\"writeSeconds\":%.2f,"
+                        + "\"readSeconds\":%.2f,\"serviceScanSkippedGroups\":%d}",
+                rowTarget, seconds, rowTarget / seconds, fileBytes / 1e6 / seconds,
+                fileBytes / (double) rowTarget, textEstimate / fileBytes, encodeNanos / 1e9, writeNanos / 1e9,
+                readSeconds, skipped));
+    }
+}
@@ -0,0 +1,68 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * CONSISTENT HASHING:
+ * Maps keys (vehicle ids, user emails) to node indexes. Each node owns many points on a
+ * 64-bit ring, so keys spread evenly and adding a node only moves about 1/n of the keys.
+ */
+public class ConsistentHashRing {
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final int nodeCount;
+
+    /**
+     * @param nodeCount Number of nodes, identified as 0..nodeCount-1
+     * @param virtualNodes Points per node on the ring (more points, smoother spread)
+     */
+    public ConsistentHashRing(int nodeCount, int virtualNodes) {
+        if (nodeCount <= 0 || virtualNodes <= 0) {
+            throw new IllegalArgumentException("Node and virtual node counts must be positive");
+        }
+        this.nodeCount = nodeCount;
+        for (int node = 0; node < nodeCount; node++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                ring.put(mix(((long) node << 32) | v), node);
+            }
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int nodeFor(long key) {
+        return lookup(mix(key));
+    }
+
+    public int nodeFor(String key) {
+        return lookup(hash(key));
+    }
+
+    private int lookup(long hash) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash);
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * 64-bit FNV-1a over UTF-8 bytes, finished with mix() for better avalanche
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * SplitMix64 finalizer: spreads consecutive ids across the whole ring
+     */
+    static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
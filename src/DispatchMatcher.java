@@ -0,0 +1,653 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * DISPATCH EXAMPLE:
+ * Matches a window of ride requests to available vehicles in one batch, minimising the
+ * total pickup distance. It demonstrates:
+ * 1. Polymorphism: Each vehicle type answers the constraints its own way - a car's doors
+ *    are its seat proxy, a motorcycle seats a second passenger only with a sidecar, and
+ *    range comes from getEstimatedRange() for electric cars and from fuel otherwise
+ * 2. Data-oriented design: Vehicles are snapshotted once into primitive arrays and bucketed
+ *    into a grid, so the matching loops never touch the vehicle objects
+ * 3. Parallelism: Candidate search runs per request with parallel streams and the edge
+ *    list is sorted with Arrays.parallelSort
+ * 4. Greedy + local search: Cheapest edges are taken first, then augmenting moves match
+ *    leftover requests and pairwise swaps shorten pickups until nothing improves
+ *
+ * Each request only considers its nearest feasible vehicles (within maxPickupKm), which
+ * keeps the problem sparse: the assignment is near-optimal, not exact.
+ *
+ * Usage:
+ *   DispatchMatcher matcher = new DispatchMatcher();
+ *   DispatchMatcher.Assignment assignment = matcher.match(requests, vehicles);
+ *   AbstractVehicle vehicle = assignment.getVehicle(0); // null if request 0 wasn't matched
+ */
+public class DispatchMatcher {
+    private static final int ELECTRIC_CAR_SEATS = 4; // ElectricCar has no door count
+    private static final int TRUCK_SEATS = 1;        // Cab passenger seat
+
+    /**
+     * A ride request: pick up passengers at (x, y) and drive them tripKm.
+     * minSpeed lets a request ask for a vehicle whose top speed is at least that (0: any).
+     */
+    public static final class Request {
+        private final long id;
+        private final double x;
+        private final double y;
+        private final int passengers;
+        private final double tripKm;
+        private final int minSpeed;
+
+        public Request(long id, double x, double y, int passengers, double tripKm, int minSpeed) {
+            if (passengers <= 0 || tripKm < 0 || minSpeed < 0) {
+                throw new IllegalArgumentException("Invalid request: passengers must be positive, "
+                        + "trip length and minimum speed cannot be negative");
+            }
+            this.id = id;
+            this.x = x;
+            this.y = y;
+            this.passengers = passengers;
+            this.tripKm = tripKm;
+            this.minSpeed = minSpeed;
+        }
+
+        public Request(long id, double x, double y, int passengers, double tripKm) {
+            this(id, x, y, passengers, tripKm, 0);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public int getPassengers() {
+            return passengers;
+        }
+
+        public double getTripKm() {
+            return tripKm;
+        }
+
+        public int getMinSpeed() {
+            return minSpeed;
+        }
+    }
+
+    /**
+     * Result of one batch: the vehicle chosen for each request, by request index
+     */
+    public static final class Assignment {
+        private final AbstractVehicle[] vehicles;
+        private final double[] pickupKm;
+        private final int matched;
+        private final double totalPickupKm;
+        private final int greedyMatched;
+        private final double greedyPickupKm;
+        private final int improvements;
+
+        Assignment(AbstractVehicle[] vehicles, double[] pickupKm, int greedyMatched, double greedyPickupKm,
+                   int improvements) {
+            this.vehicles = vehicles;
+            this.pickupKm = pickupKm;
+            int count = 0;
+            double total = 0;
+            for (int r = 0; r < vehicles.length; r++) {
+                if (vehicles[r] != null) {
+                    count++;
+                    total += pickupKm[r];
+                }
+            }
+            this.matched = count;
+            this.totalPickupKm = total;
+            this.greedyMatched = greedyMatched;
+            this.greedyPickupKm = greedyPickupKm;
+            this.improvements = improvements;
+        }
+
+        /**
+         * @return The vehicle assigned to the request at this index, or null
+         */
+        public AbstractVehicle getVehicle(int request) {
+            return vehicles[request];
+        }
+
+        /**
+         * @return Distance from the vehicle to the pickup point, or NaN if unmatched
+         */
+        public double getPickupKm(int request) {
+            return vehicles[request] == null ? Double.NaN : pickupKm[request];
+        }
+
+        public int getMatched() {
+            return matched;
+        }
+
+        public double getTotalPickupKm() {
+            return totalPickupKm;
+        }
+
+        /**
+         * @return Matches after the greedy pass alone, before local improvement
+         */
+        public int getGreedyMatched() {
+            return greedyMatched;
+        }
+
+        public double getGreedyPickupKm() {
+            return greedyPickupKm;
+        }
+
+        /**
+         * @return Augmenting moves and swaps applied by local improvement
+         */
+        public int getImprovements() {
+            return improvements;
+        }
+
+        @Override
+        public String toString() {
+            return "Assignment{matched=" + matched + "/" + vehicles.length +
+                    ", totalPickupKm=" + String.format("%.1f", totalPickupKm) +
+                    ", improvements=" + improvements + '}';
+        }
+    }
+
+    private final int candidatesPerRequest;
+    private final double maxPickupKm;
+    private final int maxRounds;
+
+    public DispatchMatcher() {
+        this(8, 25.0, 8);
+    }
+
+    /**
+     * @param candidatesPerRequest Nearest feasible vehicles kept per request
+     * @param maxPickupKm          Vehicles farther than this from the pickup are never offered
+     * @param maxRounds            Upper bound on local improvement passes
+     */
+    public DispatchMatcher(int candidatesPerRequest, double maxPickupKm, int maxRounds) {
+        if (candidatesPerRequest <= 0 || maxPickupKm <= 0 || maxRounds < 0) {
+            throw new IllegalArgumentException("Invalid matcher settings");
+        }
+        this.candidatesPerRequest = candidatesPerRequest;
+        this.maxPickupKm = maxPickupKm;
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * Passengers a vehicle can take, per its type
+     */
+    public static int seatsOf(AbstractVehicle vehicle) {
+        if (vehicle instanceof Car) {
+            return ((Car) vehicle).getNumberOfDoors();
+        }
+        if (vehicle instanceof Motorcycle) {
+            return ((Motorcycle) vehicle).hasSidecar() ? 2 : 1;
+        }
+        if (vehicle instanceof ElectricCar) {
+            return ELECTRIC_CAR_SEATS;
+        }
+        if (vehicle instanceof Truck) {
+            return TRUCK_SEATS;
+        }
+        return 1;
+    }
+
+    /**
+     * Kilometres the vehicle can drive on what it carries now
+     */
+    public static double rangeOf(AbstractVehicle vehicle) {
+        if (vehicle instanceof IElectric) {
+            return ((IElectric) vehicle).getEstimatedRange();
+        }
+        double perKm = vehicle.getEnergyPerKm();
+        return perKm > 0 ? vehicle.getEnergyLevel() / perKm : Double.MAX_VALUE;
+    }
+
+    /**
+     * Primitive copy of the fleet, bucketed by grid cell (cellStart/order form a CSR layout)
+     */
+    private static final class FleetView {
+        double[] xs;
+        double[] ys;
+        int[] seats;
+        double[] range;
+        int[] maxSpeed;
+        double minX;
+        double minY;
+        double cellSize;
+        int columns;
+        int rows;
+        int[] cellStart;
+        int[] order; // Vehicle indices grouped by cell
+    }
+
+    /**
+     * Assigns each request at most one vehicle and each vehicle at most one request.
+     * Vehicles that need service are never assigned.
+     */
+    public Assignment match(List<Request> requests, List<? extends AbstractVehicle> vehicles) {
+        Request[] batch = requests.toArray(new Request[0]);
+        FleetView view = snapshot(vehicles);
+        int k = candidatesPerRequest;
+        int[] candidates = new int[batch.length * k];
+        double[] costs = new double[batch.length * k];
+        int[] candidateCounts = new int[batch.length];
+
+        IntStream.range(0, batch.length).parallel()
+                .forEach(r -> candidateCounts[r] = findCandidates(view, batch[r], candidates, costs, r * k));
+
+        int[] vehicleOf = new int[batch.length];  // Candidate slot (0..k-1) per request, -1 if unmatched
+        int[] ownerOf = new int[vehicles.size()]; // Request per vehicle, -1 if free
+        Arrays.fill(vehicleOf, -1);
+        Arrays.fill(ownerOf, -1);
+        greedy(candidates, costs, candidateCounts, vehicleOf, ownerOf);
+
+        int greedyMatched = 0;
+        double greedyPickupKm = 0;
+        for (int r = 0; r < batch.length; r++) {
+            if (vehicleOf[r] >= 0) {
+                greedyMatched++;
+                greedyPickupKm += costs[r * k + vehicleOf[r]];
+            }
+        }
+
+        int improvements = 0;
+        for (int round = 0; round < maxRounds; round++) {
+            int changed = improve(candidates, costs, candidateCounts, vehicleOf, ownerOf);
+            improvements += changed;
+            if (changed == 0) {
+                break;
+            }
+        }
+
+        AbstractVehicle[] chosen = new AbstractVehicle[batch.length];
+        double[] pickupKm = new double[batch.length];
+        for (int r = 0; r < batch.length; r++) {
+            if (vehicleOf[r] >= 0) {
+                chosen[r] = vehicles.get(candidates[r * k + vehicleOf[r]]);
+                pickupKm[r] = costs[r * k + vehicleOf[r]];
+            }
+        }
+        return new Assignment(chosen, pickupKm, greedyMatched, greedyPickupKm, improvements);
+    }
+
+    /**
+     * Reads every vehicle once (under its lock, so a concurrently driven vehicle is seen in a
+     * consistent state) and buckets the available ones into a grid of about four per cell
+     */
+    private static FleetView snapshot(List<? extends AbstractVehicle> vehicles) {
+        int count = vehicles.size();
+        FleetView view = new FleetView();
+        view.xs = new double[count];
+        view.ys = new double[count];
+        view.seats = new int[count];
+        view.range = new double[count];
+        view.maxSpeed = new int[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            AbstractVehicle vehicle = vehicles.get(i);
+            synchronized (vehicle) {
+                view.xs[i] = vehicle.getX();
+                view.ys[i] = vehicle.getY();
+                view.seats[i] = vehicle.needsService() ? 0 : seatsOf(vehicle); // 0 seats: never matches
+                view.range[i] = rangeOf(vehicle);
+                view.maxSpeed[i] = vehicle.getMaxSpeed();
+            }
+        });
+
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        int available = 0;
+        for (int i = 0; i < count; i++) {
+            if (view.seats[i] > 0) {
+                minX = Math.min(minX, view.xs[i]);
+                minY = Math.min(minY, view.ys[i]);
+                maxX = Math.max(maxX, view.xs[i]);
+                maxY = Math.max(maxY, view.ys[i]);
+                available++;
+            }
+        }
+        if (available == 0) {
+            minX = minY = 0;
+            maxX = maxY = 1;
+        }
+        double width = Math.max(maxX - minX, 1e-9);
+        double height = Math.max(maxY - minY, 1e-9);
+        double cellSize = Math.sqrt(width * height / Math.max(1, available / 4.0));
+        view.minX = minX;
+        view.minY = minY;
+        view.cellSize = cellSize;
+        view.columns = (int) Math.min(4096, Math.max(1, Math.ceil(width / cellSize)));
+        view.rows = (int) Math.min(4096, Math.max(1, Math.ceil(height / cellSize)));
+
+        // Counting sort of available vehicles by cell
+        int[] cellOfVehicle = new int[count];
+        view.cellStart = new int[view.columns * view.rows + 1];
+        for (int i = 0; i < count; i++) {
+            if (view.seats[i] > 0) {
+                cellOfVehicle[i] = cellOf(view, view.xs[i], view.ys[i]);
+                view.cellStart[cellOfVehicle[i] + 1]++;
+            }
+        }
+        for (int c = 0; c < view.columns * view.rows; c++) {
+            view.cellStart[c + 1] += view.cellStart[c];
+        }
+        view.order = new int[available];
+        int[] next = Arrays.copyOf(view.cellStart, view.cellStart.length - 1);
+        for (int i = 0; i < count; i++) {
+            if (view.seats[i] > 0) {
+                view.order[next[cellOfVehicle[i]]++] = i;
+            }
+        }
+        return view;
+    }
+
+    private static int columnOf(FleetView view, double x) {
+        int column = (int) Math.floor((x - view.minX) / view.cellSize);
+        return Math.max(0, Math.min(view.columns - 1, column));
+    }
+
+    private static int rowOf(FleetView view, double y) {
+        int row = (int) Math.floor((y - view.minY) / view.cellSize);
+        return Math.max(0, Math.min(view.rows - 1, row));
+    }
+
+    private static int cellOf(FleetView view, double x, double y) {
+        return rowOf(view, y) * view.columns + columnOf(view, x);
+    }
+
+    /**
+     * Ring search around the pickup for the k nearest feasible vehicles, closest first.
+     * Same pruning as SpatialGridIndex: stop once the next ring can't beat the k-th hit.
+     * @return Number of candidates written at offset
+     */
+    private int findCandidates(FleetView view, Request request, int[] candidates, double[] costs, int offset) {
+        int k = candidatesPerRequest;
+        int centerColumn = columnOf(view, request.x);
+        int centerRow = rowOf(view, request.y);
+        int maxRing = Math.max(Math.max(centerColumn, view.columns - 1 - centerColumn),
+                Math.max(centerRow, view.rows - 1 - centerRow));
+        double squaredLimit = maxPickupKm * maxPickupKm;
+        int found = 0;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            double reach = ringDistance(view, request.x, request.y, centerColumn, centerRow, ring);
+            if (reach > 0) {
+                double bound = found == k ? Math.min(squaredLimit, costs[offset + k - 1]) : squaredLimit;
+                if (reach * reach > bound) {
+                    break;
+                }
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= view.rows) {
+                    continue;
+                }
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : 2 * ring; // Interior rows only have the two side cells
+                for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+                    if (column < 0 || column >= view.columns) {
+                        continue;
+                    }
+                    int cell = row * view.columns + column;
+                    for (int i = view.cellStart[cell]; i < view.cellStart[cell + 1]; i++) {
+                        int v = view.order[i];
+                        double dx = view.xs[v] - request.x;
+                        double dy = view.ys[v] - request.y;
+                        double squared = dx * dx + dy * dy;
+                        if (squared > squaredLimit || (found == k && squared >= costs[offset + k - 1])) {
+                            continue;
+                        }
+                        if (view.seats[v] < request.passengers || view.maxSpeed[v] < request.minSpeed
+                                || view.range[v] < Math.sqrt(squared) + request.tripKm) {
+                            continue;
+                        }
+                        int position = found == k ? k - 1 : found++;
+                        while (position > 0 && costs[offset + position - 1] > squared) {
+                            costs[offset + position] = costs[offset + position - 1];
+                            candidates[offset + position] = candidates[offset + position - 1];
+                            position--;
+                        }
+                        costs[offset + position] = squared;
+                        candidates[offset + position] = v;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < found; i++) {
+            costs[offset + i] = Math.sqrt(costs[offset + i]);
+        }
+        return found;
+    }
+
+    private static double ringDistance(FleetView view, double x, double y, int centerColumn, int centerRow, int ring) {
+        double left = view.minX + (centerColumn - ring + 1) * view.cellSize;
+        double right = view.minX + (centerColumn + ring) * view.cellSize;
+        double bottom = view.minY + (centerRow - ring + 1) * view.cellSize;
+        double top = view.minY + (centerRow + ring) * view.cellSize;
+        return Math.min(Math.min(x - left, right - x), Math.min(y - bottom, top - y));
+    }
+
+    /**
+     * Takes edges cheapest first whenever both ends are still free.
+     * Each edge is packed as (float cost bits << 32 | edge index): non-negative floats sort
+     * like their bit patterns, so a parallel sort of longs orders the edges by cost.
+     */
+    private void greedy(int[] candidates, double[] costs, int[] candidateCounts, int[] vehicleOf, int[] ownerOf) {
+        int k = candidatesPerRequest;
+        int edgeCount = 0;
+        for (int count : candidateCounts) {
+            edgeCount += count;
+        }
+        long[] edges = new long[edgeCount];
+        int e = 0;
+        for (int r = 0; r < candidateCounts.length; r++) {
+            for (int j = 0; j < candidateCounts[r]; j++) {
+                int edge = r * k + j;
+                edges[e++] = ((long) Float.floatToIntBits((float) costs[edge]) << 32) | edge;
+            }
+        }
+        Arrays.parallelSort(edges);
+        for (long packed : edges) {
+            int edge = (int) packed;
+            int r = edge / k;
+            int v = candidates[edge];
+            if (vehicleOf[r] < 0 && ownerOf[v] < 0) {
+                vehicleOf[r] = edge - r * k;
+                ownerOf[v] = r;
+            }
+        }
+    }
+
+    /**
+     * One pass of local improvement over all requests:
+     * - an unmatched request takes a free candidate, or takes one from a request that can
+     *   move to a free vehicle of its own (augmenting path of length two)
+     * - a matched request moves to a closer free candidate, or swaps vehicles with another
+     *   request when that shortens the two pickups combined
+     * @return Number of changes made
+     */
+    private int improve(int[] candidates, double[] costs, int[] candidateCounts, int[] vehicleOf, int[] ownerOf) {
+        int k = candidatesPerRequest;
+        int changes = 0;
+        for (int r = 0; r < candidateCounts.length; r++) {
+            int base = r * k;
+            if (vehicleOf[r] < 0) {
+                changes += augment(r, candidates, costs, candidateCounts, vehicleOf, ownerOf);
+                continue;
+            }
+            int currentSlot = vehicleOf[r];
+            double current = costs[base + currentSlot];
+            // Candidates are sorted, so only the ones before the current slot are closer
+            for (int j = 0; j < currentSlot; j++) {
+                int w = candidates[base + j];
+                int other = ownerOf[w];
+                if (other < 0) {
+                    ownerOf[candidates[base + currentSlot]] = -1;
+                    vehicleOf[r] = j;
+                    ownerOf[w] = r;
+                    changes++;
+                    break;
+                }
+                int v = candidates[base + currentSlot];
+                int otherSlotForV = slotOf(other, v, candidates, candidateCounts);
+                if (otherSlotForV < 0) {
+                    continue;
+                }
+                double before = current + costs[other * k + vehicleOf[other]];
+                double after = costs[base + j] + costs[other * k + otherSlotForV];
+                if (after < before - 1e-9) {
+                    vehicleOf[r] = j;
+                    ownerOf[w] = r;
+                    vehicleOf[other] = otherSlotForV;
+                    ownerOf[v] = other;
+                    changes++;
+                    break;
+                }
+            }
+        }
+        return changes;
+    }
+
+    private int augment(int r, int[] candidates, double[] costs, int[] candidateCounts, int[] vehicleOf, int[] ownerOf) {
+        int k = candidatesPerRequest;
+        int base = r * k;
+        int bestSlot = -1;
+        int bestOtherSlot = -1;
+        double bestExtra = Double.MAX_VALUE;
+        for (int j = 0; j < candidateCounts[r]; j++) {
+            int v = candidates[base + j];
+            int other = ownerOf[v];
+            if (other < 0) {
+                if (costs[base + j] < bestExtra) {
+                    bestSlot = j;
+                    bestOtherSlot = -1;
+                }
+                break; // Farther candidates can't beat the closest free one
+            }
+            int otherBase = other * k;
+            double otherCost = costs[otherBase + vehicleOf[other]];
+            for (int m = 0; m < candidateCounts[other]; m++) {
+                if (ownerOf[candidates[otherBase + m]] < 0) {
+                    double extra = costs[base + j] + costs[otherBase + m] - otherCost;
+                    if (extra < bestExtra) {
+                        bestExtra = extra;
+                        bestSlot = j;
+                        bestOtherSlot = m;
+                    }
+                    break; // Sorted: the first free alternative is the other request's best
+                }
+            }
+        }
+        if (bestSlot < 0) {
+            return 0;
+        }
+        int v = candidates[base + bestSlot];
+        if (bestOtherSlot >= 0) {
+            int other = ownerOf[v];
+            vehicleOf[other] = bestOtherSlot;
+            ownerOf[candidates[other * k + bestOtherSlot]] = other;
+        }
+        vehicleOf[r] = bestSlot;
+        ownerOf[v] = r;
+        return 1;
+    }
+
+    private int slotOf(int request, int vehicle, int[] candidates, int[] candidateCounts) {
+        int base = request * candidatesPerRequest;
+        for (int j = 0; j < candidateCounts[request]; j++) {
+            if (candidates[base + j] == vehicle) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Benchmark: [--vehicles 200000] [--requests 50000] [--size 200] [--candidates 8] [--batches 5]
+     * Scatters a fleet over a size x size km map, then matches batches of random requests
+     * and reports time per batch, match rate and how much local improvement saved.
+     */
+    public static void main(String[] args) {
+        int vehicleCount = 200_000;
+        int requestCount = 50_000;
+        double size = 200;
+        int candidates = 8;
+        int batches = 5;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicleCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--requests":
+                    requestCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--size":
+                    size = Double.parseDouble(args[++i]);
+                    break;
+                case "--candidates":
+                    candidates = Integer.parseInt(args[++i]);
+                    break;
+                case "--batches":
+                    batches = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        AbstractVehicle.setOutputEnabled(false);
+        FleetSimulation simulation = new FleetSimulation();
+        simulation.setVehicleCount(vehicleCount);
+        List<AbstractVehicle> fleet = simulation.buildFleet();
+        SplittableRandom random = new SplittableRandom(11);
+        VehicleSnapshot snapshot = new VehicleSnapshot();
+        for (AbstractVehicle vehicle : fleet) {
+            // Burn some fuel so ranges differ, and send a few vehicles to the workshop
+            vehicle.start();
+            vehicle.fastForward(random.nextInt(80), 1000);
+            if (random.nextInt(20) == 0) {
+                vehicle.captureState(snapshot);
+                snapshot.mileageSinceService = 10_001;
+                vehicle.restoreState(snapshot);
+            }
+            vehicle.setPosition(random.nextDouble(size), random.nextDouble(size));
+        }
+
+        DispatchMatcher matcher = new DispatchMatcher(candidates, 25.0, 8);
+        LatencyHistogram latency = new LatencyHistogram();
+        Assignment last = null;
+        for (int batch = 0; batch < batches + 2; batch++) {
+            List<Request> requests = new ArrayList<>(requestCount);
+            for (int r = 0; r < requestCount; r++) {
+                int passengers = random.nextInt(10) < 7 ? 1 : 2 + random.nextInt(3);
+                requests.add(new Request(r, random.nextDouble(size), random.nextDouble(size), passengers,
+                        1 + random.nextDouble(30), random.nextInt(10) == 0 ? 150 : 0));
+            }
+            long start = System.nanoTime();
+            last = matcher.match(requests, fleet);
+            if (batch >= 2) {
+                latency.record(System.nanoTime() - start); // First two batches warm up the JIT
+            }
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "{\"vehicles\":%d,\"requests\":%d,\"batchMeanMillis\":%.1f,\"batchMaxMillis\":%.1f,"
+                        + "\"matched\":%d,\"greedyMatched\":%d,\"meanPickupKm\":%.3f,\"greedyMeanPickupKm\":%.3f,"
+                        + "\"improvements\":%d}",
+                fleet.size(), requestCount, latency.getMean() / 1e6, latency.getMax() / 1e6,
+                last.getMatched(), last.getGreedyMatched(), last.getTotalPickupKm() / last.getMatched(),
+                last.getGreedyPickupKm() / last.getGreedyMatched(), last.getImprovements()));
+    }
+}
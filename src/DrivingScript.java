@@ -0,0 +1,532 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * DRIVING SCRIPTS:
+ * Compact command scripts such as "start; accelerate*5; gear 3; brake*2; refuel 20; stop",
+ * compiled once and run on whole fleets. It demonstrates:
+ * 1. Parsing: One "command[*count] [amount]" per line or between ';', with the names of
+ *    FleetRegistry.Command. '#' starts a comment. Errors report the line.
+ * 2. Compilation: The script is compiled into one program of specialized lambdas per vehicle
+ *    type. Commands a type doesn't have are found at compile time, and overridden methods are
+ *    called through a cast to the subclass, so no step needs a switch or an instanceof check.
+ * 3. Fusion: An accelerate run followed by a brake run becomes one fastForward() call, and runs
+ *    of start, stop, gear, maintenance and refuel/charge collapse into one call, so a
+ *    program's cost depends on the number of runs in the script, not on its length
+ * 4. Parallel batches: run() splits a fleet into chunks on the common ForkJoinPool, with
+ *    console output disabled while it runs
+ *
+ * interpret() is the baseline: one FleetRegistry.apply() per command, as the HTTP and cluster
+ * front ends do. Both end in the same state up to floating-point rounding of fuel and battery
+ * levels, as with fastForward(); a fused run notifies observers once instead of once per command.
+ * Each vehicle must have a single writer while a script runs on it.
+ *
+ * Usage:
+ *   DrivingScript script = DrivingScript.compile("start; accelerate*5; gear 3; brake*5; stop");
+ *   script.execute(vehicle);
+ *   script.run(fleet);
+ *   java -cp src DrivingScript --vehicles 200000 --rounds 5 [--script "..." | --file replay.txt]
+ */
+public class DrivingScript {
+    private static final VehicleFactory.VehicleType[] TYPES = VehicleFactory.VehicleType.values();
+    private static final int CHUNK = 1024;
+    private static final String DEFAULT_SCRIPT = String.join("\n",
+            "# Morning run, as in App.main, then a highway leg and a depot stop",
+            "start; accelerate*2; gear 3; brake; refuel 20",
+            "accelerate*40; gear 5; brake*12",
+            "accelerate*25; brake*30; stop",
+            "refuel 15; maintenance; start; accelerate*10; brake*10; stop");
+
+    /**
+     * One fused call on a vehicle of the type the program was compiled for
+     */
+    private interface Step {
+        void apply(AbstractVehicle vehicle);
+    }
+
+    private final String source;
+    private final FleetRegistry.Command[] commands;
+    private final int[] counts;
+    private final double[] arguments;
+    private final int[] lines;
+    private final long commandCount;
+    private final Step[][] programs = new Step[TYPES.length][];
+    private final String[] unsupported = new String[TYPES.length];
+
+    private DrivingScript(String source, List<FleetRegistry.Command> commands, List<Integer> counts,
+                          List<Double> arguments, List<Integer> lines) {
+        this.source = source;
+        int size = commands.size();
+        this.commands = commands.toArray(new FleetRegistry.Command[0]);
+        this.counts = new int[size];
+        this.arguments = new double[size];
+        this.lines = new int[size];
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            this.counts[i] = counts.get(i);
+            this.arguments[i] = arguments.get(i);
+            this.lines[i] = lines.get(i);
+            total += this.counts[i];
+        }
+        this.commandCount = total;
+        for (VehicleFactory.VehicleType type : TYPES) {
+            try {
+                programs[type.ordinal()] = compileFor(type);
+            } catch (IllegalArgumentException e) {
+                unsupported[type.ordinal()] = e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Parses a script and compiles it for every vehicle type
+     * @throws IllegalArgumentException If the script has a syntax error or an invalid amount
+     */
+    public static DrivingScript compile(String source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Script cannot be null");
+        }
+        List<FleetRegistry.Command> commands = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        List<Double> arguments = new ArrayList<>();
+        List<Integer> lines = new ArrayList<>();
+        String[] sourceLines = source.split("\r?\n", -1);
+        for (int l = 0; l < sourceLines.length; l++) {
+            String text = sourceLines[l];
+            int comment = text.indexOf('#');
+            if (comment >= 0) {
+                text = text.substring(0, comment);
+            }
+            for (String statement : text.split(";")) {
+                statement = statement.trim();
+                if (statement.isEmpty()) {
+                    continue;
+                }
+                try {
+                    parseStatement(statement, commands, counts, arguments);
+                } catch (IllegalArgumentException e) { // Also NumberFormatException
+                    throw new IllegalArgumentException("Line " + (l + 1) + ": " + e.getMessage());
+                }
+                lines.add(l + 1);
+            }
+        }
+        // An accelerate or brake run becomes one fastForward() call, so its repeat counts must add up to an int
+        long run = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            FleetRegistry.Command command = commands.get(i);
+            run = (i > 0 && commands.get(i - 1) == command ? run : 0) + counts.get(i);
+            if (run > Integer.MAX_VALUE
+                    && (command == FleetRegistry.Command.ACCELERATE || command == FleetRegistry.Command.BRAKE)) {
+                throw new IllegalArgumentException("Line " + lines.get(i) + ": too many repetitions in one "
+                        + command.name().toLowerCase(Locale.ROOT) + " run");
+            }
+        }
+        return new DrivingScript(source, commands, counts, arguments, lines);
+    }
+
+    private static void parseStatement(String statement, List<FleetRegistry.Command> commands,
+                                       List<Integer> counts, List<Double> arguments) {
+        String[] tokens = statement.split("\\s+");
+        if (tokens.length > 2) {
+            throw new IllegalArgumentException("Expected \"command[*count] [amount]\": " + statement);
+        }
+        String name = tokens[0];
+        int count = 1;
+        int star = name.indexOf('*');
+        if (star >= 0) {
+            count = Integer.parseInt(name.substring(star + 1));
+            name = name.substring(0, star);
+            if (count < 1) {
+                throw new IllegalArgumentException("Repeat count must be positive: " + statement);
+            }
+        }
+        FleetRegistry.Command command = FleetRegistry.Command.parse(name);
+        boolean needsAmount = command == FleetRegistry.Command.REFUEL || command == FleetRegistry.Command.CHARGE
+                || command == FleetRegistry.Command.LOADCARGO || command == FleetRegistry.Command.UNLOADCARGO
+                || command == FleetRegistry.Command.GEAR;
+        if (needsAmount != (tokens.length == 2)) {
+            throw new IllegalArgumentException(needsAmount
+                    ? "Missing amount: " + statement : "Unexpected amount: " + statement);
+        }
+        double argument = needsAmount ? Double.parseDouble(tokens[1]) : 0;
+        // Fusion relies on amounts adding up, so negative amounts are rejected
+        if (!(argument >= 0) || Double.isInfinite(argument)) {
+            throw new IllegalArgumentException("Amount must be a non-negative number: " + statement);
+        }
+        if (command == FleetRegistry.Command.GEAR && (argument > 6 || argument != Math.rint(argument))) {
+            throw new IllegalArgumentException("Gear must be a whole number from 0 to 6: " + statement);
+        }
+        commands.add(command);
+        counts.add(count);
+        arguments.add(argument);
+    }
+
+    /**
+     * Compiles the script for one vehicle type, fusing runs of commands into single calls
+     * @throws IllegalArgumentException If the script uses a command the type doesn't have
+     */
+    private Step[] compileFor(VehicleFactory.VehicleType type) {
+        List<Step> steps = new ArrayList<>();
+        int i = 0;
+        while (i < commands.length) {
+            FleetRegistry.Command command = commands[i];
+            switch (command) {
+                case START:
+                case STOP:
+                case MAINTENANCE:
+                    // Idempotent: a run of them has the effect of one
+                    while (i < commands.length && commands[i] == command) {
+                        i++;
+                    }
+                    steps.add(command == FleetRegistry.Command.START ? start(type)
+                            : command == FleetRegistry.Command.STOP ? AbstractVehicle::stop : maintenance(type));
+                    break;
+                case ACCELERATE:
+                case BRAKE: {
+                    // compile() has checked that each run's total fits in an int
+                    int accelerateSteps = 0;
+                    int brakeSteps = 0;
+                    while (i < commands.length && commands[i] == FleetRegistry.Command.ACCELERATE) {
+                        accelerateSteps += counts[i++];
+                    }
+                    while (i < commands.length && commands[i] == FleetRegistry.Command.BRAKE) {
+                        brakeSteps += counts[i++];
+                    }
+                    steps.add(fastForward(type, accelerateSteps, brakeSteps));
+                    break;
+                }
+                case GEAR: {
+                    // Only the last gear of a run is observable; all are valid gears
+                    int gear = 0;
+                    while (i < commands.length && commands[i] == FleetRegistry.Command.GEAR) {
+                        gear = (int) arguments[i++];
+                    }
+                    int selected = gear;
+                    steps.add(v -> v.changeGear(selected));
+                    break;
+                }
+                case REFUEL:
+                case CHARGE: {
+                    // Both fill up to capacity, so amounts add up. On an electric car refuel()
+                    // is charge(), so a mixed run is one charge; elsewhere charge() doesn't exist.
+                    boolean electric = type == VehicleFactory.VehicleType.ELECTRIC_CAR;
+                    if (command == FleetRegistry.Command.CHARGE && !electric) {
+                        throw new IllegalArgumentException("Line " + lines[i] + ": charge needs an electric car, not "
+                                + type);
+                    }
+                    double amount = 0;
+                    while (i < commands.length && (commands[i] == FleetRegistry.Command.REFUEL
+                            || electric && commands[i] == FleetRegistry.Command.CHARGE)) {
+                        amount += arguments[i] * counts[i];
+                        i++;
+                    }
+                    steps.add(refuel(type, amount));
+                    break;
+                }
+                case LOADCARGO:
+                case UNLOADCARGO: {
+                    // Each load or unload is checked against the current cargo, so they aren't fused
+                    if (type != VehicleFactory.VehicleType.TRUCK) {
+                        throw new IllegalArgumentException("Line " + lines[i] + ": "
+                                + command.name().toLowerCase(Locale.ROOT) + " needs a truck, not " + type);
+                    }
+                    double weight = arguments[i];
+                    int repeat = counts[i];
+                    steps.add(command == FleetRegistry.Command.LOADCARGO
+                            ? v -> {
+                                for (int k = 0; k < repeat; k++) {
+                                    ((Truck) v).loadCargo(weight);
+                                }
+                            }
+                            : v -> {
+                                for (int k = 0; k < repeat; k++) {
+                                    ((Truck) v).unloadCargo(weight);
+                                }
+                            });
+                    i++;
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Line " + lines[i] + ": unsupported command " + command);
+            }
+        }
+        return steps.toArray(new Step[0]);
+    }
+
+    // One lambda per type, so each call site only ever sees one receiver class
+
+    private static Step start(VehicleFactory.VehicleType type) {
+        switch (type) {
+            case CAR:
+                return v -> ((Car) v).start();
+            case MOTORCYCLE:
+                return v -> ((Motorcycle) v).start();
+            case TRUCK:
+                return v -> ((Truck) v).start();
+            default:
+                return v -> ((ElectricCar) v).start();
+        }
+    }
+
+    private static Step fastForward(VehicleFactory.VehicleType type, int accelerateSteps, int brakeSteps) {
+        switch (type) {
+            case CAR:
+                return v -> ((Car) v).fastForward(accelerateSteps, brakeSteps);
+            case MOTORCYCLE:
+                return v -> ((Motorcycle) v).fastForward(accelerateSteps, brakeSteps);
+            case TRUCK:
+                return v -> ((Truck) v).fastForward(accelerateSteps, brakeSteps);
+            default:
+                return v -> ((ElectricCar) v).fastForward(accelerateSteps, brakeSteps);
+        }
+    }
+
+    private static Step refuel(VehicleFactory.VehicleType type, double amount) {
+        switch (type) {
+            case CAR:
+                return v -> ((Car) v).refuel(amount);
+            case MOTORCYCLE:
+                return v -> ((Motorcycle) v).refuel(amount);
+            case TRUCK:
+                return v -> ((Truck) v).refuel(amount);
+            default:
+                return v -> ((ElectricCar) v).charge(amount);
+        }
+    }
+
+    private static Step maintenance(VehicleFactory.VehicleType type) {
+        switch (type) {
+            case CAR:
+                return v -> ((Car) v).performMaintenance();
+            case MOTORCYCLE:
+                return v -> ((Motorcycle) v).performMaintenance();
+            case TRUCK:
+                return v -> ((Truck) v).performMaintenance();
+            default:
+                return v -> ((ElectricCar) v).performMaintenance();
+        }
+    }
+
+    /**
+     * Number of commands the script issues, counting repetitions
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Number of calls the compiled program makes on a vehicle of the given type
+     * @throws IllegalArgumentException If the script can't run on that type
+     */
+    public int getStepCount(VehicleFactory.VehicleType type) {
+        return program(type).length;
+    }
+
+    public boolean supports(VehicleFactory.VehicleType type) {
+        return programs[type.ordinal()] != null;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Runs the compiled program on one vehicle, on the calling thread
+     * @throws IllegalArgumentException If the script can't run on the vehicle's type
+     */
+    public void execute(AbstractVehicle vehicle) {
+        for (Step step : program(VehicleFactory.typeOf(vehicle))) {
+            step.apply(vehicle);
+        }
+    }
+
+    /**
+     * Runs the script one command at a time through FleetRegistry.apply(), without fusion.
+     * Kept as the baseline the compiled program is measured and checked against.
+     */
+    public void interpret(AbstractVehicle vehicle) {
+        for (int i = 0; i < commands.length; i++) {
+            for (int k = 0; k < counts[i]; k++) {
+                FleetRegistry.apply(vehicle, commands[i], arguments[i]);
+            }
+        }
+    }
+
+    /**
+     * Runs the compiled program on every vehicle of a fleet in parallel, with console output
+     * disabled. Every type in the fleet is checked first, so an unsupported vehicle fails the
+     * call before any vehicle has been changed.
+     * @throws IllegalArgumentException If the script can't run on one of the vehicles
+     */
+    public void run(List<? extends AbstractVehicle> fleet) {
+        for (int t = 0; t < TYPES.length; t++) {
+            if (programs[t] == null) {
+                for (AbstractVehicle vehicle : fleet) {
+                    program(VehicleFactory.typeOf(vehicle));
+                }
+                break;
+            }
+        }
+        boolean previousOutput = AbstractVehicle.isOutputEnabled();
+        AbstractVehicle.setOutputEnabled(false);
+        try {
+            int size = fleet.size();
+            IntStream.range(0, (size + CHUNK - 1) / CHUNK).parallel().forEach(c -> {
+                int end = Math.min(size, (c + 1) * CHUNK);
+                for (int i = c * CHUNK; i < end; i++) {
+                    execute(fleet.get(i));
+                }
+            });
+        } finally {
+            AbstractVehicle.setOutputEnabled(previousOutput);
+        }
+    }
+
+    private Step[] program(VehicleFactory.VehicleType type) {
+        Step[] program = programs[type.ordinal()];
+        if (program == null) {
+            throw new IllegalArgumentException("Script can't run on " + type + ": " + unsupported[type.ordinal()]);
+        }
+        return program;
+    }
+
+    /**
+     * Benchmark: runs the same script through the interpreter and the compiled programs on two
+     * identical fleets, checks that they end in the same state and prints one JSON line
+     */
+    public static void main(String[] args) throws IOException {
+        int vehicles = 200_000;
+        int rounds = 5;
+        String source = DEFAULT_SCRIPT;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicles = Integer.parseInt(args[++i]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                case "--script":
+                    source = args[++i];
+                    break;
+                case "--file":
+                    source = new String(Files.readAllBytes(Paths.get(args[++i])), StandardCharsets.UTF_8);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (vehicles <= 0 || rounds <= 0) {
+            throw new IllegalArgumentException("Vehicles and rounds must be positive");
+        }
+        DrivingScript script = compile(source);
+        // Types the script can't run on are replaced by the first one it can
+        VehicleFactory.VehicleType fallback = null;
+        for (VehicleFactory.VehicleType type : TYPES) {
+            if (script.supports(type)) {
+                fallback = type;
+                break;
+            }
+        }
+        if (fallback == null) {
+            throw new IllegalArgumentException("Script can't run on any vehicle type: " + script.unsupported[0]);
+        }
+        AbstractVehicle.setOutputEnabled(false);
+        List<AbstractVehicle> interpreted = new ArrayList<>(vehicles);
+        List<AbstractVehicle> compiled = new ArrayList<>(vehicles);
+        List<AbstractVehicle> parallel = new ArrayList<>(vehicles);
+        for (int i = 0; i < vehicles; i++) {
+            VehicleFactory.VehicleType type = TYPES[i % TYPES.length];
+            if (!script.supports(type)) {
+                type = fallback;
+            }
+            for (List<AbstractVehicle> fleet : Arrays.asList(interpreted, compiled, parallel)) {
+                switch (type) {
+                    case CAR:
+                        fleet.add(new Car("Toyota", "Corolla", 2023, 4));
+                        break;
+                    case MOTORCYCLE:
+                        fleet.add(new Motorcycle("Honda", "CBR", 2023, false));
+                        break;
+                    case TRUCK:
+                        fleet.add(new Truck("Volvo", "FH16", 2023, 40.0, 3));
+                        break;
+                    default:
+                        fleet.add(new ElectricCar("Tesla", "Model 3", 2023, 75.0, "Type 2"));
+                        break;
+                }
+            }
+        }
+
+        long interpretNanos = Long.MAX_VALUE;
+        long compiledNanos = Long.MAX_VALUE;
+        long parallelNanos = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            for (AbstractVehicle vehicle : interpreted) {
+                script.interpret(vehicle);
+            }
+            interpretNanos = Math.min(interpretNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (AbstractVehicle vehicle : compiled) {
+                script.execute(vehicle);
+            }
+            compiledNanos = Math.min(compiledNanos, System.nanoTime() - start);
+            start = System.nanoTime();
+            script.run(parallel);
+            parallelNanos = Math.min(parallelNanos, System.nanoTime() - start);
+        }
+
+        int mismatches = 0;
+        VehicleSnapshot expected = new VehicleSnapshot();
+        VehicleSnapshot actual = new VehicleSnapshot();
+        VehicleSnapshot actualParallel = new VehicleSnapshot();
+        for (int i = 0; i < vehicles; i++) {
+            interpreted.get(i).captureState(expected);
+            compiled.get(i).captureState(actual);
+            parallel.get(i).captureState(actualParallel);
+            if (!sameState(expected, actual) || !sameState(expected, actualParallel)) {
+                mismatches++;
+            }
+        }
+
+        double perScript = vehicles;
+        int[] steps = new int[TYPES.length];
+        for (VehicleFactory.VehicleType type : TYPES) {
+            steps[type.ordinal()] = script.supports(type) ? script.getStepCount(type) : -1;
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "{\"vehicles\":%d,\"rounds\":%d,\"commandsPerScript\":%d,\"stepsPerType\":%s,"
+                        + "\"interpretedNsPerScript\":%.1f,\"compiledNsPerScript\":%.1f,\"parallelNsPerScript\":%.1f,"
+                        + "\"interpretedCommandsPerSec\":%.0f,\"compiledCommandsPerSec\":%.0f,"
+                        + "\"parallelCommandsPerSec\":%.0f,\"speedup\":%.1f,\"parallelSpeedup\":%.1f,"
+                        + "\"parallelism\":%d,\"mismatches\":%d}",
+                vehicles, rounds, script.getCommandCount(), Arrays.toString(steps).replace(" ", ""),
+                interpretNanos / perScript, compiledNanos / perScript, parallelNanos / perScript,
+                script.getCommandCount() * perScript * 1e9 / interpretNanos,
+                script.getCommandCount() * perScript * 1e9 / compiledNanos,
+                script.getCommandCount() * perScript * 1e9 / parallelNanos,
+                (double) interpretNanos / compiledNanos, (double) interpretNanos / parallelNanos,
+                ForkJoinPool.getCommonPoolParallelism(), mismatches));
+    }
+
+    /**
+     * Exact for the discrete fields; fuel and battery levels may differ by rounding
+     */
+    private static boolean sameState(VehicleSnapshot expected, VehicleSnapshot actual) {
+        return expected.running == actual.running && expected.speed == actual.speed
+                && expected.currentGear == actual.currentGear && expected.mileage == actual.mileage
+                && expected.mileageSinceService == actual.mileageSinceService
+                && Math.abs(expected.fuelLevel - actual.fuelLevel) < 1e-6
+                && Math.abs(expected.batteryLevel - actual.batteryLevel) < 1e-6
+                && Math.abs(expected.currentCargo - actual.currentCargo) < 1e-6;
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * ECO MODE POLICY ENGINE:
+ * Switches eco mode on and off automatically across a fleet of electric vehicles.
+ * It demonstrates:
+ * 1. Observer Pattern: Vehicles report battery and speed changes, so only those vehicles are re-evaluated
+ * 2. Strategy Pattern: Rules are interchangeable objects evaluated in priority order
+ * 3. Hysteresis: Rules have a "keep" band between their on and off thresholds so vehicles don't flap
+ *
+ * Rules see the estimated range at the vehicle's eco-off efficiency, so switching eco mode
+ * never moves a vehicle across a range band by itself. Eco mode is switched under the
+ * vehicle's lock, like other writers (FleetRegistry.execute()).
+ *
+ * Usage:
+ *   EcoModePolicy policy = new EcoModePolicy();
+ *   policy.addRule(EcoModePolicy.batteryHysteresis(25, 40));
+ *   policy.register(tesla);
+ *   policy.evaluate(); // Call periodically
+ */
+public class EcoModePolicy {
+
+    /**
+     * What a rule wants to do with eco mode
+     */
+    public enum Decision {
+        ENABLE, DISABLE, KEEP
+    }
+
+    /**
+     * A single policy rule. Rules are asked in the order they were added
+     * and the first one that does not answer KEEP decides.
+     */
+    public interface Rule {
+        Decision evaluate(double batteryLevel, int estimatedRange, int speed);
+    }
+
+    /**
+     * Enable eco mode below lowPercent battery, disable it above highPercent
+     */
+    public static Rule batteryHysteresis(double lowPercent, double highPercent) {
+        if (lowPercent >= highPercent) {
+            throw new IllegalArgumentException("Low threshold must be below high threshold");
+        }
+        return (battery, range, speed) -> battery < lowPercent ? Decision.ENABLE
+                : battery > highPercent ? Decision.DISABLE : Decision.KEEP;
+    }
+
+    /**
+     * Enable eco mode when the estimated range drops below lowKm, disable it above highKm.
+     * The range is the one the vehicle would have with eco mode off (see referenceRange()).
+     */
+    public static Rule rangeHysteresis(int lowKm, int highKm) {
+        if (lowKm >= highKm) {
+            throw new IllegalArgumentException("Low threshold must be below high threshold");
+        }
+        return (battery, range, speed) -> range < lowKm ? Decision.ENABLE
+                : range > highKm ? Decision.DISABLE : Decision.KEEP;
+    }
+
+    /**
+     * Keep full performance while driving faster than the eco speed limit allows
+     */
+    public static Rule performanceAbove(int speedLimit) {
+        return (battery, range, speed) -> speed > speedLimit ? Decision.DISABLE : Decision.KEEP;
+    }
+
+    /**
+     * Per-vehicle registration. It is also the vehicle's observer, and its dirty flag
+     * makes sure a vehicle is queued at most once between two evaluation passes.
+     */
+    private final class Tracked implements IVehicleObserver {
+        private final AbstractVehicle vehicle;
+        private final IElectric electric;
+        private volatile int dirty;
+
+        Tracked(AbstractVehicle vehicle, IElectric electric) {
+            this.vehicle = vehicle;
+            this.electric = electric;
+        }
+
+        @Override
+        public void onStateChanged(AbstractVehicle changed, int changedFields) {
+            if ((changedFields & WATCHED_FIELDS) != 0) {
+                markDirty(this);
+            }
+        }
+    }
+
+    private static final int WATCHED_FIELDS = IVehicleObserver.BATTERY | IVehicleObserver.SPEED;
+    private static final AtomicIntegerFieldUpdater<Tracked> DIRTY =
+            AtomicIntegerFieldUpdater.newUpdater(Tracked.class, "dirty");
+
+    private final List<Rule> rules = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<AbstractVehicle, Tracked> tracked = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Tracked> pending = new ConcurrentLinkedQueue<>();
+    private final int batchSize;
+
+    public EcoModePolicy() {
+        this(4096);
+    }
+
+    /**
+     * @param batchSize Maximum number of vehicles evaluated per batch
+     */
+    public EcoModePolicy(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public void addRule(Rule rule) {
+        rules.add(rule);
+        // New rules may change the outcome for every vehicle
+        for (Tracked entry : tracked.values()) {
+            markDirty(entry);
+        }
+    }
+
+    /**
+     * Start managing an electric vehicle. It is evaluated on the next pass.
+     */
+    public <V extends AbstractVehicle & IElectric> void register(V vehicle) {
+        Tracked entry = new Tracked(vehicle, vehicle);
+        if (tracked.putIfAbsent(vehicle, entry) == null) {
+            vehicle.addObserver(entry);
+            markDirty(entry);
+        }
+    }
+
+    public void unregister(AbstractVehicle vehicle) {
+        Tracked entry = tracked.remove(vehicle);
+        if (entry != null) {
+            vehicle.removeObserver(entry);
+        }
+    }
+
+    public int getRegisteredCount() {
+        return tracked.size();
+    }
+
+    /**
+     * @return Number of vehicles waiting for evaluation
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Evaluates every vehicle whose battery or speed changed since the last pass.
+     * @return Number of vehicles whose eco mode was switched
+     */
+    public int evaluate() {
+        int switched = 0;
+        List<Tracked> batch = new ArrayList<>(Math.min(batchSize, 1024));
+        while (drain(batch) > 0) {
+            switched += batch.size() >= 1024
+                    ? (int) batch.parallelStream().filter(this::apply).count()
+                    : (int) batch.stream().filter(this::apply).count();
+            batch.clear();
+        }
+        return switched;
+    }
+
+    private int drain(List<Tracked> batch) {
+        Tracked entry;
+        while (batch.size() < batchSize && (entry = pending.poll()) != null) {
+            // Clear the flag before reading state so a concurrent change queues the vehicle again
+            entry.dirty = 0;
+            if (tracked.get(entry.vehicle) == entry) {
+                batch.add(entry);
+            }
+        }
+        return batch.size();
+    }
+
+    private boolean apply(Tracked entry) {
+        // Batches run on pool threads, so read and switch under the vehicle's lock like other writers
+        synchronized (entry.vehicle) {
+            IElectric electric = entry.electric;
+            double battery = electric.getBatteryLevel();
+            int range = referenceRange(entry);
+            int speed = entry.vehicle.getSpeed();
+
+            for (Rule rule : rules) {
+                Decision decision = rule.evaluate(battery, range, speed);
+                if (decision == Decision.KEEP) {
+                    continue;
+                }
+                boolean wantEco = decision == Decision.ENABLE;
+                if (wantEco != electric.isEcoMode()) {
+                    electric.toggleEcoMode();
+                    return true;
+                }
+                return false;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Estimated range at the efficiency the vehicle has with eco mode off. Eco mode adds
+     * 1 km/kWh, so with the actual range a narrow band would be crossed by the switch itself
+     * and the vehicle would flip back on its next battery change.
+     */
+    private static int referenceRange(Tracked entry) {
+        if (entry.vehicle instanceof ElectricCar) {
+            ElectricCar car = (ElectricCar) entry.vehicle;
+            double efficiency = car.isEcoMode() ? car.getEfficiency() - 1.0 : car.getEfficiency();
+            return (int) (car.getEnergyLevel() * efficiency);
+        }
+        return entry.electric.getEstimatedRange();
+    }
+
+    private void markDirty(Tracked entry) {
+        if (DIRTY.compareAndSet(entry, 0, 1)) {
+            pending.offer(entry);
+        }
+    }
+}
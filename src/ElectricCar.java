@@ -63,12 +63,17 @@ public class ElectricCar extends AbstractVehicle implements IElectric {
      */
     @Override
     public void start() {
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.START);
         if (!isRunning && currentBatteryLevel > 0) {
             isRunning = true;
-            System.out.println(getVehicleType() + " " + brand + " " + model + " has started silently.");
-        } else if (currentBatteryLevel <= 0) {
+            if (outputEnabled) {
+                System.out.println(getVehicleType() + " " + brand + " " + model + " has started silently.");
+            }
+            notifyObservers(IVehicleObserver.RUNNING);
+        } else if (currentBatteryLevel <= 0 && outputEnabled) {
             System.out.println("Cannot start - battery depleted!");
         }
+        FleetRecording.endOperation(event, this);
     }
 
     /**
@@ -76,19 +81,24 @@ public class ElectricCar extends AbstractVehicle implements IElectric {
      */
     @Override
     public void accelerate() {
-        if (isRunning && currentBatteryLevel > 0) {
-            int acceleration = ecoMode ? 8 : 12; // Eco mode limits acceleration
-            speed += acceleration;
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.ACCELERATE);
+        if (isRunning && currentBatteryLevel > ENERGY_EPSILON) {
+            speed += getAccelerationStep(); // Eco mode limits acceleration
             
-            double energyConsumption = ecoMode ? 0.15 : 0.25;
-            currentBatteryLevel -= energyConsumption;
+            currentBatteryLevel -= getEnergyPerKm();
             mileage += 1;
             mileageSinceService += 1;
+            moveForward(1);
             
-            System.out.println(getVehicleType() + " " + brand + " " + model + 
-                             " is accelerating smoothly. Current speed: " + speed + " km/h" +
-                             (ecoMode ? " (Eco Mode)" : ""));
+            if (outputEnabled) {
+                System.out.println(getVehicleType() + " " + brand + " " + model + 
+                                 " is accelerating smoothly. Current speed: " + speed + " km/h" +
+                                 (ecoMode ? " (Eco Mode)" : ""));
+            }
+            notifyObservers(IVehicleObserver.SPEED | IVehicleObserver.BATTERY
+                    | IVehicleObserver.MILEAGE | IVehicleObserver.SERVICE | IVehicleObserver.POSITION);
         }
+        FleetRecording.endOperation(event, this);
     }
 
     /**
@@ -96,21 +106,106 @@ public class ElectricCar extends AbstractVehicle implements IElectric {
      */
     @Override
     public void brake() {
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.BRAKE);
         if (speed > 0) {
             int oldSpeed = speed;
-            speed = Math.max(0, speed - 12);
+            speed = Math.max(0, speed - getBrakeStep());
             
             // Regenerative braking recovers some energy
             if (regenerativeBraking && oldSpeed > speed) {
-                double energyRecovered = (oldSpeed - speed) * 0.01;
+                double energyRecovered = (oldSpeed - speed) * getEnergyRecoveredPerKmh();
                 currentBatteryLevel = Math.min(batteryCapacity, currentBatteryLevel + energyRecovered);
-                System.out.println(getVehicleType() + " " + brand + " " + model + 
-                                 " is braking with energy recovery. Current speed: " + speed + " km/h");
+                if (outputEnabled) {
+                    System.out.println(getVehicleType() + " " + brand + " " + model + 
+                                     " is braking with energy recovery. Current speed: " + speed + " km/h");
+                }
+                notifyObservers(IVehicleObserver.SPEED | IVehicleObserver.BATTERY);
             } else {
-                System.out.println(getVehicleType() + " " + brand + " " + model + 
-                                 " is braking. Current speed: " + speed + " km/h");
+                if (outputEnabled) {
+                    System.out.println(getVehicleType() + " " + brand + " " + model + 
+                                     " is braking. Current speed: " + speed + " km/h");
+                }
+                notifyObservers(IVehicleObserver.SPEED);
             }
         }
+        FleetRecording.endOperation(event, this);
+    }
+
+    /**
+     * ENERGY MODEL: electric cars measure energy in kWh and recover some of it when braking
+     */
+    @Override
+    public double getEnergyPerKm() {
+        return ecoMode ? 0.15 : 0.25;
+    }
+
+    @Override
+    public double getEnergyLevel() {
+        return currentBatteryLevel;
+    }
+
+    @Override
+    public double getEnergyCapacity() {
+        return batteryCapacity;
+    }
+
+    @Override
+    public double getEnergyRecoveredPerKmh() {
+        return regenerativeBraking ? 0.01 : 0.0;
+    }
+
+    @Override
+    protected int getAccelerationStep() {
+        return ecoMode ? 8 : 12;
+    }
+
+    @Override
+    protected int getBrakeStep() {
+        return 12;
+    }
+
+    /**
+     * CLOSED-FORM FAST FORWARD for electric cars: drains the battery instead of fuel
+     * and recovers energy for the whole speed drop at once. Capping the battery once at
+     * the end gives the same result as capping after every brake step, because braking
+     * only ever adds energy.
+     */
+    @Override
+    public void fastForward(int accelerateSteps, int brakeSteps) {
+        if (accelerateSteps < 0 || brakeSteps < 0) {
+            throw new IllegalArgumentException("Step counts cannot be negative");
+        }
+        int changed = 0;
+
+        int steps = isRunning ? affordableSteps(currentBatteryLevel, getEnergyPerKm(), accelerateSteps) : 0;
+        if (steps > 0) {
+            speed += steps * getAccelerationStep();
+            currentBatteryLevel -= steps * getEnergyPerKm();
+            mileage += steps;
+            mileageSinceService += steps;
+            moveForward(steps);
+            changed |= IVehicleObserver.SPEED | IVehicleObserver.BATTERY
+                    | IVehicleObserver.MILEAGE | IVehicleObserver.SERVICE | IVehicleObserver.POSITION;
+        }
+
+        if (brakeSteps > 0 && speed > 0) {
+            int oldSpeed = speed;
+            speed = (int) Math.max(0, speed - (long) brakeSteps * getBrakeStep());
+            changed |= IVehicleObserver.SPEED;
+            if (regenerativeBraking) {
+                double energyRecovered = (oldSpeed - speed) * getEnergyRecoveredPerKmh();
+                currentBatteryLevel = Math.min(batteryCapacity, currentBatteryLevel + energyRecovered);
+                changed |= IVehicleObserver.BATTERY;
+            }
+        }
+
+        if (changed != 0) {
+            if (outputEnabled) {
+                System.out.println(getVehicleType() + " " + brand + " " + model + " fast-forwarded " + steps +
+                                   " km. Current speed: " + speed + " km/h");
+            }
+            notifyObservers(changed);
+        }
     }
 
     // Implementation of IElectric interface
@@ -121,12 +216,17 @@ public class ElectricCar extends AbstractVehicle implements IElectric {
 
     @Override
     public void charge(double chargingTime) {
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.CHARGE);
         double chargingRate = 50.0; // kWh per hour (example fast charging)
         double energyAdded = chargingTime * chargingRate;
         currentBatteryLevel = Math.min(batteryCapacity, currentBatteryLevel + energyAdded);
         
-        System.out.println("Charged for " + chargingTime + " hours. Battery level: " + 
-                         String.format("%.1f", getBatteryLevel()) + "%");
+        if (outputEnabled) {
+            System.out.println("Charged for " + chargingTime + " hours. Battery level: " + 
+                             String.format("%.1f", getBatteryLevel()) + "%");
+        }
+        notifyObservers(IVehicleObserver.BATTERY);
+        FleetRecording.endOperation(event, this);
     }
 
     @Override
@@ -147,8 +247,11 @@ public class ElectricCar extends AbstractVehicle implements IElectric {
         } else {
             efficiency -= 1.0;
         }
-        System.out.println("Eco mode " + (ecoMode ? "enabled" : "disabled") + 
-                         ". Efficiency: " + efficiency + " km/kWh");
+        if (outputEnabled) {
+            System.out.println("Eco mode " + (ecoMode ? "enabled" : "disabled") + 
+                             ". Efficiency: " + efficiency + " km/kWh");
+        }
+        notifyObservers(IVehicleObserver.ECO_MODE);
     }
 
     @Override
@@ -161,12 +264,39 @@ public class ElectricCar extends AbstractVehicle implements IElectric {
      */
     @Override
     public void performMaintenance() {
-        System.out.println("Performing electric vehicle maintenance on " + brand + " " + model);
-        System.out.println("- Checking battery health");
-        System.out.println("- Testing electric motor");
-        System.out.println("- Inspecting charging port");
-        System.out.println("- Updating software");
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.MAINTENANCE);
+        if (outputEnabled) {
+            System.out.println("Performing electric vehicle maintenance on " + brand + " " + model);
+            System.out.println("- Checking battery health");
+            System.out.println("- Testing electric motor");
+            System.out.println("- Inspecting charging port");
+            System.out.println("- Updating software");
+        }
         resetServiceIndicator();
+        FleetRecording.endOperation(event, this);
+    }
+
+    @Override
+    void captureState(VehicleSnapshot snapshot) {
+        super.captureState(snapshot);
+        snapshot.type = VehicleFactory.VehicleType.ELECTRIC_CAR;
+        snapshot.batteryCapacity = batteryCapacity;
+        snapshot.batteryLevel = currentBatteryLevel;
+        snapshot.ecoMode = ecoMode;
+        snapshot.chargingPortType = chargingPortType;
+        snapshot.efficiency = efficiency;
+        snapshot.regenerativeBraking = regenerativeBraking;
+    }
+
+    @Override
+    void restoreState(VehicleSnapshot snapshot) {
+        super.restoreState(snapshot);
+        batteryCapacity = snapshot.batteryCapacity;
+        currentBatteryLevel = snapshot.batteryLevel;
+        ecoMode = snapshot.ecoMode;
+        chargingPortType = snapshot.chargingPortType;
+        efficiency = snapshot.efficiency;
+        regenerativeBraking = snapshot.regenerativeBraking;
     }
 
     // Additional getters
@@ -0,0 +1,489 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CLUSTER COORDINATOR:
+ * Spreads users and vehicles over several FleetClusterNode processes and gives callers a
+ * single fleet API. It demonstrates:
+ * 1. Partitioning: ConsistentHashRing maps vehicle ids and user emails to nodes
+ * 2. Scatter-gather: Fleet-wide queries are sent to every node first, then all answers
+ *    are read and merged, so the nodes work in parallel
+ * 3. Compact transport: ClusterProtocol frames over blocking NIO loopback sockets
+ *
+ * Usage:
+ *   List<Process> nodes = FleetCluster.launchLocal(4, 7400);
+ *   FleetCluster cluster = FleetCluster.connectLocal(4, 7400);
+ *   cluster.addUser(user);
+ *   cluster.addVehicle(vehicle, user.getEmail());
+ *   Map<VehicleFactory.VehicleType, Integer> counts = cluster.countByType();
+ */
+public class FleetCluster implements AutoCloseable {
+    private static final int VIRTUAL_NODES = 128;
+
+    private final ClusterProtocol.Connection[] nodes;
+    private final ConsistentHashRing ring;
+    private final VehicleSnapshot scratch = new VehicleSnapshot();
+
+    /**
+     * Fastest vehicle found by a scatter-gather query
+     */
+    public static class Fastest {
+        public final int maxSpeed;
+        public final VehicleSnapshot vehicle;
+
+        Fastest(int maxSpeed, VehicleSnapshot vehicle) {
+            this.maxSpeed = maxSpeed;
+            this.vehicle = vehicle;
+        }
+    }
+
+    /**
+     * Connects to every node, retrying for a few seconds while freshly launched nodes start up
+     */
+    public FleetCluster(List<InetSocketAddress> addresses) throws IOException, InterruptedException {
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs at least one node");
+        }
+        this.nodes = new ClusterProtocol.Connection[addresses.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new ClusterProtocol.Connection(connect(addresses.get(i)));
+        }
+        this.ring = new ConsistentHashRing(nodes.length, VIRTUAL_NODES);
+    }
+
+    /**
+     * Connects to nodeCount nodes listening on consecutive loopback ports
+     */
+    public static FleetCluster connectLocal(int nodeCount, int basePort) throws IOException, InterruptedException {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), basePort + i));
+        }
+        return new FleetCluster(addresses);
+    }
+
+    private static SocketChannel connect(InetSocketAddress address) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return SocketChannel.open(address);
+            } catch (ConnectException e) {
+                if (attempt >= 100) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Starts nodeCount FleetClusterNode JVMs on consecutive ports, using this JVM's classpath
+     */
+    public static List<Process> launchLocal(int nodeCount, int basePort) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classpath = System.getProperty("java.class.path");
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", classpath, "FleetClusterNode",
+                    "--port", String.valueOf(basePort + i));
+            builder.inheritIO();
+            processes.add(builder.start());
+        }
+        return processes;
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    public int nodeForVehicle(long id) {
+        return ring.nodeFor(id);
+    }
+
+    public int nodeForUser(String email) {
+        return ring.nodeFor(email.toLowerCase(Locale.ROOT));
+    }
+
+    public synchronized void addUser(User user) throws IOException {
+        ClusterProtocol.Connection node = nodes[nodeForUser(user.getEmail())];
+        node.begin(ClusterProtocol.PUT_USER);
+        ClusterProtocol.putString(node, user.getName());
+        ClusterProtocol.putString(node, user.getEmail());
+        ClusterProtocol.putString(node, user.getPasswordHash());
+        ClusterProtocol.putString(node, user.hasValidLicense() ? user.getLicenseNumber() : "");
+        node.send();
+        expectOk(node.receive());
+    }
+
+    /**
+     * @return null if the user doesn't exist on its node, otherwise whether it has a valid license
+     */
+    public synchronized Boolean hasValidLicense(String email) throws IOException {
+        ClusterProtocol.Connection node = nodes[nodeForUser(email)];
+        node.begin(ClusterProtocol.GET_USER);
+        ClusterProtocol.putString(node, email.toLowerCase(Locale.ROOT));
+        node.send();
+        ByteBuffer in = node.receive();
+        if (in.get(in.position()) == ClusterProtocol.NOT_FOUND) {
+            return null;
+        }
+        expectOk(in);
+        return in.get() != 0;
+    }
+
+    /**
+     * Places a vehicle on its node, optionally owned by a user that may live on another node
+     * @return false if the owner is unknown or doesn't have a valid license
+     */
+    public synchronized boolean addVehicle(AbstractVehicle vehicle, String ownerEmail) throws IOException {
+        if (ownerEmail != null && !Boolean.TRUE.equals(hasValidLicense(ownerEmail))) {
+            return false;
+        }
+        ClusterProtocol.Connection node = nodes[nodeForVehicle(vehicle.getId())];
+        node.begin(ClusterProtocol.PUT_VEHICLE);
+        ClusterProtocol.putString(node, ownerEmail == null ? "" : ownerEmail.toLowerCase(Locale.ROOT));
+        synchronized (vehicle) {
+            vehicle.captureState(scratch);
+        }
+        ClusterProtocol.putVehicle(node, scratch);
+        node.send();
+        expectOk(node.receive());
+        return true;
+    }
+
+    /**
+     * Runs a command on the node that owns the vehicle
+     * @return The vehicle state after the command
+     */
+    public synchronized VehicleSnapshot execute(long vehicleId, FleetRegistry.Command command, double argument)
+            throws IOException {
+        ClusterProtocol.Connection node = nodes[nodeForVehicle(vehicleId)];
+        node.begin(ClusterProtocol.COMMAND).putLong(vehicleId).put((byte) command.ordinal()).putDouble(argument);
+        node.send();
+        ByteBuffer in = node.receive();
+        expectOk(in);
+        VehicleSnapshot result = new VehicleSnapshot();
+        ClusterProtocol.getVehicle(node, in, result);
+        return result;
+    }
+
+    /**
+     * Scatter-gather: highest max speed across all nodes, or null if the fleet is empty
+     */
+    public synchronized Fastest getFastestVehicle() throws IOException {
+        broadcast(ClusterProtocol.QUERY_FASTEST);
+        ByteBuffer[] replies = gather();
+        Fastest fastest = null;
+        RuntimeException failure = null;
+        for (int n = 0; n < nodes.length; n++) {
+            ByteBuffer in = replies[n];
+            if (in.get(in.position()) == ClusterProtocol.NOT_FOUND) {
+                continue;
+            }
+            try {
+                expectOk(in);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                continue;
+            }
+            // Decoded even if another node failed: it registers the strings that node added to
+            // this connection's dictionary, which later replies refer to
+            int maxSpeed = in.getInt();
+            VehicleSnapshot vehicle = new VehicleSnapshot();
+            ClusterProtocol.getVehicle(nodes[n], in, vehicle);
+            if (fastest == null || maxSpeed > fastest.maxSpeed) {
+                fastest = new Fastest(maxSpeed, vehicle);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return fastest;
+    }
+
+    /**
+     * Scatter-gather: ids of every vehicle that needs service, sorted
+     */
+    public synchronized long[] getVehiclesNeedingService() throws IOException {
+        broadcast(ClusterProtocol.QUERY_NEEDS_SERVICE);
+        long[] ids = new long[0];
+        for (ByteBuffer in : gather()) {
+            expectOk(in);
+            int count = in.getInt();
+            int offset = ids.length;
+            ids = Arrays.copyOf(ids, offset + count);
+            for (int i = 0; i < count; i++) {
+                ids[offset + i] = in.getLong();
+            }
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Scatter-gather: number of vehicles of each type across the fleet
+     */
+    public synchronized Map<VehicleFactory.VehicleType, Integer> countByType() throws IOException {
+        Map<VehicleFactory.VehicleType, Integer> counts = new EnumMap<>(VehicleFactory.VehicleType.class);
+        for (VehicleFactory.VehicleType type : VehicleFactory.VehicleType.values()) {
+            counts.put(type, 0);
+        }
+        broadcast(ClusterProtocol.QUERY_COUNTS);
+        for (ByteBuffer in : gather()) {
+            expectOk(in);
+            int types = in.get();
+            for (int i = 0; i < types; i++) {
+                counts.merge(VehicleFactory.VehicleType.values()[i], in.getInt(), Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Per-node vehicle and user counts, useful to check how evenly the ring spreads the fleet
+     */
+    public synchronized int[][] getNodeLoads() throws IOException {
+        broadcast(ClusterProtocol.QUERY_COUNTS);
+        ByteBuffer[] replies = gather();
+        int[][] loads = new int[nodes.length][2];
+        for (int n = 0; n < nodes.length; n++) {
+            ByteBuffer in = replies[n];
+            expectOk(in);
+            int types = in.get();
+            for (int i = 0; i < types; i++) {
+                loads[n][0] += in.getInt();
+            }
+            loads[n][1] = in.getInt();
+        }
+        return loads;
+    }
+
+    /**
+     * Asks every node process to exit
+     */
+    public synchronized void shutdownNodes() throws IOException {
+        broadcast(ClusterProtocol.SHUTDOWN);
+        for (ByteBuffer in : gather()) {
+            expectOk(in);
+        }
+    }
+
+    private void broadcast(byte opcode) throws IOException {
+        for (ClusterProtocol.Connection node : nodes) {
+            node.begin(opcode);
+            node.send();
+        }
+    }
+
+    /**
+     * Reads the reply of every node before any of them is looked at, so an ERROR from one node
+     * can't leave the other replies queued, to be misread as answers to later requests.
+     * Each reply stays valid until the next receive() on its connection.
+     */
+    private ByteBuffer[] gather() throws IOException {
+        ByteBuffer[] replies = new ByteBuffer[nodes.length];
+        IOException failure = null;
+        for (int n = 0; n < nodes.length; n++) {
+            try {
+                replies[n] = nodes[n].receive();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return replies;
+    }
+
+    /**
+     * Compares the fields commands change; the returned state went through the node's codec
+     */
+    private static boolean sameState(VehicleSnapshot expected, VehicleSnapshot actual) {
+        return expected.id == actual.id && expected.running == actual.running && expected.speed == actual.speed
+                && expected.currentGear == actual.currentGear && expected.mileage == actual.mileage
+                && expected.mileageSinceService == actual.mileageSinceService
+                && expected.fuelLevel == actual.fuelLevel && (expected.type != VehicleFactory.VehicleType.ELECTRIC_CAR
+                || expected.batteryLevel == actual.batteryLevel);
+    }
+
+    private static void expectOk(ByteBuffer in) {
+        byte status = in.get();
+        if (status == ClusterProtocol.ERROR) {
+            throw new IllegalArgumentException(ClusterProtocol.getString(in));
+        } else if (status != ClusterProtocol.OK) {
+            throw new IllegalStateException("Unexpected cluster status: " + status);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (ClusterProtocol.Connection node : nodes) {
+            node.close();
+        }
+    }
+
+    /**
+     * Local demo: [--nodes 4] [--base-port 7400] [--vehicles N] [--users U] [--commands C]
+     * Launches the node JVMs, loads a simulated fleet and drives it with C commands sent to
+     * the owning nodes. Every command also runs on a single-node FleetRegistry in this JVM,
+     * and the states the nodes return and the fleet-wide query answers are checked against it.
+     */
+    public static void main(String[] args) throws Exception {
+        int nodeCount = 4;
+        int basePort = 7400;
+        int vehicles = 10_000;
+        int userCount = 100;
+        int commands = 20_000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--cluster":
+                    break;
+                case "--nodes":
+                    nodeCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--base-port":
+                    basePort = Integer.parseInt(args[++i]);
+                    break;
+                case "--vehicles":
+                    vehicles = Integer.parseInt(args[++i]);
+                    break;
+                case "--users":
+                    userCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--commands":
+                    commands = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        AbstractVehicle.setOutputEnabled(false);
+        List<Process> processes = launchLocal(nodeCount, basePort);
+        try (FleetCluster cluster = connectLocal(nodeCount, basePort)) {
+            long start = System.nanoTime();
+            List<User> users = new ArrayList<>();
+            for (int i = 0; i < userCount; i++) {
+                User user = i % 10 == 0
+                        ? new User("Driver " + i, "driver" + i + "@fleet.com", "secret" + i)
+                        : new User("Driver " + i, "driver" + i + "@fleet.com", "secret" + i, "LIC-" + (100000 + i));
+                cluster.addUser(user);
+                users.add(user);
+            }
+            FleetSimulation simulation = new FleetSimulation();
+            simulation.setVehicleCount(vehicles);
+            List<AbstractVehicle> fleet = simulation.buildFleet();
+            // Age every fifth vehicle to around the service interval, so that the drive below
+            // moves vehicles across it and maintenance moves them back
+            VehicleSnapshot aged = new VehicleSnapshot();
+            for (int i = 0; i < fleet.size(); i += 5) {
+                AbstractVehicle vehicle = fleet.get(i);
+                vehicle.captureState(aged);
+                aged.mileage += 9_990;
+                aged.mileageSinceService = 9_990 + i % 20;
+                vehicle.restoreState(aged);
+            }
+            int placed = 0;
+            int rejected = 0;
+            for (int i = 0; i < fleet.size(); i++) {
+                User owner = users.isEmpty() ? null : users.get(i % users.size());
+                if (cluster.addVehicle(fleet.get(i), owner == null ? null : owner.getEmail())) {
+                    placed++;
+                } else {
+                    rejected++;
+                }
+            }
+            double loadMillis = (System.nanoTime() - start) / 1e6;
+
+            // Single-node reference: the accepted vehicles, driven with the same commands in this JVM
+            FleetRegistry single = new FleetRegistry();
+            List<AbstractVehicle> accepted = new ArrayList<>();
+            for (int i = 0; i < fleet.size(); i++) {
+                User owner = users.isEmpty() ? null : users.get(i % users.size());
+                if (owner == null || owner.hasValidLicense()) {
+                    accepted.add(fleet.get(i));
+                    single.addVehicle(fleet.get(i), null);
+                }
+            }
+            FleetRegistry.Command[] drive = {
+                    FleetRegistry.Command.START, FleetRegistry.Command.ACCELERATE, FleetRegistry.Command.ACCELERATE,
+                    FleetRegistry.Command.ACCELERATE, FleetRegistry.Command.GEAR, FleetRegistry.Command.BRAKE,
+                    FleetRegistry.Command.REFUEL, FleetRegistry.Command.STOP};
+            SplittableRandom random = new SplittableRandom(42);
+            VehicleSnapshot expected = new VehicleSnapshot();
+            int stateMismatches = 0;
+            start = System.nanoTime();
+            for (int c = 0; c < commands && !accepted.isEmpty(); c++) {
+                long id = accepted.get(random.nextInt(accepted.size())).getId();
+                // Maintenance is rare, so vehicles that cross the service interval mostly stay over it
+                FleetRegistry.Command command = random.nextInt(50) == 0
+                        ? FleetRegistry.Command.MAINTENANCE : drive[random.nextInt(drive.length)];
+                double argument = command == FleetRegistry.Command.GEAR ? random.nextInt(6)
+                        : command == FleetRegistry.Command.REFUEL ? 5 : 0;
+                VehicleSnapshot actual = cluster.execute(id, command, argument);
+                single.execute(id, command, argument).captureState(expected);
+                if (!sameState(expected, actual)) {
+                    stateMismatches++;
+                }
+            }
+            double commandMicros = (System.nanoTime() - start) / 1e3 / Math.max(1, commands);
+
+            start = System.nanoTime();
+            Fastest fastest = cluster.getFastestVehicle();
+            long[] needService = cluster.getVehiclesNeedingService();
+            Map<VehicleFactory.VehicleType, Integer> counts = cluster.countByType();
+            double queryMillis = (System.nanoTime() - start) / 1e6;
+
+            // Same answers computed by the single node
+            int localFastest = accepted.stream().mapToInt(AbstractVehicle::getMaxSpeed).max().orElse(0);
+            long[] localNeedService = accepted.stream().filter(AbstractVehicle::needsService)
+                    .mapToLong(AbstractVehicle::getId).sorted().toArray();
+            Map<VehicleFactory.VehicleType, Integer> localCounts = new EnumMap<>(VehicleFactory.VehicleType.class);
+            for (VehicleFactory.VehicleType type : VehicleFactory.VehicleType.values()) {
+                localCounts.put(type, 0);
+            }
+            for (AbstractVehicle vehicle : accepted) {
+                localCounts.merge(VehicleFactory.typeOf(vehicle), 1, Integer::sum);
+            }
+            boolean consistent = stateMismatches == 0
+                    && (fastest == null ? 0 : fastest.maxSpeed) == localFastest
+                    && Arrays.equals(needService, localNeedService)
+                    && counts.equals(localCounts);
+
+            StringBuilder loads = new StringBuilder();
+            for (int[] load : cluster.getNodeLoads()) {
+                loads.append(loads.length() == 0 ? "" : ",").append("[").append(load[0]).append(",").append(load[1]).append("]");
+            }
+            System.out.println(String.format(Locale.ROOT,
+                    "{\"nodes\":%d,\"vehiclesPlaced\":%d,\"vehiclesRejected\":%d,\"loadMillis\":%.1f,"
+                            + "\"commands\":%d,\"commandMicros\":%.1f,\"stateMismatches\":%d,\"queryMillis\":%.2f,\"fastestMaxSpeed\":%d,\"needService\":%d,\"countsByType\":\"%s\","
+                            + "\"nodeLoads\":[%s],\"consistent\":%b}",
+                    nodeCount, placed, rejected, loadMillis, commands, commandMicros, stateMismatches, queryMillis,
+                    fastest == null ? 0 : fastest.maxSpeed, needService.length, counts, loads, consistent));
+            cluster.shutdownNodes();
+        } finally {
+            for (Process process : processes) {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CLUSTER NODE:
+ * One partition of the fleet, running in its own JVM. It holds the users and vehicles that
+ * ConsistentHashRing assigns to it and answers ClusterProtocol requests on a loopback port.
+ *
+ * A vehicle's owner may live on another node, so the node only keeps the owner's email;
+ * the coordinator (FleetCluster) checks the license on the owner's node before placing it.
+ *
+ * Usage: java -cp src FleetClusterNode --port 7400
+ */
+public class FleetClusterNode {
+    private static final FleetRegistry.Command[] COMMANDS = FleetRegistry.Command.values();
+
+    private final FleetRegistry registry = new FleetRegistry();
+    private final ConcurrentHashMap<Long, String> ownerEmails = new ConcurrentHashMap<>();
+    private final VehicleSnapshot scratch = new VehicleSnapshot(); // Only used under lock in reply()
+    private ServerSocketChannel server;
+
+    public FleetRegistry getRegistry() {
+        return registry;
+    }
+
+    public String getOwnerEmail(long vehicleId) {
+        return ownerEmails.get(vehicleId);
+    }
+
+    /**
+     * Binds to the loopback interface and serves connections until SHUTDOWN is received
+     */
+    public void serve(int port) throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        try {
+            while (true) {
+                SocketChannel channel = server.accept();
+                Thread thread = new Thread(() -> handle(channel), "cluster-connection");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (ClosedChannelException e) {
+            // Closed by SHUTDOWN
+        }
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    private void handle(SocketChannel channel) {
+        try (ClusterProtocol.Connection connection = new ClusterProtocol.Connection(channel)) {
+            while (true) {
+                ByteBuffer request = connection.receive();
+                byte opcode = request.get();
+                try {
+                    reply(connection, opcode, request);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    connection.begin(ClusterProtocol.ERROR);
+                    ClusterProtocol.putString(connection, e.getMessage());
+                } catch (BufferUnderflowException e) {
+                    // A malformed frame fails its own request, not the connection
+                    connection.begin(ClusterProtocol.ERROR);
+                    ClusterProtocol.putString(connection, "Truncated request for opcode " + opcode);
+                }
+                connection.send();
+                if (opcode == ClusterProtocol.SHUTDOWN) {
+                    server.close();
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // Coordinator disconnected
+        } catch (IOException e) {
+            System.err.println("Cluster connection failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes one request and writes the response into the connection's send buffer
+     */
+    private void reply(ClusterProtocol.Connection connection, byte opcode, ByteBuffer in) {
+        switch (opcode) {
+            case ClusterProtocol.PUT_USER: {
+                String name = ClusterProtocol.getString(in);
+                String email = ClusterProtocol.getString(in);
+                String passwordHash = ClusterProtocol.getString(in);
+                String license = ClusterProtocol.getString(in);
+                registry.addUser(User.fromPasswordHash(name, email, passwordHash, license.isEmpty() ? null : license));
+                connection.begin(ClusterProtocol.OK);
+                break;
+            }
+            case ClusterProtocol.GET_USER: {
+                User user = registry.getUser(ClusterProtocol.getString(in));
+                if (user == null) {
+                    connection.begin(ClusterProtocol.NOT_FOUND);
+                } else {
+                    connection.begin(ClusterProtocol.OK).put((byte) (user.hasValidLicense() ? 1 : 0));
+                }
+                break;
+            }
+            case ClusterProtocol.PUT_VEHICLE: {
+                String ownerEmail = ClusterProtocol.getString(in);
+                AbstractVehicle vehicle;
+                synchronized (scratch) {
+                    ClusterProtocol.getVehicle(connection, in, scratch);
+                    vehicle = VehicleFactory.createFromSnapshot(scratch);
+                }
+                registry.addVehicle(vehicle, null);
+                if (!ownerEmail.isEmpty()) {
+                    ownerEmails.put(vehicle.getId(), ownerEmail);
+                }
+                connection.begin(ClusterProtocol.OK);
+                break;
+            }
+            case ClusterProtocol.COMMAND: {
+                long id = in.getLong();
+                int ordinal = in.get();
+                if (ordinal < 0 || ordinal >= COMMANDS.length) {
+                    throw new IllegalArgumentException("Unknown command ordinal: " + ordinal);
+                }
+                FleetRegistry.Command command = COMMANDS[ordinal];
+                double argument = in.getDouble();
+                AbstractVehicle vehicle = registry.execute(id, command, argument);
+                connection.begin(ClusterProtocol.OK);
+                putState(connection, vehicle);
+                break;
+            }
+            case ClusterProtocol.QUERY_FASTEST: {
+                AbstractVehicle fastest = null;
+                for (AbstractVehicle vehicle : registry.getVehicles()) {
+                    if (fastest == null || vehicle.getMaxSpeed() > fastest.getMaxSpeed()) {
+                        fastest = vehicle;
+                    }
+                }
+                if (fastest == null) {
+                    connection.begin(ClusterProtocol.NOT_FOUND);
+                } else {
+                    connection.begin(ClusterProtocol.OK).putInt(fastest.getMaxSpeed());
+                    putState(connection, fastest);
+                }
+                break;
+            }
+            case ClusterProtocol.QUERY_NEEDS_SERVICE: {
+                ByteBuffer out = connection.begin(ClusterProtocol.OK);
+                int countPosition = out.position();
+                out.putInt(0);
+                int count = 0;
+                for (AbstractVehicle vehicle : registry.getVehicles()) {
+                    if (vehicle.needsService()) {
+                        out = connection.ensure(8);
+                        out.putLong(vehicle.getId());
+                        count++;
+                    }
+                }
+                out.putInt(countPosition, count);
+                break;
+            }
+            case ClusterProtocol.QUERY_COUNTS: {
+                int[] counts = new int[VehicleFactory.VehicleType.values().length];
+                for (AbstractVehicle vehicle : registry.getVehicles()) {
+                    counts[VehicleFactory.typeOf(vehicle).ordinal()]++;
+                }
+                ByteBuffer out = connection.begin(ClusterProtocol.OK);
+                out.put((byte) counts.length);
+                for (int count : counts) {
+                    out.putInt(count);
+                }
+                out.putInt(registry.getUsers().size());
+                break;
+            }
+            case ClusterProtocol.SHUTDOWN:
+                connection.begin(ClusterProtocol.OK);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        }
+    }
+
+    private void putState(ClusterProtocol.Connection connection, AbstractVehicle vehicle) {
+        synchronized (scratch) {
+            synchronized (vehicle) {
+                vehicle.captureState(scratch);
+            }
+            ClusterProtocol.putVehicle(connection, scratch);
+        }
+    }
+
+    /**
+     * Standalone node: --port P
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 7400;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        AbstractVehicle.setOutputEnabled(false);
+        new FleetClusterNode().serve(port);
+    }
+}
@@ -0,0 +1,446 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EMBEDDED HTTP API:
+ * Exposes a FleetRegistry over HTTP using the JDK's built-in com.sun.net.httpserver.
+ *
+ * Endpoints:
+ *   GET  /users                         List users
+ *   POST /users                         Create a user (form: name, email, password[, license])
+ *   GET  /vehicles[?ids=1,2,3]          List all vehicles, or a batch by id
+ *   GET  /vehicles/{id}                 One vehicle
+ *   POST /vehicles                      Create a vehicle (form: type, brand, model, year[, owner])
+ *   POST /vehicles/{id}/{command}       Run a command, e.g. /vehicles/7/refuel?amount=20
+ *   POST /commands                      Batch: one "id command [amount]" per line in the body
+ *
+ * Responses are JSON. Vehicle responses are also available as compact binary records
+ * with "Accept: application/octet-stream" or "?format=bin" (see writeBinary()).
+ */
+public class FleetHttpServer {
+    static final String BINARY_TYPE = "application/octet-stream";
+    static final int BINARY_RECORD_SIZE = 34;
+
+    private final FleetRegistry registry;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FleetHttpServer(FleetRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Starts the server on the given port (0 picks a free port)
+     * @param threads Number of request handler threads
+     */
+    public void start(int port, int threads) throws IOException {
+        // Small responses must not wait for Nagle's algorithm; read once when the server classes load
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/users", this::handleUsers);
+        server.createContext("/vehicles", this::handleVehicles);
+        server.createContext("/commands", this::handleCommands);
+        server.start();
+    }
+
+    /**
+     * Standalone server: [--port 8080] [--threads K] [--vehicles N]
+     * Seeds the registry with N simulated vehicles and serves until the process is stopped.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        int vehicles = 1000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--serve":
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--vehicles":
+                    vehicles = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        AbstractVehicle.setOutputEnabled(false);
+        FleetRegistry registry = new FleetRegistry();
+        FleetSimulation simulation = new FleetSimulation();
+        simulation.setVehicleCount(vehicles);
+        for (AbstractVehicle vehicle : simulation.buildFleet()) {
+            registry.addVehicle(vehicle, null);
+        }
+
+        FleetHttpServer server = new FleetHttpServer(registry);
+        server.start(port, threads);
+        System.out.println("Fleet API listening on port " + server.getPort() + " with " + vehicles + " vehicles");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ==========================================
+    // HANDLERS
+    // ==========================================
+
+    private void handleUsers(HttpExchange exchange) throws IOException {
+        try {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                StringBuilder json = new StringBuilder("[");
+                for (User user : registry.getUsers()) {
+                    if (json.length() > 1) {
+                        json.append(',');
+                    }
+                    appendUser(json, user);
+                }
+                sendJson(exchange, 200, json.append(']').toString());
+            } else if ("POST".equals(exchange.getRequestMethod())) {
+                Map<String, String> form = parseForm(readBody(exchange));
+                String license = form.get("license");
+                User user = license == null
+                        ? new User(form.get("name"), form.get("email"), form.get("password"))
+                        : new User(form.get("name"), form.get("email"), form.get("password"), license);
+                registry.addUser(user);
+                StringBuilder json = new StringBuilder();
+                appendUser(json, user);
+                sendJson(exchange, 201, json.toString());
+            } else {
+                sendError(exchange, 405, "Method not allowed");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        }
+    }
+
+    private void handleVehicles(HttpExchange exchange) throws IOException {
+        try {
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if (parts.length == 2 && "GET".equals(method)) {
+                String ids = query.get("ids");
+                Collection<AbstractVehicle> vehicles = ids == null ? registry.getVehicles() : registry.getVehicles(parseIds(ids));
+                sendVehicles(exchange, vehicles, query);
+            } else if (parts.length == 2 && "POST".equals(method)) {
+                Map<String, String> form = parseForm(readBody(exchange));
+                AbstractVehicle vehicle = VehicleFactory.createVehicle(
+                        VehicleFactory.VehicleType.valueOf(required(form, "type").toUpperCase(Locale.ROOT)),
+                        required(form, "brand"), required(form, "model"), Integer.parseInt(required(form, "year")));
+                User owner = form.containsKey("owner") ? registry.getUser(form.get("owner")) : null;
+                if (form.containsKey("owner") && owner == null) {
+                    sendError(exchange, 404, "Unknown owner: " + form.get("owner"));
+                } else if (!registry.addVehicle(vehicle, owner)) {
+                    sendError(exchange, 403, "Owner doesn't have a valid license");
+                } else {
+                    sendVehicle(exchange, vehicle, query);
+                }
+            } else if (parts.length == 3 && "GET".equals(method)) {
+                AbstractVehicle vehicle = registry.getVehicle(Long.parseLong(parts[2]));
+                if (vehicle == null) {
+                    sendError(exchange, 404, "Unknown vehicle: " + parts[2]);
+                } else {
+                    sendVehicle(exchange, vehicle, query);
+                }
+            } else if (parts.length == 4 && "POST".equals(method)) {
+                readBody(exchange);
+                AbstractVehicle vehicle = registry.execute(Long.parseLong(parts[2]),
+                        FleetRegistry.Command.parse(parts[3]), parseAmount(query.get("amount")));
+                sendVehicle(exchange, vehicle, query);
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        }
+    }
+
+    /**
+     * Batch endpoint: executes every line of the body and returns one result per line
+     */
+    private void handleCommands(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "Method not allowed");
+            return;
+        }
+        String body = readBody(exchange);
+        Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+        boolean binary = wantsBinary(exchange, query);
+
+        StringBuilder json = new StringBuilder("[");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteBuffer record = ByteBuffer.allocate(BINARY_RECORD_SIZE);
+        for (String line : body.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            AbstractVehicle vehicle = null;
+            String error = null;
+            try {
+                if (fields.length < 2) {
+                    throw new IllegalArgumentException("Expected: id command [amount]");
+                }
+                vehicle = registry.execute(Long.parseLong(fields[0]), FleetRegistry.Command.parse(fields[1]),
+                        fields.length > 2 ? parseAmount(fields[2]) : 0);
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+
+            if (binary) {
+                // Failed commands are reported as a record with id -1
+                record.clear();
+                if (vehicle != null) {
+                    writeBinary(record, vehicle);
+                } else {
+                    record.putLong(-1L);
+                    record.position(BINARY_RECORD_SIZE);
+                }
+                bytes.write(record.array(), 0, BINARY_RECORD_SIZE);
+            } else {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                if (vehicle != null) {
+                    appendVehicle(json, vehicle);
+                } else {
+                    json.append("{\"error\":\"").append(escape(error)).append("\"}");
+                }
+            }
+        }
+
+        if (binary) {
+            send(exchange, 200, BINARY_TYPE, bytes.toByteArray());
+        } else {
+            sendJson(exchange, 200, json.append(']').toString());
+        }
+    }
+
+    // ==========================================
+    // ENCODING
+    // ==========================================
+
+    /**
+     * One vehicle resource (/vehicles/{id}, a created vehicle or a command result): a bare object
+     */
+    private void sendVehicle(HttpExchange exchange, AbstractVehicle vehicle,
+                             Map<String, String> query) throws IOException {
+        if (wantsBinary(exchange, query)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BINARY_RECORD_SIZE);
+            writeBinary(buffer, vehicle);
+            send(exchange, 200, BINARY_TYPE, buffer.array());
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        appendVehicle(json, vehicle);
+        sendJson(exchange, 200, json.toString());
+    }
+
+    /**
+     * The vehicle collection (/vehicles, /vehicles?ids=...): always an array, even with one match
+     */
+    private void sendVehicles(HttpExchange exchange, Collection<AbstractVehicle> vehicles,
+                              Map<String, String> query) throws IOException {
+        // The registry view is live: a vehicle added while we write must not overflow the buffer
+        List<AbstractVehicle> copy = new ArrayList<>(vehicles);
+        if (wantsBinary(exchange, query)) {
+            ByteBuffer buffer = ByteBuffer.allocate(copy.size() * BINARY_RECORD_SIZE);
+            for (AbstractVehicle vehicle : copy) {
+                writeBinary(buffer, vehicle);
+            }
+            send(exchange, 200, BINARY_TYPE, buffer.array());
+            return;
+        }
+
+        StringBuilder json = new StringBuilder("[");
+        for (AbstractVehicle vehicle : copy) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            appendVehicle(json, vehicle);
+        }
+        sendJson(exchange, 200, json.append(']').toString());
+    }
+
+    /**
+     * Binary vehicle record (big-endian, 34 bytes):
+     * id (8), type ordinal (1), running (1), speed (4), energy level (8), mileage (4),
+     * mileage since service (4), max speed (4). Read under the vehicle's lock so the
+     * record is consistent.
+     */
+    static void writeBinary(ByteBuffer buffer, AbstractVehicle vehicle) {
+        synchronized (vehicle) {
+            buffer.putLong(vehicle.getId());
+            buffer.put((byte) VehicleFactory.typeOf(vehicle).ordinal());
+            buffer.put((byte) (vehicle.isRunning() ? 1 : 0));
+            buffer.putInt(vehicle.getSpeed());
+            buffer.putDouble(vehicle.getEnergyLevel());
+            buffer.putInt(vehicle.getMileage());
+            buffer.putInt(vehicle.getMileageSinceService());
+            buffer.putInt(vehicle.getMaxSpeed());
+        }
+    }
+
+    /**
+     * Read under the vehicle's lock, like writeBinary(), so the object is consistent
+     */
+    private static void appendVehicle(StringBuilder json, AbstractVehicle vehicle) {
+        synchronized (vehicle) {
+            json.append("{\"id\":").append(vehicle.getId())
+                    .append(",\"type\":\"").append(vehicle.getVehicleType())
+                    .append("\",\"brand\":\"").append(escape(vehicle.getBrand()))
+                    .append("\",\"model\":\"").append(escape(vehicle.getModel()))
+                    .append("\",\"year\":").append(vehicle.getYear())
+                    .append(",\"running\":").append(vehicle.isRunning())
+                    .append(",\"speed\":").append(vehicle.getSpeed())
+                    .append(",\"maxSpeed\":").append(vehicle.getMaxSpeed())
+                    .append(",\"energy\":").append(String.format(Locale.ROOT, "%.2f", vehicle.getEnergyLevel()))
+                    .append(",\"energyCapacity\":").append(String.format(Locale.ROOT, "%.2f", vehicle.getEnergyCapacity()))
+                    .append(",\"mileage\":").append(vehicle.getMileage())
+                    .append(",\"mileageSinceService\":").append(vehicle.getMileageSinceService())
+                    .append(",\"needsService\":").append(vehicle.needsService());
+            if (vehicle instanceof Truck) {
+                json.append(",\"cargo\":").append(((Truck) vehicle).getCurrentCargo());
+            }
+            if (vehicle instanceof IElectric) {
+                json.append(",\"ecoMode\":").append(((IElectric) vehicle).isEcoMode());
+            }
+            json.append('}');
+        }
+    }
+
+    private static void appendUser(StringBuilder json, User user) {
+        json.append("{\"name\":\"").append(escape(user.getName()))
+                .append("\",\"email\":\"").append(escape(user.getEmail()))
+                .append("\",\"vehicles\":").append(user.getVehicleCount())
+                .append(",\"hasValidLicense\":").append(user.hasValidLicense())
+                .append('}');
+    }
+
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    // ==========================================
+    // HTTP HELPERS
+    // ==========================================
+
+    private static boolean wantsBinary(HttpExchange exchange, Map<String, String> query) {
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        return "bin".equals(query.get("format")) || (accept != null && accept.contains(BINARY_TYPE));
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, "{\"error\":\"" + escape(message) + "\"}");
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parseForm(String encoded) {
+        Map<String, String> values = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return values;
+        }
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                values.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return values;
+    }
+
+    private static String required(Map<String, String> form, String name) {
+        String value = form.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing field: " + name);
+        }
+        return value;
+    }
+
+    private static long[] parseIds(String ids) {
+        String[] parts = ids.split(",");
+        long[] result = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Long.parseLong(parts[i].trim());
+        }
+        return result;
+    }
+
+    private static double parseAmount(String amount) {
+        return amount == null ? 0 : Double.parseDouble(amount);
+    }
+}
@@ -0,0 +1,623 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * FLEET LEADERBOARDS:
+ * Keeps fleet-wide top-K rankings (fastest, highest mileage, lowest fuel, longest EV range)
+ * up to date as vehicles change, so reading a leaderboard never scans the fleet.
+ * It demonstrates:
+ * 1. Observer Pattern: Each watched vehicle reports which fields changed, and only the
+ *    boards whose metric depends on those fields are updated
+ * 2. Bounded candidates: A board doesn't index every vehicle. It keeps the best
+ *    capacity = K x slack vehicles in a ConcurrentSkipListSet (best first), so readers
+ *    iterate it without locks and memory stays the same at 50M vehicles as at 50.
+ * 3. Outsider bound: When the set overflows, its worst entry is evicted and the board
+ *    remembers the best entry it ever evicted. Every vehicle outside the set ranks at or
+ *    below that bound, so an update of an outsider that doesn't beat it returns after one
+ *    comparison, without locking, and candidates ranked above it are known to be exact.
+ * 4. Lazy repair: A candidate can fall below the bound (a refuelled vehicle leaves the
+ *    lowest-fuel board). Once fewer than K candidates rank above the bound, a background
+ *    task rescans the fleet, rebuilds the candidates and lowers the bound. Readers keep
+ *    being served from the existing set meanwhile; isExact tells if the answer is final.
+ *
+ * Ties are broken by vehicle id, lowest first. Updates run on the thread that mutated
+ * the vehicle, so a vehicle must have a single writer at a time, as for AlertRuleEngine.
+ *
+ * Usage:
+ *   FleetLeaderboard leaderboard = new FleetLeaderboard(10);
+ *   leaderboard.watch(vehicle);
+ *   List<FleetLeaderboard.Standing> top = leaderboard.getTop(FleetLeaderboard.Metric.MILEAGE, 10);
+ *
+ * Benchmark: java -Xmx4g -cp src FleetLeaderboard --vehicles 2000000 --updates 20000000
+ */
+public class FleetLeaderboard {
+    private static final int DEFAULT_SLACK = 4;
+    private static final Metric[] METRICS = Metric.values();
+
+    /**
+     * Ranked metrics. score() is higher for better ranked vehicles; value() is what is shown.
+     */
+    public enum Metric {
+        TOP_SPEED("fastest", IVehicleObserver.ECO_MODE | IVehicleObserver.TRAILER | IVehicleObserver.CARGO, false),
+        MILEAGE("highest mileage", IVehicleObserver.MILEAGE, false),
+        LOWEST_FUEL("lowest fuel %", IVehicleObserver.FUEL, true),
+        EV_RANGE("longest EV range", IVehicleObserver.BATTERY | IVehicleObserver.ECO_MODE, false);
+
+        private final String label;
+        private final int mask;
+        private final boolean lowestFirst;
+
+        Metric(String label, int mask, boolean lowestFirst) {
+            this.label = label;
+            this.mask = mask;
+            this.lowestFirst = lowestFirst;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        // Plain switches rather than per-constant lambdas: every update goes through here, and
+        // one call site shared by four lambdas would be a megamorphic call
+        public boolean appliesTo(AbstractVehicle vehicle) {
+            switch (this) {
+                case LOWEST_FUEL:
+                    return !(vehicle instanceof ElectricCar);
+                case EV_RANGE:
+                    return vehicle instanceof ElectricCar;
+                default:
+                    return true;
+            }
+        }
+
+        public double value(AbstractVehicle vehicle) {
+            switch (this) {
+                case TOP_SPEED:
+                    return vehicle.getMaxSpeed();
+                case MILEAGE:
+                    return vehicle.getMileage();
+                case LOWEST_FUEL:
+                    return vehicle.fuelCapacity > 0 ? vehicle.getFuelLevel() * 100 / vehicle.fuelCapacity : 0;
+                default:
+                    return ((ElectricCar) vehicle).getEstimatedRange();
+            }
+        }
+
+        double score(AbstractVehicle vehicle) {
+            double value = value(vehicle);
+            return lowestFirst ? -value : value;
+        }
+    }
+
+    /**
+     * One position on a leaderboard
+     */
+    public static final class Standing {
+        private final int rank;
+        private final AbstractVehicle vehicle;
+        private final double value;
+
+        Standing(int rank, AbstractVehicle vehicle, double value) {
+            this.rank = rank;
+            this.vehicle = vehicle;
+            this.value = value;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public AbstractVehicle getVehicle() {
+            return vehicle;
+        }
+
+        /**
+         * @return The metric's value when the vehicle entered this position
+         */
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d. %s %s #%d: %.1f", rank, vehicle.getBrand(), vehicle.getModel(),
+                    vehicle.getId(), value);
+        }
+    }
+
+    /**
+     * Candidate entry: immutable score and the vehicle's tracker
+     */
+    private static final class Entry {
+        final double score;
+        final long id;
+        final Tracker tracker;
+
+        Entry(double score, long id, Tracker tracker) {
+            this.score = score;
+            this.id = id;
+            this.tracker = tracker;
+        }
+    }
+
+    // Best first: higher score, then lower id
+    private static final Comparator<Entry> BEST_FIRST = (a, b) -> {
+        int byScore = Double.compare(b.score, a.score);
+        return byScore != 0 ? byScore : Long.compare(a.id, b.id);
+    };
+
+    private static boolean ranksAbove(double score, long id, Entry other) {
+        return score > other.score || score == other.score && id < other.id;
+    }
+
+    /**
+     * Observer attached to one watched vehicle; remembers its entry on each board, if any.
+     * The entries are fields rather than an array so an update costs one less cache miss.
+     */
+    private static final class Tracker implements IVehicleObserver {
+        final Board[] boards;
+        final AbstractVehicle vehicle;
+        // Written under the board's lock, read without it
+        volatile Entry speedEntry;
+        volatile Entry mileageEntry;
+        volatile Entry fuelEntry;
+        volatile Entry rangeEntry;
+
+        Tracker(Board[] boards, AbstractVehicle vehicle) {
+            this.boards = boards;
+            this.vehicle = vehicle;
+        }
+
+        Entry entry(int board) {
+            switch (board) {
+                case 0:
+                    return speedEntry;
+                case 1:
+                    return mileageEntry;
+                case 2:
+                    return fuelEntry;
+                default:
+                    return rangeEntry;
+            }
+        }
+
+        void setEntry(int board, Entry entry) {
+            switch (board) {
+                case 0:
+                    speedEntry = entry;
+                    break;
+                case 1:
+                    mileageEntry = entry;
+                    break;
+                case 2:
+                    fuelEntry = entry;
+                    break;
+                default:
+                    rangeEntry = entry;
+            }
+        }
+
+        @Override
+        public void onStateChanged(AbstractVehicle changed, int changedFields) {
+            for (Board board : boards) {
+                Metric metric = board.metric;
+                if ((changedFields & metric.mask) != 0 && metric.appliesTo(vehicle)) {
+                    board.offer(this, metric.score(vehicle));
+                }
+            }
+        }
+    }
+
+    /**
+     * Candidates and outsider bound for one metric
+     */
+    private final class Board {
+        final Metric metric;
+        final int index;
+        final ConcurrentSkipListSet<Entry> candidates = new ConcurrentSkipListSet<>(BEST_FIRST);
+        final AtomicBoolean repairScheduled = new AtomicBoolean();
+        final Object repairLock = new Object(); // One repair of this board at a time
+        volatile Entry bound;          // Best entry ever evicted; null while nothing was
+        volatile boolean repairing;    // While set, every update takes the lock and is logged
+        List<Tracker> changedDuringRepair = new ArrayList<>();
+        long repairs;
+
+        Board(Metric metric) {
+            this.metric = metric;
+            this.index = metric.ordinal();
+        }
+
+        void offer(Tracker tracker, double score) {
+            Entry current = tracker.entry(index);
+            Entry outside = bound;
+            if (current == null && !repairing && outside != null
+                    && !ranksAbove(score, tracker.vehicle.getId(), outside)) {
+                return; // Fast path: an outsider that still can't make the board
+            }
+            synchronized (this) {
+                if (repairing) {
+                    changedDuringRepair.add(tracker);
+                }
+                place(tracker, score);
+            }
+        }
+
+        /**
+         * Puts the tracker's vehicle where its score belongs; caller holds the lock
+         */
+        void place(Tracker tracker, double score) {
+            Entry current = tracker.entry(index);
+            long id = tracker.vehicle.getId();
+            if (current != null) {
+                if (current.score == score) {
+                    return;
+                }
+                candidates.remove(current);
+            } else if (bound != null && !ranksAbove(score, id, bound)) {
+                return;
+            }
+            Entry entry = new Entry(score, id, tracker);
+            candidates.add(entry);
+            tracker.setEntry(index, entry);
+            if (current == null && candidates.size() > capacity) {
+                Entry worst = candidates.pollLast();
+                worst.tracker.setEntry(index, null);
+                if (bound == null || BEST_FIRST.compare(worst, bound) < 0) {
+                    bound = worst;
+                }
+            }
+        }
+
+        void remove(Tracker tracker) {
+            synchronized (this) {
+                Entry current = tracker.entry(index);
+                if (current != null) {
+                    candidates.remove(current);
+                    tracker.setEntry(index, null);
+                }
+            }
+        }
+
+        void scheduleRepair() {
+            if (repairScheduled.compareAndSet(false, true)) {
+                executor.execute(() -> {
+                    try {
+                        repair();
+                    } finally {
+                        repairScheduled.set(false);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Rescans the watched vehicles for the best capacity entries and swaps them in. Vehicles
+         * that change during the scan are logged by offer() and placed again after the swap.
+         */
+        void repair() {
+            synchronized (repairLock) {
+                rebuild();
+            }
+        }
+
+        private void rebuild() {
+            synchronized (this) {
+                repairing = true;
+            }
+            Tracker[] fleet = snapshot();
+            PriorityQueue<Entry> best = new PriorityQueue<>(capacity + 1, BEST_FIRST.reversed()); // Worst on top
+            Entry newBound = null;
+            for (Tracker tracker : fleet) {
+                if (metric.appliesTo(tracker.vehicle)) {
+                    best.add(new Entry(metric.score(tracker.vehicle), tracker.vehicle.getId(), tracker));
+                    if (best.size() > capacity) {
+                        Entry evicted = best.poll();
+                        if (newBound == null || BEST_FIRST.compare(evicted, newBound) < 0) {
+                            newBound = evicted;
+                        }
+                    }
+                }
+            }
+            synchronized (this) {
+                for (Entry old : candidates) {
+                    old.tracker.setEntry(index, null);
+                }
+                candidates.clear();
+                for (Entry entry : best) {
+                    candidates.add(entry);
+                    entry.tracker.setEntry(index, entry);
+                }
+                bound = newBound;
+                repairing = false;
+                for (Tracker tracker : changedDuringRepair) {
+                    if (metric.appliesTo(tracker.vehicle)) {
+                        place(tracker, metric.score(tracker.vehicle));
+                    }
+                }
+                changedDuringRepair = new ArrayList<>();
+                repairs++;
+            }
+        }
+    }
+
+    private final int capacity;
+    private final Executor executor;
+    private final Board[] boards = new Board[METRICS.length];
+    private final Map<AbstractVehicle, Tracker> trackers = new IdentityHashMap<>();
+    private Tracker[] fleetSnapshot; // Cached array of the trackers for repairs; null when stale
+
+    /**
+     * @param k Largest K that will be asked for; boards keep DEFAULT_SLACK times as many candidates
+     */
+    public FleetLeaderboard(int k) {
+        this(k, DEFAULT_SLACK, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param k Largest K that will be asked for
+     * @param slack Candidates kept per K; more slack means fewer repairs for more memory
+     * @param executor Runs repairs in the background
+     */
+    public FleetLeaderboard(int k, int slack, Executor executor) {
+        if (k <= 0 || slack < 1) {
+            throw new IllegalArgumentException("K and slack must be positive");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        this.capacity = k * slack;
+        this.executor = executor;
+        for (Metric metric : METRICS) {
+            boards[metric.ordinal()] = new Board(metric);
+        }
+    }
+
+    /**
+     * Ranks the vehicle on every board it applies to and follows its changes from now on
+     */
+    public void watch(AbstractVehicle vehicle) {
+        if (vehicle == null) {
+            throw new IllegalArgumentException("Vehicle cannot be null");
+        }
+        Tracker tracker;
+        synchronized (this) {
+            if (trackers.containsKey(vehicle)) {
+                return;
+            }
+            tracker = new Tracker(boards, vehicle);
+            trackers.put(vehicle, tracker);
+            fleetSnapshot = null;
+        }
+        vehicle.addObserver(tracker);
+        for (Board board : boards) {
+            if (board.metric.appliesTo(vehicle)) {
+                board.offer(tracker, board.metric.score(vehicle));
+            }
+        }
+    }
+
+    public void unwatch(AbstractVehicle vehicle) {
+        Tracker tracker;
+        synchronized (this) {
+            tracker = trackers.remove(vehicle);
+            fleetSnapshot = null;
+        }
+        if (tracker != null) {
+            vehicle.removeObserver(tracker);
+            for (Board board : boards) {
+                board.remove(tracker);
+            }
+        }
+    }
+
+    public synchronized int getWatchedCount() {
+        return trackers.size();
+    }
+
+    private synchronized Tracker[] snapshot() {
+        if (fleetSnapshot == null) {
+            fleetSnapshot = trackers.values().toArray(new Tracker[0]);
+        }
+        return fleetSnapshot;
+    }
+
+    /**
+     * Reads the best k vehicles of a board, best first, in O(k). Never scans the fleet; if a
+     * better vehicle may be missing, a background repair is started (see isExact).
+     */
+    public List<Standing> getTop(Metric metric, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("K must be positive");
+        }
+        Board board = boards[metric.ordinal()];
+        List<Standing> top = new ArrayList<>(Math.min(k, capacity));
+        for (Entry entry : board.candidates) {
+            if (top.size() == k) {
+                break;
+            }
+            double value = metric.lowestFirst ? -entry.score : entry.score;
+            top.add(new Standing(top.size() + 1, entry.tracker.vehicle, value));
+        }
+        if (!isExact(board, k)) {
+            board.scheduleRepair();
+        }
+        return top;
+    }
+
+    /**
+     * @return true if getTop(metric, k) is final: its k entries all rank above every vehicle
+     *         outside the board, or the board holds every vehicle it applies to
+     */
+    public boolean isExact(Metric metric, int k) {
+        return isExact(boards[metric.ordinal()], k);
+    }
+
+    private boolean isExact(Board board, int k) {
+        Entry outside = board.bound;
+        if (outside == null) {
+            return !board.repairing;
+        }
+        int above = 0;
+        for (Entry entry : board.candidates) {
+            if (above == k || BEST_FIRST.compare(entry, outside) >= 0) {
+                break;
+            }
+            above++;
+        }
+        return above >= k && !board.repairing;
+    }
+
+    /**
+     * @return Number of background repairs of the metric's board so far
+     */
+    public long getRepairCount(Metric metric) {
+        Board board = boards[metric.ordinal()];
+        synchronized (board) {
+            return board.repairs;
+        }
+    }
+
+    /**
+     * Rescans the fleet for one board now, on the calling thread
+     */
+    public void repair(Metric metric) {
+        boards[metric.ordinal()].repair();
+    }
+
+    /**
+     * Benchmark: watches --vehicles vehicles, applies --updates random operations and reads the
+     * four top-10 boards every --read-every updates. Reports the update cost with and without
+     * the leaderboard, the read latency and how often boards had to be repaired.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int vehicles = 1_000_000;
+        long updates = 10_000_000;
+        int k = 10;
+        int readEvery = 1_000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicles = Integer.parseInt(args[++i]);
+                    break;
+                case "--updates":
+                    updates = Long.parseLong(args[++i]);
+                    break;
+                case "--k":
+                    k = Integer.parseInt(args[++i]);
+                    break;
+                case "--read-every":
+                    readEvery = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        AbstractVehicle.setOutputEnabled(false);
+        // Both runs start from an identical fresh fleet and see the same random operations
+        double unwatchedNs = drive(createFleet(vehicles), updates, null, null, 0, k);
+
+        AbstractVehicle[] fleet = createFleet(vehicles);
+
+        FleetLeaderboard leaderboard = new FleetLeaderboard(k);
+        long watchStart = System.nanoTime();
+        for (AbstractVehicle vehicle : fleet) {
+            leaderboard.watch(vehicle);
+        }
+        double watchSeconds = (System.nanoTime() - watchStart) / 1e9;
+        LatencyHistogram reads = new LatencyHistogram();
+        double watchedNs = drive(fleet, updates, leaderboard, reads, readEvery, k);
+        Thread.sleep(200); // Let a pending repair finish before reporting
+
+        StringBuilder repairs = new StringBuilder();
+        StringBuilder leaders = new StringBuilder();
+        for (Metric metric : METRICS) {
+            if (repairs.length() > 0) {
+                repairs.append(',');
+                leaders.append(',');
+            }
+            repairs.append('"').append(metric.name()).append("\":").append(leaderboard.getRepairCount(metric));
+            List<Standing> top = leaderboard.getTop(metric, 1);
+            leaders.append('"').append(metric.name()).append("\":")
+                    .append(top.isEmpty() ? "null" : String.format(Locale.ROOT, "%.1f", top.get(0).getValue()));
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "{\"vehicles\":%d,\"updates\":%d,\"k\":%d,\"watchSeconds\":%.1f,\"unwatchedNsPerUpdate\":%.1f,"
+                        + "\"watchedNsPerUpdate\":%.1f,\"reads\":%d,\"readNs\":{\"p50\":%d,\"p99\":%d,\"max\":%d},"
+                        + "\"repairs\":{%s},\"leaders\":{%s}}",
+                vehicles, updates, k, watchSeconds, unwatchedNs, watchedNs, reads.getTotalCount(),
+                reads.getValueAtPercentile(50), reads.getValueAtPercentile(99), reads.getMax(), repairs, leaders));
+    }
+
+    private static AbstractVehicle[] createFleet(int vehicles) {
+        AbstractVehicle[] fleet = new AbstractVehicle[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            switch (i % 4) {
+                case 0:
+                    fleet[i] = new Car("Toyota", "Corolla", 2023, 4);
+                    break;
+                case 1:
+                    fleet[i] = new Motorcycle("Honda", "CBR", 2023, false);
+                    break;
+                case 2:
+                    fleet[i] = new ElectricCar("Tesla", "Model 3", 2023, 75.0, "Type 2");
+                    break;
+                default:
+                    fleet[i] = new Truck("Volvo", "FH16", 2023, 20000, 3);
+            }
+            fleet[i].start();
+        }
+        return fleet;
+    }
+
+    /**
+     * Random driving, refuelling, charging and trailer changes; reads all boards every readEvery
+     * @return Average nanoseconds per update, reads included
+     */
+    private static double drive(AbstractVehicle[] fleet, long updates, FleetLeaderboard leaderboard,
+                                LatencyHistogram reads, int readEvery, int k) {
+        SplittableRandom random = new SplittableRandom(7);
+        long start = System.nanoTime();
+        for (long n = 0; n < updates; n++) {
+            AbstractVehicle vehicle = fleet[random.nextInt(fleet.length)];
+            int action = random.nextInt(100);
+            if (action < 80) {
+                vehicle.accelerate();
+                vehicle.brake();
+            } else if (action < 95 && vehicle.getEnergyLevel() < vehicle.getEnergyCapacity() * 0.5) {
+                if (vehicle instanceof ElectricCar) {
+                    ((ElectricCar) vehicle).charge(0.5);
+                } else {
+                    vehicle.refuel(vehicle.getEnergyCapacity());
+                }
+                vehicle.start();
+            } else if (vehicle instanceof Truck) {
+                Truck truck = (Truck) vehicle;
+                if (truck.hasTrailer()) {
+                    truck.detachTrailer();
+                } else {
+                    truck.attachTrailer();
+                }
+            } else if (vehicle instanceof ElectricCar) {
+                ((ElectricCar) vehicle).toggleEcoMode();
+            }
+            if (leaderboard != null && n % readEvery == 0) {
+                long before = System.nanoTime();
+                for (Metric metric : METRICS) {
+                    leaderboard.getTop(metric, k);
+                }
+                reads.record(System.nanoTime() - before);
+            }
+        }
+        return (double) (System.nanoTime() - start) / updates;
+    }
+}
@@ -0,0 +1,190 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * HTTP LOAD GENERATOR:
+ * Drives a FleetHttpServer with many keep-alive connections and reports requests per second
+ * and latency percentiles. Each connection runs on its own thread and can pipeline several
+ * requests to hide round-trip time.
+ *
+ * Usage:
+ *   java -cp src FleetLoadGenerator [--host localhost] --port 8080 [--connections 64]
+ *        [--seconds 10] [--pipeline 4] [--path /vehicles/1?format=bin]
+ */
+public class FleetLoadGenerator {
+    private static final long MIN_BACKOFF_MILLIS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 1_000;
+
+    private String host = "localhost";
+    private int port = 8080;
+    private int connections = 64;
+    private int seconds = 10;
+    private int pipeline = 1;
+    private String path = "/vehicles/1?format=bin";
+
+    public static void main(String[] args) throws Exception {
+        FleetLoadGenerator generator = new FleetLoadGenerator();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host":
+                    generator.host = args[++i];
+                    break;
+                case "--port":
+                    generator.port = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    generator.connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--seconds":
+                    generator.seconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--pipeline":
+                    generator.pipeline = Integer.parseInt(args[++i]);
+                    break;
+                case "--path":
+                    generator.path = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        System.out.println(generator.run());
+    }
+
+    /**
+     * Runs the load test and returns a one-line JSON summary
+     */
+    public String run() throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        Connection[] workers = new Connection[connections];
+        Thread[] threads = new Thread[connections];
+        for (int i = 0; i < connections; i++) {
+            workers[i] = new Connection(stop);
+            threads[i] = new Thread(workers[i], "load-" + i);
+            threads[i].start();
+        }
+
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long errors = 0;
+        for (Connection worker : workers) {
+            latency.add(worker.histogram);
+            errors += worker.errors;
+        }
+        return "{\"requests\":" + latency.getTotalCount() +
+                ",\"errors\":" + errors +
+                ",\"seconds\":" + String.format(Locale.ROOT, "%.2f", elapsed) +
+                ",\"requestsPerSec\":" + String.format(Locale.ROOT, "%.0f", latency.getTotalCount() / elapsed) +
+                ",\"latencyUs\":{\"p50\":" + latency.getValueAtPercentile(50) / 1000 +
+                ",\"p99\":" + latency.getValueAtPercentile(99) / 1000 +
+                ",\"p999\":" + latency.getValueAtPercentile(99.9) / 1000 +
+                ",\"max\":" + latency.getMax() / 1000 + "}}";
+    }
+
+    /**
+     * One keep-alive connection sending GET requests in pipelined rounds
+     */
+    private class Connection implements Runnable {
+        private final AtomicBoolean stop;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long errors;
+
+        Connection(AtomicBoolean stop) {
+            this.stop = stop;
+        }
+
+        @Override
+        public void run() {
+            byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            byte[] round = new byte[request.length * pipeline];
+            for (int i = 0; i < pipeline; i++) {
+                System.arraycopy(request, 0, round, i * request.length, request.length);
+            }
+
+            long backoffMillis = 0;
+            while (!stop.get()) {
+                try (Socket socket = new Socket(host, port)) {
+                    socket.setTcpNoDelay(true);
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+                    while (!stop.get()) {
+                        long start = System.nanoTime();
+                        out.write(round);
+                        for (int i = 0; i < pipeline; i++) {
+                            if (readResponse(in) != 200) {
+                                errors++;
+                            }
+                            histogram.record(System.nanoTime() - start);
+                        }
+                        backoffMillis = 0; // The server answers again
+                    }
+                } catch (IOException e) {
+                    errors++;
+                    // Back off exponentially so a server that is down or refusing isn't hammered
+                    backoffMillis = Math.min(MAX_BACKOFF_MILLIS, Math.max(MIN_BACKOFF_MILLIS, backoffMillis * 2));
+                    try {
+                        Thread.sleep(backoffMillis);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads one HTTP response and returns its status code
+         */
+        private int readResponse(InputStream in) throws IOException {
+            String statusLine = readLine(in);
+            int status = Integer.parseInt(statusLine.substring(9, 12));
+            int contentLength = 0;
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    contentLength = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+            long skipped = 0;
+            while (skipped < contentLength) {
+                long n = in.skip(contentLength - skipped);
+                if (n <= 0) {
+                    if (in.read() < 0) {
+                        throw new IOException("Connection closed mid-response");
+                    }
+                    n = 1;
+                }
+                skipped += n;
+            }
+            return status;
+        }
+
+        private String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new IOException("Connection closed");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+    }
+}
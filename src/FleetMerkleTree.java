@@ -0,0 +1,874 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * MERKLE TREE RECONCILIATION:
+ * A digest of the fleet state that lets two copies of a fleet (for example a primary and its
+ * standby) find the vehicles that differ without comparing every vehicle field by field.
+ * It demonstrates:
+ * 1. Observer Pattern: Each watched vehicle keeps a 64-bit hash of its complete state
+ *    (captureState()). A change only flags the vehicle and its leaf as stale on the writer's
+ *    thread; the next digest read rehashes each flagged vehicle once, however often it changed.
+ * 2. Bucketing by id range: Leaf i holds the vehicles whose ids fall in ranges of
+ *    idsPerLeaf consecutive ids; ranges wrap around after 2^depth leaves
+ * 3. Additive nodes: A leaf is the sum of its vehicle hashes and a node the sum of its
+ *    children, so a rehashed vehicle adds (new - old) to its leaf, and only the paths above
+ *    dirty leaves are recomputed before an exchange.
+ * 4. Tree exchange: The requester compares the root, then asks only for the children of
+ *    nodes that differ, one level per round trip, and finally for the (id, hash) pairs of the
+ *    differing leaves. With d differences that is O(d x log n) hashes on the wire.
+ *
+ * The exchange runs over any pair of streams: a socket, or piped streams within one process.
+ * Vehicles that change while an exchange is running may be reported or missed; the next
+ * exchange picks them up. Vehicles loaded with restoreState() don't notify their observers,
+ * so call refresh() after restoring a watched vehicle.
+ *
+ * Usage:
+ *   FleetMerkleTree primaryTree = new FleetMerkleTree();   // on the primary
+ *   primaryTree.watch(vehicle);
+ *   primaryTree.serve(socket.getInputStream(), socket.getOutputStream());
+ *
+ *   FleetMerkleTree standbyTree = new FleetMerkleTree();   // on the standby
+ *   FleetMerkleTree.Result differences = standbyTree.reconcile(socket.getInputStream(), socket.getOutputStream());
+ *
+ * Benchmark: java -Xmx3g -cp src FleetMerkleTree --vehicles 1000000 --changes 100
+ */
+public class FleetMerkleTree {
+    private static final int DEFAULT_DEPTH = 16;
+    private static final long DEFAULT_IDS_PER_LEAF = 16;
+    private static final int MAX_DEPTH = 24;
+
+    // Request opcodes
+    static final byte HELLO = 1;
+    static final byte LEVEL = 2;
+    static final byte LEAVES = 3;
+    static final byte DONE = 4;
+
+    // Response status
+    static final byte OK = 0;
+    static final byte ERROR = 2;
+
+    // One scratch snapshot per flushing thread, so hashing a vehicle doesn't allocate
+    private static final ThreadLocal<VehicleSnapshot> SCRATCH = ThreadLocal.withInitial(VehicleSnapshot::new);
+
+    /**
+     * Vehicles that differ between the two trees, each list sorted by id
+     */
+    public static final class Result {
+        private final long[] changed;
+        private final long[] onlyLocal;
+        private final long[] onlyRemote;
+        private final int rounds;
+        private final long nodesCompared;
+        private final long bytesSent;
+        private final long bytesReceived;
+
+        Result(long[] changed, long[] onlyLocal, long[] onlyRemote, int rounds, long nodesCompared,
+               long bytesSent, long bytesReceived) {
+            this.changed = changed;
+            this.onlyLocal = onlyLocal;
+            this.onlyRemote = onlyRemote;
+            this.rounds = rounds;
+            this.nodesCompared = nodesCompared;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+        }
+
+        /**
+         * Vehicles watched on both sides whose state differs
+         */
+        public long[] getChanged() {
+            return changed.clone();
+        }
+
+        /**
+         * Vehicles watched only by the local tree
+         */
+        public long[] getOnlyLocal() {
+            return onlyLocal.clone();
+        }
+
+        /**
+         * Vehicles watched only by the remote tree
+         */
+        public long[] getOnlyRemote() {
+            return onlyRemote.clone();
+        }
+
+        public int getDifferenceCount() {
+            return changed.length + onlyLocal.length + onlyRemote.length;
+        }
+
+        public boolean isInSync() {
+            return getDifferenceCount() == 0;
+        }
+
+        /**
+         * Request/response round trips, including the initial root comparison
+         */
+        public int getRounds() {
+            return rounds;
+        }
+
+        public long getNodesCompared() {
+            return nodesCompared;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{changed=" + changed.length + ", onlyLocal=" + onlyLocal.length
+                    + ", onlyRemote=" + onlyRemote.length + ", rounds=" + rounds
+                    + ", nodesCompared=" + nodesCompared + '}';
+        }
+    }
+
+    /**
+     * Observer attached to one watched vehicle. A change only flags it as stale; the next
+     * flush() rehashes it, so a vehicle that changes many times between exchanges is hashed once.
+     */
+    private final class Tracker implements IVehicleObserver {
+        final AbstractVehicle vehicle;
+        final long id;
+        final int leaf;
+        volatile boolean stale = true;
+        long hash;    // Included in the leaf sum, guarded by treeLock
+        Tracker next; // Next tracker in the same leaf, guarded by the tree
+
+        Tracker(AbstractVehicle vehicle) {
+            this.vehicle = vehicle;
+            this.id = vehicle.getId();
+            this.leaf = leafOf(id);
+        }
+
+        @Override
+        public void onStateChanged(AbstractVehicle changed, int changedFields) {
+            // Always written, so the flush that clears it sees every change made before
+            stale = true;
+            markDirty(leaf);
+        }
+    }
+
+    private final int depth;
+    private final int leafCount;
+    private final long idsPerLeaf;
+    private final AtomicLongArray dirty;     // One bit per leaf with stale trackers or removals
+    private final Object treeLock = new Object(); // Taken before the tree's own lock, never after
+    private final long[] nodes;              // Heap layout: root at 1, children of i at 2i and 2i+1
+    private final int[] dirtyLeaves;         // Scratch for flush(), guarded by treeLock
+    private final Map<AbstractVehicle, Tracker> trackers = new IdentityHashMap<>();
+    private final Tracker[] leafHeads;
+
+    public FleetMerkleTree() {
+        this(DEFAULT_DEPTH, DEFAULT_IDS_PER_LEAF);
+    }
+
+    /**
+     * Both sides of an exchange must use the same depth and idsPerLeaf.
+     * @param depth Levels below the root; the tree has 2^depth leaves
+     * @param idsPerLeaf Consecutive vehicle ids that share a leaf
+     */
+    public FleetMerkleTree(int depth, long idsPerLeaf) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + MAX_DEPTH);
+        }
+        if (idsPerLeaf < 1) {
+            throw new IllegalArgumentException("Ids per leaf must be positive");
+        }
+        this.depth = depth;
+        this.leafCount = 1 << depth;
+        this.idsPerLeaf = idsPerLeaf;
+        this.dirty = new AtomicLongArray((leafCount + 63) >>> 6);
+        this.nodes = new long[2 * leafCount];
+        this.dirtyLeaves = new int[leafCount];
+        this.leafHeads = new Tracker[leafCount];
+    }
+
+    private int leafOf(long id) {
+        return (int) ((id / idsPerLeaf) & (leafCount - 1));
+    }
+
+    /**
+     * Adds the vehicle's state to the digest and follows its changes from now on
+     */
+    public void watch(AbstractVehicle vehicle) {
+        if (vehicle == null) {
+            throw new IllegalArgumentException("Vehicle cannot be null");
+        }
+        Tracker tracker;
+        synchronized (this) {
+            if (trackers.containsKey(vehicle)) {
+                return;
+            }
+            tracker = new Tracker(vehicle);
+            trackers.put(vehicle, tracker);
+            tracker.next = leafHeads[tracker.leaf];
+            leafHeads[tracker.leaf] = tracker;
+        }
+        vehicle.addObserver(tracker);
+        markDirty(tracker.leaf);
+    }
+
+    public void unwatch(AbstractVehicle vehicle) {
+        Tracker tracker;
+        synchronized (treeLock) {
+            synchronized (this) {
+                tracker = trackers.remove(vehicle);
+                if (tracker == null) {
+                    return;
+                }
+                Tracker previous = null;
+                for (Tracker t = leafHeads[tracker.leaf]; t != null; previous = t, t = t.next) {
+                    if (t == tracker) {
+                        if (previous == null) {
+                            leafHeads[tracker.leaf] = t.next;
+                        } else {
+                            previous.next = t.next;
+                        }
+                        break;
+                    }
+                }
+            }
+            nodes[leafCount + tracker.leaf] -= tracker.hash;
+        }
+        vehicle.removeObserver(tracker);
+        markDirty(tracker.leaf);
+    }
+
+    /**
+     * Marks for rehashing a watched vehicle that changed without notifying, e.g. after restoreState()
+     */
+    public void refresh(AbstractVehicle vehicle) {
+        Tracker tracker;
+        synchronized (this) {
+            tracker = trackers.get(vehicle);
+        }
+        if (tracker == null) {
+            throw new IllegalArgumentException("Vehicle is not watched: " + vehicle);
+        }
+        tracker.onStateChanged(vehicle, 0);
+    }
+
+    public synchronized int getWatchedCount() {
+        return trackers.size();
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getIdsPerLeaf() {
+        return idsPerLeaf;
+    }
+
+    /**
+     * Hash of the whole fleet; two trees with the same root hold the same vehicle states
+     */
+    public long getRootHash() {
+        synchronized (treeLock) {
+            flush();
+            return nodes[1];
+        }
+    }
+
+    private void markDirty(int leaf) {
+        int word = leaf >>> 6;
+        long bit = 1L << leaf;
+        if ((dirty.get(word) & bit) == 0) {
+            dirty.getAndAccumulate(word, bit, (bits, set) -> bits | set);
+        }
+    }
+
+    /**
+     * Rehashes the stale vehicles of every dirty leaf, then recomputes the ancestors of those
+     * leaves. When most paths are dirty, rebuilding every level bottom-up is cheaper.
+     * A bit is cleared before its leaf is scanned, so a change that races with the scan
+     * leaves the leaf dirty for the next flush.
+     */
+    private void flush() {
+        int count = 0;
+        for (int word = 0; word < dirty.length(); word++) {
+            long bits = dirty.get(word) == 0 ? 0 : dirty.getAndSet(word, 0);
+            while (bits != 0) {
+                int leaf = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                long sum = nodes[leafCount + leaf];
+                synchronized (this) {
+                    for (Tracker t = leafHeads[leaf]; t != null; t = t.next) {
+                        if (t.stale) {
+                            t.stale = false;
+                            long hash = hashOf(t.vehicle);
+                            sum += hash - t.hash;
+                            t.hash = hash;
+                        }
+                    }
+                }
+                nodes[leafCount + leaf] = sum;
+                dirtyLeaves[count++] = leaf;
+            }
+        }
+        if ((long) count * depth > leafCount) {
+            for (int node = leafCount - 1; node >= 1; node--) {
+                nodes[node] = nodes[2 * node] + nodes[2 * node + 1];
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            for (int node = (leafCount + dirtyLeaves[i]) >>> 1; node >= 1; node >>>= 1) {
+                nodes[node] = nodes[2 * node] + nodes[2 * node + 1];
+            }
+        }
+    }
+
+    /**
+     * Ids and hashes of the vehicles in one leaf as of the last flush, sorted by id
+     */
+    private long[][] leafEntries(int leaf) {
+        List<Tracker> members = new ArrayList<>();
+        synchronized (treeLock) {
+            synchronized (this) {
+                for (Tracker t = leafHeads[leaf]; t != null; t = t.next) {
+                    members.add(t);
+                }
+            }
+            members.sort((a, b) -> Long.compare(a.id, b.id));
+            long[][] entries = new long[2][members.size()];
+            for (int i = 0; i < members.size(); i++) {
+                entries[0][i] = members.get(i).id;
+                entries[1][i] = members.get(i).hash;
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * 64-bit hash of everything captureState() copies for the vehicle's type. The snapshot
+     * is reused across types, so only the fields of this type are mixed in.
+     */
+    static long hashOf(AbstractVehicle vehicle) {
+        VehicleSnapshot s = SCRATCH.get();
+        vehicle.captureState(s);
+        long h = mix(s.type.ordinal(), s.id);
+        h = mix(h, hashOf(s.brand));
+        h = mix(h, hashOf(s.model));
+        h = mix(h, s.year);
+        h = mix(h, s.running ? 1 : 0);
+        h = mix(h, s.speed);
+        h = mix(h, s.currentGear);
+        h = mix(h, Double.doubleToLongBits(s.fuelLevel));
+        h = mix(h, Double.doubleToLongBits(s.fuelCapacity));
+        h = mix(h, s.mileage);
+        h = mix(h, s.mileageSinceService);
+        h = mix(h, Double.doubleToLongBits(s.x));
+        h = mix(h, Double.doubleToLongBits(s.y));
+        h = mix(h, Double.doubleToLongBits(s.heading));
+        switch (s.type) {
+            case CAR:
+                h = mix(h, s.numberOfDoors);
+                h = mix(h, (s.airConditioning ? 1 : 0) | (s.automaticTransmission ? 2 : 0));
+                break;
+            case MOTORCYCLE:
+                h = mix(h, s.sidecar ? 1 : 0);
+                h = mix(h, s.engineSize);
+                h = mix(h, hashOf(s.motorcycleType));
+                break;
+            case TRUCK:
+                h = mix(h, Double.doubleToLongBits(s.cargoCapacity));
+                h = mix(h, Double.doubleToLongBits(s.currentCargo));
+                h = mix(h, s.trailer ? 1 : 0);
+                h = mix(h, s.numberOfAxles);
+                break;
+            case ELECTRIC_CAR:
+                h = mix(h, Double.doubleToLongBits(s.batteryCapacity));
+                h = mix(h, Double.doubleToLongBits(s.batteryLevel));
+                h = mix(h, (s.ecoMode ? 1 : 0) | (s.regenerativeBraking ? 2 : 0));
+                h = mix(h, hashOf(s.chargingPortType));
+                h = mix(h, Double.doubleToLongBits(s.efficiency));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown vehicle type: " + s.type);
+        }
+        return finish(h);
+    }
+
+    private static long hashOf(String value) {
+        return value == null ? 0 : value.hashCode();
+    }
+
+    private static long mix(long h, long value) {
+        h ^= value;
+        h *= 0x9E3779B97F4A7C15L;
+        return Long.rotateLeft(h, 31);
+    }
+
+    /**
+     * MurmurHash3 finalizer, so sums of hashes don't cancel out for similar vehicles
+     */
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Answers exchange requests from a remote reconcile() until it sends DONE or disconnects.
+     * Streams are not closed. Safe to run while the watched vehicles keep changing.
+     */
+    public void serve(InputStream input, OutputStream output) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        while (true) {
+            int opcode;
+            try {
+                opcode = in.readByte();
+            } catch (EOFException e) {
+                return;
+            }
+            switch (opcode) {
+                case HELLO: {
+                    int remoteDepth = in.readInt();
+                    long remoteIdsPerLeaf = in.readLong();
+                    if (remoteDepth != depth || remoteIdsPerLeaf != idsPerLeaf) {
+                        out.writeByte(ERROR);
+                        out.writeUTF("Tree shape differs: depth " + depth + ", " + idsPerLeaf + " ids per leaf");
+                        break;
+                    }
+                    out.writeByte(OK);
+                    out.writeLong(getRootHash());
+                    break;
+                }
+                case LEVEL: {
+                    int level = in.readInt();
+                    int count = in.readInt();
+                    int[] indexes = readIndexes(in, count, level);
+                    if (indexes == null) {
+                        out.writeByte(ERROR);
+                        out.writeUTF("Bad level request: level " + level + ", " + count + " nodes");
+                        break;
+                    }
+                    out.writeByte(OK);
+                    synchronized (treeLock) {
+                        for (int index : indexes) {
+                            out.writeLong(nodes[(1 << level) + index]);
+                        }
+                    }
+                    break;
+                }
+                case LEAVES: {
+                    int count = in.readInt();
+                    int[] leaves = readIndexes(in, count, depth);
+                    if (leaves == null) {
+                        out.writeByte(ERROR);
+                        out.writeUTF("Bad leaves request: " + count + " leaves");
+                        break;
+                    }
+                    out.writeByte(OK);
+                    for (int leaf : leaves) {
+                        long[][] entries = leafEntries(leaf);
+                        out.writeInt(entries[0].length);
+                        for (int i = 0; i < entries[0].length; i++) {
+                            out.writeLong(entries[0][i]);
+                            out.writeLong(entries[1][i]);
+                        }
+                    }
+                    break;
+                }
+                case DONE:
+                    out.flush();
+                    return;
+                default:
+                    throw new IOException("Unknown opcode: " + opcode);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads count node indexes of a level, or returns null (after consuming them) if any is out of range
+     */
+    private int[] readIndexes(DataInputStream in, int count, int level) throws IOException {
+        boolean valid = level >= 0 && level <= depth && count >= 0 && count <= leafCount;
+        int[] indexes = valid ? new int[count] : null;
+        for (int i = 0; i < Math.max(count, 0); i++) {
+            int index = in.readInt();
+            if (valid && (index < 0 || index >= 1 << level)) {
+                valid = false;
+            }
+            if (valid) {
+                indexes[i] = index;
+            }
+        }
+        return valid ? indexes : null;
+    }
+
+    /**
+     * Finds the vehicles whose state differs from the tree served at the other end of the streams.
+     * Descends only into subtrees whose hashes differ, one level per round trip, and sends DONE
+     * at the end so the remote serve() returns. Streams are not closed.
+     * @throws IOException If the streams fail or the remote tree has a different shape
+     */
+    public Result reconcile(InputStream input, OutputStream output) throws IOException {
+        CountingInputStream counted = new CountingInputStream(new BufferedInputStream(input));
+        DataInputStream in = new DataInputStream(counted);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        int rounds = 1;
+        long compared = 1;
+
+        out.writeByte(HELLO);
+        out.writeInt(depth);
+        out.writeLong(idsPerLeaf);
+        out.flush();
+        expectOk(in);
+        long remoteRoot = in.readLong();
+
+        int[] differing = new int[0];
+        if (remoteRoot != getRootHash()) {
+            differing = new int[] {0};
+            for (int level = 1; level <= depth && differing.length > 0; level++) {
+                int[] children = new int[differing.length * 2];
+                for (int i = 0; i < differing.length; i++) {
+                    children[2 * i] = differing[i] * 2;
+                    children[2 * i + 1] = differing[i] * 2 + 1;
+                }
+                out.writeByte(LEVEL);
+                out.writeInt(level);
+                out.writeInt(children.length);
+                for (int child : children) {
+                    out.writeInt(child);
+                }
+                out.flush();
+                expectOk(in);
+                rounds++;
+                compared += children.length;
+                int found = 0;
+                synchronized (treeLock) {
+                    for (int child : children) {
+                        if (in.readLong() != nodes[(1 << level) + child]) {
+                            children[found++] = child;
+                        }
+                    }
+                }
+                differing = Arrays.copyOf(children, found);
+            }
+        }
+
+        long[] changed = new long[0];
+        long[] onlyLocal = new long[0];
+        long[] onlyRemote = new long[0];
+        if (differing.length > 0) {
+            out.writeByte(LEAVES);
+            out.writeInt(differing.length);
+            for (int leaf : differing) {
+                out.writeInt(leaf);
+            }
+            out.flush();
+            expectOk(in);
+            rounds++;
+            List<Long> changedIds = new ArrayList<>();
+            List<Long> localIds = new ArrayList<>();
+            List<Long> remoteIds = new ArrayList<>();
+            for (int leaf : differing) {
+                int count = in.readInt();
+                Map<Long, Long> remote = new HashMap<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    long id = in.readLong();
+                    remote.put(id, in.readLong());
+                }
+                compared += count;
+                long[][] local = leafEntries(leaf);
+                for (int i = 0; i < local[0].length; i++) {
+                    Long remoteHash = remote.remove(local[0][i]);
+                    if (remoteHash == null) {
+                        localIds.add(local[0][i]);
+                    } else if (remoteHash != local[1][i]) {
+                        changedIds.add(local[0][i]);
+                    }
+                }
+                remoteIds.addAll(remote.keySet());
+            }
+            changed = sortedIds(changedIds);
+            onlyLocal = sortedIds(localIds);
+            onlyRemote = sortedIds(remoteIds);
+        }
+        out.writeByte(DONE);
+        out.flush();
+        return new Result(changed, onlyLocal, onlyRemote, rounds, compared, out.size(), counted.count);
+    }
+
+    private static void expectOk(DataInputStream in) throws IOException {
+        byte status = in.readByte();
+        if (status != OK) {
+            throw new IOException("Remote tree refused the exchange: " + in.readUTF());
+        }
+    }
+
+    private static long[] sortedIds(List<Long> ids) {
+        long[] sorted = new long[ids.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = ids.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Counts the bytes read through it, for the exchange statistics
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Benchmark: builds a primary fleet and an identical standby copy, drives both through the
+     * same operations (the standby before it is watched, the primary while watched), changes
+     * --changes random primary vehicles and reconciles the standby against the primary over a
+     * loopback socket. Compares the result with a field-by-field scan of both fleets, copies
+     * the differing vehicles to the standby and reconciles again.
+     */
+    public static void main(String[] args) throws Exception {
+        int vehicles = 1_000_000;
+        int changes = 100;
+        long updates = 2_000_000;
+        int depth = DEFAULT_DEPTH;
+        long idsPerLeaf = DEFAULT_IDS_PER_LEAF;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicles = Integer.parseInt(args[++i]);
+                    break;
+                case "--changes":
+                    changes = Integer.parseInt(args[++i]);
+                    break;
+                case "--updates":
+                    updates = Long.parseLong(args[++i]);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--ids-per-leaf":
+                    idsPerLeaf = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        AbstractVehicle.setOutputEnabled(false);
+        AbstractVehicle[] primary = new AbstractVehicle[vehicles];
+        AbstractVehicle[] standby = new AbstractVehicle[vehicles];
+        VehicleSnapshot snapshot = new VehicleSnapshot();
+        for (int i = 0; i < vehicles; i++) {
+            switch (i % 4) {
+                case 0:
+                    primary[i] = new Car("Toyota", "Corolla", 2023, 4);
+                    break;
+                case 1:
+                    primary[i] = new Motorcycle("Honda", "CBR", 2023, false);
+                    break;
+                case 2:
+                    primary[i] = new ElectricCar("Tesla", "Model 3", 2023, 75.0, "Type 2");
+                    break;
+                default:
+                    primary[i] = new Truck("Volvo", "FH16", 2023, 20000, 3);
+            }
+            primary[i].start();
+            primary[i].captureState(snapshot);
+            standby[i] = VehicleFactory.createFromSnapshot(snapshot);
+        }
+
+        double unwatchedNs = drive(standby, updates);
+        FleetMerkleTree primaryTree = new FleetMerkleTree(depth, idsPerLeaf);
+        FleetMerkleTree standbyTree = new FleetMerkleTree(depth, idsPerLeaf);
+        long watchStart = System.nanoTime();
+        for (int i = 0; i < vehicles; i++) {
+            primaryTree.watch(primary[i]);
+            standbyTree.watch(standby[i]);
+        }
+        primaryTree.getRootHash();
+        standbyTree.getRootHash();
+        double watchSeconds = (System.nanoTime() - watchStart) / 1e9;
+        double watchedNs = drive(primary, updates);
+        // Rehashing what the updates touched; an exchange pays this for changes since the last one
+        long flushStart = System.nanoTime();
+        primaryTree.getRootHash();
+        double flushMs = (System.nanoTime() - flushStart) / 1e6;
+        boolean sameRoot = primaryTree.getRootHash() == standbyTree.getRootHash();
+
+        SplittableRandom random = new SplittableRandom(11);
+        for (int n = 0; n < changes; n++) {
+            AbstractVehicle vehicle = primary[random.nextInt(vehicles)];
+            vehicle.start();
+            vehicle.accelerate();
+        }
+
+        long scanStart = System.nanoTime();
+        List<Long> truth = new ArrayList<>();
+        VehicleSnapshot other = new VehicleSnapshot();
+        for (int i = 0; i < vehicles; i++) {
+            primary[i].captureState(snapshot);
+            standby[i].captureState(other);
+            if (!sameState(snapshot, other)) {
+                truth.add(snapshot.id);
+            }
+        }
+        double scanMs = (System.nanoTime() - scanStart) / 1e6;
+
+        long reconcileStart = System.nanoTime();
+        Result result = reconcileOverSocket(primaryTree, standbyTree);
+        double reconcileMs = (System.nanoTime() - reconcileStart) / 1e6;
+        long[] expected = sortedIds(truth);
+        long[] found = result.getChanged();
+        int missed = 0;
+        for (long id : expected) {
+            if (Arrays.binarySearch(found, id) < 0) {
+                missed++;
+            }
+        }
+        int extra = 0;
+        for (long id : found) {
+            if (Arrays.binarySearch(expected, id) < 0) {
+                extra++;
+            }
+        }
+
+        // Copy the differing vehicles over, as a standby would, and check it is back in sync
+        Map<Long, Integer> indexById = new HashMap<>();
+        for (int i = 0; i < vehicles; i++) {
+            indexById.put(primary[i].getId(), i);
+        }
+        for (long id : found) {
+            int i = indexById.get(id);
+            primary[i].captureState(snapshot);
+            standby[i].restoreState(snapshot);
+            standbyTree.refresh(standby[i]);
+        }
+        Result after = reconcileOverSocket(primaryTree, standbyTree);
+
+        System.out.println(String.format(Locale.ROOT,
+                "{\"vehicles\":%d,\"changes\":%d,\"depth\":%d,\"idsPerLeaf\":%d,\"watchSeconds\":%.1f,"
+                        + "\"unwatchedNsPerUpdate\":%.1f,\"watchedNsPerUpdate\":%.1f,\"flushAfterUpdatesMs\":%.1f,"
+                        + "\"sameRootBeforeChanges\":%b,\"fieldScanMs\":%.1f,"
+                        + "\"reconcileMs\":%.1f,\"rounds\":%d,\"nodesCompared\":%d,\"bytesSent\":%d,"
+                        + "\"bytesReceived\":%d,\"differing\":%d,\"expected\":%d,\"missed\":%d,\"extra\":%d,"
+                        + "\"afterCopyDiffering\":%d}",
+                vehicles, changes, depth, idsPerLeaf, watchSeconds, unwatchedNs, watchedNs, flushMs, sameRoot, scanMs,
+                reconcileMs, result.getRounds(), result.getNodesCompared(), result.getBytesSent(),
+                result.getBytesReceived(), result.getDifferenceCount(), expected.length, missed, extra,
+                after.getDifferenceCount()));
+    }
+
+    private static Result reconcileOverSocket(FleetMerkleTree server, FleetMerkleTree client) throws Exception {
+        try (ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread serving = new Thread(() -> {
+                try (Socket socket = listener.accept()) {
+                    socket.setTcpNoDelay(true);
+                    server.serve(socket.getInputStream(), socket.getOutputStream());
+                } catch (IOException e) {
+                    System.err.println("Serve failed: " + e.getMessage());
+                }
+            }, "merkle-serve");
+            serving.start();
+            Result result;
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort())) {
+                socket.setTcpNoDelay(true);
+                result = client.reconcile(socket.getInputStream(), socket.getOutputStream());
+            }
+            serving.join();
+            return result;
+        }
+    }
+
+    /**
+     * Random accelerate/brake pairs; deterministic, so two identical fleets end up identical
+     * @return Average nanoseconds per update
+     */
+    private static double drive(AbstractVehicle[] fleet, long updates) {
+        SplittableRandom random = new SplittableRandom(7);
+        long start = System.nanoTime();
+        for (long n = 0; n < updates; n++) {
+            AbstractVehicle vehicle = fleet[random.nextInt(fleet.length)];
+            vehicle.accelerate();
+            vehicle.brake();
+        }
+        return (double) (System.nanoTime() - start) / (updates * 2);
+    }
+
+    /**
+     * The field-by-field comparison that the digest replaces
+     */
+    private static boolean sameState(VehicleSnapshot a, VehicleSnapshot b) {
+        if (a.type != b.type || a.id != b.id || !a.brand.equals(b.brand) || !a.model.equals(b.model)
+                || a.year != b.year || a.running != b.running || a.speed != b.speed
+                || a.currentGear != b.currentGear || a.fuelLevel != b.fuelLevel
+                || a.fuelCapacity != b.fuelCapacity || a.mileage != b.mileage
+                || a.mileageSinceService != b.mileageSinceService || a.x != b.x || a.y != b.y
+                || a.heading != b.heading) {
+            return false;
+        }
+        switch (a.type) {
+            case CAR:
+                return a.numberOfDoors == b.numberOfDoors && a.airConditioning == b.airConditioning
+                        && a.automaticTransmission == b.automaticTransmission;
+            case MOTORCYCLE:
+                return a.sidecar == b.sidecar && a.engineSize == b.engineSize
+                        && a.motorcycleType.equals(b.motorcycleType);
+            case TRUCK:
+                return a.cargoCapacity == b.cargoCapacity && a.currentCargo == b.currentCargo
+                        && a.trailer == b.trailer && a.numberOfAxles == b.numberOfAxles;
+            default:
+                return a.batteryCapacity == b.batteryCapacity && a.batteryLevel == b.batteryLevel
+                        && a.ecoMode == b.ecoMode && a.chargingPortType.equals(b.chargingPortType)
+                        && a.efficiency == b.efficiency && a.regenerativeBraking == b.regenerativeBraking;
+        }
+    }
+}
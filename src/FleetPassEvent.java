@@ -0,0 +1,45 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR EVENT: one pass over all of a user's vehicles
+ * Recorded around User.testDriveAllVehicles, getFastestVehicle and
+ * performMaintenanceOnAllVehicles with the number of vehicles visited.
+ * Thresholds and the "sampleEvery" setting work as for VehicleOperationEvent.
+ */
+@Name("fleet.FleetPass")
+@Label("Fleet Pass")
+@Category({"Fleet", "Users"})
+@Description("A pass over every vehicle of one user")
+@StackTrace(false)
+@Enabled(false)
+class FleetPassEvent extends Event {
+    static final String TEST_DRIVE = "testDriveAllVehicles";
+    static final String FASTEST = "getFastestVehicle";
+    static final String MAINTENANCE = "performMaintenanceOnAllVehicles";
+
+    @Label("Pass")
+    String pass;
+
+    @Label("Vehicles")
+    int vehicleCount;
+
+    @Label("Sample Weight")
+    @Description("Passes this event stands for, from the sampleEvery setting")
+    int sampleWeight;
+
+    @SettingDefinition
+    @Name("sampleEvery")
+    @Label("Sample Every")
+    @Description("Keep one in N events that passed the threshold")
+    protected boolean sampleEvery(SamplingControl control) {
+        sampleWeight = control.getEvery();
+        return control.sample();
+    }
+}
@@ -0,0 +1,99 @@
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * JFR RECORDING STATE:
+ * Starts and commits the fleet events (VehicleOperationEvent, FleetPassEvent), but only while
+ * a flight recording is running. Otherwise the helpers return null and do nothing, which
+ * matters for two reasons:
+ * 1. Loading an event class makes the JDK set up its JFR metadata, which costs a few hundred
+ *    milliseconds, so the event classes are only touched once something records
+ * 2. Escape analysis can't be relied on to remove the event allocation inside larger methods
+ *    such as ElectricCar.brake, and AllocationCheck requires the driving paths to allocate nothing
+ * Whether a running recording wants a particular event, its threshold and its sampling are
+ * still decided by the event's commit().
+ */
+final class FleetRecording {
+    private static volatile boolean active;
+
+    static {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder) {
+                update();
+            }
+
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                update();
+            }
+        });
+        update();
+    }
+
+    private FleetRecording() {
+    }
+
+    static boolean isActive() {
+        return active;
+    }
+
+    /**
+     * @return The started event, or null when no recording runs
+     */
+    static VehicleOperationEvent beginOperation(String operation) {
+        if (!active) {
+            return null;
+        }
+        VehicleOperationEvent event = new VehicleOperationEvent();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    static void endOperation(VehicleOperationEvent event, AbstractVehicle vehicle) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        // commit() applies the threshold and sampling itself; calling shouldCommit() first
+        // would run the sampling setting twice and square its rate
+        event.vehicleType = vehicle.getVehicleType();
+        event.vehicleId = vehicle.getId();
+        event.commit();
+    }
+
+    /**
+     * @return The started event, or null when no recording runs
+     */
+    static FleetPassEvent beginPass(String pass) {
+        if (!active) {
+            return null;
+        }
+        FleetPassEvent event = new FleetPassEvent();
+        event.pass = pass;
+        event.begin();
+        return event;
+    }
+
+    static void endPass(FleetPassEvent event, int vehicleCount) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        event.vehicleCount = vehicleCount;
+        event.commit();
+    }
+
+    private static synchronized void update() {
+        boolean running = false;
+        if (FlightRecorder.isInitialized()) {
+            for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+                running |= recording.getState() == RecordingState.RUNNING;
+            }
+        }
+        active = running;
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * FLIGHT RECORDING ANALYZER:
+ * Summarizes the fleet events of a .jfr file to show which vehicle operations dominate.
+ * 1. Groups fleet.VehicleOperation events by operation and vehicle type, and
+ *    fleet.FleetPass events by pass
+ * 2. Scales counts and total time by each event's sample weight, so recordings taken with
+ *    sampleEvery > 1 still estimate the real totals
+ * 3. Sorts the groups by estimated total time and prints p50/p99/max durations from a
+ *    LatencyHistogram of the recorded events
+ * Only operations slower than the recording's threshold are in the file, so with a threshold
+ * above 0 the totals are lower bounds.
+ *
+ * Usage:
+ *   java -XX:StartFlightRecording:settings=default,settings=fleet.jfc,filename=fleet.jfr -cp src App
+ *   java -cp src FleetRecordingAnalyzer fleet.jfr [--top 20]
+ */
+public class FleetRecordingAnalyzer {
+    private static final String OPERATION_EVENT = "fleet.VehicleOperation";
+    private static final String PASS_EVENT = "fleet.FleetPass";
+
+    /**
+     * Totals for one operation and vehicle type, or one kind of fleet pass
+     */
+    public static class Group {
+        private final String name;
+        private final LatencyHistogram durations = new LatencyHistogram();
+        private long estimatedCount;
+        private double estimatedNanos;
+
+        Group(String name) {
+            this.name = name;
+        }
+
+        void add(long durationNanos, int weight) {
+            durations.record(durationNanos);
+            estimatedCount += weight;
+            estimatedNanos += (double) durationNanos * weight;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getEvents() {
+            return durations.getTotalCount();
+        }
+
+        public long getEstimatedCount() {
+            return estimatedCount;
+        }
+
+        public double getEstimatedNanos() {
+            return estimatedNanos;
+        }
+
+        public LatencyHistogram getDurations() {
+            return durations;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String file = null;
+        int top = Integer.MAX_VALUE;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--top":
+                    top = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    if (args[i].startsWith("--") || file != null) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    file = args[i];
+            }
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("Usage: FleetRecordingAnalyzer <recording.jfr> [--top N]");
+        }
+        System.out.print(format(analyze(Paths.get(file)), top));
+    }
+
+    /**
+     * Reads every fleet event of the recording, largest estimated total time first
+     */
+    public static List<Group> analyze(Path recording) throws IOException {
+        Map<String, Group> groups = new HashMap<>();
+        try (RecordingFile in = new RecordingFile(recording)) {
+            while (in.hasMoreEvents()) {
+                RecordedEvent event = in.readEvent();
+                String key;
+                switch (event.getEventType().getName()) {
+                    case OPERATION_EVENT:
+                        key = event.getString("operation") + " " + event.getString("vehicleType");
+                        break;
+                    case PASS_EVENT:
+                        key = "pass " + event.getString("pass");
+                        break;
+                    default:
+                        continue;
+                }
+                int weight = Math.max(1, event.getInt("sampleWeight"));
+                groups.computeIfAbsent(key, Group::new).add(event.getDuration().toNanos(), weight);
+            }
+        }
+        List<Group> sorted = new ArrayList<>(groups.values());
+        sorted.sort((a, b) -> Double.compare(b.estimatedNanos, a.estimatedNanos));
+        return sorted;
+    }
+
+    /**
+     * Formats the groups as a text table; time shares are relative to all vehicle operations,
+     * with passes excluded since they contain the operations they drive
+     */
+    public static String format(List<Group> groups, int top) {
+        double operationNanos = 0;
+        for (Group group : groups) {
+            if (!group.name.startsWith("pass ")) {
+                operationNanos += group.estimatedNanos;
+            }
+        }
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT,
+                "%-36s %10s %12s %10s %7s %10s %10s %10s%n",
+                "operation", "events", "est. count", "est. ms", "share", "p50 us", "p99 us", "max us"));
+        int shown = 0;
+        for (Group group : groups) {
+            if (shown++ >= top) {
+                break;
+            }
+            boolean pass = group.name.startsWith("pass ");
+            LatencyHistogram durations = group.durations;
+            table.append(String.format(Locale.ROOT, "%-36s %10d %12d %10.1f %7s %10.3f %10.3f %10.1f%n",
+                    group.name, group.getEvents(), group.estimatedCount, group.estimatedNanos / 1e6,
+                    pass || operationNanos == 0 ? "-"
+                            : String.format(Locale.ROOT, "%.1f%%", 100 * group.estimatedNanos / operationNanos),
+                    durations.getValueAtPercentile(50) / 1e3, durations.getValueAtPercentile(99) / 1e3,
+                    durations.getMax() / 1e3));
+        }
+        if (groups.isEmpty()) {
+            table.append("No fleet events found. Was the recording started with settings=fleet.jfc?")
+                    .append(System.lineSeparator());
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * FLEET REGISTRY:
+ * Thread-safe lookup of users by email and vehicles by id, shared by the services that
+ * expose the fleet to other processes. It demonstrates:
+ * 1. Composition: The registry has users, and users have vehicles
+ * 2. Encapsulation: Commands go through execute(), which serializes access per vehicle
+ */
+public class FleetRegistry {
+    private final ConcurrentHashMap<String, User> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, AbstractVehicle> vehicles = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, User> owners = new ConcurrentHashMap<>();
+
+    /**
+     * Commands that can be sent to a vehicle
+     */
+    public enum Command {
+        START, STOP, ACCELERATE, BRAKE, REFUEL, CHARGE, LOADCARGO, UNLOADCARGO, MAINTENANCE,
+        GEAR; // Appended: FleetClusterNode sends commands by ordinal
+
+        /**
+         * Parses names such as "loadCargo" or "accelerate" case-insensitively
+         */
+        public static Command parse(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown command: " + name);
+            }
+        }
+    }
+
+    public void addUser(User user) {
+        if (users.putIfAbsent(user.getEmail(), user) != null) {
+            throw new IllegalArgumentException("User already exists: " + user.getEmail());
+        }
+    }
+
+    public User getUser(String email) {
+        return email == null ? null : users.get(email.toLowerCase(Locale.ROOT));
+    }
+
+    public Collection<User> getUsers() {
+        return users.values();
+    }
+
+    /**
+     * Registers a vehicle, optionally assigning it to an owner. Concurrent registrations for
+     * the same owner are serialized on the owner, since a user's vehicle list isn't thread-safe.
+     * @return false if the owner doesn't have a valid license
+     */
+    public boolean addVehicle(AbstractVehicle vehicle, User owner) {
+        if (owner != null) {
+            synchronized (owner) {
+                if (!owner.hasValidLicense()) {
+                    return false;
+                }
+                owner.addVehicle(vehicle);
+            }
+            owners.put(vehicle.getId(), owner);
+        }
+        vehicles.put(vehicle.getId(), vehicle);
+        return true;
+    }
+
+    public AbstractVehicle getVehicle(long id) {
+        return vehicles.get(id);
+    }
+
+    public User getOwner(long vehicleId) {
+        return owners.get(vehicleId);
+    }
+
+    public Collection<AbstractVehicle> getVehicles() {
+        return vehicles.values();
+    }
+
+    public int getVehicleCount() {
+        return vehicles.size();
+    }
+
+    /**
+     * Runs one command against one vehicle. Commands for the same vehicle never overlap.
+     * @param argument Amount for refuel/charge/loadCargo/unloadCargo, ignored otherwise
+     * @return The vehicle after the command
+     */
+    public AbstractVehicle execute(long vehicleId, Command command, double argument) {
+        AbstractVehicle vehicle = vehicles.get(vehicleId);
+        if (vehicle == null) {
+            throw new IllegalArgumentException("Unknown vehicle: " + vehicleId);
+        }
+        synchronized (vehicle) {
+            apply(vehicle, command, argument);
+        }
+        return vehicle;
+    }
+
+    /**
+     * Applies a command to a vehicle on the calling thread, without any locking.
+     * Callers are responsible for making sure only one thread mutates the vehicle.
+     */
+    static void apply(AbstractVehicle vehicle, Command command, double argument) {
+        switch (command) {
+            case START:
+                vehicle.start();
+                break;
+            case STOP:
+                vehicle.stop();
+                break;
+            case ACCELERATE:
+                vehicle.accelerate();
+                break;
+            case BRAKE:
+                vehicle.brake();
+                break;
+            case REFUEL:
+                vehicle.refuel(argument);
+                break;
+            case CHARGE:
+                if (!(vehicle instanceof IElectric)) {
+                    throw new IllegalArgumentException("Vehicle " + vehicle.getId() + " is not electric");
+                }
+                ((IElectric) vehicle).charge(argument);
+                break;
+            case LOADCARGO:
+            case UNLOADCARGO:
+                if (!(vehicle instanceof Truck)) {
+                    throw new IllegalArgumentException("Vehicle " + vehicle.getId() + " is not a truck");
+                }
+                if (command == Command.LOADCARGO) {
+                    ((Truck) vehicle).loadCargo(argument);
+                } else {
+                    ((Truck) vehicle).unloadCargo(argument);
+                }
+                break;
+            case MAINTENANCE:
+                vehicle.performMaintenance();
+                break;
+            case GEAR:
+                vehicle.changeGear((int) argument);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported command: " + command);
+        }
+    }
+
+    /**
+     * Looks up several vehicles at once, skipping unknown ids
+     */
+    public List<AbstractVehicle> getVehicles(long[] ids) {
+        List<AbstractVehicle> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            AbstractVehicle vehicle = vehicles.get(id);
+            if (vehicle != null) {
+                result.add(vehicle);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,650 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SCENARIO LOAD TEST:
+ * Replays a declarative mix of user-facing operations against the domain classes at a fixed
+ * arrival rate and reports per-operation latency percentiles as one JSON line.
+ * 1. Scenarios: an operation mix, an arrival rate, a thread count and a duration, given as
+ *    options, as a built-in preset or as a .properties file with the same keys
+ * 2. Operations: registering users through the validating User constructors, adding vehicles
+ *    via VehicleFactory, driving, refuelling, charging, cargo runs and maintenance sweeps
+ * 3. Open-loop scheduling: every operation has an intended start time taken from the arrival
+ *    schedule, and its latency is measured from that time, not from when a worker got to it.
+ *    A stall therefore shows up in every operation queued behind it instead of being hidden
+ *    (coordinated omission). Operations still queued when the run ends are recorded with the
+ *    time they had already waited, so an overloaded run can't look faster than it was.
+ * 4. Histograms: one LatencyHistogram per operation and worker for the latency from the
+ *    intended start and one for pure service time, merged when the run is over
+ * 5. Comparable reports: the same scenario and seed replay the same operation sequence, and
+ *    --baseline compares p50/p99 against the last report line of an earlier run
+ *
+ * Usage:
+ *   java -cp src FleetScenarioRunner [--preset commute|onboarding|depot] [--scenario file.properties]
+ *        [--mix register=5,add_vehicle=5,drive=60,refuel=10,charge=8,cargo=8,maintenance=4]
+ *        [--rate 20000] [--threads 4] [--seconds 10] [--warmup 3] [--users 2000]
+ *        [--arrival constant|poisson] [--seed 42] [--baseline previous.json]
+ * Options are applied in order, so later ones override a preset or scenario file.
+ */
+public class FleetScenarioRunner {
+    private static final String[] BRANDS = {"Toyota", "Honda", "Ford", "BMW", "Tesla", "Volvo", "Mercedes"};
+    private static final String[] MODELS = {"Model A", "Model B", "Model C", "Model X", "Model Y"};
+    private static final int MAX_VEHICLES_PER_USER = 8;
+
+    /**
+     * The user-facing operations a scenario can mix
+     */
+    public enum Operation {
+        REGISTER, ADD_VEHICLE, DRIVE, REFUEL, CHARGE, CARGO, MAINTENANCE;
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private String name = "custom";
+    private final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    private double rate = 10_000;
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private int seconds = 10;
+    private int warmupSeconds = 3;
+    private int users = 2000;
+    private boolean poisson;
+    private long seed = 42;
+    private String baseline;
+
+    public FleetScenarioRunner() {
+        setMix("register=5,add_vehicle=5,drive=60,refuel=10,charge=8,cargo=8,maintenance=4");
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(fromArgs(args).run().toJson());
+    }
+
+    /**
+     * Parses command-line options. Unknown options are rejected so typos don't go unnoticed.
+     */
+    public static FleetScenarioRunner fromArgs(String[] args) throws IOException {
+        FleetScenarioRunner runner = new FleetScenarioRunner();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            switch (option) {
+                case "--load-test":
+                    break;
+                case "--preset":
+                    runner.applyPreset(valueOf(args, ++i, option));
+                    break;
+                case "--scenario":
+                    runner.loadScenario(Paths.get(valueOf(args, ++i, option)));
+                    break;
+                case "--baseline":
+                    runner.baseline = valueOf(args, ++i, option);
+                    break;
+                default:
+                    if (!option.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + option);
+                    }
+                    runner.set(option.substring(2), valueOf(args, ++i, option));
+            }
+        }
+        return runner;
+    }
+
+    private static String valueOf(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    /**
+     * Sets one scenario key; shared by command-line options and scenario files
+     */
+    public void set(String key, String value) {
+        switch (key) {
+            case "name":
+                name = value;
+                break;
+            case "mix":
+                setMix(value);
+                break;
+            case "rate":
+                setRate(Double.parseDouble(value));
+                break;
+            case "threads":
+                setThreads(Integer.parseInt(value));
+                break;
+            case "seconds":
+                setSeconds(Integer.parseInt(value));
+                break;
+            case "warmup":
+                setWarmupSeconds(Integer.parseInt(value));
+                break;
+            case "users":
+                setUsers(Integer.parseInt(value));
+                break;
+            case "arrival":
+                setArrival(value);
+                break;
+            case "seed":
+                seed = Long.parseLong(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown scenario key: " + key);
+        }
+    }
+
+    /**
+     * Built-in scenarios for the common fleet workloads
+     */
+    public void applyPreset(String preset) {
+        switch (preset) {
+            case "commute":
+                setMix("register=1,add_vehicle=1,drive=75,refuel=12,charge=8,cargo=1,maintenance=2");
+                setRate(20_000);
+                break;
+            case "onboarding":
+                setMix("register=40,add_vehicle=40,drive=15,refuel=3,charge=2");
+                setRate(5_000);
+                break;
+            case "depot":
+                setMix("drive=30,refuel=15,charge=10,cargo=30,maintenance=15");
+                setRate(10_000);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown preset: " + preset);
+        }
+        name = preset;
+    }
+
+    /**
+     * Reads a scenario file with the same keys as the options, for example "rate=20000"
+     */
+    public void loadScenario(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        if (properties.getProperty("preset") != null) {
+            applyPreset(properties.getProperty("preset").trim());
+        }
+        name = file.getFileName().toString().replaceFirst("\\.properties$", "");
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.equals("preset")) {
+                set(key, properties.getProperty(key).trim());
+            }
+        }
+    }
+
+    /**
+     * @param spec Weights per operation, for example "drive=60,refuel=20,maintenance=20"
+     */
+    public void setMix(String spec) {
+        mix.clear();
+        for (String part : spec.split(",")) {
+            String[] pair = part.split("=");
+            Operation operation = null;
+            if (pair.length == 2) {
+                for (Operation candidate : Operation.values()) {
+                    if (candidate.key().equals(pair[0].trim().toLowerCase(Locale.ROOT))) {
+                        operation = candidate;
+                    }
+                }
+            }
+            if (operation == null) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Mix weights cannot be negative: " + part);
+            }
+            mix.put(operation, weight);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("Mix needs at least one positive weight");
+        }
+    }
+
+    public void setRate(double rate) {
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("Arrival rate must be positive");
+        }
+        this.rate = rate;
+    }
+
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.threads = threads;
+    }
+
+    public void setSeconds(int seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        this.seconds = seconds;
+    }
+
+    public void setWarmupSeconds(int warmupSeconds) {
+        if (warmupSeconds < 0) {
+            throw new IllegalArgumentException("Warmup cannot be negative");
+        }
+        this.warmupSeconds = warmupSeconds;
+    }
+
+    public void setUsers(int users) {
+        if (users <= 0) {
+            throw new IllegalArgumentException("User count must be positive");
+        }
+        this.users = users;
+    }
+
+    public void setArrival(String arrival) {
+        switch (arrival) {
+            case "constant":
+                poisson = false;
+                break;
+            case "poisson":
+                poisson = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Arrival must be constant or poisson: " + arrival);
+        }
+    }
+
+    /**
+     * Runs the scenario with console output disabled and returns the report
+     */
+    public Report run() throws InterruptedException, IOException {
+        boolean previousOutput = AbstractVehicle.isOutputEnabled();
+        AbstractVehicle.setOutputEnabled(false);
+        try {
+            Worker[] workers = new Worker[threads];
+            Thread[] running = new Thread[threads];
+            int usersPerWorker = (users + threads - 1) / threads;
+            for (int w = 0; w < threads; w++) {
+                workers[w] = new Worker(w, usersPerWorker, new SplittableRandom(seed + w));
+            }
+
+            // Every worker serves an interleaved share of one schedule that starts here
+            long start = System.nanoTime() + 50_000_000L;
+            for (int w = 0; w < threads; w++) {
+                workers[w].schedule(start);
+                running[w] = new Thread(workers[w], "scenario-" + w);
+                running[w].start();
+            }
+            for (Thread thread : running) {
+                thread.join();
+            }
+
+            Map<Operation, LatencyHistogram> latency = new EnumMap<>(Operation.class);
+            Map<Operation, LatencyHistogram> service = new EnumMap<>(Operation.class);
+            long[] errors = new long[Operation.values().length];
+            long unstarted = 0;
+            long maxLag = 0;
+            for (Operation operation : Operation.values()) {
+                latency.put(operation, new LatencyHistogram());
+                service.put(operation, new LatencyHistogram());
+            }
+            for (Worker worker : workers) {
+                for (Operation operation : Operation.values()) {
+                    latency.get(operation).add(worker.latency[operation.ordinal()]);
+                    service.get(operation).add(worker.service[operation.ordinal()]);
+                    errors[operation.ordinal()] += worker.errors[operation.ordinal()];
+                }
+                unstarted += worker.unstarted;
+                maxLag = Math.max(maxLag, worker.maxLag);
+            }
+            String baselineLine = baseline == null ? null : lastLine(Paths.get(baseline));
+            return new Report(this, latency, service, errors, unstarted, maxLag, baselineLine);
+        } finally {
+            AbstractVehicle.setOutputEnabled(previousOutput);
+        }
+    }
+
+    private static String lastLine(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            if (!lines.get(i).trim().isEmpty()) {
+                return lines.get(i);
+            }
+        }
+        throw new IllegalArgumentException("Baseline file is empty: " + file);
+    }
+
+    /**
+     * One open-loop worker. It owns its users and their vehicles, so no locking is needed,
+     * and it handles every threads-th arrival of the shared schedule.
+     */
+    private class Worker implements Runnable {
+        private final int index;
+        private final SplittableRandom random;
+        private final User[] pool;
+        private final AbstractVehicle[] buffer = new AbstractVehicle[MAX_VEHICLES_PER_USER];
+        private final Operation[] operations = Operation.values();
+        private final int[] cumulativeWeights = new int[operations.length];
+        private final LatencyHistogram[] latency = new LatencyHistogram[operations.length];
+        private final LatencyHistogram[] service = new LatencyHistogram[operations.length];
+        private final long[] errors = new long[operations.length];
+        private int registered;
+        private long unstarted;
+        private long maxLag;
+        private long start;
+        private final boolean spinAllowed = Runtime.getRuntime().availableProcessors() >= threads;
+
+        Worker(int index, int userCount, SplittableRandom random) {
+            this.index = index;
+            this.random = random;
+            this.pool = new User[userCount];
+            int total = 0;
+            for (Operation operation : operations) {
+                total += mix.getOrDefault(operation, 0);
+                cumulativeWeights[operation.ordinal()] = total;
+                latency[operation.ordinal()] = new LatencyHistogram();
+                service[operation.ordinal()] = new LatencyHistogram();
+            }
+            // Existing users are registered up front and are not part of the measurement
+            for (int u = 0; u < pool.length; u++) {
+                pool[u] = register();
+                int vehicles = 1 + random.nextInt(3);
+                for (int v = 0; v < vehicles; v++) {
+                    pool[u].addVehicle(newVehicle());
+                }
+            }
+        }
+
+        void schedule(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            double interval = 1e9 / rate * threads;
+            long measureFrom = start + warmupSeconds * 1_000_000_000L;
+            long end = measureFrom + seconds * 1_000_000_000L;
+            double intended = start + interval * index / threads;
+
+            while (intended < end) {
+                long intendedStart = (long) intended;
+                Operation operation = pick();
+                long now = waitUntil(intendedStart, end);
+                if (now >= end) {
+                    // Arrivals still queued at the end waited at least this long
+                    for (; intended < end; intended = next(intended, interval)) {
+                        if ((long) intended >= measureFrom) {
+                            latency[operation.ordinal()].record(now - (long) intended);
+                            unstarted++;
+                        }
+                        operation = pick();
+                    }
+                    break;
+                }
+
+                try {
+                    execute(operation);
+                } catch (RuntimeException e) {
+                    errors[operation.ordinal()]++;
+                }
+                long done = System.nanoTime();
+                if (intendedStart >= measureFrom) {
+                    latency[operation.ordinal()].record(done - intendedStart);
+                    service[operation.ordinal()].record(done - now);
+                    maxLag = Math.max(maxLag, now - intendedStart);
+                }
+                intended = next(intended, interval);
+            }
+        }
+
+        private double next(double intended, double interval) {
+            if (poisson) {
+                return intended - interval * Math.log(1.0 - random.nextDouble());
+            }
+            return intended + interval;
+        }
+
+        /**
+         * Sleeps until the intended start and returns the actual start. A worker that is
+         * behind schedule doesn't wait at all, it works through its backlog back to back.
+         * The last stretch is spun only when every worker has its own core, otherwise spinning would
+         * steal the CPU from the worker that is due.
+         */
+        private long waitUntil(long intendedStart, long end) {
+            long now = System.nanoTime();
+            while (now < intendedStart && now < end) {
+                long remaining = intendedStart - now;
+                if (remaining > 100_000 || !spinAllowed) {
+                    LockSupport.parkNanos(spinAllowed ? remaining - 50_000 : remaining);
+                } else {
+                    Thread.onSpinWait();
+                }
+                now = System.nanoTime();
+            }
+            return now;
+        }
+
+        private Operation pick() {
+            int roll = random.nextInt(cumulativeWeights[operations.length - 1]);
+            for (Operation operation : operations) {
+                if (roll < cumulativeWeights[operation.ordinal()]) {
+                    return operation;
+                }
+            }
+            throw new IllegalStateException("Mix weights changed during the run");
+        }
+
+        private void execute(Operation operation) {
+            User user = pool[random.nextInt(pool.length)];
+            int count = Math.min(user.getVehicles(buffer), buffer.length);
+            switch (operation) {
+                case REGISTER:
+                    // Replaces a random existing user, so the pool keeps its size
+                    User newcomer = register();
+                    newcomer.addVehicle(newVehicle());
+                    pool[random.nextInt(pool.length)] = newcomer;
+                    break;
+                case ADD_VEHICLE:
+                    if (count >= MAX_VEHICLES_PER_USER) {
+                        user.removeVehicle(buffer[0]);
+                    }
+                    user.addVehicle(newVehicle());
+                    break;
+                case DRIVE:
+                    if (count > 0) {
+                        drive(buffer[random.nextInt(count)]);
+                    }
+                    break;
+                case REFUEL:
+                    if (count > 0) {
+                        AbstractVehicle vehicle = buffer[random.nextInt(count)];
+                        if (vehicle instanceof ElectricCar) {
+                            ((ElectricCar) vehicle).charge(0.5);
+                        } else {
+                            vehicle.refuel(vehicle.getEnergyCapacity() - vehicle.getEnergyLevel());
+                        }
+                    }
+                    break;
+                case CHARGE:
+                    for (int i = 0; i < count; i++) {
+                        if (buffer[i] instanceof ElectricCar) {
+                            ((ElectricCar) buffer[i]).charge(0.25);
+                            break;
+                        }
+                    }
+                    break;
+                case CARGO:
+                    for (int i = 0; i < count; i++) {
+                        if (buffer[i] instanceof Truck) {
+                            Truck truck = (Truck) buffer[i];
+                            truck.loadCargo(truck.getCargoCapacity() / 2);
+                            drive(truck);
+                            truck.unloadCargo(truck.getCurrentCargo());
+                            break;
+                        }
+                    }
+                    break;
+                case MAINTENANCE:
+                    user.performMaintenanceOnAllVehicles();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + operation);
+            }
+        }
+
+        private void drive(AbstractVehicle vehicle) {
+            vehicle.start();
+            int steps = 1 + random.nextInt(10);
+            for (int i = 0; i < steps; i++) {
+                vehicle.accelerate();
+            }
+            vehicle.changeGear(1 + steps % 5);
+            while (vehicle.getSpeed() > 0) {
+                vehicle.brake();
+            }
+            vehicle.stop();
+        }
+
+        private User register() {
+            int id = index * 100_000_000 + registered++;
+            return new User("Load User " + id, "load" + id + "@fleet.test", "pass-" + id,
+                    "LIC-" + (10_000_000 + id));
+        }
+
+        private AbstractVehicle newVehicle() {
+            VehicleFactory.VehicleType[] types = VehicleFactory.VehicleType.values();
+            return VehicleFactory.createVehicle(types[random.nextInt(types.length)],
+                    BRANDS[random.nextInt(BRANDS.length)], MODELS[random.nextInt(MODELS.length)],
+                    2015 + random.nextInt(10));
+        }
+    }
+
+    /**
+     * Machine-readable result of one scenario run
+     */
+    public static class Report {
+        private static final Pattern OPERATION_PERCENTILES = Pattern.compile(
+                "\"([a-z_]+)\":\\{\"count\":\\d+,\"errors\":\\d+,\"latencyNs\":\\{\"p50\":(\\d+),\"p90\":\\d+,\"p99\":(\\d+)");
+
+        private final FleetScenarioRunner config;
+        private final Map<Operation, LatencyHistogram> latency;
+        private final Map<Operation, LatencyHistogram> service;
+        private final long[] errors;
+        private final long unstarted;
+        private final long maxLagNanos;
+        private final String baselineLine;
+
+        Report(FleetScenarioRunner config, Map<Operation, LatencyHistogram> latency,
+               Map<Operation, LatencyHistogram> service, long[] errors, long unstarted,
+               long maxLagNanos, String baselineLine) {
+            this.config = config;
+            this.latency = latency;
+            this.service = service;
+            this.errors = errors;
+            this.unstarted = unstarted;
+            this.maxLagNanos = maxLagNanos;
+            this.baselineLine = baselineLine;
+        }
+
+        public LatencyHistogram getLatency(Operation operation) {
+            return latency.get(operation);
+        }
+
+        public long getOperationCount() {
+            long total = 0;
+            for (LatencyHistogram histogram : latency.values()) {
+                total += histogram.getTotalCount();
+            }
+            return total;
+        }
+
+        public String toJson() {
+            StringBuilder mixJson = new StringBuilder();
+            StringBuilder operationsJson = new StringBuilder();
+            long totalErrors = 0;
+            for (Operation operation : Operation.values()) {
+                Integer weight = config.mix.get(operation);
+                if (weight != null) {
+                    mixJson.append(mixJson.length() == 0 ? "" : ",")
+                            .append('"').append(operation.key()).append("\":").append(weight);
+                }
+                LatencyHistogram total = latency.get(operation);
+                LatencyHistogram served = service.get(operation);
+                if (total.getTotalCount() == 0) {
+                    continue;
+                }
+                totalErrors += errors[operation.ordinal()];
+                operationsJson.append(operationsJson.length() == 0 ? "" : ",")
+                        .append('"').append(operation.key()).append("\":{")
+                        .append("\"count\":").append(total.getTotalCount())
+                        .append(",\"errors\":").append(errors[operation.ordinal()])
+                        .append(",\"latencyNs\":{\"p50\":").append(total.getValueAtPercentile(50))
+                        .append(",\"p90\":").append(total.getValueAtPercentile(90))
+                        .append(",\"p99\":").append(total.getValueAtPercentile(99))
+                        .append(",\"p999\":").append(total.getValueAtPercentile(99.9))
+                        .append(",\"max\":").append(total.getMax())
+                        .append("},\"serviceNs\":{\"p50\":").append(served.getValueAtPercentile(50))
+                        .append(",\"p99\":").append(served.getValueAtPercentile(99))
+                        .append(",\"max\":").append(served.getMax()).append("}}");
+            }
+
+            long operations = getOperationCount();
+            return "{" +
+                    "\"mode\":\"load-test\"" +
+                    ",\"scenario\":\"" + config.name + "\"" +
+                    ",\"mix\":{" + mixJson + "}" +
+                    ",\"rate\":" + String.format(Locale.ROOT, "%.0f", config.rate) +
+                    ",\"arrival\":\"" + (config.poisson ? "poisson" : "constant") + "\"" +
+                    ",\"threads\":" + config.threads +
+                    ",\"seconds\":" + config.seconds +
+                    ",\"warmupSeconds\":" + config.warmupSeconds +
+                    ",\"users\":" + config.users +
+                    ",\"seed\":" + config.seed +
+                    ",\"operations\":" + operations +
+                    ",\"achievedRate\":" + String.format(Locale.ROOT, "%.0f", (operations - unstarted) / (double) config.seconds) +
+                    ",\"unstarted\":" + unstarted +
+                    ",\"errors\":" + totalErrors +
+                    ",\"maxLagMs\":" + String.format(Locale.ROOT, "%.2f", maxLagNanos / 1e6) +
+                    ",\"byOperation\":{" + operationsJson + "}" +
+                    (baselineLine == null ? "" : ",\"vsBaseline\":{" + compareWithBaseline() + "}") +
+                    "}";
+        }
+
+        /**
+         * Ratio of this run's p50 and p99 to the baseline's, per operation; below 1 is faster
+         */
+        private String compareWithBaseline() {
+            StringBuilder json = new StringBuilder();
+            Matcher matcher = OPERATION_PERCENTILES.matcher(baselineLine);
+            while (matcher.find()) {
+                Operation operation = null;
+                for (Operation candidate : Operation.values()) {
+                    if (candidate.key().equals(matcher.group(1))) {
+                        operation = candidate;
+                    }
+                }
+                if (operation == null || latency.get(operation).getTotalCount() == 0) {
+                    continue;
+                }
+                LatencyHistogram current = latency.get(operation);
+                json.append(json.length() == 0 ? "" : ",").append(String.format(Locale.ROOT,
+                        "\"%s\":{\"p50\":%.3f,\"p99\":%.3f}", operation.key(),
+                        current.getValueAtPercentile(50) / Math.max(1.0, Double.parseDouble(matcher.group(2))),
+                        current.getValueAtPercentile(99) / Math.max(1.0, Double.parseDouble(matcher.group(3)))));
+            }
+            return json.toString();
+        }
+    }
+}
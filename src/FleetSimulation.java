@@ -0,0 +1,346 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * HEADLESS FLEET SIMULATION:
+ * Builds a fleet through VehicleFactory and drives it with console output switched off,
+ * then reports throughput, latency percentiles, allocation rate and GC time as one JSON line.
+ * It is started from App:
+ *
+ *   java -cp src App --simulate --vehicles 100000 --ticks 200 --threads 8 \
+ *        --mix car=40,truck=20,motorcycle=20,electric_car=20 --seed 42
+ *
+ * The same options and seed always produce the same fleet and the same sequence of operations,
+ * so reports from different releases can be compared directly.
+ */
+public class FleetSimulation {
+    private int vehicleCount = 10000;
+    private int ticks = 100;
+    private int warmupTicks = 10;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = 42;
+    private final Map<VehicleFactory.VehicleType, Integer> mix = new EnumMap<>(VehicleFactory.VehicleType.class);
+
+    public FleetSimulation() {
+        for (VehicleFactory.VehicleType type : VehicleFactory.getAvailableTypes()) {
+            mix.put(type, 25);
+        }
+    }
+
+    /**
+     * Parses command-line options. Unknown options are rejected so typos don't go unnoticed.
+     */
+    public static FleetSimulation fromArgs(String[] args) {
+        FleetSimulation simulation = new FleetSimulation();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            switch (option) {
+                case "--simulate":
+                    break;
+                case "--vehicles":
+                    simulation.setVehicleCount(Integer.parseInt(valueOf(args, ++i, option)));
+                    break;
+                case "--ticks":
+                    simulation.setTicks(Integer.parseInt(valueOf(args, ++i, option)));
+                    break;
+                case "--warmup":
+                    simulation.setWarmupTicks(Integer.parseInt(valueOf(args, ++i, option)));
+                    break;
+                case "--threads":
+                    simulation.setThreads(Integer.parseInt(valueOf(args, ++i, option)));
+                    break;
+                case "--seed":
+                    simulation.seed = Long.parseLong(valueOf(args, ++i, option));
+                    break;
+                case "--mix":
+                    simulation.setMix(valueOf(args, ++i, option));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        return simulation;
+    }
+
+    private static String valueOf(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    public void setVehicleCount(int vehicleCount) {
+        if (vehicleCount <= 0) {
+            throw new IllegalArgumentException("Vehicle count must be positive");
+        }
+        this.vehicleCount = vehicleCount;
+    }
+
+    public void setTicks(int ticks) {
+        if (ticks <= 0) {
+            throw new IllegalArgumentException("Ticks must be positive");
+        }
+        this.ticks = ticks;
+    }
+
+    public void setWarmupTicks(int warmupTicks) {
+        if (warmupTicks < 0) {
+            throw new IllegalArgumentException("Warmup ticks cannot be negative");
+        }
+        this.warmupTicks = warmupTicks;
+    }
+
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @param spec Weights per vehicle type, for example "car=40,truck=20,motorcycle=20,electric_car=20"
+     */
+    public void setMix(String spec) {
+        mix.clear();
+        for (String part : spec.split(",")) {
+            String[] pair = part.split("=");
+            if (pair.length != 2 || !VehicleFactory.isTypeSupported(pair[0].trim())) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Mix weights cannot be negative: " + part);
+            }
+            mix.put(VehicleFactory.VehicleType.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), weight);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("Mix needs at least one positive weight");
+        }
+    }
+
+    /**
+     * Builds the fleet deterministically from the seed and the mix weights
+     */
+    public List<AbstractVehicle> buildFleet() {
+        String[] brands = {"Toyota", "Honda", "Ford", "BMW", "Tesla", "Volvo", "Mercedes"};
+        String[] models = {"Model A", "Model B", "Model C", "Model X", "Model Y"};
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+        SplittableRandom random = new SplittableRandom(seed);
+        List<AbstractVehicle> fleet = new ArrayList<>(vehicleCount);
+        for (int i = 0; i < vehicleCount; i++) {
+            int pick = random.nextInt(totalWeight);
+            VehicleFactory.VehicleType type = null;
+            for (Map.Entry<VehicleFactory.VehicleType, Integer> entry : mix.entrySet()) {
+                pick -= entry.getValue();
+                if (pick < 0) {
+                    type = entry.getKey();
+                    break;
+                }
+            }
+            fleet.add(VehicleFactory.createVehicle(type, brands[random.nextInt(brands.length)],
+                    models[random.nextInt(models.length)], 2015 + random.nextInt(10)));
+        }
+        return fleet;
+    }
+
+    /**
+     * Runs the simulation with console output disabled and returns the report
+     */
+    public Report run() throws InterruptedException {
+        boolean previousOutput = AbstractVehicle.isOutputEnabled();
+        AbstractVehicle.setOutputEnabled(false);
+        try {
+            List<AbstractVehicle> fleet = buildFleet();
+            if (warmupTicks > 0) {
+                drive(fleet, warmupTicks, seed ^ 0x5DEECE66DL);
+            }
+
+            long gcCountBefore = 0;
+            long gcTimeBefore = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCountBefore += Math.max(0, gc.getCollectionCount());
+                gcTimeBefore += Math.max(0, gc.getCollectionTime());
+            }
+
+            long start = System.nanoTime();
+            Worker[] workers = drive(fleet, ticks, seed);
+            long elapsed = System.nanoTime() - start;
+
+            long gcCount = -gcCountBefore;
+            long gcTime = -gcTimeBefore;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, gc.getCollectionCount());
+                gcTime += Math.max(0, gc.getCollectionTime());
+            }
+
+            LatencyHistogram latency = new LatencyHistogram();
+            long operations = 0;
+            long allocated = 0;
+            for (Worker worker : workers) {
+                latency.add(worker.histogram);
+                operations += worker.operations;
+                allocated += worker.allocatedBytes;
+            }
+            return new Report(this, operations, elapsed, latency, allocated, gcCount, gcTime);
+        } finally {
+            AbstractVehicle.setOutputEnabled(previousOutput);
+        }
+    }
+
+    private Worker[] drive(List<AbstractVehicle> fleet, int tickCount, long runSeed) throws InterruptedException {
+        int workerCount = Math.min(threads, fleet.size());
+        Worker[] workers = new Worker[workerCount];
+        Thread[] running = new Thread[workerCount];
+        int shard = (fleet.size() + workerCount - 1) / workerCount;
+        for (int w = 0; w < workerCount; w++) {
+            List<AbstractVehicle> part = fleet.subList(w * shard, Math.min(fleet.size(), (w + 1) * shard));
+            workers[w] = new Worker(part, tickCount, new SplittableRandom(runSeed + w));
+            running[w] = new Thread(workers[w], "fleet-sim-" + w);
+            running[w].start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+        return workers;
+    }
+
+    /**
+     * Drives one shard of the fleet. Each thread owns its vehicles, so no locking is needed.
+     */
+    private static class Worker implements Runnable {
+        private final AbstractVehicle[] vehicles;
+        private final int tickCount;
+        private final SplittableRandom random;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long operations;
+        private long allocatedBytes;
+
+        Worker(List<AbstractVehicle> vehicles, int tickCount, SplittableRandom random) {
+            this.vehicles = vehicles.toArray(new AbstractVehicle[0]);
+            this.tickCount = tickCount;
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            com.sun.management.ThreadMXBean threadBean =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+
+            for (int tick = 0; tick < tickCount; tick++) {
+                for (AbstractVehicle vehicle : vehicles) {
+                    int roll = random.nextInt(100);
+                    long start = System.nanoTime();
+                    step(vehicle, roll);
+                    histogram.record(System.nanoTime() - start);
+                    operations++;
+                }
+            }
+
+            allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        }
+
+        /**
+         * One operation per vehicle per tick, chosen from the vehicle's state and a dice roll
+         */
+        private static void step(AbstractVehicle vehicle, int roll) {
+            if (vehicle.getEnergyLevel() < vehicle.getEnergyCapacity() * 0.2) {
+                vehicle.refuel(vehicle.getEnergyCapacity());
+            } else if (vehicle.needsService()) {
+                vehicle.performMaintenance();
+            } else if (!vehicle.isRunning()) {
+                vehicle.start();
+            } else if (vehicle.getSpeed() >= vehicle.getMaxSpeed() || roll < 25) {
+                vehicle.brake();
+            } else if (roll < 85) {
+                vehicle.accelerate();
+            } else if (roll < 90) {
+                vehicle.changeGear(1 + roll % 6);
+            } else if (roll < 95 && vehicle instanceof Truck) {
+                Truck truck = (Truck) vehicle;
+                if (truck.getCurrentCargo() > 0) {
+                    truck.unloadCargo(truck.getCurrentCargo());
+                } else {
+                    truck.loadCargo(truck.getCargoCapacity() / 2);
+                }
+            } else if (roll < 98) {
+                vehicle.brake();
+            } else {
+                vehicle.stop();
+            }
+        }
+    }
+
+    /**
+     * Machine-readable result of one simulation run
+     */
+    public static class Report {
+        private final FleetSimulation config;
+        private final long operations;
+        private final long elapsedNanos;
+        private final LatencyHistogram latency;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcTimeMillis;
+
+        Report(FleetSimulation config, long operations, long elapsedNanos, LatencyHistogram latency,
+               long allocatedBytes, long gcCount, long gcTimeMillis) {
+            this.config = config;
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcTimeMillis = gcTimeMillis;
+        }
+
+        public double getOpsPerSecond() {
+            return operations / (elapsedNanos / 1e9);
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public String toJson() {
+            double seconds = elapsedNanos / 1e9;
+            StringBuilder mixJson = new StringBuilder();
+            for (Map.Entry<VehicleFactory.VehicleType, Integer> entry : config.mix.entrySet()) {
+                if (mixJson.length() > 0) {
+                    mixJson.append(',');
+                }
+                mixJson.append('"').append(entry.getKey().name().toLowerCase(Locale.ROOT)).append("\":").append(entry.getValue());
+            }
+
+            return "{" +
+                    "\"mode\":\"simulate\"" +
+                    ",\"vehicles\":" + config.vehicleCount +
+                    ",\"ticks\":" + config.ticks +
+                    ",\"warmupTicks\":" + config.warmupTicks +
+                    ",\"threads\":" + config.threads +
+                    ",\"seed\":" + config.seed +
+                    ",\"mix\":{" + mixJson + "}" +
+                    ",\"operations\":" + operations +
+                    ",\"durationMs\":" + String.format(Locale.ROOT, "%.1f", elapsedNanos / 1e6) +
+                    ",\"opsPerSec\":" + String.format(Locale.ROOT, "%.0f", getOpsPerSecond()) +
+                    ",\"latencyNs\":{\"p50\":" + latency.getValueAtPercentile(50) +
+                    ",\"p99\":" + latency.getValueAtPercentile(99) +
+                    ",\"p999\":" + latency.getValueAtPercentile(99.9) +
+                    ",\"max\":" + latency.getMax() +
+                    ",\"mean\":" + String.format(Locale.ROOT, "%.1f", latency.getMean()) + "}" +
+                    ",\"allocatedBytes\":" + allocatedBytes +
+                    ",\"allocationRateMBps\":" + String.format(Locale.ROOT, "%.1f", allocatedBytes / seconds / (1024 * 1024)) +
+                    ",\"bytesPerOp\":" + String.format(Locale.ROOT, "%.1f", operations == 0 ? 0.0 : (double) allocatedBytes / operations) +
+                    ",\"gcCount\":" + gcCount +
+                    ",\"gcTimeMs\":" + gcTimeMillis +
+                    "}";
+        }
+    }
+}
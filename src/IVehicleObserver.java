@@ -0,0 +1,27 @@
+/**
+ * OBSERVER INTERFACE EXAMPLE:
+ * This interface demonstrates the Observer pattern. Vehicles notify their observers
+ * whenever their state changes, so other components can react without polling getters.
+ * The changed fields are passed as a bit mask built from the constants below.
+ */
+public interface IVehicleObserver {
+    // Bits describing which part of the vehicle state changed
+    int RUNNING = 1;
+    int SPEED = 1 << 1;
+    int FUEL = 1 << 2;
+    int BATTERY = 1 << 3;
+    int MILEAGE = 1 << 4;
+    int SERVICE = 1 << 5;
+    int CARGO = 1 << 6;
+    int ECO_MODE = 1 << 7;
+    int TRAILER = 1 << 8;
+    int GEAR = 1 << 9;
+    int POSITION = 1 << 10;
+
+    /**
+     * Called on the thread that mutated the vehicle, right after the change
+     * @param vehicle The vehicle whose state changed
+     * @param changedFields Bit mask of the fields that changed
+     */
+    void onStateChanged(AbstractVehicle vehicle, int changedFields);
+}
@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+/**
+ * LATENCY HISTOGRAM:
+ * A log-linear histogram of latencies in nanoseconds, in the spirit of HdrHistogram.
+ * Every power-of-two range is split into 64 equal sub-buckets, so any recorded value
+ * is reported with less than 1.6% relative error while the whole range up to
+ * Long.MAX_VALUE fits in a fixed array of a few thousand counters.
+ *
+ * Recording never allocates. Instances are not thread-safe: give each thread its own
+ * histogram and merge them with add() when the run is over.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 128;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int BUCKET_COUNT = SUB_BUCKETS + 56 * HALF;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private double sum;
+
+    /**
+     * Record one latency value in nanoseconds (negative values are clamped to 0)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Merge another histogram into this one
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+        sum = 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100, for example 99.9
+     * @return Highest value equivalent to the bucket that holds the percentile
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(max, highestValueAt(i));
+            }
+        }
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - 6;
+        int sub = (int) (value >>> shift); // Always in [64, 128)
+        return SUB_BUCKETS + (shift - 1) * HALF + (sub - HALF);
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int offset = index - SUB_BUCKETS;
+        int shift = offset / HALF + 1;
+        long sub = offset % HALF + HALF;
+        if (shift >= 56) {
+            return Long.MAX_VALUE; // Top bucket would overflow
+        }
+        return ((sub + 1) << shift) - 1;
+    }
+}
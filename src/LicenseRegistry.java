@@ -0,0 +1,610 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * LICENSE AUTHORITY EXAMPLE:
+ * Validates driver licenses against an authority file of hundreds of millions of entries
+ * without loading it onto the heap. It demonstrates:
+ * 1. Memory-mapped lookup: The file holds the licenses' 64-bit fingerprints, sorted, and is
+ *    mapped read-only. Fingerprints are uniformly spread, so interpolation search finds an
+ *    entry in two or three probes instead of the ~28 of a binary search over 200M entries.
+ * 2. Bloom filter front: A split-block Bloom filter (one 32-byte block per license, one bit
+ *    in each of its eight words) is stored in the same file. A license that was never issued
+ *    is rejected after reading a single cache line, without touching the sorted keys.
+ * 3. Revocation deltas: Revocations and newly issued licenses are applied as small deltas to
+ *    an in-memory overlay that is consulted first. The overlay is replaced as a whole on each
+ *    delta, so any number of threads can validate without locks while deltas arrive.
+ * 4. No allocation per check: the license string is hashed char by char and every lookup
+ *    uses absolute reads on the shared mappings
+ *
+ * A fingerprint stands in for the license text, so an unknown license is accepted if its
+ * fingerprint collides with an issued one: about 1 in 10^11 per check with 200M licenses.
+ *
+ * File layout (little-endian):
+ *   header: "FLIC" version count bloomBlocks (64 bytes)
+ *   keys:   count sorted longs; fingerprint with its lowest bit set when revoked at build time
+ *   bloom:  bloomBlocks blocks of eight ints, built from every issued license
+ *
+ * Delta files are text, one change per line: "-LICENSE" revokes, "+LICENSE" issues or
+ * reinstates, and lines starting with '#' are comments.
+ *
+ * Usage:
+ *   LicenseRegistry.build(Paths.get("licenses.bin"), issuedLicenses, revokedLicenses);
+ *   LicenseRegistry registry = LicenseRegistry.open(Paths.get("licenses.bin"));
+ *   registry.applyDelta(Paths.get("revocations-2024-06-01.txt"));
+ *   User.setLicenseRegistry(registry);
+ *
+ * Benchmark: java -Xmx3g -cp src LicenseRegistry --licenses 200000000 --threads 4
+ */
+public class LicenseRegistry implements AutoCloseable {
+    private static final int MAGIC = 0x43494c46; // "FLIC" read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int BLOCK_SIZE = 32;
+    private static final int DEFAULT_BITS_PER_LICENSE = 10; // ~1% false positives
+    private static final int REGION_SHIFT = 27; // 2^27 keys (1 GiB) per mapping
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+    private static final long REVOKED_BIT = 1L;
+    private static final int[] SALTS = {
+            0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d, 0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31};
+
+    /**
+     * Result of a license check
+     */
+    public enum Status {
+        VALID,
+        REVOKED,
+        UNKNOWN
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] keys;
+    private final MappedByteBuffer bloom;
+    private final long count;
+    private final long bloomBlocks;
+    private volatile Overlay overlay = Overlay.EMPTY;
+
+    private LicenseRegistry(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Keep reading until the header is complete
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a license registry file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported license registry version: " + version);
+        }
+        this.count = header.getLong();
+        this.bloomBlocks = header.getLong();
+        long bloomOffset = HEADER_SIZE + count * Long.BYTES;
+        if (bloomBlocks <= 0 || bloomBlocks * BLOCK_SIZE > Integer.MAX_VALUE
+                || channel.size() < bloomOffset + bloomBlocks * BLOCK_SIZE) {
+            throw new IOException("Truncated or corrupt license registry file");
+        }
+        int regions = (int) ((count + REGION_MASK) >>> REGION_SHIFT);
+        this.keys = new MappedByteBuffer[regions];
+        for (int r = 0; r < regions; r++) {
+            long first = (long) r << REGION_SHIFT;
+            long length = Math.min(count - first, 1L << REGION_SHIFT) * Long.BYTES;
+            keys[r] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * Long.BYTES, length);
+            keys[r].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.bloom = channel.map(FileChannel.MapMode.READ_ONLY, bloomOffset, bloomBlocks * BLOCK_SIZE);
+        bloom.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Maps an authority file written by build()
+     */
+    public static LicenseRegistry open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new LicenseRegistry(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes an authority file
+     * @param issued Every license ever issued
+     * @param revoked Issued licenses that are no longer valid
+     */
+    public static void build(Path file, Iterable<String> issued, Iterable<String> revoked) throws IOException {
+        long[] fingerprints = new long[16];
+        int size = 0;
+        for (String license : issued) {
+            if (size == fingerprints.length) {
+                fingerprints = Arrays.copyOf(fingerprints, size * 2);
+            }
+            fingerprints[size++] = fingerprint(license);
+        }
+        long[] revokedFingerprints = new long[16];
+        int revokedSize = 0;
+        for (String license : revoked) {
+            if (revokedSize == revokedFingerprints.length) {
+                revokedFingerprints = Arrays.copyOf(revokedFingerprints, revokedSize * 2);
+            }
+            revokedFingerprints[revokedSize++] = fingerprint(license);
+        }
+        Arrays.sort(revokedFingerprints, 0, revokedSize);
+        for (int i = 0; i < size; i++) {
+            if (Arrays.binarySearch(revokedFingerprints, 0, revokedSize, fingerprints[i]) >= 0) {
+                fingerprints[i] |= REVOKED_BIT;
+            }
+        }
+        write(file, fingerprints, size, DEFAULT_BITS_PER_LICENSE);
+    }
+
+    /**
+     * Sorts the entries in place and writes them with their Bloom filter.
+     * Entries are fingerprints, with REVOKED_BIT set for revoked licenses.
+     */
+    static void write(Path file, long[] entries, int size, int bitsPerLicense) throws IOException {
+        Arrays.sort(entries, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            long fingerprint = entries[i] & ~REVOKED_BIT;
+            if (distinct > 0 && (entries[distinct - 1] & ~REVOKED_BIT) == fingerprint) {
+                entries[distinct - 1] |= entries[i]; // Listed twice: revoked wins
+            } else {
+                entries[distinct++] = entries[i];
+            }
+        }
+        long blocks = Math.max(1, ((long) distinct * bitsPerLicense + BLOCK_SIZE * 8 - 1) / (BLOCK_SIZE * 8));
+        if (blocks * BLOCK_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many licenses for one Bloom filter: " + distinct);
+        }
+        int[] filter = new int[(int) (blocks * (BLOCK_SIZE / Integer.BYTES))];
+        for (int i = 0; i < distinct; i++) {
+            long fingerprint = entries[i] & ~REVOKED_BIT;
+            int base = block(fingerprint, blocks) * (BLOCK_SIZE / Integer.BYTES);
+            int x = (int) (fingerprint >>> 1);
+            for (int w = 0; w < SALTS.length; w++) {
+                filter[base + w] |= 1 << ((x * SALTS[w]) >>> 27);
+            }
+        }
+
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(distinct).putLong(blocks);
+            buffer.position(HEADER_SIZE);
+            for (int i = 0; i < distinct; i++) {
+                if (buffer.remaining() < Long.BYTES) {
+                    drain(out, buffer);
+                }
+                buffer.putLong(entries[i]);
+            }
+            for (int word : filter) {
+                if (buffer.remaining() < Integer.BYTES) {
+                    drain(out, buffer);
+                }
+                buffer.putInt(word);
+            }
+            drain(out, buffer);
+        }
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return true if the license was issued and is not revoked
+     */
+    public boolean isValid(String license) {
+        return check(license) == Status.VALID;
+    }
+
+    /**
+     * Checks a license: first against the revocation deltas, then the Bloom filter, then the
+     * sorted keys. Safe to call from any number of threads.
+     */
+    public Status check(String license) {
+        if (license == null) {
+            return Status.UNKNOWN;
+        }
+        long fingerprint = fingerprint(license);
+        Overlay current = overlay;
+        if (current.size > 0) {
+            Status changed = current.get(fingerprint);
+            if (changed != null) {
+                return changed;
+            }
+        }
+        if (!mightContain(fingerprint)) {
+            return Status.UNKNOWN; // Never issued: the keys aren't read at all
+        }
+        long entry = find(fingerprint);
+        if (entry == 0) {
+            return Status.UNKNOWN; // Bloom filter false positive
+        }
+        return (entry & REVOKED_BIT) == 0 ? Status.VALID : Status.REVOKED;
+    }
+
+    /**
+     * Applies a delta file; see the class comment for its format
+     * @return Number of changes applied
+     */
+    public int applyDelta(Path delta) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(delta, StandardCharsets.UTF_8)) {
+            return applyDelta(reader.lines().toArray(String[]::new));
+        }
+    }
+
+    /**
+     * Applies delta lines ("-LICENSE" revokes, "+LICENSE" issues or reinstates) as one change:
+     * concurrent checks see either none or all of them
+     * @return Number of changes applied
+     */
+    public synchronized int applyDelta(String... lines) {
+        long[] fingerprints = new long[lines.length];
+        boolean[] valid = new boolean[lines.length];
+        int changes = 0;
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.charAt(0) == '#') {
+                continue;
+            }
+            String license = trimmed.substring(1).trim();
+            switch (trimmed.charAt(0)) {
+                case '-':
+                    valid[changes] = false;
+                    break;
+                case '+':
+                    valid[changes] = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Delta line must start with '+' or '-': " + line);
+            }
+            if (license.isEmpty()) {
+                throw new IllegalArgumentException("Delta line without a license: " + line);
+            }
+            fingerprints[changes++] = fingerprint(license);
+        }
+        if (changes > 0) {
+            overlay = overlay.with(fingerprints, valid, changes);
+        }
+        return changes;
+    }
+
+    public void revoke(String license) {
+        applyDelta("-" + license);
+    }
+
+    public void reinstate(String license) {
+        applyDelta("+" + license);
+    }
+
+    /**
+     * @return Number of licenses in the authority file
+     */
+    public long getLicenseCount() {
+        return count;
+    }
+
+    /**
+     * @return Number of licenses changed by deltas since the file was opened
+     */
+    public int getDeltaCount() {
+        return overlay.size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 64-bit fingerprint of a license: FNV-1a over the chars, finished with the murmur3 mixer
+     * so every bit depends on every char. The lowest bit is cleared (it marks revocation in
+     * the file) and 0 is never returned.
+     */
+    static long fingerprint(CharSequence license) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < license.length(); i++) {
+            hash = (hash ^ license.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        hash &= ~REVOKED_BIT;
+        return hash == 0 ? 2 : hash;
+    }
+
+    private static int block(long fingerprint, long blocks) {
+        return (int) (((fingerprint >>> 32) * blocks) >>> 32);
+    }
+
+    private boolean mightContain(long fingerprint) {
+        int base = block(fingerprint, bloomBlocks) * BLOCK_SIZE;
+        int x = (int) (fingerprint >>> 1);
+        for (int w = 0; w < SALTS.length; w++) {
+            if ((bloom.getInt(base + w * Integer.BYTES) & (1 << ((x * SALTS[w]) >>> 27))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long key(long index) {
+        return keys[(int) (index >>> REGION_SHIFT)].getLong((int) (index & REGION_MASK) << 3);
+    }
+
+    /**
+     * Interpolation search over the sorted keys, falling back to binary search if the
+     * guesses stop converging. The keys at both ends of the range are carried along, so
+     * each step costs one read of the mapping.
+     * @return The stored entry (fingerprint plus revoked bit), or 0 if absent
+     */
+    private long find(long fingerprint) {
+        if (count == 0) {
+            return 0;
+        }
+        long low = 0;
+        long high = count - 1;
+        long lowEntry = key(low);
+        long highEntry = key(high);
+        long lowKey = lowEntry & ~REVOKED_BIT;
+        long highKey = highEntry & ~REVOKED_BIT;
+        if (fingerprint <= lowKey || fingerprint >= highKey) {
+            return fingerprint == lowKey ? lowEntry : fingerprint == highKey ? highEntry : 0;
+        }
+        // From here on lowKey < fingerprint < highKey, so a match lies strictly inside the range
+        int guesses = 0;
+        while (high - low > 1) {
+            long middle;
+            if (guesses++ < 4) {
+                // In doubles: the key difference can overflow a long
+                double fraction = ((double) fingerprint - lowKey) / ((double) highKey - lowKey);
+                middle = Math.min(high - 1, Math.max(low + 1, low + (long) (fraction * (high - low))));
+            } else {
+                middle = (low + high) >>> 1;
+            }
+            long entry = key(middle);
+            long middleKey = entry & ~REVOKED_BIT;
+            if (middleKey == fingerprint) {
+                return entry;
+            }
+            if (middleKey < fingerprint) {
+                low = middle;
+                lowKey = middleKey;
+            } else {
+                high = middle;
+                highKey = middleKey;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Immutable open-addressing table of fingerprints changed by deltas. Each delta builds a
+     * new one, so readers never see a table being modified.
+     */
+    private static final class Overlay {
+        static final Overlay EMPTY = new Overlay(new long[2], new boolean[2], 0);
+
+        final long[] fingerprints; // 0 = empty slot
+        final boolean[] valid;
+        final int size;
+        final int mask;
+
+        Overlay(long[] fingerprints, boolean[] valid, int size) {
+            this.fingerprints = fingerprints;
+            this.valid = valid;
+            this.size = size;
+            this.mask = fingerprints.length - 1;
+        }
+
+        Status get(long fingerprint) {
+            int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+            while (true) {
+                long stored = fingerprints[slot];
+                if (stored == fingerprint) {
+                    return valid[slot] ? Status.VALID : Status.REVOKED;
+                }
+                if (stored == 0) {
+                    return null;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        Overlay with(long[] changed, boolean[] changedValid, int changes) {
+            int capacity = Integer.highestOneBit(Math.max(4, (size + changes) * 2 - 1)) << 1;
+            Overlay updated = new Overlay(new long[capacity], new boolean[capacity], 0);
+            int entries = 0;
+            for (int i = 0; i < fingerprints.length; i++) {
+                if (fingerprints[i] != 0) {
+                    entries += updated.put(fingerprints[i], valid[i]);
+                }
+            }
+            for (int i = 0; i < changes; i++) {
+                entries += updated.put(changed[i], changedValid[i]);
+            }
+            return new Overlay(updated.fingerprints, updated.valid, entries);
+        }
+
+        /**
+         * @return 1 if the fingerprint was added, 0 if it was already present and updated
+         */
+        private int put(long fingerprint, boolean isValid) {
+            int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+            while (fingerprints[slot] != 0 && fingerprints[slot] != fingerprint) {
+                slot = (slot + 1) & mask;
+            }
+            int added = fingerprints[slot] == 0 ? 1 : 0;
+            fingerprints[slot] = fingerprint;
+            valid[slot] = isValid;
+            return added;
+        }
+    }
+
+    /**
+     * Benchmark: writes an authority file of --licenses entries ("DL" + 10 digits, one in
+     * --revoked-every revoked), applies a delta, then validates from --threads threads with
+     * a mix of valid, revoked and never-issued licenses.
+     */
+    public static void main(String[] args) throws Exception {
+        long licenses = 20_000_000;
+        int threads = 4;
+        long checks = 20_000_000;
+        int revokedEvery = 100;
+        double unknownShare = 0.5;
+        String file = "licenses.bin";
+        boolean keep = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--licenses":
+                    licenses = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--checks":
+                    checks = Long.parseLong(args[++i]);
+                    break;
+                case "--revoked-every":
+                    revokedEvery = Integer.parseInt(args[++i]);
+                    break;
+                case "--unknown-share":
+                    unknownShare = Double.parseDouble(args[++i]);
+                    break;
+                case "--file":
+                    file = args[++i];
+                    break;
+                case "--keep":
+                    keep = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (licenses <= 0 || licenses > Integer.MAX_VALUE - 8 || threads <= 0 || revokedEvery <= 0) {
+            throw new IllegalArgumentException("Invalid benchmark parameters");
+        }
+        Path path = Paths.get(file);
+
+        long buildStart = System.nanoTime();
+        long[] entries = new long[(int) licenses];
+        StringBuilder license = new StringBuilder(12);
+        for (int i = 0; i < licenses; i++) {
+            entries[i] = fingerprint(license(license, i)) | (i % revokedEvery == 0 ? REVOKED_BIT : 0);
+        }
+        write(path, entries, entries.length, DEFAULT_BITS_PER_LICENSE);
+        entries = null;
+        double buildSeconds = (System.nanoTime() - buildStart) / 1e9;
+
+        // Fixed pool of license strings so the measured loop allocates nothing
+        int poolSize = 1 << 20;
+        String[] pool = new String[poolSize];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < poolSize; i++) {
+            long number = random.nextDouble() < unknownShare ? licenses + random.nextLong(licenses) : random.nextLong(licenses);
+            pool[i] = license(license, number).toString();
+        }
+
+        try (LicenseRegistry registry = open(path)) {
+            String[] delta = new String[1000];
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = "-" + pool[i];
+            }
+            registry.applyDelta(delta);
+
+            // Warm up the JIT and the page cache
+            long[] outcomes = new long[Status.values().length];
+            for (int i = 0; i < 2 * poolSize; i++) {
+                outcomes[registry.check(pool[i & (poolSize - 1)]).ordinal()]++;
+            }
+            Arrays.fill(outcomes, 0);
+
+            long perThread = checks / threads;
+            LatencyHistogram[] histograms = new LatencyHistogram[threads];
+            long[][] counts = new long[threads][Status.values().length];
+            Thread[] workers = new Thread[threads];
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int worker = t;
+                histograms[t] = new LatencyHistogram();
+                workers[t] = new Thread(() -> {
+                    LatencyHistogram histogram = histograms[worker];
+                    long[] own = counts[worker];
+                    int index = worker * 7919;
+                    for (long n = 0; n < perThread; n++) {
+                        String candidate = pool[index++ & (poolSize - 1)];
+                        if ((n & 63) == 0) {
+                            // Time one check in 64, so the clock doesn't dominate what is measured
+                            long before = System.nanoTime();
+                            own[registry.check(candidate).ordinal()]++;
+                            histogram.record(System.nanoTime() - before);
+                        } else {
+                            own[registry.check(candidate).ordinal()]++;
+                        }
+                    }
+                }, "license-check-" + t);
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            LatencyHistogram latency = new LatencyHistogram();
+            for (int t = 0; t < threads; t++) {
+                latency.add(histograms[t]);
+                for (int s = 0; s < outcomes.length; s++) {
+                    outcomes[s] += counts[t][s];
+                }
+            }
+            System.gc(); // Drop the build arrays so the figure shows what checking keeps on the heap
+            long heapUsed = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+
+            System.out.println(String.format(Locale.ROOT,
+                    "{\"licenses\":%d,\"fileSizeMB\":%d,\"buildSeconds\":%.1f,\"threads\":%d,\"checks\":%d,"
+                            + "\"checksPerSec\":%.0f,\"valid\":%d,\"revoked\":%d,\"unknown\":%d,"
+                            + "\"latencyNs\":{\"p50\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d},\"heapUsedMB\":%d}",
+                    registry.getLicenseCount(), Files.size(path) >> 20, buildSeconds, threads, perThread * threads,
+                    perThread * threads / seconds, outcomes[Status.VALID.ordinal()],
+                    outcomes[Status.REVOKED.ordinal()], outcomes[Status.UNKNOWN.ordinal()],
+                    latency.getValueAtPercentile(50), latency.getValueAtPercentile(99),
+                    latency.getValueAtPercentile(99.9), latency.getMax(), heapUsed >> 20));
+        } finally {
+            if (!keep) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static StringBuilder license(StringBuilder builder, long number) {
+        builder.setLength(0);
+        builder.append("DL");
+        String digits = Long.toString(number);
+        for (int i = digits.length(); i < 10; i++) {
+            builder.append('0');
+        }
+        return builder.append(digits);
+    }
+}
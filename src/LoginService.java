@@ -0,0 +1,442 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LOGIN SERVICE:
+ * Password logins against a FleetRegistry at a bounded, predictable cost. A login runs a
+ * deliberately slow PasswordHasher verification, so it is done once per session instead of
+ * once per request.
+ * It demonstrates:
+ * 1. Bulkhead: Verifications run on a dedicated pool (one thread per core by default) with a
+ *    bounded queue. A login storm fills the queue and further logins are rejected at once,
+ *    instead of taking CPU from the rest of the application or piling up unbounded work.
+ * 2. Session cache: A successful login returns a random token kept for a short TTL, and
+ *    checking a token is a map lookup. Since the pool bounds the login rate, the number of
+ *    live sessions is bounded by that rate times the TTL.
+ * 3. Uniform failures: Unknown emails are checked against a dummy hash, so response times
+ *    don't reveal which emails are registered
+ * 4. Continuous calibration: With a target time, the CPU time of every CALIBRATION_WINDOW
+ *    verifications is turned into a cost per iteration, and User.getPasswordHasher() is
+ *    replaced when its work factor is more than 20% off the target. This corrects the short
+ *    startup measurement of PasswordHasher.calibrate() and follows hardware changes.
+ * 5. Rehash on login: A hash made with fewer iterations than User.getPasswordHasher() uses
+ *    is replaced once the password is known to be right, so users are upgraded as they log in
+ *
+ * Usage:
+ *   User.setPasswordHasher(PasswordHasher.calibrate(50));
+ *   LoginService logins = new LoginService(registry, 50);
+ *   LoginService.Session session = logins.login(email, password).join(); // null if wrong
+ *   LoginService.Session again = logins.validate(session.getToken());
+ *   logins.shutdown();
+ *
+ * Benchmark: java -cp src LoginService --seconds 10 --target-ms 50
+ */
+public class LoginService {
+    private static final int QUEUE_PER_THREAD = 8;
+    private static final int CALIBRATION_WINDOW = 32;
+    private static final double CALIBRATION_TOLERANCE = 0.2;
+    private static final long DEFAULT_SESSION_TTL_MILLIS = 5 * 60 * 1000;
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder TOKEN_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    /**
+     * A verified login, valid until it expires or is logged out
+     */
+    public static final class Session {
+        private final String token;
+        private final String email;
+        private final long expiresNanos;
+
+        Session(String token, String email, long expiresNanos) {
+            this.token = token;
+            this.email = email;
+            this.expiresNanos = expiresNanos;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        boolean isExpired(long nowNanos) {
+            return nowNanos - expiresNanos >= 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Session{email='" + email + "'}"; // The token is a credential, keep it out of logs
+        }
+    }
+
+    private final FleetRegistry registry;
+    private final ThreadPoolExecutor verifiers;
+    private final List<Thread> verifierThreads = new ArrayList<>();
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final long sessionTtlNanos;
+    private final long targetMillis;
+    private volatile String dummyHash;
+    // Calibration window, guarded by this
+    private long windowCpuNanos;
+    private long windowIterations;
+    private int windowCount;
+    private int recalibrations;
+    private final AtomicLong nextPurgeNanos;
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * One verifier thread per core, QUEUE_PER_THREAD queued logins per thread and 5 minute sessions
+     * @param targetMillis CPU time one verification should take, or 0 to never change the hasher
+     */
+    public LoginService(FleetRegistry registry, long targetMillis) {
+        this(registry, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * QUEUE_PER_THREAD, DEFAULT_SESSION_TTL_MILLIS,
+                targetMillis);
+    }
+
+    /**
+     * @param threads Verifier threads; more threads than cores only adds latency
+     * @param queueCapacity Logins that may wait for a verifier; the worst queueing delay is
+     *                      about queueCapacity / threads verification times
+     * @param sessionTtlMillis How long a session token stays valid after login
+     * @param targetMillis CPU time one verification should take, or 0 to never change the hasher
+     */
+    public LoginService(FleetRegistry registry, int threads, int queueCapacity, long sessionTtlMillis,
+                        long targetMillis) {
+        if (registry == null) {
+            throw new IllegalArgumentException("Registry cannot be null");
+        }
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Threads and queue capacity must be positive");
+        }
+        if (sessionTtlMillis <= 0) {
+            throw new IllegalArgumentException("Session TTL must be positive");
+        }
+        if (targetMillis < 0) {
+            throw new IllegalArgumentException("Target time cannot be negative");
+        }
+        this.registry = registry;
+        this.targetMillis = targetMillis;
+        this.sessionTtlNanos = TimeUnit.MILLISECONDS.toNanos(sessionTtlMillis);
+        this.nextPurgeNanos = new AtomicLong(System.nanoTime() + sessionTtlNanos);
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "login-verifier-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            synchronized (verifierThreads) {
+                verifierThreads.add(thread);
+            }
+            return thread;
+        };
+        this.verifiers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), factory, new ThreadPoolExecutor.AbortPolicy());
+        this.dummyHash = User.getPasswordHasher().hash("dummy-" + RANDOM.nextLong());
+    }
+
+    /**
+     * Verifies the password on the verifier pool.
+     * @return A future with the new session, or null if the email or password is wrong. It
+     *         fails at once with RejectedExecutionException when the login queue is full.
+     */
+    public CompletableFuture<Session> login(String email, String password) {
+        CompletableFuture<Session> result = new CompletableFuture<>();
+        try {
+            verifiers.execute(() -> {
+                try {
+                    result.complete(verify(email, password));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            result.completeExceptionally(new RejectedExecutionException("Too many logins in progress, try again later"));
+        }
+        return result;
+    }
+
+    private Session verify(String email, String password) {
+        User user = registry.getUser(email);
+        String hash = user != null ? user.getPasswordHash() : dummyHash;
+        PasswordHasher hasher = User.getPasswordHasher();
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        long cpuStart = bean.getCurrentThreadCpuTime();
+        boolean matches = hasher.verify(password, hash);
+        if (targetMillis > 0 && cpuStart >= 0) { // -1 where thread CPU time is unsupported
+            calibrate(bean.getCurrentThreadCpuTime() - cpuStart, PasswordHasher.iterationsOf(hash));
+        }
+        if (!matches || user == null) {
+            failed.incrementAndGet();
+            return null;
+        }
+        if (hasher.needsRehash(hash)) {
+            user.setPassword(password);
+        }
+        succeeded.incrementAndGet();
+        return openSession(user.getEmail());
+    }
+
+    /**
+     * Adds one verification to the window and, once it is full, replaces the hasher if its
+     * work factor is too far off the target. Runs on the verifier threads.
+     */
+    private void calibrate(long cpuNanos, int iterations) {
+        PasswordHasher replacement = null;
+        synchronized (this) {
+            windowCpuNanos += cpuNanos;
+            windowIterations += iterations;
+            if (++windowCount < CALIBRATION_WINDOW) {
+                return;
+            }
+            PasswordHasher measured = PasswordHasher.forTarget(targetMillis, (double) windowCpuNanos / windowIterations);
+            int current = User.getPasswordHasher().getIterations();
+            if (Math.abs(measured.getIterations() - current) > current * CALIBRATION_TOLERANCE) {
+                User.setPasswordHasher(measured);
+                recalibrations++;
+                replacement = measured;
+            }
+            windowCpuNanos = 0;
+            windowIterations = 0;
+            windowCount = 0;
+        }
+        if (replacement != null) {
+            dummyHash = replacement.hash("dummy-" + RANDOM.nextLong()); // Unknown emails must cost the same
+        }
+    }
+
+    /**
+     * Times the hasher was replaced by continuous calibration
+     */
+    public synchronized int getRecalibrations() {
+        return recalibrations;
+    }
+
+    private Session openSession(String email) {
+        long now = System.nanoTime();
+        long purgeAt = nextPurgeNanos.get();
+        if (now - purgeAt >= 0 && nextPurgeNanos.compareAndSet(purgeAt, now + sessionTtlNanos / 4)) {
+            sessions.values().removeIf(session -> session.isExpired(now));
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        Session session = new Session(TOKEN_ENCODER.encodeToString(bytes), email, now + sessionTtlNanos);
+        sessions.put(session.token, session);
+        return session;
+    }
+
+    /**
+     * @return The session of this token, or null if it is unknown, expired or logged out
+     */
+    public Session validate(String token) {
+        Session session = token == null ? null : sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (session.isExpired(System.nanoTime())) {
+            sessions.remove(token, session);
+            return null;
+        }
+        return session;
+    }
+
+    public boolean logout(String token) {
+        return token != null && sessions.remove(token) != null;
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getSuccessfulLogins() {
+        return succeeded.get();
+    }
+
+    public long getFailedLogins() {
+        return failed.get();
+    }
+
+    /**
+     * Logins refused because the queue was full
+     */
+    public long getRejectedLogins() {
+        return rejected.get();
+    }
+
+    /**
+     * CPU time used by the verifier threads so far
+     */
+    public long getVerifierCpuNanos() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        synchronized (verifierThreads) {
+            for (Thread thread : verifierThreads) {
+                total += Math.max(0, bean.getThreadCpuTime(thread.getId()));
+            }
+        }
+        return total;
+    }
+
+    public void shutdown() {
+        verifiers.shutdown();
+    }
+
+    /**
+     * Benchmark: calibrates the hasher to --target-ms, then keeps the verifier pool busy with
+     * logins (one in ten with a wrong password), first for --warmup seconds while continuous
+     * calibration settles, then for --seconds measured. Reports sustained logins per second,
+     * logins per CPU-second of the verifier threads (per core), login latency including
+     * queueing, how many logins of a burst were rejected, and the cost of validating a token.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = -1;
+        int userCount = 32;
+        long targetMillis = PasswordHasher.DEFAULT_TARGET_MILLIS;
+        double warmupSeconds = 5;
+        double seconds = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--queue":
+                    queue = Integer.parseInt(args[++i]);
+                    break;
+                case "--users":
+                    userCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--target-ms":
+                    targetMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--warmup":
+                    warmupSeconds = Double.parseDouble(args[++i]);
+                    break;
+                case "--seconds":
+                    seconds = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (queue < 0) {
+            queue = threads * QUEUE_PER_THREAD;
+        }
+        AbstractVehicle.setOutputEnabled(false);
+
+        long calibrationStart = System.nanoTime();
+        PasswordHasher initial = PasswordHasher.calibrate(targetMillis);
+        double calibrationMs = (System.nanoTime() - calibrationStart) / 1e6;
+        User.setPasswordHasher(initial);
+
+        FleetRegistry registry = new FleetRegistry();
+        String[] emails = new String[userCount];
+        for (int u = 0; u < userCount; u++) {
+            emails[u] = "driver" + u + "@fleet.example";
+            registry.addUser(new User("Driver " + u, emails[u], "secret-" + u));
+        }
+        LoginService service = new LoginService(registry, threads, queue, DEFAULT_SESSION_TTL_MILLIS, targetMillis);
+        List<String> tokens = new ArrayList<>();
+        sustain(service, emails, threads * 2, warmupSeconds, new LatencyHistogram(), tokens);
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long loginsBefore = service.getSuccessfulLogins() + service.getFailedLogins();
+        long failedBefore = service.getFailedLogins();
+        long cpuBefore = service.getVerifierCpuNanos();
+        long start = System.nanoTime();
+        sustain(service, emails, threads * 2, seconds, latency, tokens);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        double cpuSeconds = (service.getVerifierCpuNanos() - cpuBefore) / 1e9;
+        long logins = service.getSuccessfulLogins() + service.getFailedLogins() - loginsBefore;
+        long failed = service.getFailedLogins() - failedBefore;
+
+        // Burst: many more logins at once than the pool and queue can hold
+        int burst = threads + queue * 4;
+        List<CompletableFuture<Session>> burstResults = new ArrayList<>();
+        for (int n = 0; n < burst; n++) {
+            int u = n % userCount;
+            burstResults.add(service.login(emails[u], "secret-" + u));
+        }
+        long burstRejected = 0;
+        for (CompletableFuture<Session> result : burstResults) {
+            try {
+                result.join();
+            } catch (RuntimeException e) {
+                burstRejected++;
+            }
+        }
+
+        // Requests after login only validate their session token
+        String[] tokenArray = tokens.toArray(new String[0]);
+        int validations = 2_000_000;
+        long valid = 0;
+        long validateStart = System.nanoTime();
+        for (int n = 0; n < validations && tokenArray.length > 0; n++) {
+            if (service.validate(tokenArray[n % tokenArray.length]) != null) {
+                valid++;
+            }
+        }
+        double validateNs = (double) (System.nanoTime() - validateStart) / validations;
+        service.shutdown();
+
+        System.out.println(String.format(Locale.ROOT,
+                "{\"cores\":%d,\"threads\":%d,\"queue\":%d,\"targetMs\":%d,\"initialIterations\":%d,"
+                        + "\"calibrationMs\":%.0f,\"iterations\":%d,\"recalibrations\":%d,\"seconds\":%.1f,"
+                        + "\"logins\":%d,\"failed\":%d,\"loginsPerSec\":%.1f,\"loginsPerCoreSec\":%.1f,"
+                        + "\"cpuMsPerLogin\":%.1f,\"loginMs\":{\"p50\":%.1f,\"p99\":%.1f,\"max\":%.1f},"
+                        + "\"burst\":%d,\"burstRejected\":%d,\"sessions\":%d,\"validateNs\":%.1f,\"validTokens\":%d}",
+                Runtime.getRuntime().availableProcessors(), threads, queue, targetMillis, initial.getIterations(),
+                calibrationMs, User.getPasswordHasher().getIterations(), service.getRecalibrations(), elapsedSeconds,
+                logins, failed, logins / elapsedSeconds, logins / cpuSeconds, cpuSeconds * 1e3 / logins,
+                latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                latency.getMax() / 1e6, burst, burstRejected, service.getSessionCount(), validateNs, valid));
+    }
+
+    /**
+     * Submits logins of random users for the given time, keeping at most maxInFlight pending
+     * so the pool stays busy without overflowing its queue, and waits for the last ones
+     */
+    private static void sustain(LoginService service, String[] emails, int maxInFlight, double seconds,
+                                LatencyHistogram latency, List<String> tokens) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        SplittableRandom random = new SplittableRandom(5);
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        for (long attempt = 0; System.nanoTime() - deadline < 0; attempt++) {
+            inFlight.acquire();
+            int u = random.nextInt(emails.length);
+            String password = attempt % 10 == 9 ? "wrong-password" : "secret-" + u;
+            long submitted = System.nanoTime();
+            service.login(emails[u], password).whenComplete((session, error) -> {
+                long elapsed = System.nanoTime() - submitted;
+                synchronized (latency) {
+                    latency.record(elapsed);
+                    if (session != null && tokens.size() < 10_000) {
+                        tokens.add(session.getToken());
+                    }
+                }
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(maxInFlight);
+    }
+}
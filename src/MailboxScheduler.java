@@ -0,0 +1,83 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MAILBOX SCHEDULER:
+ * Owns the few carrier threads that run every VehicleMailbox, and hands out one mailbox
+ * per vehicle. Only mailboxes with pending commands occupy the executor queue, so idle
+ * vehicles cost nothing.
+ *
+ * Usage:
+ *   MailboxScheduler scheduler = new MailboxScheduler(4);
+ *   VehicleMailbox<Truck> mailbox = scheduler.mailboxFor(truck);
+ *   mailbox.tell(t -> t.loadCargo(5));
+ *   CompletableFuture<Integer> speed = mailbox.ask(AbstractVehicle::getSpeed);
+ */
+public class MailboxScheduler {
+    private final ExecutorService carriers;
+    private final int batchSize;
+    private final ConcurrentHashMap<Long, VehicleMailbox<?>> mailboxes = new ConcurrentHashMap<>();
+
+    public MailboxScheduler(int carrierThreads) {
+        this(carrierThreads, 64);
+    }
+
+    /**
+     * @param carrierThreads Number of threads shared by all mailboxes
+     * @param batchSize Commands a mailbox may run before it yields its thread
+     */
+    public MailboxScheduler(int carrierThreads, int batchSize) {
+        if (carrierThreads <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Carrier threads and batch size must be positive");
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "mailbox-carrier-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.carriers = Executors.newFixedThreadPool(carrierThreads, factory);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the vehicle's mailbox, creating it on first use. Its commands run under the
+     * vehicle's monitor, so they can be mixed with other synchronized writers.
+     */
+    @SuppressWarnings("unchecked")
+    public <V extends AbstractVehicle> VehicleMailbox<V> mailboxFor(V vehicle) {
+        VehicleMailbox<?> mailbox = mailboxes.computeIfAbsent(vehicle.getId(),
+                id -> new VehicleMailbox<>(vehicle, carriers, batchSize));
+        if (mailbox.getVehicle() != vehicle) {
+            throw new IllegalArgumentException("Another vehicle already uses id " + vehicle.getId());
+        }
+        return (VehicleMailbox<V>) mailbox;
+    }
+
+    /**
+     * Looks up an existing mailbox by vehicle id
+     */
+    public VehicleMailbox<?> getMailbox(long vehicleId) {
+        return mailboxes.get(vehicleId);
+    }
+
+    public void removeMailbox(AbstractVehicle vehicle) {
+        mailboxes.remove(vehicle.getId());
+    }
+
+    public int getMailboxCount() {
+        return mailboxes.size();
+    }
+
+    /**
+     * Stops accepting work and waits for already scheduled batches to finish
+     */
+    public void shutdown() throws InterruptedException {
+        carriers.shutdown();
+        carriers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,480 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * MAINTENANCE EXECUTOR:
+ * Services every due vehicle of many users on a bounded pool of workers, instead of
+ * User.performMaintenanceOnAllVehicles() walking one user's vehicles on the caller thread.
+ * It demonstrates:
+ * 1. Resource modelling: Vehicles need a bay of the right kind (heavy-duty for trucks, EV for
+ *    electric cars, general for the rest) and each kind has a fixed number of bays
+ * 2. Priority scheduling: Within each bay kind the vehicle furthest past its service
+ *    threshold goes first, and a free worker takes the most overdue vehicle among the bay
+ *    kinds that still have a free bay
+ * 3. Monitor pattern: One lock guards the queues and free bays; workers wait() when every
+ *    remaining vehicle needs a bay kind that is full
+ *
+ * Service takes no time in the vehicle model, so a simulated bay time per kind can be set
+ * to make makespan and queue wait figures meaningful.
+ *
+ * Usage:
+ *   MaintenanceExecutor executor = new MaintenanceExecutor(8);
+ *   executor.setBayCapacity(MaintenanceExecutor.Bay.HEAVY_DUTY, 2);
+ *   MaintenanceExecutor.Report report = executor.run(registry.getUsers());
+ *   executor.shutdown();
+ */
+public class MaintenanceExecutor {
+    private static final int SERVICE_INTERVAL_KM = 10_000; // AbstractVehicle.needsService() threshold
+
+    /**
+     * Kinds of service bay
+     */
+    public enum Bay {
+        GENERAL, HEAVY_DUTY, EV
+    }
+
+    private static final Bay[] BAYS = Bay.values();
+
+    public static Bay bayFor(AbstractVehicle vehicle) {
+        if (vehicle instanceof Truck) {
+            return Bay.HEAVY_DUTY;
+        }
+        if (vehicle instanceof ElectricCar) {
+            return Bay.EV;
+        }
+        return Bay.GENERAL;
+    }
+
+    /**
+     * A due vehicle waiting for a bay
+     */
+    private static final class Job implements Comparable<Job> {
+        final AbstractVehicle vehicle;
+        final Bay bay;
+        final int overrunKm;
+        long startNanos;
+        boolean serviced; // False if something else serviced the vehicle before its turn came
+
+        Job(AbstractVehicle vehicle, Bay bay, int overrunKm) {
+            this.vehicle = vehicle;
+            this.bay = bay;
+            this.overrunKm = overrunKm;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int byOverrun = Integer.compare(other.overrunKm, overrunKm); // Most overdue first
+            return byOverrun != 0 ? byOverrun : Long.compare(vehicle.getId(), other.vehicle.getId());
+        }
+    }
+
+    /**
+     * Outcome of one run. Waits are measured from the start of the run to the moment a
+     * vehicle entered its bay.
+     */
+    public static class Report {
+        private final int serviced;
+        private final int skipped;
+        private final double makespanMillis;
+        private final LatencyHistogram waits;
+        private final EnumMap<Bay, Integer> servicedByBay;
+        private final EnumMap<Bay, Double> utilizationByBay;
+        private final double mostOverdueWaitMillis;
+        private final double leastOverdueWaitMillis;
+
+        Report(int serviced, int skipped, double makespanMillis, LatencyHistogram waits,
+               EnumMap<Bay, Integer> servicedByBay, EnumMap<Bay, Double> utilizationByBay,
+               double mostOverdueWaitMillis, double leastOverdueWaitMillis) {
+            this.serviced = serviced;
+            this.skipped = skipped;
+            this.makespanMillis = makespanMillis;
+            this.waits = waits;
+            this.servicedByBay = servicedByBay;
+            this.utilizationByBay = utilizationByBay;
+            this.mostOverdueWaitMillis = mostOverdueWaitMillis;
+            this.leastOverdueWaitMillis = leastOverdueWaitMillis;
+        }
+
+        public int getServiced() {
+            return serviced;
+        }
+
+        /**
+         * @return Vehicles that were no longer due when their turn came
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public double getMakespanMillis() {
+            return makespanMillis;
+        }
+
+        public double getMeanWaitMillis() {
+            return waits.getMean() / 1e6;
+        }
+
+        public double getWaitPercentileMillis(double percentile) {
+            return waits.getValueAtPercentile(percentile) / 1e6;
+        }
+
+        public double getMaxWaitMillis() {
+            return waits.getMax() / 1e6;
+        }
+
+        public int getServiced(Bay bay) {
+            return servicedByBay.get(bay);
+        }
+
+        /**
+         * @return Share of the makespan the bays of this kind were occupied (0..1)
+         */
+        public double getUtilization(Bay bay) {
+            return utilizationByBay.get(bay);
+        }
+
+        /**
+         * @return Mean wait of the most overdue quarter of the vehicles
+         */
+        public double getMostOverdueWaitMillis() {
+            return mostOverdueWaitMillis;
+        }
+
+        /**
+         * @return Mean wait of the least overdue quarter of the vehicles
+         */
+        public double getLeastOverdueWaitMillis() {
+            return leastOverdueWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Report{serviced=" + serviced + ", skipped=" + skipped +
+                    ", makespanMillis=" + String.format(Locale.ROOT, "%.1f", makespanMillis) +
+                    ", meanWaitMillis=" + String.format(Locale.ROOT, "%.1f", getMeanWaitMillis()) +
+                    ", byBay=" + servicedByBay + '}';
+        }
+    }
+
+    private final ExecutorService workers;
+    private final int workerCount;
+    private final EnumMap<Bay, Integer> capacity = new EnumMap<>(Bay.class);
+    private final EnumMap<Bay, Long> serviceNanos = new EnumMap<>(Bay.class);
+
+    // Run state, guarded by this
+    private final List<PriorityQueue<Job>> queues = new ArrayList<>();
+    private final int[] freeBays = new int[BAYS.length];
+    private final long[] busyNanos = new long[BAYS.length];
+    private boolean running;
+
+    public MaintenanceExecutor(int workerCount) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("Worker count must be positive");
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "maintenance-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.workers = Executors.newFixedThreadPool(workerCount, factory);
+        this.workerCount = workerCount;
+        for (Bay bay : BAYS) {
+            capacity.put(bay, bay == Bay.GENERAL ? 4 : 2);
+            serviceNanos.put(bay, 0L);
+            queues.add(new PriorityQueue<>());
+        }
+    }
+
+    public synchronized void setBayCapacity(Bay bay, int bays) {
+        if (bays <= 0) {
+            throw new IllegalArgumentException("A bay kind needs at least one bay");
+        }
+        capacity.put(bay, bays);
+    }
+
+    /**
+     * Simulated time a vehicle occupies a bay of this kind (0 by default)
+     */
+    public synchronized void setServiceMillis(Bay bay, double millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Service time cannot be negative");
+        }
+        serviceNanos.put(bay, (long) (millis * 1e6));
+    }
+
+    /**
+     * Services every due vehicle of these users and waits until all are done.
+     * A vehicle shared by several users is serviced once.
+     */
+    public Report run(Collection<User> users) {
+        List<Job> jobs = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (User user : users) {
+            for (AbstractVehicle vehicle : user.getVehicles()) {
+                if (vehicle.needsService() && seen.add(vehicle.getId())) {
+                    jobs.add(new Job(vehicle, bayFor(vehicle), vehicle.getMileageSinceService() - SERVICE_INTERVAL_KM));
+                }
+            }
+        }
+
+        long start;
+        synchronized (this) {
+            if (running) {
+                throw new IllegalStateException("A maintenance run is already in progress");
+            }
+            running = true;
+            for (Bay bay : BAYS) {
+                freeBays[bay.ordinal()] = capacity.get(bay);
+                busyNanos[bay.ordinal()] = 0;
+            }
+            for (Job job : jobs) {
+                queues.get(job.bay.ordinal()).add(job);
+            }
+            start = System.nanoTime();
+        }
+
+        List<Future<int[]>> results = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            results.add(workers.submit(this::work));
+        }
+        int serviced = 0;
+        int skipped = 0;
+        try {
+            for (Future<int[]> result : results) {
+                int[] counts = result.get();
+                serviced += counts[0];
+                skipped += counts[1];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for maintenance", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Maintenance worker failed", e.getCause());
+        } finally {
+            synchronized (this) {
+                for (PriorityQueue<Job> queue : queues) {
+                    queue.clear();
+                }
+                running = false;
+            }
+        }
+        long makespan = System.nanoTime() - start;
+        return report(jobs, start, makespan, serviced, skipped);
+    }
+
+    /**
+     * Worker loop: take the most overdue vehicle whose bay kind has room, service it, repeat
+     * @return {serviced, skipped}
+     */
+    private int[] work() {
+        int[] counts = new int[2];
+        while (true) {
+            Job job;
+            long nanos;
+            synchronized (this) {
+                while (true) {
+                    job = null;
+                    boolean pending = false;
+                    for (Bay bay : BAYS) {
+                        PriorityQueue<Job> queue = queues.get(bay.ordinal());
+                        if (queue.isEmpty()) {
+                            continue;
+                        }
+                        pending = true;
+                        if (freeBays[bay.ordinal()] > 0 && (job == null || queue.peek().compareTo(job) < 0)) {
+                            job = queue.peek();
+                        }
+                    }
+                    if (job != null) {
+                        break;
+                    }
+                    if (!pending) {
+                        return counts;
+                    }
+                    try {
+                        wait(); // Every remaining vehicle needs a bay kind that is full
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return counts;
+                    }
+                }
+                queues.get(job.bay.ordinal()).poll();
+                freeBays[job.bay.ordinal()]--;
+                nanos = serviceNanos.get(job.bay);
+            }
+
+            long started = System.nanoTime();
+            job.startNanos = started;
+            boolean done = false;
+            synchronized (job.vehicle) {
+                if (job.vehicle.needsService()) {
+                    job.vehicle.performMaintenance();
+                    done = true;
+                }
+            }
+            if (done && nanos > 0) {
+                LockSupport.parkNanos(nanos); // Simulated time in the bay
+            }
+            job.serviced = done;
+            counts[done ? 0 : 1]++;
+
+            synchronized (this) {
+                freeBays[job.bay.ordinal()]++;
+                busyNanos[job.bay.ordinal()] += System.nanoTime() - started;
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized Report report(List<Job> jobs, long start, long makespan, int serviced, int skipped) {
+        LatencyHistogram waits = new LatencyHistogram();
+        EnumMap<Bay, Integer> servicedByBay = new EnumMap<>(Bay.class);
+        EnumMap<Bay, Double> utilization = new EnumMap<>(Bay.class);
+        for (Bay bay : BAYS) {
+            servicedByBay.put(bay, 0);
+            utilization.put(bay, busyNanos[bay.ordinal()] / ((double) capacity.get(bay) * Math.max(1, makespan)));
+        }
+        Job[] byOverrun = jobs.toArray(new Job[0]);
+        Arrays.sort(byOverrun);
+        for (Job job : byOverrun) {
+            waits.record(job.startNanos - start);
+            if (job.serviced) {
+                servicedByBay.merge(job.bay, 1, Integer::sum);
+            }
+        }
+        int quarter = Math.max(1, byOverrun.length / 4);
+        return new Report(serviced, skipped, makespan / 1e6, waits, servicedByBay, utilization,
+                meanWaitMillis(byOverrun, 0, quarter, start),
+                meanWaitMillis(byOverrun, byOverrun.length - quarter, byOverrun.length, start));
+    }
+
+    private static double meanWaitMillis(Job[] jobs, int from, int to, long start) {
+        if (jobs.length == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = Math.max(0, from); i < to; i++) {
+            sum += jobs[i].startNanos - start;
+        }
+        return sum / (to - Math.max(0, from)) / 1e6;
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Benchmark: [--vehicles 20000] [--users 5000] [--workers 8] [--general 4] [--heavy 2] [--ev 2]
+     * [--general-ms 1] [--heavy-ms 3] [--ev-ms 2]
+     * Makes about a third of a simulated fleet overdue by up to 5,000 km, services it, and
+     * compares the makespan with doing the same bay time one vehicle after another.
+     */
+    public static void main(String[] args) {
+        int vehicleCount = 20_000;
+        int userCount = 5_000;
+        int workerCount = 8;
+        EnumMap<Bay, Integer> bays = new EnumMap<>(Bay.class);
+        EnumMap<Bay, Double> millis = new EnumMap<>(Bay.class);
+        bays.put(Bay.GENERAL, 4);
+        bays.put(Bay.HEAVY_DUTY, 2);
+        bays.put(Bay.EV, 2);
+        millis.put(Bay.GENERAL, 1.0);
+        millis.put(Bay.HEAVY_DUTY, 3.0);
+        millis.put(Bay.EV, 2.0);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicleCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--users":
+                    userCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--workers":
+                    workerCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--general":
+                    bays.put(Bay.GENERAL, Integer.parseInt(args[++i]));
+                    break;
+                case "--heavy":
+                    bays.put(Bay.HEAVY_DUTY, Integer.parseInt(args[++i]));
+                    break;
+                case "--ev":
+                    bays.put(Bay.EV, Integer.parseInt(args[++i]));
+                    break;
+                case "--general-ms":
+                    millis.put(Bay.GENERAL, Double.parseDouble(args[++i]));
+                    break;
+                case "--heavy-ms":
+                    millis.put(Bay.HEAVY_DUTY, Double.parseDouble(args[++i]));
+                    break;
+                case "--ev-ms":
+                    millis.put(Bay.EV, Double.parseDouble(args[++i]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        AbstractVehicle.setOutputEnabled(false);
+        FleetSimulation simulation = new FleetSimulation();
+        simulation.setVehicleCount(vehicleCount);
+        List<AbstractVehicle> fleet = simulation.buildFleet();
+        List<User> users = new ArrayList<>();
+        for (int u = 0; u < userCount; u++) {
+            users.add(new User("Owner " + u, "owner" + u + "@fleet.example", "password", "LIC-" + (10_000_000 + u)));
+        }
+        SplittableRandom random = new SplittableRandom(3);
+        VehicleSnapshot snapshot = new VehicleSnapshot();
+        double sequentialMillis = 0;
+        for (int i = 0; i < fleet.size(); i++) {
+            AbstractVehicle vehicle = fleet.get(i);
+            users.get(i % userCount).addVehicle(vehicle);
+            vehicle.captureState(snapshot);
+            if (random.nextInt(3) == 0) {
+                snapshot.mileageSinceService = SERVICE_INTERVAL_KM + 1 + random.nextInt(5_000);
+                sequentialMillis += millis.get(bayFor(vehicle));
+            } else {
+                snapshot.mileageSinceService = random.nextInt(SERVICE_INTERVAL_KM);
+            }
+            vehicle.restoreState(snapshot);
+        }
+
+        MaintenanceExecutor executor = new MaintenanceExecutor(workerCount);
+        for (Bay bay : BAYS) {
+            executor.setBayCapacity(bay, bays.get(bay));
+            executor.setServiceMillis(bay, millis.get(bay));
+        }
+        Report report = executor.run(users);
+        executor.shutdown();
+
+        System.out.println(String.format(Locale.ROOT,
+                "{\"serviced\":%d,\"skipped\":%d,\"makespanMillis\":%.0f,\"sequentialMillis\":%.0f,"
+                        + "\"speedup\":%.1f,\"meanWaitMillis\":%.1f,\"p99WaitMillis\":%.1f,\"maxWaitMillis\":%.1f,"
+                        + "\"mostOverdueQuarterWaitMillis\":%.1f,\"leastOverdueQuarterWaitMillis\":%.1f,"
+                        + "\"servicedByBay\":{\"general\":%d,\"heavyDuty\":%d,\"ev\":%d},"
+                        + "\"utilization\":{\"general\":%.2f,\"heavyDuty\":%.2f,\"ev\":%.2f}}",
+                report.getServiced(), report.getSkipped(), report.getMakespanMillis(), sequentialMillis,
+                sequentialMillis / report.getMakespanMillis(), report.getMeanWaitMillis(),
+                report.getWaitPercentileMillis(99), report.getMaxWaitMillis(),
+                report.getMostOverdueWaitMillis(), report.getLeastOverdueWaitMillis(),
+                report.getServiced(Bay.GENERAL), report.getServiced(Bay.HEAVY_DUTY), report.getServiced(Bay.EV),
+                report.getUtilization(Bay.GENERAL), report.getUtilization(Bay.HEAVY_DUTY),
+                report.getUtilization(Bay.EV)));
+    }
+}
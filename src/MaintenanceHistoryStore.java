@@ -0,0 +1,762 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * MAINTENANCE HISTORY EXAMPLE:
+ * Keeps every maintenance event of every vehicle, which performMaintenance() alone forgets
+ * as soon as it resets the service indicator. It demonstrates:
+ * 1. Observer Pattern: attach() listens for SERVICE changes; a reset to zero is recorded as an
+ *    event with the vehicle's mileage, a timestamp and its type-specific checks
+ * 2. Time-series compression (Gorilla style): Per vehicle, timestamps and mileage are stored
+ *    as delta-of-deltas in variable-width bit buckets, readings as XOR against the previous
+ *    value, and unchanged check codes as a single bit
+ * 3. Summaries for pruning: Each series keeps its time and mileage bounds plus running
+ *    service-interval totals, so fleet-wide queries decode only the series that straddle
+ *    the query window
+ * 4. Parallelism: Fleet-wide queries run over all series with parallel streams
+ *
+ * Type-specific values per event:
+ * - checks: Truck = axle count, plus TRAILER_CHECKED when a trailer was inspected; 0 otherwise
+ * - reading: ElectricCar = battery level (%), Truck = cargo (t), others = fuel level (L)
+ *
+ * Mileage and timestamps never go backwards for one vehicle, so both are delta-of-delta
+ * friendly and a mileage range query can stop at the first event past its upper bound.
+ * Events recorded from a vehicle (attach(), record(vehicle)) can't be refused, since the
+ * observer runs inside the vehicle's own performMaintenance(): when the wall clock steps back
+ * or a restored vehicle is serviced at a lower mileage, the event is kept with the last
+ * timestamp and mileage of its series and counted in getClampedCount().
+ *
+ * Usage:
+ *   MaintenanceHistoryStore history = new MaintenanceHistoryStore();
+ *   history.attach(truck);
+ *   truck.performMaintenance(); // Recorded
+ *   history.forEachEvent(truck.getId(), 0, 50_000, (id, time, mileage, checks, reading) -> ...);
+ *   MaintenanceHistoryStore.IntervalStats stats = history.serviceIntervals(null, from, to);
+ */
+public class MaintenanceHistoryStore {
+    public static final int TRAILER_CHECKED = 1 << 8;
+
+    private static final VehicleFactory.VehicleType[] TYPES = VehicleFactory.VehicleType.values();
+
+    /**
+     * Receives decoded events. Fleet-wide queries call it from several threads at once.
+     */
+    public interface EventVisitor {
+        void visit(long vehicleId, long timestampSeconds, int mileage, int checks, double reading);
+    }
+
+    /**
+     * Aggregate of the kilometres and days between consecutive services
+     */
+    public static final class IntervalStats {
+        private long count;
+        private long kmSum;
+        private int minKm = Integer.MAX_VALUE;
+        private int maxKm;
+        private long secondsSum;
+
+        void add(int km, long seconds) {
+            count++;
+            kmSum += km;
+            minKm = Math.min(minKm, km);
+            maxKm = Math.max(maxKm, km);
+            secondsSum += seconds;
+        }
+
+        void add(IntervalStats other) {
+            count += other.count;
+            kmSum += other.kmSum;
+            minKm = Math.min(minKm, other.minKm);
+            maxKm = Math.max(maxKm, other.maxKm);
+            secondsSum += other.secondsSum;
+        }
+
+        void add(Series series) {
+            count += series.count - 1;
+            kmSum += series.intervalKmSum;
+            minKm = Math.min(minKm, series.intervalMinKm);
+            maxKm = Math.max(maxKm, series.intervalMaxKm);
+            secondsSum += series.intervalSecondsSum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanKm() {
+            return count == 0 ? 0 : kmSum / (double) count;
+        }
+
+        public int getMinKm() {
+            return count == 0 ? 0 : minKm;
+        }
+
+        public int getMaxKm() {
+            return maxKm;
+        }
+
+        public double getMeanDays() {
+            return count == 0 ? 0 : secondsSum / (double) count / 86_400;
+        }
+
+        @Override
+        public String toString() {
+            return "IntervalStats{count=" + count +
+                    ", meanKm=" + String.format("%.0f", getMeanKm()) +
+                    ", minKm=" + getMinKm() + ", maxKm=" + maxKm +
+                    ", meanDays=" + String.format("%.1f", getMeanDays()) + '}';
+        }
+    }
+
+    /**
+     * Compressed events of one vehicle. Appends come from the vehicle's writer thread and
+     * queries from anywhere, so both go through the series lock.
+     */
+    private static final class Series {
+        final long vehicleId;
+        final int type;
+        long[] words = new long[2];
+        int bits;
+        int count;
+
+        // Bounds, used to skip series that can't match
+        long firstTimestamp;
+        long lastTimestamp;
+        int firstMileage;
+        int lastMileage;
+
+        // Encoder state
+        long lastTimestampDelta;
+        int lastMileageDelta;
+        int lastChecks;
+        long lastReadingBits;
+        int lastLeading = -1;
+        int lastTrailing;
+
+        // Totals over the count - 1 intervals between consecutive events
+        long intervalKmSum;
+        int intervalMinKm = Integer.MAX_VALUE;
+        int intervalMaxKm;
+        long intervalSecondsSum;
+
+        Series(long vehicleId, int type) {
+            this.vehicleId = vehicleId;
+            this.type = type;
+        }
+
+        void append(long timestamp, int mileage, int checks, double reading) {
+            long readingBits = Double.doubleToRawLongBits(reading);
+            if (count == 0) {
+                firstTimestamp = timestamp;
+                firstMileage = mileage;
+                writeBits(checks & 0xffffffffL, 32);
+                writeBits(readingBits, 64);
+            } else {
+                if (timestamp < lastTimestamp || mileage < lastMileage) {
+                    throw new IllegalArgumentException("Maintenance events must not go back in time or mileage");
+                }
+                long timestampDelta = timestamp - lastTimestamp;
+                int mileageDelta = mileage - lastMileage;
+                writeDeltaOfDelta(timestampDelta - lastTimestampDelta);
+                writeDeltaOfDelta((long) mileageDelta - lastMileageDelta);
+                if (checks == lastChecks) {
+                    writeBits(0, 1);
+                } else {
+                    writeBits(1, 1);
+                    writeBits(checks & 0xffffffffL, 32);
+                }
+                writeXor(readingBits);
+                intervalKmSum += mileageDelta;
+                intervalMinKm = Math.min(intervalMinKm, mileageDelta);
+                intervalMaxKm = Math.max(intervalMaxKm, mileageDelta);
+                intervalSecondsSum += timestampDelta;
+                lastTimestampDelta = timestampDelta;
+                lastMileageDelta = mileageDelta;
+            }
+            lastTimestamp = timestamp;
+            lastMileage = mileage;
+            lastChecks = checks;
+            lastReadingBits = readingBits;
+            count++;
+        }
+
+        /**
+         * Delta-of-delta buckets: '0' for no change, then '10', '110', '1110' with 14, 21 and
+         * 28 signed bits, and '1111' with the full 64 bits. Regular service intervals mostly
+         * land in the short buckets.
+         */
+        private void writeDeltaOfDelta(long value) {
+            if (value == 0) {
+                writeBits(0, 1);
+            } else if (fits(value, 14)) {
+                writeBits(0b10, 2);
+                writeBits(value, 14);
+            } else if (fits(value, 21)) {
+                writeBits(0b110, 3);
+                writeBits(value, 21);
+            } else if (fits(value, 28)) {
+                writeBits(0b1110, 4);
+                writeBits(value, 28);
+            } else {
+                writeBits(0b1111, 4);
+                writeBits(value, 64);
+            }
+        }
+
+        private static boolean fits(long value, int bits) {
+            long limit = 1L << (bits - 1);
+            return value >= -limit && value < limit;
+        }
+
+        /**
+         * Gorilla XOR: '0' if equal to the previous value; '10' + meaningful bits if they fit
+         * in the previous leading/trailing-zero window; otherwise '11', 5 bits of leading
+         * zeros, 6 bits of length and the meaningful bits
+         */
+        private void writeXor(long valueBits) {
+            long xor = valueBits ^ lastReadingBits;
+            if (xor == 0) {
+                writeBits(0, 1);
+                return;
+            }
+            int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+                writeBits(0b10, 2);
+                writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+                return;
+            }
+            int length = 64 - leading - trailing;
+            writeBits(0b11, 2);
+            writeBits(leading, 5);
+            writeBits(length & 63, 6); // 64 is stored as 0
+            writeBits(xor >>> trailing, length);
+            lastLeading = leading;
+            lastTrailing = trailing;
+        }
+
+        /**
+         * Appends the low n bits of value, most significant first. One spare word is always
+         * kept at the end so the decoder can read ahead without bounds checks.
+         */
+        private void writeBits(long value, int n) {
+            if (n == 0) {
+                return;
+            }
+            if (bits + n + 64 > (long) words.length * 64) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            if (n < 64) {
+                value &= (1L << n) - 1;
+            }
+            int offset = bits & 63;
+            int word = bits >>> 6;
+            int free = 64 - offset;
+            if (n <= free) {
+                words[word] |= value << (free - n);
+            } else {
+                words[word] |= value >>> (n - free);
+                words[word + 1] |= value << (64 - (n - free));
+            }
+            bits += n;
+        }
+
+        long memoryBytes() {
+            return 16 + words.length * 8L + 120;
+        }
+    }
+
+    /**
+     * Sequential decoder over one series; the mirror image of Series.append
+     */
+    private static final class Cursor {
+        private final long[] words;
+        private final int total;
+        private int position;
+        private int remaining;
+        long timestamp;
+        int mileage;
+        int checks;
+        double reading;
+        private long timestampDelta;
+        private int mileageDelta;
+        private long readingBits;
+        private int leading = -1;
+        private int trailing;
+        private final Series series;
+
+        Cursor(Series series) {
+            this.series = series;
+            this.words = series.words;
+            this.total = series.bits;
+            this.remaining = series.count;
+        }
+
+        boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            if (remaining == series.count) {
+                timestamp = series.firstTimestamp;
+                mileage = series.firstMileage;
+                checks = (int) readBits(32);
+                readingBits = readBits(64);
+            } else {
+                timestampDelta += readDeltaOfDelta();
+                mileageDelta += (int) readDeltaOfDelta();
+                timestamp += timestampDelta;
+                mileage += mileageDelta;
+                if (readBits(1) != 0) {
+                    checks = (int) readBits(32);
+                }
+                readXor();
+            }
+            reading = Double.longBitsToDouble(readingBits);
+            remaining--;
+            return true;
+        }
+
+        private long readDeltaOfDelta() {
+            // The prefix is 0, 10, 110, 1110 or 1111: count its leading ones in one peek
+            int ones = Long.numberOfLeadingZeros(~(peek() | 0x0fffffffffffffffL));
+            switch (ones) {
+                case 0:
+                    position += 1;
+                    return 0;
+                case 1:
+                    position += 2;
+                    return signed(readBits(14), 14);
+                case 2:
+                    position += 3;
+                    return signed(readBits(21), 21);
+                case 3:
+                    position += 4;
+                    return signed(readBits(28), 28);
+                default:
+                    position += 4;
+                    return readBits(64);
+            }
+        }
+
+        private static long signed(long value, int bits) {
+            return (value << (64 - bits)) >> (64 - bits);
+        }
+
+        private void readXor() {
+            if (readBits(1) == 0) {
+                return;
+            }
+            if (readBits(1) != 0) {
+                leading = (int) readBits(5);
+                int length = (int) readBits(6);
+                if (length == 0) {
+                    length = 64;
+                }
+                trailing = 64 - leading - length;
+            }
+            readingBits ^= readBits(64 - leading - trailing) << trailing;
+        }
+
+        /**
+         * The next 64 bits, left-aligned, without consuming them (past the end reads zeros
+         * from the writer's spare word)
+         */
+        private long peek() {
+            int offset = position & 63;
+            int word = position >>> 6;
+            long value = words[word] << offset;
+            return offset == 0 ? value : value | (words[word + 1] >>> (64 - offset));
+        }
+
+        private long readBits(int n) {
+            if (n == 0) {
+                return 0;
+            }
+            if (position + n > total) {
+                throw new IllegalStateException("Corrupt maintenance series");
+            }
+            long value = peek() >>> (64 - n);
+            position += n;
+            return value;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Series> series = new ConcurrentHashMap<>();
+    // Every series in creation order, so fleet-wide scans walk an array instead of the map.
+    // Grows under the store lock; the count is published after the slot is filled.
+    private volatile Series[] all = new Series[1024];
+    private volatile int allCount;
+    private final ConcurrentHashMap<Long, IVehicleObserver> observers = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private final LongAdder clamped = new LongAdder();
+
+    public MaintenanceHistoryStore() {
+        this(() -> System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * @param clock Current time in epoch seconds
+     */
+    public MaintenanceHistoryStore(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Records every future service of this vehicle (any reset of the service indicator)
+     */
+    public void attach(AbstractVehicle vehicle) {
+        IVehicleObserver observer = (changed, fields) -> {
+            if ((fields & IVehicleObserver.SERVICE) != 0 && changed.getMileageSinceService() == 0) {
+                record(changed);
+            }
+        };
+        if (observers.putIfAbsent(vehicle.getId(), observer) == null) {
+            vehicle.addObserver(observer);
+        }
+    }
+
+    public void detach(AbstractVehicle vehicle) {
+        IVehicleObserver observer = observers.remove(vehicle.getId());
+        if (observer != null) {
+            vehicle.removeObserver(observer);
+        }
+    }
+
+    /**
+     * Records a maintenance event for the vehicle's current state, timestamped now
+     */
+    public void record(AbstractVehicle vehicle) {
+        int checks = 0;
+        double reading;
+        if (vehicle instanceof Truck) {
+            Truck truck = (Truck) vehicle;
+            checks = truck.getNumberOfAxles() | (truck.hasTrailer() ? TRAILER_CHECKED : 0);
+            reading = truck.getCurrentCargo();
+        } else if (vehicle instanceof ElectricCar) {
+            reading = ((ElectricCar) vehicle).getBatteryLevel();
+        } else {
+            reading = vehicle.getFuelLevel();
+        }
+        append(vehicle.getId(), VehicleFactory.typeOf(vehicle), clock.getAsLong(), vehicle.getMileage(),
+                checks, reading, true);
+    }
+
+    /**
+     * Appends one event. Timestamp and mileage must not be lower than the vehicle's last event.
+     */
+    public void record(long vehicleId, VehicleFactory.VehicleType type, long timestampSeconds, int mileage,
+                       int checks, double reading) {
+        append(vehicleId, type, timestampSeconds, mileage, checks, reading, false);
+    }
+
+    /**
+     * @param clamp Raise a timestamp or mileage below the series' last event to that event's
+     *              value instead of throwing
+     */
+    private void append(long vehicleId, VehicleFactory.VehicleType type, long timestampSeconds, int mileage,
+                        int checks, double reading, boolean clamp) {
+        Series target = series.get(vehicleId);
+        if (target == null) {
+            target = create(vehicleId, type);
+        }
+        synchronized (target) {
+            if (clamp && target.count > 0
+                    && (timestampSeconds < target.lastTimestamp || mileage < target.lastMileage)) {
+                timestampSeconds = Math.max(timestampSeconds, target.lastTimestamp);
+                mileage = Math.max(mileage, target.lastMileage);
+                clamped.increment();
+            }
+            target.append(timestampSeconds, mileage, checks, reading);
+        }
+    }
+
+    /**
+     * Number of vehicle events whose timestamp or mileage went back and was clamped
+     */
+    public long getClampedCount() {
+        return clamped.sum();
+    }
+
+    private synchronized Series create(long vehicleId, VehicleFactory.VehicleType type) {
+        Series existing = series.get(vehicleId);
+        if (existing != null) {
+            return existing;
+        }
+        Series created = new Series(vehicleId, type.ordinal());
+        int count = allCount;
+        if (count == all.length) {
+            all = Arrays.copyOf(all, count * 2);
+        }
+        all[count] = created;
+        allCount = count + 1;
+        series.put(vehicleId, created);
+        return created;
+    }
+
+    /**
+     * All series created so far, in parallel
+     */
+    private Stream<Series> allSeries() {
+        int count = allCount; // Read before the array: any array seen afterwards holds these slots
+        Series[] snapshot = all;
+        return IntStream.range(0, count).parallel().mapToObj(i -> snapshot[i]);
+    }
+
+    public int getVehicleCount() {
+        return allCount;
+    }
+
+    public long getEventCount() {
+        return allSeries().mapToLong(s -> {
+            synchronized (s) {
+                return s.count;
+            }
+        }).sum();
+    }
+
+    /**
+     * @return Size of the encoded bit streams alone
+     */
+    public long getCompressedBytes() {
+        return allSeries().mapToLong(s -> {
+            synchronized (s) {
+                return (s.bits + 7) / 8;
+            }
+        }).sum();
+    }
+
+    /**
+     * @return Approximate heap used by the compressed series, including per-series overhead
+     */
+    public long getMemoryBytes() {
+        return allSeries().mapToLong(s -> {
+            synchronized (s) {
+                return s.memoryBytes();
+            }
+        }).sum();
+    }
+
+    /**
+     * Visits one vehicle's events with mileage in [minMileage, maxMileage], oldest first
+     * @return Number of events visited
+     */
+    public int forEachEvent(long vehicleId, int minMileage, int maxMileage, EventVisitor visitor) {
+        Series target = series.get(vehicleId);
+        return target == null ? 0 : visit(target, minMileage, maxMileage, visitor);
+    }
+
+    /**
+     * Visits the events of every vehicle with mileage in [minMileage, maxMileage], in parallel
+     * @return Number of events visited
+     */
+    public long forEachEvent(int minMileage, int maxMileage, EventVisitor visitor) {
+        return allSeries()
+                .mapToLong(s -> visit(s, minMileage, maxMileage, visitor))
+                .sum();
+    }
+
+    private static int visit(Series target, int minMileage, int maxMileage, EventVisitor visitor) {
+        synchronized (target) {
+            if (target.count == 0 || target.lastMileage < minMileage || target.firstMileage > maxMileage) {
+                return 0;
+            }
+            Cursor cursor = new Cursor(target);
+            int visited = 0;
+            while (cursor.next() && cursor.mileage <= maxMileage) {
+                if (cursor.mileage >= minMileage) {
+                    visitor.visit(target.vehicleId, cursor.timestamp, cursor.mileage, cursor.checks, cursor.reading);
+                    visited++;
+                }
+            }
+            return visited;
+        }
+    }
+
+    /**
+     * Kilometres and days between consecutive services, over intervals that ended within
+     * [fromSeconds, toSeconds]. Series entirely inside the window use their running totals;
+     * only series that straddle an edge are decoded.
+     * @param type Only this vehicle type, or null for all
+     */
+    public IntervalStats serviceIntervals(VehicleFactory.VehicleType type, long fromSeconds, long toSeconds) {
+        int wanted = type == null ? -1 : type.ordinal();
+        return allSeries()
+                .filter(s -> wanted < 0 || s.type == wanted)
+                .collect(IntervalStats::new, (stats, s) -> addIntervals(stats, s, fromSeconds, toSeconds),
+                        IntervalStats::add);
+    }
+
+    private static void addIntervals(IntervalStats stats, Series target, long from, long to) {
+        synchronized (target) {
+            if (target.count < 2 || target.lastTimestamp < from || target.firstTimestamp > to) {
+                return;
+            }
+            if (target.firstTimestamp >= from && target.lastTimestamp <= to) {
+                stats.add(target);
+                return;
+            }
+            Cursor cursor = new Cursor(target);
+            cursor.next();
+            long previousTimestamp = cursor.timestamp;
+            int previousMileage = cursor.mileage;
+            while (cursor.next() && cursor.timestamp <= to) {
+                if (cursor.timestamp >= from) {
+                    stats.add(cursor.mileage - previousMileage, cursor.timestamp - previousTimestamp);
+                }
+                previousTimestamp = cursor.timestamp;
+                previousMileage = cursor.mileage;
+            }
+        }
+    }
+
+    /**
+     * Benchmark: [--vehicles 1000000] [--years 10] [--queries 100000]
+     * Generates ten years of service history (intervals around 10,000 km, yearly mileage
+     * between 5,000 and 40,000 km), then reports compression, append rate, single-vehicle
+     * mileage range query latency and fleet-wide interval aggregation time. A sample of
+     * vehicles is decoded and checked against the generated events.
+     */
+    public static void main(String[] args) {
+        int vehicleCount = 1_000_000;
+        int years = 10;
+        int queries = 100_000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicleCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--years":
+                    years = Integer.parseInt(args[++i]);
+                    break;
+                case "--queries":
+                    queries = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        long start = 1_500_000_000L; // Epoch seconds, 2017
+        long end = start + years * 365L * 86_400;
+        MaintenanceHistoryStore store = new MaintenanceHistoryStore();
+        long appendStart = System.nanoTime();
+        long events = 0;
+        long checkSum = 0;
+        for (int v = 0; v < vehicleCount; v++) {
+            events += generate(v, start, end, store, null);
+        }
+        double appendSeconds = (System.nanoTime() - appendStart) / 1e9;
+
+        // Decode a sample and compare with a fresh generation of the same events
+        for (int v = 0; v < vehicleCount; v += Math.max(1, vehicleCount / 1000)) {
+            long[] expected = new long[4 * 200];
+            int count = generate(v, start, end, null, expected);
+            int[] index = {0};
+            int vehicle = v;
+            store.forEachEvent(v, 0, Integer.MAX_VALUE, (id, time, mileage, checks, reading) -> {
+                int at = 4 * index[0]++;
+                if (time != expected[at] || mileage != expected[at + 1] || checks != expected[at + 2]
+                        || Double.doubleToRawLongBits(reading) != expected[at + 3]) {
+                    throw new IllegalStateException("Vehicle " + vehicle + " event " + (at / 4) + " decoded wrongly");
+                }
+            });
+            if (index[0] != count) {
+                throw new IllegalStateException("Vehicle " + v + " decoded " + index[0] + " of " + count + " events");
+            }
+            checkSum += count;
+        }
+
+        SplittableRandom random = new SplittableRandom(5);
+        LatencyHistogram rangeLatency = new LatencyHistogram();
+        long[] visited = new long[1];
+        EventVisitor counter = (id, time, mileage, checks, reading) -> visited[0]++;
+        for (int round = 0; round < 2; round++) {
+            rangeLatency.reset();
+            for (int q = 0; q < queries; q++) {
+                int low = random.nextInt(200_000);
+                long queryStart = System.nanoTime();
+                store.forEachEvent(random.nextInt(vehicleCount), low, low + 50_000, counter);
+                rangeLatency.record(System.nanoTime() - queryStart);
+            }
+        }
+
+        double fullMillis = 0;
+        double windowMillis = 0;
+        IntervalStats full = null;
+        IntervalStats window = null;
+        long windowFrom = start + (end - start) / 3;
+        long windowTo = start + 2 * (end - start) / 3;
+        for (int round = 0; round < 3; round++) {
+            long t0 = System.nanoTime();
+            full = store.serviceIntervals(null, Long.MIN_VALUE, Long.MAX_VALUE);
+            long t1 = System.nanoTime();
+            window = store.serviceIntervals(VehicleFactory.VehicleType.TRUCK, windowFrom, windowTo);
+            long t2 = System.nanoTime();
+            fullMillis = (t1 - t0) / 1e6;
+            windowMillis = (t2 - t1) / 1e6;
+        }
+        if (full.getCount() != events - store.getVehicleCount()) {
+            throw new IllegalStateException("Interval count " + full.getCount() + " doesn't match " + events + " events");
+        }
+
+        long compressed = store.getCompressedBytes();
+        long memory = store.getMemoryBytes();
+        System.out.println(String.format(Locale.ROOT,
+                "{\"vehicles\":%d,\"events\":%d,\"eventsChecked\":%d,\"appendsPerSecond\":%.0f,"
+                        + "\"bytesPerEvent\":%.2f,\"heapBytesPerEvent\":%.2f,\"rawBytesPerEvent\":24,\"rangeQueryMeanMicros\":%.2f,"
+                        + "\"rangeQueryP99Micros\":%.2f,\"fleetIntervalsMillis\":%.1f,\"windowIntervalsMillis\":%.1f,"
+                        + "\"meanIntervalKm\":%.0f,\"meanIntervalDays\":%.1f,\"truckWindowIntervals\":%d}",
+                vehicleCount, events, checkSum, events / appendSeconds, compressed / (double) events, memory / (double) events,
+                rangeLatency.getMean() / 1000, rangeLatency.getValueAtPercentile(99) / 1000.0,
+                fullMillis, windowMillis, full.getMeanKm(), full.getMeanDays(), window.getCount()));
+    }
+
+    /**
+     * Deterministic synthetic history of one vehicle, either appended to the store or written
+     * into expected as (timestamp, mileage, checks, reading bits) quadruples
+     */
+    private static int generate(int vehicle, long start, long end, MaintenanceHistoryStore store, long[] expected) {
+        SplittableRandom random = new SplittableRandom(vehicle * 0x9E3779B97F4A7C15L);
+        VehicleFactory.VehicleType type = TYPES[vehicle % TYPES.length];
+        double kmPerSecond = (5_000 + random.nextInt(35_000)) / (365.0 * 86_400);
+        int axles = 2 + random.nextInt(4);
+        long time = start + random.nextInt(180) * 86_400L;
+        int mileage = random.nextInt(20_000);
+        int count = 0;
+        while (time < end && count < 200) {
+            int checks = 0;
+            double reading;
+            switch (type) {
+                case TRUCK:
+                    checks = axles | (random.nextInt(3) == 0 ? TRAILER_CHECKED : 0);
+                    reading = random.nextInt(40) / 2.0;
+                    break;
+                case ELECTRIC_CAR:
+                    reading = 20 + random.nextInt(80);
+                    break;
+                default:
+                    reading = random.nextInt(100) / 2.0;
+                    break;
+            }
+            if (store != null) {
+                store.record(vehicle, type, time, mileage, checks, reading);
+            } else {
+                expected[4 * count] = time;
+                expected[4 * count + 1] = mileage;
+                expected[4 * count + 2] = checks;
+                expected[4 * count + 3] = Double.doubleToRawLongBits(reading);
+            }
+            count++;
+            int interval = 9_000 + random.nextInt(2_500); // Service is due every 10,000 km
+            mileage += interval;
+            time += (long) (interval / kmPerSecond);
+        }
+        return count;
+    }
+}
@@ -63,13 +63,47 @@ public class Motorcycle extends AbstractVehicle {
      */
     @Override
     public void accelerate() {
-        if (isRunning && fuelLevel > 0) {
-            speed += 15; // Motorcycles accelerate faster than cars
-            fuelLevel -= 0.3; // More fuel efficient
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.ACCELERATE);
+        if (isRunning && fuelLevel > ENERGY_EPSILON) {
+            speed += getAccelerationStep(); // Motorcycles accelerate faster than cars
+            fuelLevel -= getEnergyPerKm(); // More fuel efficient
             mileage += 1;
             mileageSinceService += 1;
-            System.out.println(getVehicleType() + " " + brand + " " + model + " is accelerating quickly. Current speed: " + speed + " km/h");
+            moveForward(1);
+            if (outputEnabled) {
+                System.out.println(getVehicleType() + " " + brand + " " + model + " is accelerating quickly. Current speed: " + speed + " km/h");
+            }
+            notifyObservers(IVehicleObserver.SPEED | IVehicleObserver.FUEL
+                    | IVehicleObserver.MILEAGE | IVehicleObserver.SERVICE | IVehicleObserver.POSITION);
         }
+        FleetRecording.endOperation(event, this);
+    }
+
+    @Override
+    public double getEnergyPerKm() {
+        return 0.3;
+    }
+
+    @Override
+    protected int getAccelerationStep() {
+        return 15;
+    }
+
+    @Override
+    void captureState(VehicleSnapshot snapshot) {
+        super.captureState(snapshot);
+        snapshot.type = VehicleFactory.VehicleType.MOTORCYCLE;
+        snapshot.sidecar = hasSidecar;
+        snapshot.engineSize = engineSize;
+        snapshot.motorcycleType = motorcycleType;
+    }
+
+    @Override
+    void restoreState(VehicleSnapshot snapshot) {
+        super.restoreState(snapshot);
+        hasSidecar = snapshot.sidecar;
+        engineSize = snapshot.engineSize;
+        motorcycleType = snapshot.motorcycleType;
     }
 
     // Motorcycle-specific methods demonstrating ENCAPSULATION
@@ -91,8 +125,10 @@ public class Motorcycle extends AbstractVehicle {
      */
     public void wheelie() {
         if (isRunning && speed > 30 && !hasSidecar) {
-            System.out.println(brand + " " + model + " is doing a wheelie!");
-        } else if (hasSidecar) {
+            if (outputEnabled) {
+                System.out.println(brand + " " + model + " is doing a wheelie!");
+            }
+        } else if (hasSidecar && outputEnabled) {
             System.out.println("Cannot do wheelie with sidecar attached!");
         }
     }
@@ -102,10 +138,14 @@ public class Motorcycle extends AbstractVehicle {
      */
     @Override
     public void performMaintenance() {
-        System.out.println("Performing motorcycle-specific maintenance on " + brand + " " + model);
-        System.out.println("- Checking chain tension");
-        System.out.println("- Inspecting tire wear");
-        System.out.println("- Checking brake pads");
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.MAINTENANCE);
+        if (outputEnabled) {
+            System.out.println("Performing motorcycle-specific maintenance on " + brand + " " + model);
+            System.out.println("- Checking chain tension");
+            System.out.println("- Inspecting tire wear");
+            System.out.println("- Checking brake pads");
+        }
         resetServiceIndicator();
+        FleetRecording.endOperation(event, this);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,361 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OFF-HEAP STORAGE EXAMPLE:
+ * Stores vehicles as fixed-stride binary records outside the Java heap, so a very large
+ * fleet does not turn into millions of objects for the garbage collector to trace.
+ * It demonstrates:
+ * 1. Data-oriented design: Each vehicle is a record of primitive fields at fixed offsets
+ * 2. VarHandles: All typed reads and writes go through byte buffer view VarHandles
+ * 3. Flyweight Pattern: A Cursor reuses one AbstractVehicle per type as a view over any record
+ *
+ * Records live in direct-memory slabs (arenas) of SLAB_RECORDS records each. The first
+ * part of a record holds the AbstractVehicle fields; the tail is a union whose layout
+ * depends on the record's type tag. Strings (brand, model, motorcycle type, charging port)
+ * are dictionary-coded, so heap usage only grows with the number of distinct strings.
+ */
+public class OffHeapFleetStore {
+    // Record layout (bytes)
+    static final int TYPE_OFFSET = 0;        // short: VehicleType ordinal
+    static final int FLAGS_OFFSET = 2;       // short: packed booleans
+    static final int GEAR_OFFSET = 4;        // short
+    static final int ID_OFFSET = 8;          // long
+    static final int YEAR_OFFSET = 16;       // int
+    static final int SPEED_OFFSET = 20;      // int
+    static final int MILEAGE_OFFSET = 24;    // int
+    static final int SERVICE_OFFSET = 28;    // int: mileage since service
+    static final int BRAND_OFFSET = 32;      // int: dictionary id
+    static final int MODEL_OFFSET = 36;      // int: dictionary id
+    static final int LABEL_OFFSET = 40;      // int: motorcycle type / charging port dictionary id
+    static final int COUNT_OFFSET = 44;      // int: doors / engine size / axles
+    static final int FUEL_OFFSET = 48;       // double
+    static final int FUEL_CAPACITY_OFFSET = 56; // double
+    static final int UNION_A_OFFSET = 64;    // double: cargo capacity / battery capacity
+    static final int UNION_B_OFFSET = 72;    // double: current cargo / battery level
+    static final int UNION_C_OFFSET = 80;    // double: efficiency
+    static final int X_OFFSET = 88;          // double: position in km
+    static final int Y_OFFSET = 96;          // double
+    static final int HEADING_OFFSET = 104;   // double: degrees
+    static final int RECORD_SIZE = 112;
+
+    static final int SLAB_RECORDS = 1 << 20; // ~112 MB per slab
+
+    // Flag bits
+    private static final int RUNNING = 1;
+    private static final int AIR_CONDITIONING = 1 << 1;
+    private static final int AUTOMATIC = 1 << 2;
+    private static final int SIDECAR = 1 << 3;
+    private static final int TRAILER = 1 << 4;
+    private static final int ECO_MODE = 1 << 5;
+    private static final int REGENERATIVE_BRAKING = 1 << 6;
+
+    private static final VarHandle SHORT = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle DOUBLE = MethodHandles.byteBufferViewVarHandle(double[].class, ByteOrder.nativeOrder());
+
+    private static final VehicleFactory.VehicleType[] TYPES = VehicleFactory.VehicleType.values();
+
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    private volatile long size;
+
+    // String dictionary: only distinct values live on the heap
+    private final ConcurrentHashMap<String, Integer> stringIds = new ConcurrentHashMap<>();
+    private volatile String[] stringTable = new String[16];
+    private int stringCount;
+
+    /**
+     * @return Number of records in the store
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return Bytes of direct memory reserved by the store
+     */
+    public long getReservedBytes() {
+        return (long) slabs.length * SLAB_RECORDS * RECORD_SIZE;
+    }
+
+    /**
+     * Appends a vehicle and returns its record index
+     */
+    public long add(AbstractVehicle vehicle) {
+        VehicleSnapshot snapshot = new VehicleSnapshot();
+        vehicle.captureState(snapshot);
+        return add(snapshot);
+    }
+
+    public synchronized long add(VehicleSnapshot snapshot) {
+        long index = size;
+        int slab = (int) (index / SLAB_RECORDS);
+        if (slab == slabs.length) {
+            ByteBuffer[] grown = Arrays.copyOf(slabs, slab + 1);
+            grown[slab] = ByteBuffer.allocateDirect(SLAB_RECORDS * RECORD_SIZE).order(ByteOrder.nativeOrder());
+            slabs = grown;
+        }
+        writeRecord(slabs[slab], offsetOf(index), snapshot);
+        size = index + 1;
+        return index;
+    }
+
+    /**
+     * Copies a record into a snapshot (no allocation once the dictionary is warm)
+     */
+    public void read(long index, VehicleSnapshot snapshot) {
+        readRecord(slabFor(index), offsetOf(index), snapshot);
+    }
+
+    /**
+     * Decodes the record at base; shared with TieredVehicleStore, which keeps the same
+     * layout in a file instead of in slabs
+     */
+    void readRecord(ByteBuffer slab, int base, VehicleSnapshot snapshot) {
+        int flags = (short) SHORT.get(slab, base + FLAGS_OFFSET);
+        String[] table = stringTable;
+
+        snapshot.type = TYPES[(short) SHORT.get(slab, base + TYPE_OFFSET)];
+        snapshot.id = (long) LONG.get(slab, base + ID_OFFSET);
+        snapshot.brand = table[(int) INT.get(slab, base + BRAND_OFFSET)];
+        snapshot.model = table[(int) INT.get(slab, base + MODEL_OFFSET)];
+        snapshot.year = (int) INT.get(slab, base + YEAR_OFFSET);
+        snapshot.running = (flags & RUNNING) != 0;
+        snapshot.speed = (int) INT.get(slab, base + SPEED_OFFSET);
+        snapshot.currentGear = (short) SHORT.get(slab, base + GEAR_OFFSET);
+        snapshot.fuelLevel = (double) DOUBLE.get(slab, base + FUEL_OFFSET);
+        snapshot.fuelCapacity = (double) DOUBLE.get(slab, base + FUEL_CAPACITY_OFFSET);
+        snapshot.mileage = (int) INT.get(slab, base + MILEAGE_OFFSET);
+        snapshot.mileageSinceService = (int) INT.get(slab, base + SERVICE_OFFSET);
+        snapshot.x = (double) DOUBLE.get(slab, base + X_OFFSET);
+        snapshot.y = (double) DOUBLE.get(slab, base + Y_OFFSET);
+        snapshot.heading = (double) DOUBLE.get(slab, base + HEADING_OFFSET);
+
+        int count = (int) INT.get(slab, base + COUNT_OFFSET);
+        switch (snapshot.type) {
+            case CAR:
+                snapshot.numberOfDoors = count;
+                snapshot.airConditioning = (flags & AIR_CONDITIONING) != 0;
+                snapshot.automaticTransmission = (flags & AUTOMATIC) != 0;
+                break;
+            case MOTORCYCLE:
+                snapshot.sidecar = (flags & SIDECAR) != 0;
+                snapshot.engineSize = count;
+                snapshot.motorcycleType = table[(int) INT.get(slab, base + LABEL_OFFSET)];
+                break;
+            case TRUCK:
+                snapshot.cargoCapacity = (double) DOUBLE.get(slab, base + UNION_A_OFFSET);
+                snapshot.currentCargo = (double) DOUBLE.get(slab, base + UNION_B_OFFSET);
+                snapshot.trailer = (flags & TRAILER) != 0;
+                snapshot.numberOfAxles = count;
+                break;
+            case ELECTRIC_CAR:
+                snapshot.batteryCapacity = (double) DOUBLE.get(slab, base + UNION_A_OFFSET);
+                snapshot.batteryLevel = (double) DOUBLE.get(slab, base + UNION_B_OFFSET);
+                snapshot.efficiency = (double) DOUBLE.get(slab, base + UNION_C_OFFSET);
+                snapshot.ecoMode = (flags & ECO_MODE) != 0;
+                snapshot.regenerativeBraking = (flags & REGENERATIVE_BRAKING) != 0;
+                snapshot.chargingPortType = table[(int) INT.get(slab, base + LABEL_OFFSET)];
+                break;
+            default:
+                throw new IllegalStateException("Unknown vehicle type: " + snapshot.type);
+        }
+    }
+
+    /**
+     * Overwrites an existing record
+     */
+    public void write(long index, VehicleSnapshot snapshot) {
+        writeRecord(slabFor(index), offsetOf(index), snapshot);
+    }
+
+    void writeRecord(ByteBuffer slab, int base, VehicleSnapshot snapshot) {
+        int flags = snapshot.running ? RUNNING : 0;
+        int count = 0;
+        int label = 0;
+        double unionA = 0;
+        double unionB = 0;
+        double unionC = 0;
+        switch (snapshot.type) {
+            case CAR:
+                count = snapshot.numberOfDoors;
+                flags |= (snapshot.airConditioning ? AIR_CONDITIONING : 0) | (snapshot.automaticTransmission ? AUTOMATIC : 0);
+                break;
+            case MOTORCYCLE:
+                count = snapshot.engineSize;
+                label = intern(snapshot.motorcycleType);
+                flags |= snapshot.sidecar ? SIDECAR : 0;
+                break;
+            case TRUCK:
+                count = snapshot.numberOfAxles;
+                unionA = snapshot.cargoCapacity;
+                unionB = snapshot.currentCargo;
+                flags |= snapshot.trailer ? TRAILER : 0;
+                break;
+            case ELECTRIC_CAR:
+                label = intern(snapshot.chargingPortType);
+                unionA = snapshot.batteryCapacity;
+                unionB = snapshot.batteryLevel;
+                unionC = snapshot.efficiency;
+                flags |= (snapshot.ecoMode ? ECO_MODE : 0) | (snapshot.regenerativeBraking ? REGENERATIVE_BRAKING : 0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown vehicle type: " + snapshot.type);
+        }
+
+        SHORT.set(slab, base + TYPE_OFFSET, (short) snapshot.type.ordinal());
+        SHORT.set(slab, base + FLAGS_OFFSET, (short) flags);
+        SHORT.set(slab, base + GEAR_OFFSET, (short) snapshot.currentGear);
+        LONG.set(slab, base + ID_OFFSET, snapshot.id);
+        INT.set(slab, base + YEAR_OFFSET, snapshot.year);
+        INT.set(slab, base + SPEED_OFFSET, snapshot.speed);
+        INT.set(slab, base + MILEAGE_OFFSET, snapshot.mileage);
+        INT.set(slab, base + SERVICE_OFFSET, snapshot.mileageSinceService);
+        INT.set(slab, base + BRAND_OFFSET, intern(snapshot.brand));
+        INT.set(slab, base + MODEL_OFFSET, intern(snapshot.model));
+        INT.set(slab, base + LABEL_OFFSET, label);
+        INT.set(slab, base + COUNT_OFFSET, count);
+        DOUBLE.set(slab, base + FUEL_OFFSET, snapshot.fuelLevel);
+        DOUBLE.set(slab, base + FUEL_CAPACITY_OFFSET, snapshot.fuelCapacity);
+        DOUBLE.set(slab, base + UNION_A_OFFSET, unionA);
+        DOUBLE.set(slab, base + UNION_B_OFFSET, unionB);
+        DOUBLE.set(slab, base + UNION_C_OFFSET, unionC);
+        DOUBLE.set(slab, base + X_OFFSET, snapshot.x);
+        DOUBLE.set(slab, base + Y_OFFSET, snapshot.y);
+        DOUBLE.set(slab, base + HEADING_OFFSET, snapshot.heading);
+    }
+
+    // Direct field accessors for scans that don't need a full vehicle
+    public VehicleFactory.VehicleType getType(long index) {
+        return TYPES[(short) SHORT.get(slabFor(index), offsetOf(index) + TYPE_OFFSET)];
+    }
+
+    public long getId(long index) {
+        return (long) LONG.get(slabFor(index), offsetOf(index) + ID_OFFSET);
+    }
+
+    public int getSpeed(long index) {
+        return (int) INT.get(slabFor(index), offsetOf(index) + SPEED_OFFSET);
+    }
+
+    public int getMileage(long index) {
+        return (int) INT.get(slabFor(index), offsetOf(index) + MILEAGE_OFFSET);
+    }
+
+    public int getMileageSinceService(long index) {
+        return (int) INT.get(slabFor(index), offsetOf(index) + SERVICE_OFFSET);
+    }
+
+    public boolean isRunning(long index) {
+        return ((short) SHORT.get(slabFor(index), offsetOf(index) + FLAGS_OFFSET) & RUNNING) != 0;
+    }
+
+    /**
+     * Counts vehicles over the service threshold without materializing any of them
+     */
+    public long countNeedingService() {
+        long count = 0;
+        long total = size;
+        for (long i = 0; i < total; i++) {
+            if (getMileageSinceService(i) > 10000) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Creates a flyweight cursor. Cursors are cheap but not thread-safe; use one per thread.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * FLYWEIGHT PATTERN:
+     * Keeps one reusable vehicle per type and loads records into it on demand, so existing
+     * code that expects an AbstractVehicle can run against off-heap data. Changes made
+     * through the view are written back with commit().
+     */
+    public class Cursor {
+        private final VehicleSnapshot snapshot = new VehicleSnapshot();
+        private final EnumMap<VehicleFactory.VehicleType, AbstractVehicle> views =
+                new EnumMap<>(VehicleFactory.VehicleType.class);
+        private AbstractVehicle current;
+        private long index = -1;
+
+        Cursor() {
+            for (VehicleFactory.VehicleType type : TYPES) {
+                views.put(type, VehicleFactory.createVehicle(type, "", "", 0));
+            }
+        }
+
+        /**
+         * Loads the record at index into the view for its type and returns that view.
+         * The returned object is reused by the next moveTo() call.
+         */
+        public AbstractVehicle moveTo(long index) {
+            read(index, snapshot);
+            current = views.get(snapshot.type);
+            current.restoreState(snapshot);
+            this.index = index;
+            return current;
+        }
+
+        /**
+         * Writes the current view back to its record
+         */
+        public void commit() {
+            if (current == null) {
+                throw new IllegalStateException("Cursor is not positioned on a record");
+            }
+            current.captureState(snapshot);
+            write(index, snapshot);
+        }
+
+        public long getIndex() {
+            return index;
+        }
+    }
+
+    private ByteBuffer slabFor(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Record " + index + " out of bounds for size " + size);
+        }
+        return slabs[(int) (index / SLAB_RECORDS)];
+    }
+
+    private static int offsetOf(long index) {
+        return (int) (index % SLAB_RECORDS) * RECORD_SIZE;
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            value = "";
+        }
+        Integer id = stringIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        synchronized (stringIds) {
+            id = stringIds.get(value);
+            if (id == null) {
+                id = stringCount++;
+                String[] table = stringTable;
+                if (id == table.length) {
+                    table = Arrays.copyOf(table, table.length * 2);
+                }
+                table[id] = value;
+                stringTable = table; // Publish before the id becomes visible
+                stringIds.put(value, id);
+            }
+            return id;
+        }
+    }
+}
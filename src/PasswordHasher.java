@@ -0,0 +1,200 @@
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * PASSWORD HASHER:
+ * Salted, deliberately slow password hashing with the JDK's PBKDF2 (HMAC-SHA256).
+ * It demonstrates:
+ * 1. Salting: Every hash gets 16 random bytes of salt, so equal passwords hash differently
+ *    and precomputed tables are useless
+ * 2. Tunable work factor: The iteration count sets the cost of one verification, for users
+ *    and attackers alike
+ * 3. Self-describing hashes: "pbkdf2-sha256$iterations$salt$hash" keeps the cost next to the
+ *    hash, so hashes made with an older cost still verify and can be upgraded on login
+ * 4. Auto-calibration: calibrate() measures this machine and picks the iteration count that
+ *    takes a target time on one idle core. It is a short measurement, taken before the JIT
+ *    has fully optimized PBKDF2, so it errs on the cheap side; LoginService refines it from
+ *    the CPU time of real verifications.
+ *
+ * The calibrated cost is opt-in: until User.setPasswordHasher() is given one, users are hashed
+ * with getDefault(), the MIN_ITERATIONS cost, so demos and bulk loads that create thousands of
+ * users stay fast. A deployment that serves logins calibrates once at startup (see Usage);
+ * LoginService then rehashes the cheaper hashes on each user's next login.
+ *
+ * Verification compares in constant time. Instances are immutable and thread-safe.
+ *
+ * Usage:
+ *   PasswordHasher hasher = PasswordHasher.calibrate(50);
+ *   String stored = hasher.hash("secret123");
+ *   boolean ok = hasher.verify("secret123", stored);
+ *   User.setPasswordHasher(hasher); // Opt in for every user created from now on
+ */
+public final class PasswordHasher {
+    public static final int MIN_ITERATIONS = 1_000;
+    public static final int MAX_ITERATIONS = 10_000_000;
+    public static final long DEFAULT_TARGET_MILLIS = 50;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private static final PasswordHasher DEFAULT = new PasswordHasher(MIN_ITERATIONS);
+
+    private final int iterations;
+
+    public PasswordHasher(int iterations) {
+        if (iterations < MIN_ITERATIONS || iterations > MAX_ITERATIONS) {
+            throw new IllegalArgumentException(
+                    "Iterations must be between " + MIN_ITERATIONS + " and " + MAX_ITERATIONS);
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * Hasher with MIN_ITERATIONS, used while no calibrated hasher has been opted in to
+     */
+    public static PasswordHasher getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Measures PBKDF2 on this machine and returns a hasher whose verifications take about
+     * targetMillis of CPU time. Under load they take longer, since they queue for cores.
+     */
+    public static PasswordHasher calibrate(long targetMillis) {
+        char[] password = "calibration-password".toCharArray();
+        byte[] salt = new byte[SALT_BYTES];
+        // Warm up until the JIT has compiled the HMAC loop, then keep the fastest run
+        for (int i = 0; i < 5; i++) {
+            derive(password, salt, CALIBRATION_ITERATIONS);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            derive(password, salt, CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return forTarget(targetMillis, (double) best / CALIBRATION_ITERATIONS);
+    }
+
+    /**
+     * Hasher for a target time given a measured cost per iteration, rounded to 1000 iterations
+     */
+    public static PasswordHasher forTarget(long targetMillis, double nanosPerIteration) {
+        if (targetMillis <= 0 || !(nanosPerIteration > 0)) {
+            throw new IllegalArgumentException("Target time and cost per iteration must be positive");
+        }
+        long iterations = Math.round(targetMillis * 1e6 / nanosPerIteration / 1000) * 1000;
+        return new PasswordHasher((int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations)));
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return The salted hash in the "pbkdf2-sha256$iterations$salt$hash" format
+     */
+    public String hash(String password) {
+        if (password == null) {
+            throw new IllegalArgumentException("Password cannot be null");
+        }
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        char[] chars = password.toCharArray();
+        try {
+            return PREFIX + '$' + iterations + '$' + ENCODER.encodeToString(salt)
+                    + '$' + ENCODER.encodeToString(derive(chars, salt, iterations));
+        } finally {
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    /**
+     * Checks a password against a hash made by any hasher, using the iterations stored in it
+     * @throws IllegalArgumentException If encoded is not a hash in this class's format
+     */
+    public boolean verify(String password, String encoded) {
+        String[] parts = parse(encoded);
+        if (password == null) {
+            return false;
+        }
+        byte[] expected = DECODER.decode(parts[3]);
+        char[] chars = password.toCharArray();
+        try {
+            byte[] actual = derive(chars, DECODER.decode(parts[2]), Integer.parseInt(parts[1]));
+            return MessageDigest.isEqual(expected, actual);
+        } finally {
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    /**
+     * True if the hash was made with fewer iterations than this hasher uses, so it should be
+     * replaced the next time the password is known (e.g. on a successful login)
+     */
+    public boolean needsRehash(String encoded) {
+        return iterationsOf(encoded) < iterations;
+    }
+
+    /**
+     * Work factor a hash was made with
+     */
+    public static int iterationsOf(String encoded) {
+        return Integer.parseInt(parse(encoded)[1]);
+    }
+
+    public static boolean isHash(String encoded) {
+        try {
+            parse(encoded);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Splits a hash into prefix, iterations, salt and hash, validating each part
+     */
+    private static String[] parse(String encoded) {
+        String[] parts = encoded == null ? new String[0] : encoded.split("\\$");
+        if (parts.length != 4 || !parts[0].equals(PREFIX)) {
+            throw new IllegalArgumentException("Not a " + PREFIX + " password hash");
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            // Hashes below the minimum work factor are refused, wherever they come from
+            if (iterations < MIN_ITERATIONS || iterations > MAX_ITERATIONS) {
+                throw new IllegalArgumentException("Bad iteration count in password hash: " + iterations);
+            }
+            if (DECODER.decode(parts[2]).length == 0 || DECODER.decode(parts[3]).length != KEY_BITS / 8) {
+                throw new IllegalArgumentException("Bad salt or hash length in password hash");
+            }
+        } catch (IllegalArgumentException e) { // Also NumberFormatException and Base64 errors
+            throw new IllegalArgumentException("Malformed password hash: " + e.getMessage());
+        }
+        return parts;
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import jdk.jfr.SettingControl;
+
+/**
+ * JFR SAMPLING SETTING:
+ * Custom "sampleEvery" setting for the fleet events. A value of N keeps on average one event
+ * in N that passed the threshold; "1" keeps them all. The choice is a thread-local random
+ * draw, so busy driving threads don't contend on a shared counter.
+ * When several recordings run at once, the one asking for the most detail wins.
+ *
+ * Usage in a .jfc file:  <setting name="sampleEvery">100</setting>
+ */
+public final class SamplingControl extends SettingControl {
+    private volatile int every = 1;
+
+    @Override
+    public String combine(Set<String> values) {
+        int smallest = Integer.MAX_VALUE;
+        for (String value : values) {
+            smallest = Math.min(smallest, parse(value));
+        }
+        return smallest == Integer.MAX_VALUE ? "1" : Integer.toString(smallest);
+    }
+
+    @Override
+    public void setValue(String value) {
+        every = parse(value);
+    }
+
+    @Override
+    public String getValue() {
+        return Integer.toString(every);
+    }
+
+    int getEvery() {
+        return every;
+    }
+
+    boolean sample() {
+        int current = every;
+        return current <= 1 || ThreadLocalRandom.current().nextInt(current) == 0;
+    }
+
+    private static int parse(String value) {
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return 1; // JFR passes settings through unchecked; fall back to recording everything
+        }
+    }
+}
@@ -0,0 +1,450 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SPATIAL INDEX EXAMPLE:
+ * A uniform grid over the map that answers "nearest available vehicles" and "vehicles
+ * within r km" queries. It demonstrates:
+ * 1. Observer Pattern: Each indexed vehicle has a small observer that moves its entry
+ *    whenever the vehicle reports a POSITION change, so the index is always up to date
+ * 2. Fine-grained locking: Every cell has its own lock; a move within a cell only rewrites
+ *    two doubles, and a move across cells touches just the two cells involved
+ * 3. Data-oriented layout: Cells keep coordinates in a flat double array, so distance
+ *    checks scan contiguous memory and only close candidates touch the vehicle object
+ *
+ * Positions outside the grid bounds are clamped into the border cells, so nothing is lost,
+ * only slower to find. Pick the cell size so a cell holds a few dozen vehicles.
+ *
+ * Usage:
+ *   SpatialGridIndex index = new SpatialGridIndex(0, 0, 1000, 1000, 4);
+ *   index.add(vehicle);
+ *   List<AbstractVehicle> nearest = index.nearest(x, y, 5,
+ *           SpatialGridIndex.Filter.any().types(VehicleFactory.VehicleType.CAR).minEnergyPercent(20));
+ */
+public class SpatialGridIndex {
+
+    /**
+     * Query filter on vehicle type, remaining energy and running state. Immutable.
+     */
+    public static final class Filter {
+        private static final Filter ANY = new Filter(-1, 0, null);
+
+        private final int types;               // Bit per VehicleType ordinal
+        private final double minEnergyPercent; // Fuel, or battery for electric cars
+        private final Boolean running;         // null: either
+
+        private Filter(int types, double minEnergyPercent, Boolean running) {
+            this.types = types;
+            this.minEnergyPercent = minEnergyPercent;
+            this.running = running;
+        }
+
+        public static Filter any() {
+            return ANY;
+        }
+
+        public Filter types(VehicleFactory.VehicleType... allowed) {
+            int mask = 0;
+            for (VehicleFactory.VehicleType type : allowed) {
+                mask |= 1 << type.ordinal();
+            }
+            return new Filter(mask, minEnergyPercent, running);
+        }
+
+        public Filter minEnergyPercent(double percent) {
+            return new Filter(types, percent, running);
+        }
+
+        public Filter running(boolean isRunning) {
+            return new Filter(types, minEnergyPercent, isRunning);
+        }
+
+        boolean matchesType(int typeOrdinal) {
+            return (types & (1 << typeOrdinal)) != 0;
+        }
+
+        boolean matches(AbstractVehicle vehicle) {
+            if (running != null && vehicle.isRunning() != running) {
+                return false;
+            }
+            return minEnergyPercent <= 0
+                    || vehicle.getEnergyLevel() * 100 >= minEnergyPercent * vehicle.getEnergyCapacity();
+        }
+    }
+
+    /**
+     * One grid cell. Entries are packed at the front of the arrays; removal swaps in the last one.
+     * Coordinates are interleaved (x0, y0, x1, y1, ...) so an update touches one cache line.
+     */
+    private static final class Cell {
+        Entry[] entries = new Entry[4];
+        double[] coordinates = new double[8];
+        int count;
+
+        void add(Entry entry, double x, double y) {
+            if (count == entries.length) {
+                entries = Arrays.copyOf(entries, count * 2);
+                coordinates = Arrays.copyOf(coordinates, count * 4);
+            }
+            entries[count] = entry;
+            coordinates[2 * count] = x;
+            coordinates[2 * count + 1] = y;
+            entry.slot = count++;
+        }
+
+        void remove(Entry entry) {
+            int slot = entry.slot;
+            int last = --count;
+            if (slot != last) {
+                Entry moved = entries[last];
+                entries[slot] = moved;
+                coordinates[2 * slot] = coordinates[2 * last];
+                coordinates[2 * slot + 1] = coordinates[2 * last + 1];
+                moved.slot = slot;
+            }
+            entries[last] = null;
+        }
+    }
+
+    /**
+     * Per-vehicle registration and observer. cell and slot are guarded by the cell's lock.
+     */
+    private final class Entry implements IVehicleObserver {
+        final AbstractVehicle vehicle;
+        final int type;
+        int cell;
+        int slot;
+
+        Entry(AbstractVehicle vehicle) {
+            this.vehicle = vehicle;
+            this.type = VehicleFactory.typeOf(vehicle).ordinal();
+        }
+
+        @Override
+        public void onStateChanged(AbstractVehicle changed, int changedFields) {
+            if ((changedFields & IVehicleObserver.POSITION) != 0) {
+                move(this, changed.getX(), changed.getY());
+            }
+        }
+    }
+
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final Cell[] cells;
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param cellSize Cell edge in km
+     */
+    public SpatialGridIndex(double minX, double minY, double maxX, double maxY, double cellSize) {
+        if (maxX <= minX || maxY <= minY || cellSize <= 0) {
+            throw new IllegalArgumentException("Invalid grid bounds or cell size");
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.columns = (int) Math.ceil((maxX - minX) / cellSize);
+        this.rows = (int) Math.ceil((maxY - minY) / cellSize);
+        if ((long) columns * rows > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Too many cells; use a larger cell size");
+        }
+        this.cells = new Cell[columns * rows];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Cell();
+        }
+    }
+
+    /**
+     * Indexes a vehicle at its current position and follows its movements from now on
+     */
+    public void add(AbstractVehicle vehicle) {
+        Entry entry = new Entry(vehicle);
+        if (entries.putIfAbsent(vehicle.getId(), entry) != null) {
+            return;
+        }
+        int cellIndex = cellOf(vehicle.getX(), vehicle.getY());
+        Cell cell = cells[cellIndex];
+        synchronized (cell) {
+            entry.cell = cellIndex;
+            cell.add(entry, vehicle.getX(), vehicle.getY());
+        }
+        vehicle.addObserver(entry);
+    }
+
+    /**
+     * Stops indexing a vehicle. Like moves, this must run on the vehicle's writer thread.
+     */
+    public void remove(AbstractVehicle vehicle) {
+        Entry entry = entries.remove(vehicle.getId());
+        if (entry == null) {
+            return;
+        }
+        vehicle.removeObserver(entry);
+        Cell cell = cells[entry.cell];
+        synchronized (cell) {
+            cell.remove(entry);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Moves an entry. Called on the vehicle's writer thread, so an entry never moves twice
+     * at once; queries may briefly miss a vehicle while it crosses a cell border.
+     */
+    private void move(Entry entry, double x, double y) {
+        int target = cellOf(x, y);
+        Cell from = cells[entry.cell];
+        if (target == entry.cell) {
+            synchronized (from) {
+                from.coordinates[2 * entry.slot] = x;
+                from.coordinates[2 * entry.slot + 1] = y;
+            }
+            return;
+        }
+        synchronized (from) {
+            from.remove(entry);
+        }
+        Cell to = cells[target];
+        synchronized (to) {
+            entry.cell = target;
+            to.add(entry, x, y);
+        }
+    }
+
+    private int cellOf(double x, double y) {
+        return rowOf(y) * columns + columnOf(x);
+    }
+
+    private int columnOf(double x) {
+        int column = (int) Math.floor((x - minX) / cellSize);
+        return Math.max(0, Math.min(columns - 1, column));
+    }
+
+    private int rowOf(double y) {
+        int row = (int) Math.floor((y - minY) / cellSize);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+    /**
+     * k nearest matching vehicles, closest first
+     */
+    public List<AbstractVehicle> nearest(double x, double y, int k, Filter filter) {
+        AbstractVehicle[] found = new AbstractVehicle[k];
+        int count = nearest(x, y, k, filter, found, new double[k]);
+        List<AbstractVehicle> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(found[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Allocation-free kNN: fills out/distances (length >= k) closest first.
+     * Cells are searched in growing square rings around the query point; the search stops
+     * once the closest possible point of the next ring is farther than the current k-th hit.
+     * @return Number of vehicles found (less than k if not enough match)
+     */
+    public int nearest(double x, double y, int k, Filter filter, AbstractVehicle[] out, double[] distances) {
+        if (k <= 0) {
+            return 0;
+        }
+        int centerColumn = columnOf(x);
+        int centerRow = rowOf(y);
+        int maxRing = Math.max(Math.max(centerColumn, columns - 1 - centerColumn),
+                Math.max(centerRow, rows - 1 - centerRow));
+        int found = 0;
+        // out/distances hold the best hits as a sorted list; squared distances while searching
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (found == k) {
+                double reach = ringDistance(x, y, centerColumn, centerRow, ring);
+                if (reach > 0 && reach * reach > distances[k - 1]) {
+                    break;
+                }
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                if (row < 0 || row >= rows) {
+                    continue;
+                }
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : 2 * ring; // Interior rows only have the two side cells
+                for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+                    if (column < 0 || column >= columns) {
+                        continue;
+                    }
+                    found = scanCell(cells[row * columns + column], x, y, k, filter, out, distances, found);
+                }
+            }
+        }
+        for (int i = 0; i < found; i++) {
+            distances[i] = Math.sqrt(distances[i]);
+        }
+        return found;
+    }
+
+    /**
+     * Shortest distance from the query point to any cell of the given ring
+     */
+    private double ringDistance(double x, double y, int centerColumn, int centerRow, int ring) {
+        double left = minX + (centerColumn - ring + 1) * cellSize;
+        double right = minX + (centerColumn + ring) * cellSize;
+        double bottom = minY + (centerRow - ring + 1) * cellSize;
+        double top = minY + (centerRow + ring) * cellSize;
+        return Math.min(Math.min(x - left, right - x), Math.min(y - bottom, top - y));
+    }
+
+    private int scanCell(Cell cell, double x, double y, int k, Filter filter,
+                         AbstractVehicle[] out, double[] distances, int found) {
+        synchronized (cell) {
+            for (int i = 0; i < cell.count; i++) {
+                double dx = cell.coordinates[2 * i] - x;
+                double dy = cell.coordinates[2 * i + 1] - y;
+                double squared = dx * dx + dy * dy;
+                if (found == k && squared >= distances[k - 1]) {
+                    continue;
+                }
+                Entry entry = cell.entries[i];
+                if (!filter.matchesType(entry.type) || !filter.matches(entry.vehicle)) {
+                    continue;
+                }
+                // Insertion into the sorted best list
+                int position = found == k ? k - 1 : found++;
+                while (position > 0 && distances[position - 1] > squared) {
+                    distances[position] = distances[position - 1];
+                    out[position] = out[position - 1];
+                    position--;
+                }
+                distances[position] = squared;
+                out[position] = entry.vehicle;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * All matching vehicles within radius km, in no particular order
+     */
+    public List<AbstractVehicle> withinRadius(double x, double y, double radius, Filter filter) {
+        List<AbstractVehicle> result = new ArrayList<>();
+        double squaredRadius = radius * radius;
+        int firstColumn = columnOf(x - radius);
+        int lastColumn = columnOf(x + radius);
+        int firstRow = rowOf(y - radius);
+        int lastRow = rowOf(y + radius);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Cell cell = cells[row * columns + column];
+                synchronized (cell) {
+                    for (int i = 0; i < cell.count; i++) {
+                        double dx = cell.coordinates[2 * i] - x;
+                        double dy = cell.coordinates[2 * i + 1] - y;
+                        if (dx * dx + dy * dy <= squaredRadius) {
+                            Entry entry = cell.entries[i];
+                            if (filter.matchesType(entry.type) && filter.matches(entry.vehicle)) {
+                                result.add(entry.vehicle);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Benchmark: [--vehicles 1000000] [--size 1000] [--cell 4] [--updates 5000000] [--queries 20000]
+     * Scatters vehicles over a size x size km map, then measures position updates per ms
+     * and kNN / radius query latency.
+     */
+    public static void main(String[] args) {
+        int vehicleCount = 1_000_000;
+        double size = 1000;
+        double cellSize = 4;
+        int updates = 5_000_000;
+        int queries = 20_000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicleCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--size":
+                    size = Double.parseDouble(args[++i]);
+                    break;
+                case "--cell":
+                    cellSize = Double.parseDouble(args[++i]);
+                    break;
+                case "--updates":
+                    updates = Integer.parseInt(args[++i]);
+                    break;
+                case "--queries":
+                    queries = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        AbstractVehicle.setOutputEnabled(false);
+        FleetSimulation simulation = new FleetSimulation();
+        simulation.setVehicleCount(vehicleCount);
+        List<AbstractVehicle> fleet = simulation.buildFleet();
+        SplittableRandom random = new SplittableRandom(7);
+        SpatialGridIndex index = new SpatialGridIndex(0, 0, size, size, cellSize);
+        for (AbstractVehicle vehicle : fleet) {
+            vehicle.setPosition(random.nextDouble(size), random.nextDouble(size));
+            vehicle.setHeading(random.nextDouble(360));
+            if (random.nextInt(3) > 0) {
+                vehicle.start();
+            }
+            index.add(vehicle);
+        }
+
+        // Position updates: small random moves, like a tick of GPS fixes sweeping the fleet
+        double updatesPerMs = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                AbstractVehicle vehicle = fleet.get(i % fleet.size());
+                vehicle.setPosition(vehicle.getX() + random.nextDouble(-0.5, 0.5),
+                        vehicle.getY() + random.nextDouble(-0.5, 0.5));
+            }
+            updatesPerMs = updates / ((System.nanoTime() - start) / 1e6);
+        }
+
+        Filter available = Filter.any().running(false).minEnergyPercent(25);
+        Filter cars = Filter.any().types(VehicleFactory.VehicleType.CAR, VehicleFactory.VehicleType.ELECTRIC_CAR);
+        AbstractVehicle[] out = new AbstractVehicle[10];
+        double[] distances = new double[10];
+        LatencyHistogram knn = new LatencyHistogram();
+        LatencyHistogram radius = new LatencyHistogram();
+        for (int round = 0; round < 2; round++) {
+            knn.reset();
+            radius.reset();
+            for (int i = 0; i < queries; i++) {
+                double x = random.nextDouble(size);
+                double y = random.nextDouble(size);
+                long start = System.nanoTime();
+                index.nearest(x, y, 10, i % 2 == 0 ? available : cars, out, distances);
+                long middle = System.nanoTime();
+                index.withinRadius(x, y, 5, available);
+                long end = System.nanoTime();
+                knn.record(middle - start);
+                radius.record(end - middle);
+            }
+        }
+        System.out.println(String.format(Locale.ROOT,
+                "{\"vehicles\":%d,\"updatesPerMs\":%.0f,\"knnMeanMicros\":%.1f,\"knnP99Micros\":%.1f,"
+                        + "\"radiusMeanMicros\":%.1f,\"radiusP99Micros\":%.1f}",
+                fleet.size(), updatesPerMs, knn.getMean() / 1000, knn.getValueAtPercentile(99) / 1000.0,
+                radius.getMean() / 1000, radius.getValueAtPercentile(99) / 1000.0));
+    }
+}
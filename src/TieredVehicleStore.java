@@ -0,0 +1,686 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.Phaser;
+
+/**
+ * TIERED STORAGE EXAMPLE:
+ * Keeps recently used vehicles as live objects in a size-bounded cache and spills idle ones
+ * to a local segment file, so a fleet far larger than the heap can be addressed by id.
+ * 1. Segmented LRU: new and reloaded vehicles enter a probation segment; a second access
+ *    promotes them to a protected segment (80% of the capacity). One-off scans therefore only
+ *    churn probation and can't flush the vehicles that are used again and again.
+ * 2. Write-back on eviction: the evicted vehicle's state goes to the segment file in
+ *    OffHeapFleetStore's fixed-size record layout, and a later get() rebuilds it with
+ *    VehicleFactory.createFromSnapshot
+ * 3. No per-vehicle index: vehicle ids are dense sequence numbers, so a vehicle's record sits at
+ *    id * RECORD_SIZE in a sparse file that is memory-mapped region by region. The heap only
+ *    holds the cache and the string dictionary, whatever the number of stored vehicles.
+ * 4. Allocation-free cache hits: parallel arrays with intrusive linked lists and an
+ *    open-addressing id table instead of a map of boxed keys
+ * 5. No stale copies: every vehicle object the store hands out carries a small tracking
+ *    observer. While an evicted vehicle is still referenced somewhere, its changes are written
+ *    through to the segment file and get() returns that same object instead of a copy, so a
+ *    list from User.getVehicles() stays valid when it is larger than the cache.
+ *
+ * Observers other than the store's own are only kept as long as the vehicle object is, so
+ * register them again after fetching a vehicle that may have been reloaded.
+ * The segment file is scratch space: it is deleted by close().
+ *
+ * Usage:
+ *   TieredVehicleStore store = new TieredVehicleStore(Paths.get("fleet.seg"), 1_000_000);
+ *   store.put(vehicle);
+ *   AbstractVehicle again = store.get(vehicle.getId());
+ *
+ * Benchmark: java -Xmx2g -cp src TieredVehicleStore --vehicles 100000000 --cache 1000000
+ */
+public class TieredVehicleStore implements AutoCloseable {
+    private static final int RECORD_SIZE = OffHeapFleetStore.RECORD_SIZE;
+    private static final int FLAGS_OFFSET = OffHeapFleetStore.FLAGS_OFFSET;
+    private static final short PRESENT = (short) (1 << 14); // Flag bit unused by OffHeapFleetStore
+    private static final int REGION_RECORDS = 1 << 23; // ~940 MB per mapping
+    private static final long REGION_BYTES = (long) REGION_RECORDS * RECORD_SIZE;
+
+    private static final byte FREE = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+    private static final int NONE = -1;
+    private static final int EVICTION_RACES = 20_000; // Iterations of the concurrent part of checkNoStaleCopies
+
+    private final Path file;
+    private final FileChannel channel;
+    private MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    private final OffHeapFleetStore records = new OffHeapFleetStore(); // Record codec and string dictionary
+    private final VehicleSnapshot snapshot = new VehicleSnapshot();
+
+    // Cache slots: parallel arrays with two intrusive doubly-linked lists (head = most recent)
+    private final int capacity;
+    private final int protectedCapacity;
+    private final long[] ids;
+    private final AbstractVehicle[] vehicles;
+    private final Tracker[] trackers;
+    private final int[] prev;
+    private final int[] next;
+    private final byte[] segment;
+    private final int[] freeSlots;
+    private int freeCount;
+    private int probationHead = NONE;
+    private int probationTail = NONE;
+    private int protectedHead = NONE;
+    private int protectedTail = NONE;
+    private int protectedCount;
+
+    // Open-addressing id -> slot table, linear probing, slot + 1 stored (0 = empty)
+    private final int[] table;
+    private final int mask;
+
+    // Evicted vehicles that may still be referenced, by id; entries go once the vehicle is collected
+    private final HashMap<Long, Tracker> detached = new HashMap<>();
+    private final ReferenceQueue<AbstractVehicle> collected = new ReferenceQueue<>();
+
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param file Segment file to create; an existing file is overwritten
+     * @param capacity Maximum number of live vehicles kept on the heap
+     */
+    public TieredVehicleStore(Path file, int capacity) throws IOException {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Cache capacity must be at least 2");
+        }
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.SPARSE);
+        this.capacity = capacity;
+        this.protectedCapacity = Math.max(1, capacity * 4 / 5);
+        this.ids = new long[capacity];
+        this.vehicles = new AbstractVehicle[capacity];
+        this.trackers = new Tracker[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        this.segment = new byte[capacity];
+        this.freeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            freeSlots[i] = capacity - 1 - i;
+        }
+        this.freeCount = capacity;
+        this.table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * Observer the store attaches to every vehicle object it manages. It does nothing while the
+     * vehicle is cached; once the vehicle is evicted it writes each change through to the
+     * segment file, until get() takes the same object back into the cache.
+     */
+    private final class Tracker extends WeakReference<AbstractVehicle> implements IVehicleObserver {
+        final long id;
+        volatile boolean detached; // Written under the store's lock
+        volatile int changes;      // Bumped on every change, whether or not the vehicle is cached
+
+        Tracker(AbstractVehicle vehicle) {
+            super(vehicle, collected);
+            this.id = vehicle.getId();
+        }
+
+        @Override
+        public void onStateChanged(AbstractVehicle vehicle, int changedFields) {
+            changes++; // Writers hold the vehicle's lock, so increments don't race
+            if (detached) {
+                writeDetached(this, vehicle);
+            }
+        }
+    }
+
+    /**
+     * Stores a vehicle, or replaces the stored state of the vehicle with the same id.
+     * The vehicle becomes the cached live object for its id.
+     */
+    public void put(AbstractVehicle vehicle) {
+        long id = vehicle.getId();
+        if (id <= 0) {
+            throw new IllegalArgumentException("Vehicle id must be positive: " + id);
+        }
+        // Observers are added outside the store's lock: writers notify while holding the vehicle's
+        // lock and then take the store's, so the store must never wait for a vehicle's lock
+        Tracker tracker = new Tracker(vehicle);
+        vehicle.addObserver(tracker);
+        boolean used;
+        synchronized (this) {
+            used = putTracked(id, vehicle, tracker);
+        }
+        if (!used) {
+            vehicle.removeObserver(tracker);
+        }
+    }
+
+    /**
+     * @return Whether the new tracker was kept, false if the vehicle already had one
+     */
+    private boolean putTracked(long id, AbstractVehicle vehicle, Tracker tracker) {
+        int slot = find(id);
+        if (slot != NONE) {
+            if (vehicles[slot] == vehicle) {
+                touch(slot);
+                return false;
+            }
+            vehicles[slot] = vehicle;
+            trackers[slot] = tracker;
+            touch(slot);
+            return true;
+        }
+        Tracker previous = detached.remove(id);
+        if (previous != null) {
+            previous.detached = false;
+            if (previous.get() == vehicle) {
+                insert(id, vehicle, previous);
+                return false;
+            }
+        }
+        if (!isOnDisk(id)) {
+            size++;
+        }
+        insert(id, vehicle, tracker);
+        return true;
+    }
+
+    /**
+     * Looks a vehicle up by id, reloading it from the segment file if it was evicted
+     * @return The live vehicle, or null if the store doesn't hold that id
+     */
+    public synchronized AbstractVehicle get(long id) {
+        int slot = find(id);
+        if (slot != NONE) {
+            hits++;
+            touch(slot);
+            return vehicles[slot];
+        }
+        if (id <= 0 || !isOnDisk(id)) {
+            return null;
+        }
+        misses++;
+        Tracker tracker = detached.remove(id);
+        AbstractVehicle vehicle = tracker == null ? null : tracker.get();
+        if (vehicle != null) {
+            // Still referenced: take the same object back, it has every change made since eviction
+            tracker.detached = false;
+            insert(id, vehicle, tracker);
+            return vehicle;
+        }
+        MappedByteBuffer region = region(id, false);
+        records.readRecord(region, offsetOf(id), snapshot);
+        vehicle = VehicleFactory.createFromSnapshot(snapshot);
+        tracker = new Tracker(vehicle);
+        vehicle.addObserver(tracker); // Nobody else has this object yet, so its lock is free
+        insert(id, vehicle, tracker);
+        return vehicle;
+    }
+
+    /**
+     * Removes a vehicle from the cache and the segment file
+     * @return Whether the store held the vehicle
+     */
+    public synchronized boolean remove(long id) {
+        boolean held = false;
+        int slot = find(id);
+        if (slot != NONE) {
+            unlink(slot);
+            release(slot);
+            held = true;
+        }
+        Tracker tracker = detached.remove(id);
+        if (tracker != null) {
+            tracker.detached = false;
+        }
+        if (id > 0 && isOnDisk(id)) {
+            MappedByteBuffer region = region(id, false);
+            int flags = offsetOf(id) + FLAGS_OFFSET;
+            region.putShort(flags, (short) (region.getShort(flags) & ~PRESENT));
+            held = true;
+        }
+        if (held) {
+            size--;
+        }
+        return held;
+    }
+
+    /**
+     * Writes every cached vehicle to the segment file without evicting it. Each vehicle is
+     * read under its own lock, taken before the store's as writers do, so no record is torn.
+     */
+    public void flush() {
+        AbstractVehicle[] cached;
+        synchronized (this) {
+            cached = new AbstractVehicle[capacity - freeCount];
+            int count = 0;
+            for (int list : new int[] {probationHead, protectedHead}) {
+                for (int slot = list; slot != NONE; slot = next[slot]) {
+                    cached[count++] = vehicles[slot];
+                }
+            }
+        }
+        for (AbstractVehicle vehicle : cached) {
+            synchronized (vehicle) {
+                synchronized (this) {
+                    int slot = find(vehicle.getId());
+                    if (slot != NONE && vehicles[slot] == vehicle) {
+                        writeBack(slot);
+                    } // Otherwise evicted meanwhile, which wrote it already
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of vehicles in the store, cached or not
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized int getCachedCount() {
+        return capacity - freeCount;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Closes and deletes the segment file; stored vehicles that aren't cached are gone after this
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        regions = new MappedByteBuffer[0];
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    // ------------------------------------------------------------------ cache
+
+    private void insert(long id, AbstractVehicle vehicle, Tracker tracker) {
+        if (freeCount == 0) {
+            evict(probationTail != NONE ? probationTail : protectedTail);
+        }
+        int slot = freeSlots[--freeCount];
+        ids[slot] = id;
+        vehicles[slot] = vehicle;
+        trackers[slot] = tracker;
+        segment[slot] = PROBATION;
+        pushProbation(slot);
+        int index = hash(id);
+        while (table[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        table[index] = slot + 1;
+    }
+
+    /**
+     * Records an access: probation entries are promoted, protected ones move to the front
+     */
+    private void touch(int slot) {
+        unlink(slot);
+        if (protectedCount == protectedCapacity && segment[slot] == PROBATION) {
+            // Make room by demoting the least recently used protected vehicle
+            int demoted = protectedTail;
+            unlink(demoted);
+            segment[demoted] = PROBATION;
+            pushProbation(demoted);
+        }
+        segment[slot] = PROTECTED;
+        next[slot] = protectedHead;
+        prev[slot] = NONE;
+        if (protectedHead != NONE) {
+            prev[protectedHead] = slot;
+        } else {
+            protectedTail = slot;
+        }
+        protectedHead = slot;
+        protectedCount++;
+    }
+
+    /**
+     * Runs under the store's lock only, so the vehicle may change while it is captured. Detaching
+     * first closes that gap: a change notified from then on writes itself through once we release
+     * the lock, and one notified during the capture makes us capture again.
+     */
+    private void evict(int slot) {
+        Tracker tracker = trackers[slot];
+        tracker.detached = true;
+        int changes;
+        do {
+            changes = tracker.changes;
+            writeBack(slot);
+        } while (tracker.changes != changes);
+        expungeCollected();
+        detached.put(ids[slot], tracker);
+        unlink(slot);
+        release(slot);
+        evictions++;
+    }
+
+    /**
+     * Called by a tracker when an evicted vehicle changes, on the thread that changed it
+     */
+    private synchronized void writeDetached(Tracker tracker, AbstractVehicle vehicle) {
+        if (tracker.detached && detached.get(tracker.id) == tracker) {
+            writeRecord(tracker.id, vehicle);
+        }
+    }
+
+    /**
+     * Drops the entries of evicted vehicles that nothing references any more
+     */
+    private void expungeCollected() {
+        for (Object ref = collected.poll(); ref != null; ref = collected.poll()) {
+            Tracker tracker = (Tracker) ref;
+            if (detached.get(tracker.id) == tracker) {
+                detached.remove(tracker.id);
+            }
+        }
+    }
+
+    private void writeBack(int slot) {
+        writeRecord(ids[slot], vehicles[slot]);
+    }
+
+    private void writeRecord(long id, AbstractVehicle vehicle) {
+        vehicle.captureState(snapshot);
+        snapshot.id = id;
+        MappedByteBuffer region = region(id, true);
+        int base = offsetOf(id);
+        records.writeRecord(region, base, snapshot);
+        region.putShort(base + FLAGS_OFFSET, (short) (region.getShort(base + FLAGS_OFFSET) | PRESENT));
+    }
+
+    private void pushProbation(int slot) {
+        next[slot] = probationHead;
+        prev[slot] = NONE;
+        if (probationHead != NONE) {
+            prev[probationHead] = slot;
+        } else {
+            probationTail = slot;
+        }
+        probationHead = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        boolean inProtected = segment[slot] == PROTECTED;
+        if (before != NONE) {
+            next[before] = after;
+        } else if (inProtected) {
+            protectedHead = after;
+        } else {
+            probationHead = after;
+        }
+        if (after != NONE) {
+            prev[after] = before;
+        } else if (inProtected) {
+            protectedTail = before;
+        } else {
+            probationTail = before;
+        }
+        if (inProtected) {
+            protectedCount--;
+        }
+    }
+
+    /**
+     * Frees an unlinked slot and deletes its id from the table (backward-shift deletion)
+     */
+    private void release(int slot) {
+        int index = hash(ids[slot]);
+        while (table[index] != slot + 1) {
+            index = (index + 1) & mask;
+        }
+        int hole = index;
+        for (int probe = (hole + 1) & mask; table[probe] != 0; probe = (probe + 1) & mask) {
+            int home = hash(ids[table[probe] - 1]);
+            // Move the entry back if the hole lies on its probe path from home
+            if (((probe - home) & mask) >= ((probe - hole) & mask)) {
+                table[hole] = table[probe];
+                hole = probe;
+            }
+        }
+        table[hole] = 0;
+        vehicles[slot] = null;
+        trackers[slot] = null;
+        segment[slot] = FREE;
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int find(long id) {
+        for (int index = hash(id); table[index] != 0; index = (index + 1) & mask) {
+            int slot = table[index] - 1;
+            if (ids[slot] == id) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+
+    private int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    // ------------------------------------------------------------------ segment file
+
+    private boolean isOnDisk(long id) {
+        MappedByteBuffer region = region(id, false);
+        return region != null && (region.getShort(offsetOf(id) + FLAGS_OFFSET) & PRESENT) != 0;
+    }
+
+    /**
+     * Maps the region holding id's record; regions beyond the end of the file are only
+     * created when writing, so lookups of unknown ids don't grow the file
+     */
+    private MappedByteBuffer region(long id, boolean create) {
+        long index = id / REGION_RECORDS;
+        if (index >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Vehicle id out of range: " + id);
+        }
+        int r = (int) index;
+        if (r >= regions.length || regions[r] == null) {
+            if (!create) {
+                return null;
+            }
+            if (r >= regions.length) {
+                regions = Arrays.copyOf(regions, r + 1);
+            }
+            try {
+                regions[r] = channel.map(FileChannel.MapMode.READ_WRITE, r * REGION_BYTES, REGION_BYTES);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            regions[r].order(ByteOrder.nativeOrder());
+        }
+        return regions[r];
+    }
+
+    private static int offsetOf(long id) {
+        return (int) (id % REGION_RECORDS) * RECORD_SIZE;
+    }
+
+    // ------------------------------------------------------------------ benchmark
+
+    /**
+     * Regression check: a user with more vehicles than the cache holds drives every vehicle of
+     * one getVehicles() list, and a second getVehicles() must see all of the changes, also when
+     * the first list was dropped and collected in between
+     */
+    private static void checkNoStaleCopies(Path path) throws IOException, InterruptedException {
+        try (TieredVehicleStore store = new TieredVehicleStore(path, 2)) {
+            User user = new User("Store Check", "store-check@example.com", "secret1", "LIC-00000001");
+            for (int i = 0; i < 3; i++) {
+                user.addVehicle(new Car("Toyota", "Corolla", 2023, 4));
+            }
+            user.setVehicleStore(store);
+            for (int round = 1; round <= 2; round++) {
+                for (AbstractVehicle vehicle : user.getVehicles()) {
+                    vehicle.start();
+                    vehicle.accelerate();
+                }
+                if (round == 2) {
+                    System.gc(); // The driven objects are unreachable now; their changes must be on disk
+                }
+                for (AbstractVehicle vehicle : user.getVehicles()) {
+                    if (vehicle.getMileage() != round) {
+                        throw new IllegalStateException("Vehicle " + vehicle.getId() + " has mileage "
+                                + vehicle.getMileage() + " after " + round + " drives: changes were lost");
+                    }
+                }
+            }
+        }
+
+        // A vehicle driven on another thread while it is evicted: whatever the interleaving, its
+        // record must match the object once the eviction is over
+        try (TieredVehicleStore store = new TieredVehicleStore(path, 2)) {
+            AbstractVehicle driven = new Car("Toyota", "Corolla", 2023, 4);
+            long[] others = new long[2];
+            store.put(driven);
+            for (int i = 0; i < others.length; i++) {
+                AbstractVehicle other = new Car("Toyota", "Corolla", 2023, 4);
+                others[i] = other.getId();
+                store.put(other);
+            }
+            driven.start();
+            Phaser phaser = new Phaser(2);
+            Thread writer = new Thread(() -> {
+                for (int race = 0; race < EVICTION_RACES; race++) {
+                    phaser.arriveAndAwaitAdvance();
+                    synchronized (driven) {
+                        driven.accelerate();
+                        driven.brake();
+                        driven.refuel(1);
+                    }
+                    phaser.arriveAndAwaitAdvance();
+                }
+            }, "store-check-writer");
+            writer.setDaemon(true); // Don't keep the JVM alive if the check fails
+            writer.start();
+            VehicleSnapshot stored = new VehicleSnapshot();
+            for (int race = 0; race < EVICTION_RACES; race++) {
+                store.get(driven.getId());
+                phaser.arriveAndAwaitAdvance();
+                store.get(others[race & 1]);
+                store.get(others[~race & 1]);
+                phaser.arriveAndAwaitAdvance();
+                synchronized (store) {
+                    long id = driven.getId();
+                    if (store.find(id) == NONE) {
+                        store.records.readRecord(store.region(id, false), offsetOf(id), stored);
+                        if (stored.mileage != driven.getMileage()) {
+                            throw new IllegalStateException("Evicted vehicle " + id + " has mileage " + stored.mileage
+                                    + " on disk but " + driven.getMileage() + " in memory: a change was lost");
+                        }
+                    }
+                }
+            }
+            writer.join();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long vehicleCount = 10_000_000;
+        int cache = 1_000_000;
+        int lookups = 5_000_000;
+        double hotShare = 0.9;
+        String path = "fleet-tiered.seg";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicleCount = Long.parseLong(args[++i]);
+                    break;
+                case "--cache":
+                    cache = Integer.parseInt(args[++i]);
+                    break;
+                case "--lookups":
+                    lookups = Integer.parseInt(args[++i]);
+                    break;
+                case "--hot-share":
+                    hotShare = Double.parseDouble(args[++i]);
+                    break;
+                case "--file":
+                    path = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        AbstractVehicle.setOutputEnabled(false);
+        checkNoStaleCopies(Path.of(path + ".check"));
+        Runtime runtime = Runtime.getRuntime();
+        try (TieredVehicleStore store = new TieredVehicleStore(Path.of(path), cache)) {
+            SplittableRandom random = new SplittableRandom(42);
+            long firstId = 0;
+            long start = System.nanoTime();
+            for (long v = 0; v < vehicleCount; v++) {
+                AbstractVehicle vehicle = VehicleFactory.createRandomVehicle();
+                if (v == 0) {
+                    firstId = vehicle.getId();
+                }
+                store.put(vehicle);
+            }
+            double loadSeconds = (System.nanoTime() - start) / 1e9;
+
+            // Skewed access: hotShare of the lookups go to a working set the size of the cache
+            long span = vehicleCount;
+            int hotSet = (int) Math.min(span, cache / 2);
+            LatencyHistogram latency = new LatencyHistogram();
+            long hitsBefore = store.getHits();
+            long missesBefore = store.getMisses();
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                long id = firstId + (random.nextDouble() < hotShare ? random.nextInt(hotSet) : random.nextLong(span));
+                long t0 = System.nanoTime();
+                AbstractVehicle vehicle = store.get(id);
+                if (vehicle == null) {
+                    throw new IllegalStateException("Lost vehicle " + id);
+                }
+                vehicle.start();
+                vehicle.accelerate();
+                latency.record(System.nanoTime() - t0);
+            }
+            double lookupSeconds = (System.nanoTime() - start) / 1e9;
+            long hits = store.getHits() - hitsBefore;
+            long misses = store.getMisses() - missesBefore;
+
+            System.gc();
+            long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+            System.out.println(String.format(Locale.ROOT,
+                    "{\"vehicles\":%d,\"cache\":%d,\"stored\":%d,\"loadPerSec\":%.0f,\"lookups\":%d,"
+                            + "\"lookupsPerSec\":%.0f,\"hitRate\":%.3f,\"latencyNs\":{\"p50\":%d,\"p99\":%d,\"max\":%d},"
+                            + "\"evictions\":%d,\"heapUsedMB\":%d,\"maxHeapMB\":%d,\"fileSizeMB\":%d}",
+                    vehicleCount, cache, store.size(), vehicleCount / loadSeconds, lookups, lookups / lookupSeconds,
+                    hits / (double) Math.max(1, hits + misses), latency.getValueAtPercentile(50),
+                    latency.getValueAtPercentile(99), latency.getMax(), store.getEvictions(),
+                    heapUsed >> 20, runtime.maxMemory() >> 20, Files.size(Path.of(path)) >> 20));
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * TRIP PLANNER:
+ * Decides whether vehicles can complete candidate trips on the energy they carry.
+ * It demonstrates:
+ * 1. Polymorphism: Uses the energy model each vehicle type exposes (fuel burn, load factor, regeneration)
+ * 2. Immutability: Trips are precomputed once and shared safely between threads
+ * 3. Parallelism: Evaluates a vehicles x trips matrix with parallel streams
+ *
+ * Each accelerate() step covers one kilometre, so a trip's energy cost is
+ * energyPerKm * distance minus whatever regenerative braking recovers on the
+ * speed drops of the profile (including the final stop).
+ */
+public class TripPlanner {
+
+    /**
+     * A trip is a speed profile: segment i is driven at speeds[i] km/h for distances[i] km
+     */
+    public static class Trip {
+        private final int[] speeds;
+        private final double[] distances;
+        private final double totalDistance;
+        private final int peakSpeed;
+        private final int totalSpeedDrop;
+
+        public Trip(int[] speeds, double[] distances) {
+            if (speeds == null || distances == null || speeds.length != distances.length || speeds.length == 0) {
+                throw new IllegalArgumentException("Trip needs one distance per speed segment");
+            }
+            this.speeds = speeds.clone();
+            this.distances = distances.clone();
+
+            double distance = 0;
+            int peak = 0;
+            int drop = 0;
+            for (int i = 0; i < speeds.length; i++) {
+                if (speeds[i] < 0 || distances[i] < 0) {
+                    throw new IllegalArgumentException("Speeds and distances cannot be negative");
+                }
+                distance += distances[i];
+                peak = Math.max(peak, speeds[i]);
+                if (i > 0 && speeds[i] < speeds[i - 1]) {
+                    drop += speeds[i - 1] - speeds[i];
+                }
+            }
+            drop += speeds[speeds.length - 1]; // Brake to a stop at the destination
+
+            this.totalDistance = distance;
+            this.peakSpeed = peak;
+            this.totalSpeedDrop = drop;
+        }
+
+        public double getTotalDistance() {
+            return totalDistance;
+        }
+
+        public int getPeakSpeed() {
+            return peakSpeed;
+        }
+
+        public int getTotalSpeedDrop() {
+            return totalSpeedDrop;
+        }
+
+        public int getSegmentCount() {
+            return speeds.length;
+        }
+    }
+
+    /**
+     * Outcome of planning one trip for one vehicle
+     */
+    public static class Result {
+        private final boolean feasible;
+        private final double energyAtArrival;
+        private final int stopsRequired;
+
+        Result(boolean feasible, double energyAtArrival, int stopsRequired) {
+            this.feasible = feasible;
+            this.energyAtArrival = energyAtArrival;
+            this.stopsRequired = stopsRequired;
+        }
+
+        /**
+         * @return true if the trip can be completed on the current fuel or battery
+         */
+        public boolean isFeasible() {
+            return feasible;
+        }
+
+        /**
+         * @return Energy left at the destination (litres or kWh), after any stops
+         */
+        public double getEnergyAtArrival() {
+            return energyAtArrival;
+        }
+
+        /**
+         * @return Refuel/charge stops needed, or -1 if the vehicle can never make the trip
+         */
+        public int getStopsRequired() {
+            return stopsRequired;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{feasible=" + feasible +
+                    ", energyAtArrival=" + String.format("%.2f", energyAtArrival) +
+                    ", stopsRequired=" + stopsRequired + '}';
+        }
+    }
+
+    /**
+     * Receives matrix results without allocating a Result per cell.
+     * Called concurrently from several threads.
+     */
+    public interface ResultSink {
+        void accept(int vehicleIndex, int tripIndex, boolean feasible, double energyAtArrival, int stopsRequired);
+    }
+
+    /**
+     * Plans a single trip for a single vehicle
+     */
+    public static Result plan(AbstractVehicle vehicle, Trip trip) {
+        double[] out = new double[2];
+        boolean feasible = evaluate(vehicle.getEnergyPerKm(), vehicle.getEnergyRecoveredPerKmh(),
+                vehicle.getEnergyLevel(), vehicle.getEnergyCapacity(), vehicle.getMaxSpeed(), trip, out);
+        return new Result(feasible, out[0], (int) out[1]);
+    }
+
+    /**
+     * Plans every trip for every vehicle in parallel.
+     * Vehicle energy models are snapshotted first, so the vehicles are only read once
+     * and the inner loop works on primitive arrays.
+     */
+    public static void planAll(List<? extends AbstractVehicle> vehicles, List<Trip> trips, ResultSink sink) {
+        int vehicleCount = vehicles.size();
+        double[] perKm = new double[vehicleCount];
+        double[] recovered = new double[vehicleCount];
+        double[] level = new double[vehicleCount];
+        double[] capacity = new double[vehicleCount];
+        int[] maxSpeed = new int[vehicleCount];
+
+        for (int i = 0; i < vehicleCount; i++) {
+            AbstractVehicle vehicle = vehicles.get(i);
+            perKm[i] = vehicle.getEnergyPerKm();
+            recovered[i] = vehicle.getEnergyRecoveredPerKmh();
+            level[i] = vehicle.getEnergyLevel();
+            capacity[i] = vehicle.getEnergyCapacity();
+            maxSpeed[i] = vehicle.getMaxSpeed();
+        }
+
+        Trip[] tripArray = trips.toArray(new Trip[0]);
+
+        IntStream.range(0, vehicleCount).parallel().forEach(v -> {
+            double[] out = new double[2];
+            for (int t = 0; t < tripArray.length; t++) {
+                boolean feasible = evaluate(perKm[v], recovered[v], level[v], capacity[v], maxSpeed[v], tripArray[t], out);
+                sink.accept(v, t, feasible, out[0], (int) out[1]);
+            }
+        });
+    }
+
+    /**
+     * Counts, for each trip, how many vehicles can complete it without stopping
+     */
+    public static int[] countFeasibleVehicles(List<? extends AbstractVehicle> vehicles, List<Trip> trips) {
+        AtomicIntegerArray counts = new AtomicIntegerArray(trips.size());
+        planAll(vehicles, trips, (v, t, feasible, energy, stops) -> {
+            if (feasible) {
+                counts.incrementAndGet(t);
+            }
+        });
+
+        int[] result = new int[trips.size()];
+        for (int t = 0; t < result.length; t++) {
+            result[t] = counts.get(t);
+        }
+        return result;
+    }
+
+    /**
+     * Core energy calculation. Writes energy at arrival into out[0] and stops into out[1].
+     * Stops assume the vehicle drives until empty and then fills up completely.
+     */
+    private static boolean evaluate(double perKm, double recoveredPerKmh, double level, double capacity,
+                                    int maxSpeed, Trip trip, double[] out) {
+        if (trip.peakSpeed > maxSpeed) {
+            out[0] = level;
+            out[1] = -1;
+            return false;
+        }
+
+        double needed = perKm * trip.totalDistance - recoveredPerKmh * trip.totalSpeedDrop;
+        if (level >= needed) {
+            out[0] = Math.min(capacity, level - needed);
+            out[1] = 0;
+            return true;
+        }
+
+        if (capacity <= 0) {
+            out[0] = level;
+            out[1] = -1;
+            return false;
+        }
+
+        double deficit = needed - level;
+        int stops = (int) Math.ceil(deficit / capacity);
+        out[0] = stops * capacity - deficit;
+        out[1] = stops;
+        return false;
+    }
+}
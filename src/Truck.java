@@ -50,19 +50,43 @@ public class Truck extends AbstractVehicle {
      */
     @Override
     public void accelerate() {
-        if (isRunning && fuelLevel > 0) {
-            double loadFactor = currentCargo / cargoCapacity;
-            int acceleration = (int) (5 * (1 - loadFactor * 0.5)); // Slower when loaded
-            speed += Math.max(acceleration, 2); // Minimum 2 km/h increase
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.ACCELERATE);
+        if (isRunning && fuelLevel > ENERGY_EPSILON) {
+            speed += getAccelerationStep(); // Slower when loaded
             
-            fuelLevel -= 1.0 + (loadFactor * 0.5); // More fuel consumption when loaded
+            fuelLevel -= getEnergyPerKm(); // More fuel consumption when loaded
             mileage += 1;
             mileageSinceService += 1;
+            moveForward(1);
             
-            System.out.println(getVehicleType() + " " + brand + " " + model + 
-                             " is accelerating slowly. Current speed: " + speed + " km/h" +
-                             " (Load: " + String.format("%.1f", currentCargo) + "/" + cargoCapacity + " tons)");
+            if (outputEnabled) {
+                System.out.println(getVehicleType() + " " + brand + " " + model + 
+                                 " is accelerating slowly. Current speed: " + speed + " km/h" +
+                                 " (Load: " + String.format("%.1f", currentCargo) + "/" + cargoCapacity + " tons)");
+            }
+            notifyObservers(IVehicleObserver.SPEED | IVehicleObserver.FUEL
+                    | IVehicleObserver.MILEAGE | IVehicleObserver.SERVICE | IVehicleObserver.POSITION);
         }
+        FleetRecording.endOperation(event, this);
+    }
+
+    /**
+     * Acceleration drops with the cargo load factor, with a minimum of 2 km/h
+     */
+    @Override
+    protected int getAccelerationStep() {
+        double loadFactor = currentCargo / cargoCapacity;
+        int acceleration = (int) (5 * (1 - loadFactor * 0.5));
+        return Math.max(acceleration, 2);
+    }
+
+    /**
+     * Fuel burn grows with the cargo load factor
+     */
+    @Override
+    public double getEnergyPerKm() {
+        double loadFactor = currentCargo / cargoCapacity;
+        return 1.0 + (loadFactor * 0.5);
     }
 
     /**
@@ -70,33 +94,64 @@ public class Truck extends AbstractVehicle {
      */
     @Override
     public void performMaintenance() {
-        System.out.println("Performing heavy-duty maintenance on " + brand + " " + model);
-        System.out.println("- Checking hydraulic systems");
-        System.out.println("- Inspecting cargo area");
-        System.out.println("- Checking " + numberOfAxles + " axles");
-        if (hasTrailer) {
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.MAINTENANCE);
+        if (outputEnabled) {
+            System.out.println("Performing heavy-duty maintenance on " + brand + " " + model);
+            System.out.println("- Checking hydraulic systems");
+            System.out.println("- Inspecting cargo area");
+            System.out.println("- Checking " + numberOfAxles + " axles");
+        }
+        if (outputEnabled && hasTrailer) {
             System.out.println("- Inspecting trailer connection");
         }
         resetServiceIndicator();
+        FleetRecording.endOperation(event, this);
+    }
+
+    @Override
+    void captureState(VehicleSnapshot snapshot) {
+        super.captureState(snapshot);
+        snapshot.type = VehicleFactory.VehicleType.TRUCK;
+        snapshot.cargoCapacity = cargoCapacity;
+        snapshot.currentCargo = currentCargo;
+        snapshot.trailer = hasTrailer;
+        snapshot.numberOfAxles = numberOfAxles;
+    }
+
+    @Override
+    void restoreState(VehicleSnapshot snapshot) {
+        super.restoreState(snapshot);
+        cargoCapacity = snapshot.cargoCapacity;
+        currentCargo = snapshot.currentCargo;
+        hasTrailer = snapshot.trailer;
+        numberOfAxles = snapshot.numberOfAxles;
     }
 
     // Truck-specific methods
     public void loadCargo(double weight) {
+        VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.LOAD_CARGO);
         if (currentCargo + weight <= cargoCapacity) {
             currentCargo += weight;
-            System.out.println("Loaded " + weight + " tons. Current cargo: " + 
-                             String.format("%.1f", currentCargo) + " tons");
-        } else {
+            if (outputEnabled) {
+                System.out.println("Loaded " + weight + " tons. Current cargo: " + 
+                                 String.format("%.1f", currentCargo) + " tons");
+            }
+            notifyObservers(IVehicleObserver.CARGO);
+        } else if (outputEnabled) {
             System.out.println("Cannot load " + weight + " tons. Exceeds capacity!");
         }
+        FleetRecording.endOperation(event, this);
     }
 
     public void unloadCargo(double weight) {
         if (currentCargo >= weight) {
             currentCargo -= weight;
-            System.out.println("Unloaded " + weight + " tons. Current cargo: " + 
-                             String.format("%.1f", currentCargo) + " tons");
-        } else {
+            if (outputEnabled) {
+                System.out.println("Unloaded " + weight + " tons. Current cargo: " + 
+                                 String.format("%.1f", currentCargo) + " tons");
+            }
+            notifyObservers(IVehicleObserver.CARGO);
+        } else if (outputEnabled) {
             System.out.println("Cannot unload " + weight + " tons. Not enough cargo!");
         }
     }
@@ -105,7 +160,10 @@ public class Truck extends AbstractVehicle {
         if (!hasTrailer) {
             hasTrailer = true;
             cargoCapacity *= 1.5; // Increase capacity with trailer
-            System.out.println("Trailer attached. New cargo capacity: " + cargoCapacity + " tons");
+            if (outputEnabled) {
+                System.out.println("Trailer attached. New cargo capacity: " + cargoCapacity + " tons");
+            }
+            notifyObservers(IVehicleObserver.TRAILER | IVehicleObserver.CARGO);
         }
     }
 
@@ -113,10 +171,13 @@ public class Truck extends AbstractVehicle {
         if (hasTrailer) {
             hasTrailer = false;
             cargoCapacity /= 1.5; // Restore original capacity
-            if (currentCargo > cargoCapacity) {
+            if (outputEnabled && currentCargo > cargoCapacity) {
                 System.out.println("Warning: Current cargo exceeds capacity without trailer!");
             }
-            System.out.println("Trailer detached. Cargo capacity: " + cargoCapacity + " tons");
+            if (outputEnabled) {
+                System.out.println("Trailer detached. Cargo capacity: " + cargoCapacity + " tons");
+            }
+            notifyObservers(IVehicleObserver.TRAILER | IVehicleObserver.CARGO);
         }
     }
 
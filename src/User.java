@@ -1,5 +1,8 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
 
 /**
  * USER CLASS EXAMPLE:
@@ -8,25 +11,38 @@ import java.util.List;
  * 2. Composition: User has a collection of vehicles
  * 3. Data validation in setters
  * 4. Business logic methods
+ * Passwords are never stored: only a salted PasswordHasher hash is kept.
  */
 public class User {
+    // License authority shared by all users; null means only the length rule applies
+    private static volatile LicenseRegistry licenseRegistry;
+    // Hashes new passwords; null means PasswordHasher.getDefault()
+    private static volatile PasswordHasher passwordHasher;
+
     // Private fields demonstrating ENCAPSULATION
     private String name;
     private String email;
-    private String password;
+    private volatile String passwordHash; // Replaced by logins on other threads when rehashed
     private List<AbstractVehicle> vehicles; // COMPOSITION: User has vehicles
     private String licenseNumber;
     private boolean hasValidLicense;
+    private TieredVehicleStore store; // When set, vehicles live in the store and only their ids here
+    private long[] storedIds;
+    private int storedCount;
+
+    private User(String name, String email) {
+        setName(name);
+        setEmail(email);
+        this.vehicles = new ArrayList<>();
+        this.hasValidLicense = false;
+    }
 
     /**
      * Constructor with validation
      */
     public User(String name, String email, String password) {
-        setName(name);
-        setEmail(email);
+        this(name, email);
         setPassword(password);
-        this.vehicles = new ArrayList<>();
-        this.hasValidLicense = false;
     }
 
     /**
@@ -35,7 +51,6 @@ public class User {
     public User(String name, String email, String password, String licenseNumber) {
         this(name, email, password);
         setLicenseNumber(licenseNumber);
-        this.hasValidLicense = true;
     }
 
     // ENCAPSULATION: Setters with validation
@@ -49,22 +64,60 @@ public class User {
 
     public void setEmail(String email) {
         if (email != null && email.contains("@") && email.contains(".")) {
-            this.email = email.toLowerCase();
+            this.email = email.toLowerCase(Locale.ROOT);
         } else {
             throw new IllegalArgumentException("Invalid email format");
         }
     }
 
+    /**
+     * Recreates a user whose password was hashed elsewhere, e.g. received from another node
+     * @param licenseNumber The license, or null for a user without one
+     */
+    public static User fromPasswordHash(String name, String email, String passwordHash, String licenseNumber) {
+        User user = new User(name, email);
+        user.setPasswordHash(passwordHash);
+        if (licenseNumber != null) {
+            user.setLicenseNumber(licenseNumber);
+        }
+        return user;
+    }
+
     public void setPassword(String password) {
         if (password != null && password.length() >= 6) {
-            this.password = password;
+            this.passwordHash = getPasswordHasher().hash(password);
         } else {
             throw new IllegalArgumentException("Password must be at least 6 characters");
         }
     }
 
+    public void setPasswordHash(String passwordHash) {
+        if (!PasswordHasher.isHash(passwordHash)) {
+            throw new IllegalArgumentException("Not a valid password hash");
+        }
+        this.passwordHash = passwordHash;
+    }
+
+    /**
+     * Checks a password against the stored hash; takes as long as the hash's work factor
+     */
+    public boolean checkPassword(String password) {
+        return getPasswordHasher().verify(password, passwordHash);
+    }
+
     public void setLicenseNumber(String licenseNumber) {
         if (licenseNumber != null && licenseNumber.length() >= 8) {
+            LicenseRegistry registry = licenseRegistry;
+            if (registry != null) {
+                switch (registry.check(licenseNumber)) {
+                    case REVOKED:
+                        throw new IllegalArgumentException("License number has been revoked");
+                    case UNKNOWN:
+                        throw new IllegalArgumentException("License number is not in the license registry");
+                    default:
+                        break;
+                }
+            }
             this.licenseNumber = licenseNumber;
             this.hasValidLicense = true;
         } else {
@@ -72,6 +125,33 @@ public class User {
         }
     }
 
+    /**
+     * Validates license numbers against a license authority from now on, for every user.
+     * Licenses assigned earlier are checked again whenever a vehicle is added.
+     * @param registry The authority, or null to go back to the length rule only
+     */
+    public static void setLicenseRegistry(LicenseRegistry registry) {
+        licenseRegistry = registry;
+    }
+
+    public static LicenseRegistry getLicenseRegistry() {
+        return licenseRegistry;
+    }
+
+    /**
+     * Hashes passwords set from now on, for every user. Existing hashes keep their own cost
+     * and still verify; LoginService upgrades them on the next successful login.
+     * @param hasher The hasher, or null to go back to PasswordHasher.getDefault()
+     */
+    public static void setPasswordHasher(PasswordHasher hasher) {
+        passwordHasher = hasher;
+    }
+
+    public static PasswordHasher getPasswordHasher() {
+        PasswordHasher hasher = passwordHasher;
+        return hasher != null ? hasher : PasswordHasher.getDefault();
+    }
+
     // ENCAPSULATION: Getters
     public String getName() {
         return name;
@@ -81,73 +161,170 @@ public class User {
         return email;
     }
 
-    public String getPassword() {
-        return password; // In real application, this might be hashed
+    public String getPasswordHash() {
+        return passwordHash;
     }
 
     public String getLicenseNumber() {
         return licenseNumber;
     }
 
+    /**
+     * @return true if a license was assigned and, when a license registry is set, it is
+     *         still valid there (revocations take effect immediately)
+     */
     public boolean hasValidLicense() {
-        return hasValidLicense;
+        LicenseRegistry registry = licenseRegistry;
+        return hasValidLicense && (registry == null || registry.isValid(licenseNumber));
     }
 
     // COMPOSITION: Methods to manage vehicles
     public void addVehicle(AbstractVehicle vehicle) {
-        if (hasValidLicense) {
-            vehicles.add(vehicle);
-            System.out.println("Vehicle " + vehicle.getBrand() + " " + vehicle.getModel() + 
-                             " added to " + name + "'s collection");
-        } else {
+        if (hasValidLicense()) {
+            if (store == null) {
+                vehicles.add(vehicle);
+            } else {
+                store.put(vehicle);
+                if (storedCount == storedIds.length) {
+                    storedIds = Arrays.copyOf(storedIds, Math.max(4, storedCount * 2));
+                }
+                storedIds[storedCount++] = vehicle.getId();
+            }
+            if (AbstractVehicle.isOutputEnabled()) {
+                System.out.println("Vehicle " + vehicle.getBrand() + " " + vehicle.getModel() + 
+                                 " added to " + name + "'s collection");
+            }
+        } else if (AbstractVehicle.isOutputEnabled()) {
             System.out.println("Cannot add vehicle - user doesn't have a valid license");
         }
     }
 
     public void removeVehicle(AbstractVehicle vehicle) {
-        if (vehicles.remove(vehicle)) {
+        boolean removed;
+        if (store == null) {
+            removed = vehicles.remove(vehicle);
+        } else {
+            // A reloaded vehicle is a new object, so stored vehicles are matched by id
+            int index = 0;
+            while (index < storedCount && storedIds[index] != vehicle.getId()) {
+                index++;
+            }
+            removed = index < storedCount;
+            if (removed) {
+                System.arraycopy(storedIds, index + 1, storedIds, index, storedCount - index - 1);
+                storedCount--;
+                store.remove(vehicle.getId());
+            }
+        }
+        if (removed && AbstractVehicle.isOutputEnabled()) {
             System.out.println("Vehicle " + vehicle.getBrand() + " " + vehicle.getModel() + 
                              " removed from " + name + "'s collection");
         }
     }
 
+    /**
+     * TIERED STORAGE: moves this user's vehicles into a TieredVehicleStore. From then on the
+     * user only keeps vehicle ids, and every access loads the vehicles through the store,
+     * which reloads evicted ones transparently.
+     */
+    public void setVehicleStore(TieredVehicleStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("Vehicle store cannot be null");
+        }
+        if (this.store != null) {
+            throw new IllegalStateException("User already keeps its vehicles in a store");
+        }
+        storedIds = new long[Math.max(4, vehicles.size())];
+        for (AbstractVehicle vehicle : vehicles) {
+            store.put(vehicle);
+            storedIds[storedCount++] = vehicle.getId();
+        }
+        vehicles.clear();
+        this.store = store;
+    }
+
+    private int vehicleCount() {
+        return store == null ? vehicles.size() : storedCount;
+    }
+
+    private AbstractVehicle vehicleAt(int index) {
+        return store == null ? vehicles.get(index) : store.get(storedIds[index]);
+    }
+
     public List<AbstractVehicle> getVehicles() {
-        return new ArrayList<>(vehicles); // Return copy to maintain encapsulation
+        if (store == null) {
+            return new ArrayList<>(vehicles); // Return copy to maintain encapsulation
+        }
+        List<AbstractVehicle> result = new ArrayList<>(storedCount);
+        for (int i = 0; i < storedCount; i++) {
+            result.add(vehicleAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * Allocation-free variant of getVehicles(): copies into a caller-supplied buffer
+     * @return Number of vehicles; only the first buffer.length of them are copied
+     */
+    public int getVehicles(AbstractVehicle[] buffer) {
+        int count = vehicleCount();
+        for (int i = 0; i < count && i < buffer.length; i++) {
+            buffer[i] = vehicleAt(i);
+        }
+        return count;
+    }
+
+    /**
+     * Visits every vehicle without copying the list. The visitor must not add or remove vehicles.
+     */
+    public void forEachVehicle(Consumer<? super AbstractVehicle> visitor) {
+        for (int i = 0; i < vehicleCount(); i++) {
+            visitor.accept(vehicleAt(i));
+        }
     }
 
     public int getVehicleCount() {
-        return vehicles.size();
+        return vehicleCount();
     }
 
     // Business logic methods
     public void performMaintenanceOnAllVehicles() {
-        System.out.println("\n" + name + " is performing maintenance on all vehicles:");
-        for (AbstractVehicle vehicle : vehicles) {
+        FleetPassEvent event = FleetRecording.beginPass(FleetPassEvent.MAINTENANCE);
+        if (AbstractVehicle.isOutputEnabled()) {
+            System.out.println("\n" + name + " is performing maintenance on all vehicles:");
+        }
+        for (int i = 0; i < vehicleCount(); i++) {
+            AbstractVehicle vehicle = vehicleAt(i);
             if (vehicle.needsService()) {
                 vehicle.performMaintenance();
-            } else {
+            } else if (AbstractVehicle.isOutputEnabled()) {
                 System.out.println(vehicle.getBrand() + " " + vehicle.getModel() + " doesn't need service yet");
             }
         }
+        FleetRecording.endPass(event, vehicleCount());
     }
 
     public AbstractVehicle getFastestVehicle() {
-        if (vehicles.isEmpty()) {
+        if (vehicleCount() == 0) {
             return null;
         }
         
-        AbstractVehicle fastest = vehicles.get(0);
-        for (AbstractVehicle vehicle : vehicles) {
+        FleetPassEvent event = FleetRecording.beginPass(FleetPassEvent.FASTEST);
+        AbstractVehicle fastest = vehicleAt(0);
+        for (int i = 1; i < vehicleCount(); i++) {
+            AbstractVehicle vehicle = vehicleAt(i);
             if (vehicle.getMaxSpeed() > fastest.getMaxSpeed()) {
                 fastest = vehicle;
             }
         }
+        FleetRecording.endPass(event, vehicleCount());
         return fastest;
     }
 
     public List<AbstractVehicle> getVehiclesByType(String type) {
         List<AbstractVehicle> result = new ArrayList<>();
-        for (AbstractVehicle vehicle : vehicles) {
+        for (int i = 0; i < vehicleCount(); i++) {
+            AbstractVehicle vehicle = vehicleAt(i);
             if (vehicle.getVehicleType().equalsIgnoreCase(type)) {
                 result.add(vehicle);
             }
@@ -155,16 +332,41 @@ public class User {
         return result;
     }
 
+    /**
+     * Allocation-free variant of getVehiclesByType(): copies matches into a caller-supplied buffer
+     * @return Number of matching vehicles; only the first buffer.length of them are copied
+     */
+    public int getVehiclesByType(String type, AbstractVehicle[] buffer) {
+        int found = 0;
+        for (int i = 0; i < vehicleCount(); i++) {
+            AbstractVehicle vehicle = vehicleAt(i);
+            if (vehicle.getVehicleType().equalsIgnoreCase(type)) {
+                if (found < buffer.length) {
+                    buffer[found] = vehicle;
+                }
+                found++;
+            }
+        }
+        return found;
+    }
+
     // Method demonstrating POLYMORPHISM
     public void testDriveAllVehicles() {
-        System.out.println("\n" + name + " is test driving all vehicles:");
-        for (AbstractVehicle vehicle : vehicles) {
-            System.out.println("\nTesting " + vehicle.getVehicleType() + ":");
+        FleetPassEvent event = FleetRecording.beginPass(FleetPassEvent.TEST_DRIVE);
+        if (AbstractVehicle.isOutputEnabled()) {
+            System.out.println("\n" + name + " is test driving all vehicles:");
+        }
+        for (int i = 0; i < vehicleCount(); i++) {
+            AbstractVehicle vehicle = vehicleAt(i);
+            if (AbstractVehicle.isOutputEnabled()) {
+                System.out.println("\nTesting " + vehicle.getVehicleType() + ":");
+            }
             vehicle.start();
             vehicle.accelerate();
             vehicle.brake();
             vehicle.stop();
         }
+        FleetRecording.endPass(event, vehicleCount());
     }
 
     @Override
@@ -172,8 +374,8 @@ public class User {
         return "User{" +
                 "name='" + name + '\'' +
                 ", email='" + email + '\'' +
-                ", vehicles=" + vehicles.size() +
-                ", hasValidLicense=" + hasValidLicense +
+                ", vehicles=" + vehicleCount() +
+                ", hasValidLicense=" + hasValidLicense() +
                 '}';
     }
 }
@@ -0,0 +1,388 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * BINARY CODEC EXAMPLE:
+ * Hand-rolled encoding of vehicles and users for moving them between processes.
+ * It is much smaller and faster than Java serialization because:
+ * 1. A one-byte tag from VehicleFactory.VehicleType replaces class descriptors
+ * 2. Ints and longs are varints (zigzag for signed values), so small numbers take one byte
+ * 3. Whole-number doubles such as 60.0 are written as varints too
+ * 4. Brand, model and other repeated strings are dictionary-coded: the first occurrence is
+ *    written in full, later ones as a small index
+ * 5. All boolean fields are bit-packed into a single flags byte
+ *
+ * The codec reads and writes the caller's ByteBuffer directly and reuses one snapshot, so
+ * encoding a vehicle and decoding into an existing snapshot allocate nothing once the
+ * dictionary is warm.
+ *
+ * The dictionary is stateful: encoder and decoder must see the same sequence of records.
+ * Encoding and decoding keep separate dictionaries, so one codec can serve both directions
+ * of a connection; call reset() on both ends to start a new stream. Not thread-safe.
+ */
+public final class VehicleCodec {
+    private static final VehicleFactory.VehicleType[] TYPES = VehicleFactory.VehicleType.values();
+
+    // Flag bits
+    private static final int RUNNING = 1;
+    private static final int AIR_CONDITIONING = 1 << 1;
+    private static final int AUTOMATIC_TRANSMISSION = 1 << 2;
+    private static final int SIDECAR = 1 << 3;
+    private static final int TRAILER = 1 << 4;
+    private static final int ECO_MODE = 1 << 5;
+    private static final int REGENERATIVE_BRAKING = 1 << 6;
+    private static final int LICENSED = 1 << 7;
+
+    private final int maxDictionarySize;
+    private final HashMap<String, Integer> encodeDictionary = new HashMap<>();
+    private String[] decodeDictionary = new String[64];
+    private int decodeDictionarySize;
+    private char[] chars = new char[64];
+    private final VehicleSnapshot scratch = new VehicleSnapshot();
+
+    public VehicleCodec() {
+        this(4096);
+    }
+
+    /**
+     * @param maxDictionarySize Distinct strings remembered per stream; later new strings are
+     *                          always written in full
+     */
+    public VehicleCodec(int maxDictionarySize) {
+        if (maxDictionarySize < 0) {
+            throw new IllegalArgumentException("Dictionary size cannot be negative");
+        }
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    /**
+     * Forgets all dictionary entries. Both ends must reset at the same point in the stream.
+     */
+    public void reset() {
+        encodeDictionary.clear();
+        Arrays.fill(decodeDictionary, 0, decodeDictionarySize, null);
+        decodeDictionarySize = 0;
+    }
+
+    /**
+     * Upper bound of the encoded size, to make room in the buffer before encode()
+     */
+    public static int maxEncodedSize(VehicleSnapshot s) {
+        return 128 + maxStringSize(s.brand) + maxStringSize(s.model)
+                + maxStringSize(s.motorcycleType) + maxStringSize(s.chargingPortType);
+    }
+
+    public void encode(AbstractVehicle vehicle, ByteBuffer out) {
+        vehicle.captureState(scratch);
+        encode(scratch, out);
+    }
+
+    public void encode(VehicleSnapshot s, ByteBuffer out) {
+        out.put((byte) s.type.ordinal());
+        int flags = (s.running ? RUNNING : 0);
+        putVarlong(out, s.id);
+        putDictionaryString(out, s.brand);
+        putDictionaryString(out, s.model);
+        putVarint(out, zigzag(s.year));
+        putVarint(out, zigzag(s.speed));
+        putVarint(out, zigzag(s.currentGear));
+        putDouble(out, s.fuelLevel);
+        putDouble(out, s.fuelCapacity);
+        putVarint(out, zigzag(s.mileage));
+        putVarint(out, zigzag(s.mileageSinceService));
+        putDouble(out, s.x);
+        putDouble(out, s.y);
+        putDouble(out, s.heading);
+        switch (s.type) {
+            case CAR:
+                flags |= (s.airConditioning ? AIR_CONDITIONING : 0)
+                        | (s.automaticTransmission ? AUTOMATIC_TRANSMISSION : 0);
+                putVarint(out, zigzag(s.numberOfDoors));
+                break;
+            case MOTORCYCLE:
+                flags |= s.sidecar ? SIDECAR : 0;
+                putVarint(out, zigzag(s.engineSize));
+                putDictionaryString(out, s.motorcycleType);
+                break;
+            case TRUCK:
+                flags |= s.trailer ? TRAILER : 0;
+                putDouble(out, s.cargoCapacity);
+                putDouble(out, s.currentCargo);
+                putVarint(out, zigzag(s.numberOfAxles));
+                break;
+            case ELECTRIC_CAR:
+                flags |= (s.ecoMode ? ECO_MODE : 0) | (s.regenerativeBraking ? REGENERATIVE_BRAKING : 0);
+                putDouble(out, s.batteryCapacity);
+                putDouble(out, s.batteryLevel);
+                putDouble(out, s.efficiency);
+                putDictionaryString(out, s.chargingPortType);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown vehicle type: " + s.type);
+        }
+        out.put((byte) flags);
+    }
+
+    /**
+     * Decodes one vehicle into a reusable snapshot
+     */
+    public void decode(ByteBuffer in, VehicleSnapshot s) {
+        int tag = in.get();
+        if (tag < 0 || tag >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown vehicle type tag: " + tag);
+        }
+        s.type = TYPES[tag];
+        s.id = getVarlong(in);
+        s.brand = getDictionaryString(in);
+        s.model = getDictionaryString(in);
+        s.year = unzigzag(getVarint(in));
+        s.speed = unzigzag(getVarint(in));
+        s.currentGear = unzigzag(getVarint(in));
+        s.fuelLevel = getDouble(in);
+        s.fuelCapacity = getDouble(in);
+        s.mileage = unzigzag(getVarint(in));
+        s.mileageSinceService = unzigzag(getVarint(in));
+        s.x = getDouble(in);
+        s.y = getDouble(in);
+        s.heading = getDouble(in);
+        switch (s.type) {
+            case CAR:
+                s.numberOfDoors = unzigzag(getVarint(in));
+                break;
+            case MOTORCYCLE:
+                s.engineSize = unzigzag(getVarint(in));
+                s.motorcycleType = getDictionaryString(in);
+                break;
+            case TRUCK:
+                s.cargoCapacity = getDouble(in);
+                s.currentCargo = getDouble(in);
+                s.numberOfAxles = unzigzag(getVarint(in));
+                break;
+            case ELECTRIC_CAR:
+                s.batteryCapacity = getDouble(in);
+                s.batteryLevel = getDouble(in);
+                s.efficiency = getDouble(in);
+                s.chargingPortType = getDictionaryString(in);
+                break;
+            default:
+                throw new IllegalStateException("Unknown vehicle type: " + s.type);
+        }
+        int flags = in.get();
+        s.running = (flags & RUNNING) != 0;
+        s.airConditioning = (flags & AIR_CONDITIONING) != 0;
+        s.automaticTransmission = (flags & AUTOMATIC_TRANSMISSION) != 0;
+        s.sidecar = (flags & SIDECAR) != 0;
+        s.trailer = (flags & TRAILER) != 0;
+        s.ecoMode = (flags & ECO_MODE) != 0;
+        s.regenerativeBraking = (flags & REGENERATIVE_BRAKING) != 0;
+    }
+
+    /**
+     * Decodes one vehicle and rebuilds it with its original id
+     */
+    public AbstractVehicle decodeVehicle(ByteBuffer in) {
+        decode(in, scratch);
+        return VehicleFactory.createFromSnapshot(scratch);
+    }
+
+    /**
+     * Encodes a user followed by all of its vehicles.
+     * The buffer must have room for the user's strings plus maxEncodedSize() per vehicle.
+     */
+    public void encodeUser(User user, ByteBuffer out) {
+        out.put((byte) (user.hasValidLicense() ? LICENSED : 0));
+        putString(out, user.getName());
+        putString(out, user.getEmail());
+        putString(out, user.getPasswordHash());
+        if (user.hasValidLicense()) {
+            putString(out, user.getLicenseNumber());
+        }
+        List<AbstractVehicle> vehicles = user.getVehicles();
+        putVarint(out, vehicles.size());
+        for (AbstractVehicle vehicle : vehicles) {
+            encode(vehicle, out);
+        }
+    }
+
+    public User decodeUser(ByteBuffer in) {
+        int flags = in.get();
+        String name = getString(in);
+        String email = getString(in);
+        String passwordHash = getString(in);
+        User user = User.fromPasswordHash(name, email, passwordHash,
+                (flags & LICENSED) != 0 ? getString(in) : null);
+        int vehicleCount = getVarint(in);
+        for (int i = 0; i < vehicleCount; i++) {
+            user.addVehicle(decodeVehicle(in));
+        }
+        return user;
+    }
+
+    // ==========================================
+    // Strings
+    // ==========================================
+
+    /**
+     * Index + 1 of a known string, or 0 followed by the literal (which joins the dictionary)
+     */
+    private void putDictionaryString(ByteBuffer out, String value) {
+        Integer index = value == null ? null : encodeDictionary.get(value);
+        if (index != null) {
+            putVarint(out, index + 1);
+            return;
+        }
+        out.put((byte) 0);
+        putString(out, value);
+        if (value != null && encodeDictionary.size() < maxDictionarySize) {
+            encodeDictionary.put(value, encodeDictionary.size());
+        }
+    }
+
+    private String getDictionaryString(ByteBuffer in) {
+        int reference = getVarint(in);
+        if (reference > 0) {
+            if (reference > decodeDictionarySize) {
+                throw new IllegalArgumentException("Unknown dictionary entry: " + (reference - 1));
+            }
+            return decodeDictionary[reference - 1];
+        }
+        String value = getString(in);
+        if (value != null && decodeDictionarySize < maxDictionarySize) {
+            if (decodeDictionarySize == decodeDictionary.length) {
+                decodeDictionary = Arrays.copyOf(decodeDictionary, decodeDictionarySize * 2);
+            }
+            decodeDictionary[decodeDictionarySize++] = value;
+        }
+        return value;
+    }
+
+    private static int maxStringSize(String value) {
+        return value == null ? 5 : 10 + value.length() * 3;
+    }
+
+    /**
+     * Char count + 1 (0 for null), then each char as 1 to 3 UTF-8 style bytes,
+     * written straight from the String without an intermediate byte[]
+     */
+    static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.put((byte) 0);
+            return;
+        }
+        int length = value.length();
+        putVarint(out, length + 1);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xc0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3f)));
+            } else {
+                out.put((byte) (0xe0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                out.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    private String getString(ByteBuffer in) {
+        int length = getVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > chars.length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            int b = in.get() & 0xff;
+            if (b < 0x80) {
+                chars[i] = (char) b;
+            } else if (b < 0xe0) {
+                chars[i] = (char) (((b & 0x1f) << 6) | (in.get() & 0x3f));
+            } else {
+                chars[i] = (char) (((b & 0x0f) << 12) | ((in.get() & 0x3f) << 6) | (in.get() & 0x3f));
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    // ==========================================
+    // Numbers
+    // ==========================================
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Unsigned LEB128: 7 bits per byte, high bit set on all but the last byte
+     */
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static void putVarlong(ByteBuffer out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long getVarlong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varlong");
+    }
+
+    /**
+     * Whole numbers in int range: zigzag varint shifted left with a 0 marker bit.
+     * Anything else: marker byte 1 followed by the raw 8 bytes.
+     */
+    static void putDouble(ByteBuffer out, double value) {
+        int whole = (int) value;
+        if (whole == value && (whole != 0 || Double.doubleToRawLongBits(value) == 0L)) {
+            putVarlong(out, (zigzag(whole) & 0xffffffffL) << 1);
+        } else {
+            out.put((byte) 1);
+            out.putDouble(value);
+        }
+    }
+
+    static double getDouble(ByteBuffer in) {
+        long header = getVarlong(in);
+        if ((header & 1) != 0) {
+            return in.getDouble();
+        }
+        return unzigzag((int) (header >>> 1));
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * CODEC BENCHMARK:
+ * Encodes and decodes the same simulated fleet with VehicleCodec and with Java serialization
+ * of VehicleSnapshot, and reports bytes per vehicle, nanoseconds per round trip and bytes
+ * allocated per round trip. Decoded vehicles are checked against the originals.
+ *
+ * Usage: java -cp src VehicleCodecBenchmark [--vehicles 100000] [--rounds 10]
+ */
+public class VehicleCodecBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int vehicles = 100_000;
+        int rounds = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicles = Integer.parseInt(args[++i]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        AbstractVehicle.setOutputEnabled(false);
+        FleetSimulation simulation = new FleetSimulation();
+        simulation.setVehicleCount(vehicles);
+        List<AbstractVehicle> fleet = simulation.buildFleet();
+        VehicleSnapshot[] snapshots = new VehicleSnapshot[fleet.size()];
+        int capacity = 0;
+        for (int i = 0; i < snapshots.length; i++) {
+            // Drive a little so speeds, mileage and fuel levels aren't all defaults
+            AbstractVehicle vehicle = fleet.get(i);
+            vehicle.start();
+            for (int step = 0; step < i % 7; step++) {
+                vehicle.accelerate();
+            }
+            snapshots[i] = new VehicleSnapshot();
+            fleet.get(i).captureState(snapshots[i]);
+            capacity += VehicleCodec.maxEncodedSize(snapshots[i]);
+        }
+
+        // Warm up both paths, then measure the remaining rounds
+        int warmup = Math.max(1, rounds / 2);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity);
+        VehicleCodec codec = new VehicleCodec();
+        VehicleSnapshot decoded = new VehicleSnapshot();
+        Result binary = new Result();
+        Result serialized = new Result();
+        for (int round = 0; round < warmup + rounds; round++) {
+            Result target = round < warmup ? new Result() : binary;
+            runCodec(codec, snapshots, buffer, decoded, target);
+            target = round < warmup ? new Result() : serialized;
+            runSerialization(snapshots, target);
+        }
+
+        System.out.println(String.format(Locale.ROOT,
+                "{\"vehicles\":%d,\"rounds\":%d,"
+                        + "\"codec\":{\"bytesPerVehicle\":%.1f,\"nsPerVehicle\":%.1f,\"allocatedBytesPerVehicle\":%.2f},"
+                        + "\"javaSerialization\":{\"bytesPerVehicle\":%.1f,\"nsPerVehicle\":%.1f,\"allocatedBytesPerVehicle\":%.2f},"
+                        + "\"sizeRatio\":%.1f,\"speedRatio\":%.1f}",
+                snapshots.length, rounds,
+                binary.bytesPerVehicle(snapshots.length), binary.nsPerVehicle(snapshots.length),
+                binary.allocatedPerVehicle(snapshots.length),
+                serialized.bytesPerVehicle(snapshots.length), serialized.nsPerVehicle(snapshots.length),
+                serialized.allocatedPerVehicle(snapshots.length),
+                serialized.bytes / (double) binary.bytes, serialized.nanos / (double) binary.nanos));
+    }
+
+    private static class Result {
+        long bytes;
+        long nanos;
+        long allocated;
+        int rounds;
+
+        double bytesPerVehicle(int vehicles) {
+            return bytes / (double) rounds / vehicles;
+        }
+
+        double nsPerVehicle(int vehicles) {
+            return nanos / (double) rounds / vehicles;
+        }
+
+        double allocatedPerVehicle(int vehicles) {
+            return allocated / (double) rounds / vehicles;
+        }
+    }
+
+    private static void runCodec(VehicleCodec codec, VehicleSnapshot[] snapshots, ByteBuffer buffer,
+                                 VehicleSnapshot decoded, Result result) {
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        // One stream per round: the dictionary starts empty each time, like a new connection
+        codec.reset();
+        buffer.clear();
+        for (VehicleSnapshot snapshot : snapshots) {
+            codec.encode(snapshot, buffer);
+        }
+        int bytes = buffer.position();
+        buffer.flip();
+        for (VehicleSnapshot snapshot : snapshots) {
+            codec.decode(buffer, decoded);
+            check(snapshot, decoded);
+        }
+        result.nanos += System.nanoTime() - start;
+        result.allocated += THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        result.bytes += bytes;
+        result.rounds++;
+    }
+
+    private static void runSerialization(VehicleSnapshot[] snapshots, Result result)
+            throws IOException, ClassNotFoundException {
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            for (VehicleSnapshot snapshot : snapshots) {
+                out.writeUnshared(snapshot);
+            }
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (VehicleSnapshot snapshot : snapshots) {
+                check(snapshot, (VehicleSnapshot) in.readUnshared());
+            }
+        }
+        result.nanos += System.nanoTime() - start;
+        result.allocated += THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        result.bytes += bytes.size();
+        result.rounds++;
+    }
+
+    /**
+     * Compares the fields that belong to the vehicle's type
+     */
+    private static void check(VehicleSnapshot expected, VehicleSnapshot actual) {
+        boolean same = expected.type == actual.type && expected.id == actual.id
+                && expected.brand.equals(actual.brand) && expected.model.equals(actual.model)
+                && expected.year == actual.year && expected.running == actual.running
+                && expected.speed == actual.speed && expected.currentGear == actual.currentGear
+                && expected.fuelLevel == actual.fuelLevel && expected.fuelCapacity == actual.fuelCapacity
+                && expected.mileage == actual.mileage && expected.mileageSinceService == actual.mileageSinceService
+                && expected.x == actual.x && expected.y == actual.y && expected.heading == actual.heading;
+        switch (expected.type) {
+            case CAR:
+                same &= expected.numberOfDoors == actual.numberOfDoors
+                        && expected.airConditioning == actual.airConditioning
+                        && expected.automaticTransmission == actual.automaticTransmission;
+                break;
+            case MOTORCYCLE:
+                same &= expected.sidecar == actual.sidecar && expected.engineSize == actual.engineSize
+                        && Objects.equals(expected.motorcycleType, actual.motorcycleType);
+                break;
+            case TRUCK:
+                same &= expected.cargoCapacity == actual.cargoCapacity && expected.currentCargo == actual.currentCargo
+                        && expected.trailer == actual.trailer && expected.numberOfAxles == actual.numberOfAxles;
+                break;
+            case ELECTRIC_CAR:
+                same &= expected.batteryCapacity == actual.batteryCapacity && expected.batteryLevel == actual.batteryLevel
+                        && expected.ecoMode == actual.ecoMode && expected.efficiency == actual.efficiency
+                        && expected.regenerativeBraking == actual.regenerativeBraking
+                        && Objects.equals(expected.chargingPortType, actual.chargingPortType);
+                break;
+            default:
+                break;
+        }
+        if (!same) {
+            throw new IllegalStateException("Round trip changed " + expected + " into " + actual);
+        }
+    }
+}
@@ -1,3 +1,5 @@
+import java.util.Locale;
+
 /**
  * FACTORY PATTERN EXAMPLE:
  * This class demonstrates the Factory Design Pattern, which is a creational pattern
@@ -91,6 +93,31 @@ public class VehicleFactory {
         return createVehicle(randomType, randomBrand, randomModel, randomYear);
     }
     
+    /**
+     * Factory method that rebuilds a vehicle from a snapshot, keeping its original id
+     */
+    public static AbstractVehicle createFromSnapshot(VehicleSnapshot snapshot) {
+        AbstractVehicle vehicle = createVehicle(snapshot.type, snapshot.brand, snapshot.model, snapshot.year);
+        vehicle.restoreState(snapshot);
+        return vehicle;
+    }
+
+    /**
+     * Reverse lookup: the factory type of an existing vehicle
+     */
+    public static VehicleType typeOf(AbstractVehicle vehicle) {
+        if (vehicle instanceof ElectricCar) {
+            return VehicleType.ELECTRIC_CAR;
+        } else if (vehicle instanceof Truck) {
+            return VehicleType.TRUCK;
+        } else if (vehicle instanceof Motorcycle) {
+            return VehicleType.MOTORCYCLE;
+        } else if (vehicle instanceof Car) {
+            return VehicleType.CAR;
+        }
+        throw new IllegalArgumentException("Unknown vehicle class: " + vehicle.getClass().getName());
+    }
+
     /**
      * Method to get all available vehicle types
      * Demonstrates ENCAPSULATION by providing controlled access to enum values
@@ -104,7 +131,7 @@ public class VehicleFactory {
      */
     public static boolean isTypeSupported(String typeName) {
         try {
-            VehicleType.valueOf(typeName.toUpperCase());
+            VehicleType.valueOf(typeName.toUpperCase(Locale.ROOT));
             return true;
         } catch (IllegalArgumentException e) {
             return false;
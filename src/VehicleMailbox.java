@@ -0,0 +1,222 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * ACTOR-STYLE MAILBOX:
+ * Gives one vehicle a single logical writer. Any number of threads can post commands;
+ * the commands are queued in a lock-free multi-producer/single-consumer queue and run
+ * one batch at a time on a shared executor. Each command runs holding the vehicle's
+ * monitor, the rule for every writer (see AbstractVehicle), so it also serializes with
+ * FleetRegistry.execute and the other synchronized paths. While the mailbox is the only
+ * writer that lock is never contended.
+ *
+ * A mailbox costs a few dozen bytes while idle and no thread, so millions of vehicles
+ * can share a handful of carrier threads. Mailboxes are created by MailboxScheduler.
+ *
+ * @param <V> Vehicle type, so commands can use subclass methods without casting
+ */
+public class VehicleMailbox<V extends AbstractVehicle> implements Runnable {
+
+    /**
+     * Queue node. Producers link nodes at the tail; the single consumer walks from the head.
+     */
+    private static final class Node {
+        volatile Node next;
+        Runnable task;
+
+        Node(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    /**
+     * Queued ask(). Kept as its own type so a mailbox the executor refuses can fail it.
+     */
+    private static final class Ask<V, R> implements Runnable {
+        private final V vehicle;
+        private final Function<? super V, ? extends R> command;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        Ask(V vehicle, Function<? super V, ? extends R> command) {
+            this.vehicle = vehicle;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(command.apply(vehicle));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    // Updaters can only be made for the raw class; the casts just add the wildcard type argument
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final AtomicReferenceFieldUpdater<VehicleMailbox<?>, Node> TAIL =
+            (AtomicReferenceFieldUpdater) AtomicReferenceFieldUpdater.newUpdater(VehicleMailbox.class, Node.class, "tail");
+    private static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+            AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final AtomicIntegerFieldUpdater<VehicleMailbox<?>> SCHEDULED =
+            (AtomicIntegerFieldUpdater) AtomicIntegerFieldUpdater.newUpdater(VehicleMailbox.class, "scheduled");
+
+    private final V vehicle;
+    private final Executor executor;
+    private final int batchSize;
+
+    private Node head;              // Only touched by the consumer
+    private volatile Node tail;     // Swapped by producers
+    private volatile int scheduled; // 1 while the mailbox is queued or running on the executor
+
+    VehicleMailbox(V vehicle, Executor executor, int batchSize) {
+        this.vehicle = vehicle;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        Node stub = new Node(null);
+        this.head = stub;
+        this.tail = stub;
+    }
+
+    public V getVehicle() {
+        return vehicle;
+    }
+
+    /**
+     * Posts a query or command and returns a future for its result. If the executor
+     * rejects the mailbox (e.g. after shutdown) the future completes with the
+     * RejectedExecutionException.
+     */
+    public <R> CompletableFuture<R> ask(Function<? super V, ? extends R> command) {
+        Ask<V, R> ask = new Ask<>(vehicle, command);
+        try {
+            enqueue(ask);
+        } catch (RejectedExecutionException e) {
+            // Already failed while the queue was drained
+        }
+        return ask.future;
+    }
+
+    /**
+     * Posts a command without waiting for a result
+     *
+     * @throws RejectedExecutionException if the executor no longer accepts the mailbox
+     */
+    public void tell(Consumer<? super V> command) {
+        enqueue(() -> command.accept(vehicle));
+    }
+
+    /**
+     * Posts one of the standard fleet commands. The future completes with the vehicle
+     * once the command has run, or exceptionally if it was rejected.
+     */
+    public CompletableFuture<V> send(FleetRegistry.Command command, double argument) {
+        return ask(v -> {
+            FleetRegistry.apply(v, command, argument);
+            return v;
+        });
+    }
+
+    /**
+     * @return true if commands are waiting (only a hint while producers are active)
+     */
+    public boolean hasPending() {
+        return head.next != null;
+    }
+
+    private void enqueue(Runnable task) {
+        Node node = new Node(task);
+        Node previous = TAIL.getAndSet(this, node);
+        NEXT.lazySet(previous, node);
+        trySchedule();
+    }
+
+    private void trySchedule() {
+        while (SCHEDULED.compareAndSet(this, 0, 1)) {
+            try {
+                executor.execute(this);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Nothing will run this mailbox, so fail what is queued instead of leaving
+                // scheduled at 1 and every later command stuck behind it
+                failPending(e);
+                scheduled = 0;
+                if (!hasPendingOrInFlight()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the queued commands, completing the asks with the given failure.
+     * Only called while this thread holds scheduled == 1, i.e. acts as the consumer.
+     */
+    private void failPending(Throwable failure) {
+        Runnable task;
+        while ((task = poll()) != null) {
+            if (task instanceof Ask) {
+                ((Ask<?, ?>) task).future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Drains up to batchSize commands on the executor thread, then yields the thread
+     * so other mailboxes get a turn.
+     */
+    @Override
+    public void run() {
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                Runnable task = poll();
+                if (task == null) {
+                    break;
+                }
+                try {
+                    synchronized (vehicle) {
+                        task.run();
+                    }
+                } catch (RuntimeException e) {
+                    // A failing tell() must not take down the mailbox
+                    Thread currentThread = Thread.currentThread();
+                    currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+                }
+            }
+        } finally {
+            scheduled = 0;
+            // A producer may have enqueued after our last poll but seen scheduled == 1
+            if (hasPendingOrInFlight()) {
+                try {
+                    trySchedule();
+                } catch (RejectedExecutionException e) {
+                    // The pending commands were failed; nobody is waiting on this thread
+                }
+            }
+        }
+    }
+
+    private Runnable poll() {
+        Node next = head.next;
+        if (next == null) {
+            return null;
+        }
+        head = next;
+        Runnable task = next.task;
+        next.task = null; // Let the command be collected; next becomes the new stub
+        return task;
+    }
+
+    /**
+     * True if a command is linked, or a producer has swapped the tail but not linked it yet
+     */
+    private boolean hasPendingOrInFlight() {
+        return head.next != null || head != tail;
+    }
+}
@@ -0,0 +1,61 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR EVENT: one vehicle operation
+ * Recorded around start, accelerate, brake, refuel, charge, loadCargo and performMaintenance
+ * with the vehicle's type and id; JFR adds the start time, duration and thread.
+ * 1. Off by default: the event is disabled unless a settings file such as fleet.jfc enables it,
+ *    and while no recording runs at all the class isn't even loaded (see FleetRecording)
+ * 2. Thresholds: the standard "threshold" setting drops operations faster than the limit
+ * 3. Sampling: the custom "sampleEvery" setting (SamplingControl) keeps one in N of the rest,
+ *    and each committed event stores N as its weight so totals can be estimated
+ *
+ * Usage in a vehicle method:
+ *   VehicleOperationEvent event = FleetRecording.beginOperation(VehicleOperationEvent.ACCELERATE);
+ *   ... the operation ...
+ *   FleetRecording.endOperation(event, this);
+ */
+@Name("fleet.VehicleOperation")
+@Label("Vehicle Operation")
+@Category({"Fleet", "Vehicles"})
+@Description("A driving or maintenance operation on one vehicle")
+@StackTrace(false)
+@Enabled(false)
+class VehicleOperationEvent extends Event {
+    static final String START = "start";
+    static final String ACCELERATE = "accelerate";
+    static final String BRAKE = "brake";
+    static final String REFUEL = "refuel";
+    static final String CHARGE = "charge";
+    static final String LOAD_CARGO = "loadCargo";
+    static final String MAINTENANCE = "performMaintenance";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Vehicle Type")
+    String vehicleType;
+
+    @Label("Vehicle Id")
+    long vehicleId;
+
+    @Label("Sample Weight")
+    @Description("Operations this event stands for, from the sampleEvery setting")
+    int sampleWeight;
+
+    @SettingDefinition
+    @Name("sampleEvery")
+    @Label("Sample Every")
+    @Description("Keep one in N events that passed the threshold")
+    protected boolean sampleEvery(SamplingControl control) {
+        sampleWeight = control.getEvery();
+        return control.sample();
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.Serializable;
+
+/**
+ * SNAPSHOT (MEMENTO PATTERN) EXAMPLE:
+ * A plain, mutable holder for the complete state of any vehicle type.
+ * Vehicles copy their fields into it with captureState() and back with restoreState(),
+ * which lets storage and transport code work with every subclass without reflection.
+ * A single instance can be reused for many vehicles to avoid allocations.
+ */
+public class VehicleSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Common AbstractVehicle state
+    public VehicleFactory.VehicleType type;
+    public long id;
+    public String brand;
+    public String model;
+    public int year;
+    public boolean running;
+    public int speed;
+    public int currentGear;
+    public double fuelLevel;
+    public double fuelCapacity;
+    public int mileage;
+    public int mileageSinceService;
+    public double x;
+    public double y;
+    public double heading;
+
+    // Car
+    public int numberOfDoors;
+    public boolean airConditioning;
+    public boolean automaticTransmission;
+
+    // Motorcycle
+    public boolean sidecar;
+    public int engineSize;
+    public String motorcycleType;
+
+    // Truck
+    public double cargoCapacity;
+    public double currentCargo;
+    public boolean trailer;
+    public int numberOfAxles;
+
+    // ElectricCar
+    public double batteryCapacity;
+    public double batteryLevel; // in kWh
+    public boolean ecoMode;
+    public String chargingPortType;
+    public double efficiency;
+    public boolean regenerativeBraking;
+
+    @Override
+    public String toString() {
+        return "VehicleSnapshot{" +
+                "type=" + type +
+                ", id=" + id +
+                ", brand='" + brand + '\'' +
+                ", model='" + model + '\'' +
+                ", speed=" + speed +
+                ", mileage=" + mileage +
+                '}';
+    }
+}
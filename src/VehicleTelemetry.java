@@ -0,0 +1,123 @@
+/**
+ * TELEMETRY SAMPLE:
+ * Immutable copy of one vehicle's state, as delivered by VehicleTelemetryPublisher.
+ * Fields a vehicle type doesn't have are reported as 0 / false:
+ * batteryPercent and ecoMode only for electric cars, cargo and trailer only for trucks.
+ *
+ * changedFields holds every IVehicleObserver bit raised since the subscriber's previous
+ * sample of this vehicle, so conflated updates still say what changed in between.
+ */
+public final class VehicleTelemetry {
+    private final long vehicleId;
+    private final String vehicleType;
+    private final int changedFields;
+    private final long sequence;
+    private final long timestampNanos;
+    private final boolean running;
+    private final int speed;
+    private final int gear;
+    private final int mileage;
+    private final boolean needsService;
+    private final double fuelLevel;
+    private final double batteryPercent;
+    private final boolean ecoMode;
+    private final double cargo;
+    private final boolean trailer;
+
+    VehicleTelemetry(long vehicleId, String vehicleType, int changedFields, long sequence, long timestampNanos,
+                     boolean running, int speed, int gear, int mileage, boolean needsService, double fuelLevel,
+                     double batteryPercent, boolean ecoMode, double cargo, boolean trailer) {
+        this.vehicleId = vehicleId;
+        this.vehicleType = vehicleType;
+        this.changedFields = changedFields;
+        this.sequence = sequence;
+        this.timestampNanos = timestampNanos;
+        this.running = running;
+        this.speed = speed;
+        this.gear = gear;
+        this.mileage = mileage;
+        this.needsService = needsService;
+        this.fuelLevel = fuelLevel;
+        this.batteryPercent = batteryPercent;
+        this.ecoMode = ecoMode;
+        this.cargo = cargo;
+        this.trailer = trailer;
+    }
+
+    public long getVehicleId() {
+        return vehicleId;
+    }
+
+    public String getVehicleType() {
+        return vehicleType;
+    }
+
+    /**
+     * @return IVehicleObserver bits that changed since this subscriber's previous sample
+     */
+    public int getChangedFields() {
+        return changedFields;
+    }
+
+    /**
+     * @return Number of state changes of the vehicle seen by the publisher so far;
+     *         a jump larger than 1 between two samples means updates were conflated
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return System.nanoTime() of the change this sample reflects
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getSpeed() {
+        return speed;
+    }
+
+    public int getGear() {
+        return gear;
+    }
+
+    public int getMileage() {
+        return mileage;
+    }
+
+    public boolean needsService() {
+        return needsService;
+    }
+
+    public double getFuelLevel() {
+        return fuelLevel;
+    }
+
+    public double getBatteryPercent() {
+        return batteryPercent;
+    }
+
+    public boolean isEcoMode() {
+        return ecoMode;
+    }
+
+    public double getCargo() {
+        return cargo;
+    }
+
+    public boolean hasTrailer() {
+        return trailer;
+    }
+
+    @Override
+    public String toString() {
+        return vehicleType + " #" + vehicleId + " seq=" + sequence + " speed=" + speed + " fuel=" + fuelLevel
+                + " battery=" + batteryPercent + " cargo=" + cargo + " eco=" + ecoMode
+                + " needsService=" + needsService;
+    }
+}
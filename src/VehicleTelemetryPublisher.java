@@ -0,0 +1,706 @@
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * REACTIVE TELEMETRY STREAM:
+ * Publishes vehicle state changes as a java.util.concurrent.Flow.Publisher, so consumers
+ * receive speed, fuel, battery, cargo, eco mode and service updates instead of polling.
+ * It demonstrates:
+ * 1. Observer Pattern as the source: every mutator of AbstractVehicle and its subclasses
+ *    already notifies its observers, so watching a vehicle just adds one observer to it
+ * 2. Backpressure: Each subscriber gets batches only while it has outstanding demand
+ *    (Flow.Subscription.request); nothing is pushed ahead of demand
+ * 3. Conflation: Per subscriber, a vehicle is pending at most once. Further changes before
+ *    it is delivered only OR their field bits into the pending entry, and the subscriber
+ *    gets the vehicle's latest state. A slow subscriber sees fewer, fresher samples.
+ * 4. Bounded buffers: Each subscriber queues at most bufferSize distinct vehicles. When the
+ *    queue is full, further vehicles are only flagged as overflowed in the subscriber's
+ *    per-vehicle mask (one int per watched vehicle, which conflation needs anyway) and are
+ *    queued again as room frees up. Memory stays bounded and no vehicle's latest state is lost.
+ * 5. Batching: Up to maxBatch samples are delivered per onNext on the executor, never on
+ *    the driving thread
+ *
+ * The driving thread only copies a few fields and marks the vehicle pending, which doesn't
+ * allocate and never waits for a subscriber: the locks involved are held by the delivery
+ * side only while moving entries, never while calling subscriber code.
+ * Because samples are read when they are delivered, a sample can occasionally repeat the
+ * previous one; getSequence() tells them apart.
+ *
+ * Usage:
+ *   VehicleTelemetryPublisher telemetry = new VehicleTelemetryPublisher();
+ *   telemetry.watch(vehicle);
+ *   telemetry.subscribe(subscriber);   // subscriber.onNext receives List<VehicleTelemetry>
+ *   ...
+ *   telemetry.close();                 // subscribers get onComplete once drained
+ *
+ *   java -cp src VehicleTelemetryPublisher [--vehicles 1000] [--ops 5000000] [--buffer 256]
+ *       [--batch 64] [--slow-ms 0]
+ */
+public class VehicleTelemetryPublisher implements Flow.Publisher<List<VehicleTelemetry>>, AutoCloseable {
+    private static final TelemetrySubscription[] NO_SUBSCRIPTIONS = new TelemetrySubscription[0];
+    private static final int PENDING = 1 << 31;   // Marks a pending entry even if no field bit is set
+    private static final int OVERFLOW = 1 << 30;  // Pending, but not in the ring because it was full
+    private static final int FIELD_BITS = ~(PENDING | OVERFLOW);
+    private static final int BATCHES_PER_RUN = 16; // Batches per executor task before yielding the thread
+
+    private final Executor executor;
+    private final int bufferSize;
+    private final int maxBatch;
+
+    private final Map<AbstractVehicle, Tap> taps = new IdentityHashMap<>();
+    private int nextSlot;
+    private volatile TelemetrySubscription[] subscriptions = NO_SUBSCRIPTIONS;
+    private volatile boolean closed;
+
+    /**
+     * Publisher delivering on the common ForkJoinPool with Flow.defaultBufferSize() pending
+     * vehicles per subscriber and batches of up to 64 samples
+     */
+    public VehicleTelemetryPublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), 64);
+    }
+
+    /**
+     * @param executor Runs delivery to subscribers; must not run tasks on the calling thread
+     * @param bufferSize Maximum number of distinct vehicles pending per subscriber
+     * @param maxBatch Maximum number of samples per onNext
+     */
+    public VehicleTelemetryPublisher(Executor executor, int bufferSize, int maxBatch) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        if (bufferSize <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("Buffer size and batch size must be positive");
+        }
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Starts publishing the vehicle's state changes; watching it twice has no effect
+     */
+    public synchronized void watch(AbstractVehicle vehicle) {
+        if (vehicle == null) {
+            throw new IllegalArgumentException("Vehicle cannot be null");
+        }
+        if (closed) {
+            throw new IllegalStateException("Publisher is closed");
+        }
+        if (!taps.containsKey(vehicle)) {
+            Tap tap = new Tap(this, vehicle, nextSlot++);
+            taps.put(vehicle, tap);
+            vehicle.addObserver(tap);
+        }
+    }
+
+    /**
+     * Stops publishing the vehicle's changes; samples already pending are still delivered
+     */
+    public synchronized void unwatch(AbstractVehicle vehicle) {
+        Tap tap = taps.remove(vehicle);
+        if (tap != null) {
+            vehicle.removeObserver(tap);
+        }
+    }
+
+    public synchronized int getWatchedCount() {
+        return taps.size();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<VehicleTelemetry>> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        TelemetrySubscription subscription = new TelemetrySubscription(this, subscriber);
+        boolean duplicate = false;
+        for (TelemetrySubscription existing : subscriptions) {
+            duplicate |= existing.subscriber == subscriber;
+        }
+        subscriber.onSubscribe(subscription);
+        if (duplicate) {
+            subscription.fail(new IllegalStateException("Already subscribed"));
+            return;
+        }
+        synchronized (this) {
+            if (subscription.cancelled) {
+                return; // Cancelled or failed from within onSubscribe
+            }
+            if (!closed) {
+                // Added only after onSubscribe returned, so no batch can overlap it
+                TelemetrySubscription[] current = subscriptions;
+                TelemetrySubscription[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = subscription;
+                subscriptions = updated;
+                return;
+            }
+        }
+        subscription.schedule(); // Closed already: completes right away
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    /**
+     * @return Vehicles that found a subscriber's buffer full and had to wait outside it,
+     *         over current subscribers
+     */
+    public long getOverflowCount() {
+        long total = 0;
+        for (TelemetrySubscription subscription : subscriptions) {
+            total += subscription.overflowed;
+        }
+        return total;
+    }
+
+    /**
+     * @return Updates merged into a sample that was already pending, over current subscribers
+     */
+    public long getConflatedCount() {
+        long total = 0;
+        for (TelemetrySubscription subscription : subscriptions) {
+            total += subscription.conflated;
+        }
+        return total;
+    }
+
+    /**
+     * Stops watching all vehicles. Subscribers receive what is still pending, as far as
+     * their demand allows, followed by onComplete.
+     */
+    @Override
+    public void close() {
+        TelemetrySubscription[] current;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Map.Entry<AbstractVehicle, Tap> entry : taps.entrySet()) {
+                entry.getKey().removeObserver(entry.getValue());
+            }
+            taps.clear();
+            current = subscriptions;
+        }
+        for (TelemetrySubscription subscription : current) {
+            subscription.schedule();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized void remove(TelemetrySubscription subscription) {
+        TelemetrySubscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                TelemetrySubscription[] updated = new TelemetrySubscription[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                subscriptions = updated.length == 0 ? NO_SUBSCRIPTIONS : updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Observer attached to one watched vehicle. Holds the vehicle's latest state, copied on the
+     * driving thread, and its slot number, which indexes the subscribers' pending masks.
+     * The state is guarded by a sequence lock: writers hold the vehicle's monitor (see
+     * AbstractVehicle), so there is one at a time and it never waits, and a delivering thread
+     * that overlaps a write just reads again.
+     */
+    private static final class Tap implements IVehicleObserver {
+        private final VehicleTelemetryPublisher publisher;
+        private final AbstractVehicle vehicle;
+        private final int slot;
+        private final ElectricCar electric;
+        private final Truck truck;
+
+        private volatile int version; // Odd while the driving thread is copying the state
+
+        // Latest state, written between the two version increments
+        private long sequence;
+        private long timestampNanos;
+        private boolean running;
+        private int speed;
+        private int gear;
+        private int mileage;
+        private boolean needsService;
+        private double fuelLevel;
+        private double batteryPercent;
+        private boolean ecoMode;
+        private double cargo;
+        private boolean trailer;
+
+        Tap(VehicleTelemetryPublisher publisher, AbstractVehicle vehicle, int slot) {
+            this.publisher = publisher;
+            this.vehicle = vehicle;
+            this.slot = slot;
+            this.electric = vehicle instanceof ElectricCar ? (ElectricCar) vehicle : null;
+            this.truck = vehicle instanceof Truck ? (Truck) vehicle : null;
+        }
+
+        @Override
+        public void onStateChanged(AbstractVehicle changed, int changedFields) {
+            TelemetrySubscription[] current = publisher.subscriptions;
+            if (current.length == 0) {
+                return;
+            }
+            int start = version;
+            version = start + 1;
+            VarHandle.storeStoreFence(); // The odd version must be visible before any field changes
+            sequence++;
+            timestampNanos = System.nanoTime();
+            running = vehicle.isRunning();
+            speed = vehicle.getSpeed();
+            gear = vehicle.getCurrentGear();
+            mileage = vehicle.getMileage();
+            needsService = vehicle.needsService();
+            fuelLevel = vehicle.getFuelLevel();
+            if (electric != null) {
+                batteryPercent = electric.getBatteryLevel();
+                ecoMode = electric.isEcoMode();
+            }
+            if (truck != null) {
+                cargo = truck.getCurrentCargo();
+                trailer = truck.hasTrailer();
+            }
+            version = start + 2;
+            for (TelemetrySubscription subscription : current) {
+                subscription.offer(this, changedFields);
+            }
+        }
+
+        VehicleTelemetry sample(int changedFields) {
+            while (true) {
+                int start = version;
+                if ((start & 1) == 0) {
+                    long sequence = this.sequence;
+                    long timestampNanos = this.timestampNanos;
+                    boolean running = this.running;
+                    int speed = this.speed;
+                    int gear = this.gear;
+                    int mileage = this.mileage;
+                    boolean needsService = this.needsService;
+                    double fuelLevel = this.fuelLevel;
+                    double batteryPercent = this.batteryPercent;
+                    boolean ecoMode = this.ecoMode;
+                    double cargo = this.cargo;
+                    boolean trailer = this.trailer;
+                    VarHandle.loadLoadFence(); // Finish the field reads before checking the version again
+                    if (version == start) {
+                        return new VehicleTelemetry(vehicle.getId(), vehicle.getVehicleType(), changedFields,
+                                sequence, timestampNanos, running, speed, gear, mileage, needsService, fuelLevel,
+                                batteryPercent, ecoMode, cargo, trailer);
+                    }
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * One subscriber's buffer and demand. Driving threads offer pending vehicles; a task on the
+     * executor delivers them, one task at a time, like a VehicleMailbox.
+     */
+    private static final class TelemetrySubscription implements Flow.Subscription, Runnable {
+        private static final AtomicLongFieldUpdater<TelemetrySubscription> DEMAND =
+                AtomicLongFieldUpdater.newUpdater(TelemetrySubscription.class, "demand");
+        private static final AtomicIntegerFieldUpdater<TelemetrySubscription> SCHEDULED =
+                AtomicIntegerFieldUpdater.newUpdater(TelemetrySubscription.class, "scheduled");
+
+        private final VehicleTelemetryPublisher publisher;
+        private final Flow.Subscriber<? super List<VehicleTelemetry>> subscriber;
+
+        // Ring of pending vehicles and their accumulated field bits, guarded by this subscription
+        private final Tap[] ring;
+        private int head;
+        private int count;
+        private int[] pending = new int[64]; // Indexed by Tap.slot; 0 when not pending
+        private Tap[] overflowTaps = new Tap[64]; // Indexed by Tap.slot, set while flagged OVERFLOW
+        private int overflowCount;                // Entries flagged OVERFLOW
+        private int overflowCursor;               // Where the next refill scan starts
+        private long overflowed;
+        private long conflated;
+
+        // Only touched by the delivering task
+        private final Tap[] batchTaps;
+        private final int[] batchFields;
+        private boolean done;
+
+        private volatile long demand;
+        private volatile int scheduled;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+
+        TelemetrySubscription(VehicleTelemetryPublisher publisher,
+                              Flow.Subscriber<? super List<VehicleTelemetry>> subscriber) {
+            this.publisher = publisher;
+            this.subscriber = subscriber;
+            this.ring = new Tap[publisher.bufferSize];
+            this.batchTaps = new Tap[publisher.maxBatch];
+            this.batchFields = new int[publisher.maxBatch];
+        }
+
+        /**
+         * Called on the driving thread: marks the vehicle pending or merges into its pending entry
+         */
+        void offer(Tap tap, int changedFields) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (tap.slot >= pending.length) {
+                    int length = Math.max(tap.slot + 1, pending.length * 2);
+                    pending = Arrays.copyOf(pending, length);
+                    overflowTaps = Arrays.copyOf(overflowTaps, length);
+                }
+                int fields = pending[tap.slot];
+                if (fields != 0) {
+                    pending[tap.slot] = fields | changedFields;
+                    conflated++;
+                    return;
+                }
+                if (count == ring.length) {
+                    pending[tap.slot] = changedFields | PENDING | OVERFLOW;
+                    overflowTaps[tap.slot] = tap;
+                    overflowCount++;
+                    overflowed++;
+                    return;
+                }
+                pending[tap.slot] = changedFields | PENDING;
+                ring[(head + count) % ring.length] = tap;
+                count++;
+            }
+            if (demand > 0) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Requested " + n + " batches; must be positive"));
+                return;
+            }
+            long current;
+            long updated;
+            do {
+                current = demand;
+                updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!DEMAND.compareAndSet(this, current, updated));
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            publisher.remove(this);
+            synchronized (this) {
+                Arrays.fill(ring, null);
+                Arrays.fill(overflowTaps, null);
+                count = 0;
+                overflowCount = 0;
+            }
+        }
+
+        void fail(Throwable failure) {
+            error = failure;
+            cancelled = true;
+            publisher.remove(this);
+            schedule();
+        }
+
+        void schedule() {
+            if (SCHEDULED.compareAndSet(this, 0, 1)) {
+                try {
+                    publisher.executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // Nothing is lost: the entries stay pending and the next offer or request retries
+                    scheduled = 0;
+                }
+            }
+        }
+
+        /**
+         * Delivers up to BATCHES_PER_RUN batches, then gives the executor thread back
+         */
+        @Override
+        public void run() {
+            try {
+                deliver();
+            } finally {
+                scheduled = 0;
+                // An offer or request may have arrived after the last check but seen scheduled == 1
+                if (!done && (error != null || (!cancelled && (demand > 0 && (count > 0 || overflowCount > 0)
+                        || publisher.closed && count == 0 && overflowCount == 0)))) {
+                    schedule();
+                }
+            }
+        }
+
+        private void deliver() {
+            if (done) {
+                return;
+            }
+            Throwable failure = error;
+            if (failure != null) {
+                done = true;
+                subscriber.onError(failure);
+                return;
+            }
+            for (int batches = 0; batches < BATCHES_PER_RUN && !cancelled; batches++) {
+                if (publisher.closed && isEmpty()) {
+                    // onComplete needs no demand
+                    done = true;
+                    cancelled = true;
+                    publisher.remove(this);
+                    subscriber.onComplete();
+                    return;
+                }
+                if (demand == 0) {
+                    return;
+                }
+                int taken = take();
+                if (taken == 0) {
+                    return;
+                }
+                List<VehicleTelemetry> batch = new ArrayList<>(taken);
+                for (int i = 0; i < taken; i++) {
+                    batch.add(batchTaps[i].sample(batchFields[i] & FIELD_BITS));
+                    batchTaps[i] = null;
+                }
+                if (demand != Long.MAX_VALUE) {
+                    DEMAND.decrementAndGet(this);
+                }
+                try {
+                    subscriber.onNext(Collections.unmodifiableList(batch));
+                } catch (RuntimeException e) {
+                    // A throwing subscriber breaks the protocol; cancel it like SubmissionPublisher does
+                    done = true;
+                    cancel();
+                    subscriber.onError(e);
+                    return;
+                }
+            }
+        }
+
+        private synchronized boolean isEmpty() {
+            return count == 0 && overflowCount == 0;
+        }
+
+        private synchronized int take() {
+            if (count == 0 && overflowCount > 0) {
+                refill();
+            }
+            int taken = Math.min(count, batchTaps.length);
+            for (int i = 0; i < taken; i++) {
+                Tap tap = ring[head];
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                batchTaps[i] = tap;
+                batchFields[i] = pending[tap.slot];
+                pending[tap.slot] = 0;
+            }
+            count -= taken;
+            if (overflowCount > 0) {
+                refill();
+            }
+            return taken;
+        }
+
+        /**
+         * Moves overflowed vehicles back into the ring. The scan is bounded so the driving
+         * threads never wait long for this subscription's lock; it resumes where it stopped.
+         */
+        private void refill() {
+            int length = overflowTaps.length;
+            for (int scanned = 0; scanned < 4 * ring.length && count < ring.length && overflowCount > 0; scanned++) {
+                int slot = overflowCursor;
+                overflowCursor = slot + 1 == length ? 0 : slot + 1;
+                Tap tap = overflowTaps[slot];
+                if (tap != null) {
+                    overflowTaps[slot] = null;
+                    pending[slot] &= ~OVERFLOW;
+                    overflowCount--;
+                    ring[(head + count) % ring.length] = tap;
+                    count++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Benchmark: drives watched vehicles on the calling thread with one subscriber attached
+     * and reports the driving cost per operation next to what the subscriber received.
+     * --slow-ms makes the subscriber sleep per batch to show conflation and overflow.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int vehicles = 1_000;
+        long ops = 5_000_000;
+        int buffer = 256;
+        int batch = 64;
+        long slowMs = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vehicles":
+                    vehicles = Integer.parseInt(args[++i]);
+                    break;
+                case "--ops":
+                    ops = Long.parseLong(args[++i]);
+                    break;
+                case "--buffer":
+                    buffer = Integer.parseInt(args[++i]);
+                    break;
+                case "--batch":
+                    batch = Integer.parseInt(args[++i]);
+                    break;
+                case "--slow-ms":
+                    slowMs = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        AbstractVehicle.setOutputEnabled(false);
+        AbstractVehicle[] fleet = new AbstractVehicle[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            switch (i % 4) {
+                case 0:
+                    fleet[i] = new Car("Toyota", "Corolla", 2023, 4);
+                    break;
+                case 1:
+                    fleet[i] = new Motorcycle("Honda", "CBR", 2023, false);
+                    break;
+                case 2:
+                    fleet[i] = new ElectricCar("Tesla", "Model 3", 2023, 75, "CCS");
+                    break;
+                default:
+                    fleet[i] = new Truck("Volvo", "FH16", 2023, 20000, 3);
+            }
+            fleet[i].start();
+        }
+
+        // Baseline without any subscriber: watching alone must cost next to nothing
+        ExecutorService delivery = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "telemetry-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        VehicleTelemetryPublisher telemetry = new VehicleTelemetryPublisher(delivery, buffer, batch);
+        for (AbstractVehicle vehicle : fleet) {
+            telemetry.watch(vehicle);
+        }
+        double[] unsubscribed = drive(fleet, ops);
+
+        AtomicLong batches = new AtomicLong();
+        AtomicLong samples = new AtomicLong();
+        long sleep = slowMs;
+        Object finished = new Object();
+        boolean[] complete = new boolean[1];
+        telemetry.subscribe(new Flow.Subscriber<List<VehicleTelemetry>>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(List<VehicleTelemetry> item) {
+                batches.incrementAndGet();
+                samples.addAndGet(item.size());
+                if (sleep > 0) {
+                    try {
+                        Thread.sleep(sleep);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throwable.printStackTrace();
+                onComplete();
+            }
+
+            @Override
+            public void onComplete() {
+                synchronized (finished) {
+                    complete[0] = true;
+                    finished.notifyAll();
+                }
+            }
+        });
+        double[] subscribed = drive(fleet, ops);
+        long conflated = telemetry.getConflatedCount();
+        long overflowed = telemetry.getOverflowCount();
+        telemetry.close();
+        synchronized (finished) {
+            while (!complete[0]) {
+                finished.wait();
+            }
+        }
+        delivery.shutdown();
+
+        System.out.println(String.format(Locale.ROOT,
+                "{\"vehicles\":%d,\"ops\":%d,\"buffer\":%d,\"maxBatch\":%d,\"slowMs\":%d,"
+                        + "\"unsubscribedNsPerOp\":%.1f,\"subscribedNsPerOp\":%.1f,\"subscribedDrivingCpuNsPerOp\":%.1f,"
+                        + "\"batches\":%d,\"samples\":%d,"
+                        + "\"avgBatch\":%.1f,\"conflated\":%d,\"overflowed\":%d}",
+                vehicles, ops, buffer, batch, slowMs, unsubscribed[0], subscribed[0], subscribed[1], batches.get(), samples.get(),
+                batches.get() == 0 ? 0.0 : (double) samples.get() / batches.get(), conflated, overflowed));
+    }
+
+    /**
+     * Accelerates and brakes the fleet round-robin, refuelling as needed
+     * @return Average wall-clock and driving-thread CPU nanoseconds per operation; they differ
+     *         when delivery shares the CPU with the driving thread
+     */
+    private static double[] drive(AbstractVehicle[] fleet, long ops) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long start = System.nanoTime();
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        for (long op = 0; op < ops; op++) {
+            AbstractVehicle vehicle = fleet[(int) (op % fleet.length)];
+            if ((op / fleet.length & 1) == 0) {
+                vehicle.accelerate();
+            } else {
+                vehicle.brake();
+            }
+            if (vehicle.getEnergyLevel() < vehicle.getEnergyCapacity() * 0.2) {
+                if (vehicle instanceof ElectricCar) {
+                    ((ElectricCar) vehicle).charge(2);
+                } else {
+                    vehicle.refuel(vehicle.getEnergyCapacity());
+                }
+                vehicle.start();
+            }
+        }
+        long cpu = threads.getCurrentThreadCpuTime() - cpuStart;
+        return new double[] {(double) (System.nanoTime() - start) / ops, (double) cpu / ops};
+    }
+}